@@ -0,0 +1,85 @@
+package umlEditorComponents;
+
+import graphics.BasicObject;
+import graphics.ToolElement;
+import modes.SelectMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The diagram all benchmarks of a trial work on, loaded into the Model, which is a singleton.
+ *
+ * <p>It is made by a DiagramGenerator, which keeps the density of the diagram (and thus the number of elements
+ * in any area of a given size) the same as it grows; only the size of the world and of the data structures over
+ * it grows with elementCount. lineDensity is the number of ConnectionLines per BasicObject.</p>
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDiagram
+{
+    private static final int POSITION_COUNT = 4096;  // the number of precomputed positions, a power of 2
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int elementCount;
+
+    @Param({"0.5", "2"})
+    public double lineDensity;
+
+    List<BasicObject> objects;
+    Dimension worldSize;
+    MouseEvent[] presses;  // at random positions in the world, a third of them on a BasicObject
+    Point[] positions;  // random positions in the world
+
+    @Setup(Level.Trial)
+    public void load()
+    {
+        int objectCount = (int) Math.max(2, Math.round(elementCount / (1 + lineDensity)));
+        DiagramGenerator generator = new DiagramGenerator(42).setObjectCount(objectCount / 2, objectCount - objectCount / 2).setFanOut(lineDensity);
+        List<ToolElement> elements = generator.generate();
+        objects = generator.getBasicObjects();
+        worldSize = generator.getWorldSize();
+        Random random = new Random(42);
+
+        Model model = Model.INSTANCE;
+        model.getCanvas().setSize(1920, 1080);
+        model.setMode(new SelectMode(), SelectMode.NUMBER);
+        model.setDiagram(elements);
+
+        presses = new MouseEvent[POSITION_COUNT];
+        positions = new Point[POSITION_COUNT];
+        for (int i = 0; i < POSITION_COUNT; i++)
+        {
+            Point press = new Point(random.nextInt(worldSize.width), random.nextInt(worldSize.height));
+            if (i % 3 == 0)
+            {
+                Point corner = objects.get(random.nextInt(objectCount)).getUnselectedTopLeftCorner();
+                press = new Point(corner.x + 30, corner.y + 30);
+            }
+            presses[i] = new MouseEvent(model.getCanvas(), MouseEvent.MOUSE_PRESSED, 0, InputEvent.BUTTON1_DOWN_MASK, press.x, press.y, 1, false, MouseEvent.BUTTON1);
+            positions[i] = new Point(random.nextInt(worldSize.width), random.nextInt(worldSize.height));
+        }
+    }
+
+    // the edits of the last iteration would otherwise pile up in the undo history and eventually be written to its spill file
+    @Setup(Level.Iteration)
+    public void clearHistory()
+    {
+        Model.INSTANCE.endMove();
+        Model.INSTANCE.clearSelection();
+        Model.INSTANCE.getHistory().clear();
+    }
+
+    MouseEvent getPress(int i)
+    {
+        return presses[i & (POSITION_COUNT - 1)];
+    }
+
+    Point getPosition(int i)
+    {
+        return positions[i & (POSITION_COUNT - 1)];
+    }
+}
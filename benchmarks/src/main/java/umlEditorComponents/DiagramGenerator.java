@@ -0,0 +1,251 @@
+package umlEditorComponents;
+
+import diagramFiles.ElementKind;
+import graphics.*;
+import graphics.Class;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds synthetic diagrams of any size to benchmark and soak-test the editor with, e.g.
+ *
+ * <pre>
+ * List&lt;ToolElement&gt; diagram = new DiagramGenerator(42).setObjectCount(60000, 40000).setFanOut(1.5).setCompositeDepth(2, 0.25).generate();
+ * Model.INSTANCE.setDiagram(diagram);
+ * </pre>
+ *
+ * <p>The BasicObjects lie on a grid of CELL_SIZE cells, each moved a little within its cell, in the order of a
+ * Z-order curve: every block of 4^k consecutive objects fills a square of the grid, which is where the nested
+ * CompositeObjects are formed. A line connects an object to one of its neighbours at most two cells away, so
+ * the density of the diagram does not change as it grows; only the world and the data structures over it do.
+ * The objects, lines and names are drawn from a Random with the given seed, so a diagram can be generated
+ * again.</p>
+ */
+public class DiagramGenerator
+{
+    public static final int CELL_SIZE = 160;  // leaves room around the largest BasicObject
+    private static final int NEIGHBOURHOOD = 2;  // the largest distance in cells between the two objects of a line
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+    private final Random random;
+    private int classCount = 500, useCaseCount = 500;
+    private double fanOut = 1;
+    private ElementKind[] lineKinds = {ElementKind.ASSOCIATION_LINE, ElementKind.GENERALIZATION_LINE, ElementKind.COMPOSITION_LINE};
+    private int compositeDepth = 0;
+    private double compositeFraction = 0;
+    private int minNameLength = 6, maxNameLength = 12;
+    private List<BasicObject> basicObjects = List.of();
+    private final Dimension worldSize = new Dimension();
+
+    public DiagramGenerator(long seed)
+    {
+        random = new Random(seed);
+    }
+
+    public DiagramGenerator setObjectCount(int classCount, int useCaseCount)
+    {
+        this.classCount = classCount;
+        this.useCaseCount = useCaseCount;
+
+        return this;
+    }
+
+    // the mean number of ConnectionLines per BasicObject
+    public DiagramGenerator setFanOut(double fanOut)
+    {
+        this.fanOut = fanOut;
+
+        return this;
+    }
+
+    // the kinds of the ConnectionLines, which are chosen with equal probability
+    public DiagramGenerator setLineKinds(ElementKind... lineKinds)
+    {
+        for (ElementKind kind : lineKinds)
+        {
+            if (kind != ElementKind.ASSOCIATION_LINE && kind != ElementKind.GENERALIZATION_LINE && kind != ElementKind.COMPOSITION_LINE)
+            {
+                throw new IllegalArgumentException(kind + " is not a kind of ConnectionLine");
+            }
+        }
+        this.lineKinds = lineKinds.clone();
+
+        return this;
+    }
+
+    /*
+    Each of the given fraction of the blocks of 4^depth objects becomes a CompositeObject of four
+    CompositeObjects of four ... objects, nested depth levels deep; 0 leaves every object on the top level.
+     */
+    public DiagramGenerator setCompositeDepth(int depth, double fraction)
+    {
+        this.compositeDepth = depth;
+        this.compositeFraction = fraction;
+
+        return this;
+    }
+
+    // the names have between min and max letters, in words of up to eight; 0 leaves the objects without a name
+    public DiagramGenerator setNameLength(int min, int max)
+    {
+        this.minNameLength = min;
+        this.maxNameLength = max;
+
+        return this;
+    }
+
+    // the size of the area from the origin the objects of the last generated diagram lie in, a multiple of CELL_SIZE
+    public Dimension getWorldSize()
+    {
+        return new Dimension(worldSize);
+    }
+
+    // the BasicObjects of the last generated diagram in the order of the grid, including the members of CompositeObjects
+    public List<BasicObject> getBasicObjects()
+    {
+        return basicObjects;
+    }
+
+    // the top-level elements in painting order, unselected, to be passed to Model.setDiagram
+    public List<ToolElement> generate()
+    {
+        int objectCount = classCount + useCaseCount;
+        ArrayList<BasicObject> objects = new ArrayList<>(objectCount);
+        // the kinds are shuffled over the grid, so that the Classes and UseCases are spread evenly
+        ArrayList<Boolean> isClass = new ArrayList<>(Collections.nCopies(classCount, true));
+        isClass.addAll(Collections.nCopies(useCaseCount, false));
+        Collections.shuffle(isClass, random);
+        worldSize.setSize(0, 0);
+        for (int i = 0; i < objectCount; i++)
+        {
+            int column = deinterleave(i), row = deinterleave(i >>> 1);
+            worldSize.setSize(Math.max(worldSize.width, (column + 1) * CELL_SIZE), Math.max(worldSize.height, (row + 1) * CELL_SIZE));
+            Point position = new Point(column * CELL_SIZE + random.nextInt(20), row * CELL_SIZE + random.nextInt(20));
+            BasicObject object = isClass.get(i) ? new Class(position) : new UseCase(position);
+            if (maxNameLength > 0)
+            {
+                object.setName(createName());
+            }
+            objects.add(object);
+        }
+        basicObjects = Collections.unmodifiableList(objects);
+
+        ArrayList<ToolElement> elements = new ArrayList<>();
+        int blockSize = 1 << (2 * compositeDepth);
+        for (int blockStart = 0; blockStart < objectCount; blockStart += blockSize)
+        {
+            List<BasicObject> block = objects.subList(blockStart, Math.min(objectCount, blockStart + blockSize));
+            if (compositeDepth > 0 && block.size() == blockSize && random.nextDouble() < compositeFraction)
+            {
+                elements.add(createComposite(block, compositeDepth));
+            }
+            else
+            {
+                elements.addAll(block);
+            }
+        }
+
+        long lineCount = Math.round(objectCount * fanOut);
+        for (long i = 0; i < lineCount && objectCount > 1; i++)
+        {
+            elements.add(createLine(objects));
+        }
+
+        return elements;
+    }
+
+    private AbstractObject createComposite(List<BasicObject> block, int depth)
+    {
+        ArrayList<ToolElement> members = new ArrayList<>();
+        if (depth == 1)
+        {
+            members.addAll(block);
+        }
+        else
+        {
+            int quarter = block.size() / 4;
+            for (int i = 0; i < 4; i++)
+            {
+                members.add(createComposite(block.subList(i * quarter, (i + 1) * quarter), depth - 1));
+            }
+        }
+
+        Rectangle bounds = null;
+        for (ToolElement member : members)
+        {
+            AbstractObject object = (AbstractObject) member;
+            Rectangle memberBounds = new Rectangle(object.getUnselectedTopLeftCorner(), new Dimension(object.getUnselectedWidth(), object.getUnselectedHeight()));
+            bounds = bounds == null ? memberBounds : bounds.union(memberBounds);
+        }
+
+        return ElementKind.createComposite(bounds.getLocation(), bounds.width, bounds.height, members);
+    }
+
+    private ConnectionLine createLine(List<BasicObject> objects)
+    {
+        int start = random.nextInt(objects.size()), end;
+        int startX = deinterleave(start), startY = deinterleave(start >>> 1);
+        do
+        {
+            int endX = startX + random.nextInt(2 * NEIGHBOURHOOD + 1) - NEIGHBOURHOOD, endY = startY + random.nextInt(2 * NEIGHBOURHOOD + 1) - NEIGHBOURHOOD;
+            end = endX < 0 || endY < 0 ? -1 : interleave(endX) | interleave(endY) << 1;
+        }
+        while (end == start || end < 0 || end >= objects.size());
+
+        BasicObject startObject = objects.get(start), endObject = objects.get(end);
+        BasicObject.ConnectionPort startPort = startObject.getPorts()[random.nextInt(4)], endPort = endObject.getPorts()[random.nextInt(4)];
+
+        return switch (lineKinds[random.nextInt(lineKinds.length)])
+        {
+            case ASSOCIATION_LINE -> new AssociationLine(startObject, startPort, endObject, endPort);
+            case GENERALIZATION_LINE -> new GeneralizationLine(startObject, startPort, endObject, endPort);
+            default -> new CompositionLine(startObject, startPort, endObject, endPort);
+        };
+    }
+
+    private String createName()
+    {
+        int length = minNameLength + random.nextInt(maxNameLength - minNameLength + 1);
+        StringBuilder name = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+        {
+            boolean wordStart = i == 0 || name.charAt(i - 1) == ' ';
+            if (!wordStart && i < length - 1 && random.nextInt(8) == 0)
+            {
+                name.append(' ');
+            }
+            else
+            {
+                char letter = LETTERS.charAt(random.nextInt(LETTERS.length()));
+                name.append(wordStart ? Character.toUpperCase(letter) : letter);
+            }
+        }
+
+        return name.toString();
+    }
+
+    // the coordinates of the cell of the i-th object are the even and the odd bits of i
+    private static int deinterleave(int i)
+    {
+        int bits = i & 0x55555555;
+        bits = (bits | bits >>> 1) & 0x33333333;
+        bits = (bits | bits >>> 2) & 0x0F0F0F0F;
+        bits = (bits | bits >>> 4) & 0x00FF00FF;
+
+        return (bits | bits >>> 8) & 0x0000FFFF;
+    }
+
+    private static int interleave(int coordinate)
+    {
+        int bits = coordinate & 0x0000FFFF;
+        bits = (bits | bits << 8) & 0x00FF00FF;
+        bits = (bits | bits << 4) & 0x0F0F0F0F;
+        bits = (bits | bits << 2) & 0x33333333;
+
+        return (bits | bits << 1) & 0x55555555;
+    }
+}
@@ -0,0 +1,294 @@
+package umlEditorComponents;
+
+import graphics.BasicObject;
+import graphics.ToolElement;
+import modes.*;
+
+import javax.swing.event.MouseInputAdapter;
+import java.awt.*;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replays scripted mouse gestures against diagrams of growing size and reports how the editor keeps up, e.g.
+ *
+ * <pre>
+ * java -Xmx4g -cp benchmarks/target/benchmarks.jar umlEditorComponents.LoadDriver [--sizes 1000,10000,100000,1000000] [--fan-out 1] [--depth 0] [--composites 0.25] [--name-length 6,12] [--seconds 2] [--seed 42]
+ * </pre>
+ *
+ * <p>For every size a DiagramGenerator builds a diagram of that many elements, which is loaded into the Model,
+ * and each script is played for the given number of seconds (after a warm-up of half as long) by passing the
+ * MouseEvents of its gestures to the modes, just like the CanvasArea does, on the event dispatch thread:</p>
+ * <ul>
+ *     <li>click: a press and release on a BasicObject in SelectMode, which selects it</li>
+ *     <li>drag: a press on a BasicObject, DRAG_STEPS drags and a release in SelectMode, which moves it</li>
+ *     <li>box: a press on the empty canvas, DRAG_STEPS drags and a release in SelectMode, which selects the
+ *     objects in the SelectionBox</li>
+ *     <li>connect: a press on a BasicObject, DRAG_STEPS drags and a release on a neighbour in one of the
+ *     ConnectionLineModes, which adds a ConnectionLine</li>
+ * </ul>
+ *
+ * <p>The time each event takes to be handled is recorded, and the percentiles of these latencies are printed for
+ * every kind of event of every script, together with the number of gestures played per second. AWT runs headless,
+ * so the repaints the events request are not painted; PaintBenchmark measures painting.</p>
+ */
+public class LoadDriver
+{
+    private static final int DRAG_STEPS = 10;  // the number of drag events of a gesture
+    private static final int STEP = 4;  // the distance the mouse moves between two drag events
+    private static final String[] EVENT_NAMES = {"press", "drag", "release"};
+
+    // the latencies of one kind of event, in nanoseconds
+    private static class Latencies
+    {
+        private long[] samples = new long[1024];
+        private int count;
+
+        void add(long nanos)
+        {
+            if (count == samples.length)
+            {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = nanos;
+        }
+
+        void clear()
+        {
+            count = 0;
+        }
+
+        // in microseconds; sorts the samples, which is quick once they are sorted
+        double getPercentile(double percentile)
+        {
+            Arrays.sort(samples, 0, count);
+
+            return count == 0 ? Double.NaN : samples[Math.min(count - 1, (int) Math.ceil(percentile / 100 * count) - 1)] / 1e3;
+        }
+    }
+
+    private enum Script
+    {
+        CLICK, DRAG, BOX, CONNECT
+    }
+
+    private final Model model = Model.INSTANCE;
+    private final Component canvas = model.getCanvas();
+    private final Random random;
+    private final SelectMode selectMode = new SelectMode();
+    private final ConnectionLineMode[] lineModes = {new AssociationLineMode(), new GeneralizationLineMode(), new CompositionLineMode()};
+    private final int[] lineModeNumbers = {AssociationLineMode.NUMBER, GeneralizationLineMode.NUMBER, CompositionLineMode.NUMBER};
+    private final Latencies[] latencies = {new Latencies(), new Latencies(), new Latencies()};  // by the index in EVENT_NAMES
+    private List<BasicObject> objects;
+    private int gestures, skipped;
+
+    private LoadDriver(long seed)
+    {
+        random = new Random(seed);
+    }
+
+    private void load(List<ToolElement> elements, List<BasicObject> objects)
+    {
+        this.objects = objects;
+        model.getCanvas().setSize(1920, 1080);
+        model.setMode(selectMode, SelectMode.NUMBER);
+        model.setDiagram(elements);
+    }
+
+    // plays the script for the given time, recording the latencies only if record is true
+    private void play(Script script, long nanos, boolean record)
+    {
+        for (Latencies eventLatencies : latencies)
+        {
+            eventLatencies.clear();
+        }
+        gestures = skipped = 0;
+
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end)
+        {
+            if (playGesture(script, record))
+            {
+                gestures++;
+            }
+            else
+            {
+                skipped++;
+            }
+        }
+
+        // the edits would otherwise pile up in the undo history and eventually be written to its spill file
+        model.setMode(selectMode, SelectMode.NUMBER);
+        model.clearSelection();
+        model.getHistory().clear();
+    }
+
+    private boolean playGesture(Script script, boolean record)
+    {
+        int index = random.nextInt(objects.size());
+        Point start = getCenter(objects.get(index)), end;
+        // back and forth, so that the objects stay where they are on average
+        int directionX = random.nextBoolean() ? 1 : -1, directionY = random.nextBoolean() ? 1 : -1;
+        MouseInputAdapter mode = selectMode;
+        int modeNumber = SelectMode.NUMBER;
+        switch (script)
+        {
+            case CLICK -> end = start;
+            case DRAG -> end = new Point(start.x + directionX * STEP * DRAG_STEPS, start.y + directionY * STEP * DRAG_STEPS);
+            case BOX ->
+            {
+                // the corner of a grid cell, which no BasicObject reaches
+                int cell = DiagramGenerator.CELL_SIZE;
+                start = new Point((start.x / cell + 1) * cell - 10, (start.y / cell + 1) * cell - 10);
+                if (model.getTopmostHitElement(createEvent(MouseEvent.MOUSE_PRESSED, start)) != null)  // a CompositeObject or a ConnectionLine
+                {
+                    return false;
+                }
+                end = new Point(start.x + directionX * 2 * cell, start.y + directionY * 2 * cell);
+            }
+            default ->
+            {
+                // the next object on the grid is one of the neighbours
+                end = getCenter(objects.get(index == objects.size() - 1 ? index - 1 : index + 1));
+                int lineMode = random.nextInt(lineModes.length);
+                mode = lineModes[lineMode];
+                modeNumber = lineModeNumbers[lineMode];
+            }
+        }
+        model.setMode(mode, modeNumber);
+
+        dispatch(mode, MouseEvent.MOUSE_PRESSED, start, record);
+        if (script != Script.CLICK)
+        {
+            for (int i = 1; i <= DRAG_STEPS; i++)
+            {
+                dispatch(mode, MouseEvent.MOUSE_DRAGGED, new Point(start.x + (end.x - start.x) * i / DRAG_STEPS, start.y + (end.y - start.y) * i / DRAG_STEPS), record);
+            }
+        }
+        dispatch(mode, MouseEvent.MOUSE_RELEASED, end, record);
+
+        return true;
+    }
+
+    private void dispatch(MouseInputAdapter mode, int id, Point point, boolean record)
+    {
+        MouseEvent event = createEvent(id, point);
+        long start = System.nanoTime();
+        switch (id)
+        {
+            case MouseEvent.MOUSE_PRESSED -> mode.mousePressed(event);
+            case MouseEvent.MOUSE_DRAGGED -> mode.mouseDragged(event);
+            default -> mode.mouseReleased(event);
+        }
+        long nanos = System.nanoTime() - start;
+
+        if (record)
+        {
+            latencies[id == MouseEvent.MOUSE_PRESSED ? 0 : id == MouseEvent.MOUSE_DRAGGED ? 1 : 2].add(nanos);
+        }
+    }
+
+    private MouseEvent createEvent(int id, Point point)
+    {
+        int modifiers = id == MouseEvent.MOUSE_RELEASED ? 0 : InputEvent.BUTTON1_DOWN_MASK;
+
+        return new MouseEvent(canvas, id, System.currentTimeMillis(), modifiers, point.x, point.y, 1, false, MouseEvent.BUTTON1);
+    }
+
+    private static Point getCenter(BasicObject object)
+    {
+        Point corner = object.getUnselectedTopLeftCorner();
+
+        return new Point(corner.x + object.getUnselectedWidth() / 2, corner.y + object.getUnselectedHeight() / 2);
+    }
+
+    private void report(int size, Script script, double seconds)
+    {
+        for (int event = 0; event < EVENT_NAMES.length; event++)
+        {
+            Latencies eventLatencies = latencies[event];
+            if (eventLatencies.count > 0)
+            {
+                System.out.printf("%9d  %-8s %12.1f  %-8s %9d %9.1f %9.1f %9.1f %9.1f %10.1f%n", size, script.name().toLowerCase(), gestures / seconds, EVENT_NAMES[event], eventLatencies.count,
+                        eventLatencies.getPercentile(50), eventLatencies.getPercentile(90), eventLatencies.getPercentile(99), eventLatencies.getPercentile(99.9), eventLatencies.getPercentile(100));
+            }
+        }
+        if (skipped > 0)
+        {
+            System.out.printf("%9d  %-8s %d gestures skipped, because the canvas was not empty where they began%n", size, script.name().toLowerCase(), skipped);
+        }
+    }
+
+    private static void printUsage()
+    {
+        System.err.println("usage: LoadDriver [--sizes elementCount,...] [--fan-out linesPerObject] [--depth compositeDepth] [--composites fraction] [--name-length min,max] [--seconds perScript] [--seed seed]");
+    }
+
+    public static void main(String[] args) throws InterruptedException, InvocationTargetException
+    {
+        // before the first use of AWT, which decides then whether there is a display
+        System.setProperty("java.awt.headless", "true");
+
+        int[] sizes = {1000, 10000, 100000, 1000000};
+        double fanOut = 1, compositeFraction = 0.25, seconds = 2;
+        int depth = 0, minNameLength = 6, maxNameLength = 12;
+        long seed = 42;
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                    case "--sizes" -> sizes = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+                    case "--fan-out" -> fanOut = Double.parseDouble(args[++i]);
+                    case "--depth" -> depth = Integer.parseInt(args[++i]);
+                    case "--composites" -> compositeFraction = Double.parseDouble(args[++i]);
+                    case "--name-length" ->
+                    {
+                        String[] lengths = args[++i].split(",");
+                        minNameLength = Integer.parseInt(lengths[0]);
+                        maxNameLength = Integer.parseInt(lengths[lengths.length - 1]);
+                    }
+                    case "--seconds" -> seconds = Double.parseDouble(args[++i]);
+                    case "--seed" -> seed = Long.parseLong(args[++i]);
+                    default -> throw new IllegalArgumentException(args[i]);
+                }
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e)
+        {
+            printUsage();
+            System.exit(2);
+        }
+        if (!(seconds > 0) || !(fanOut >= 0) || depth < 0 || minNameLength < 0 || maxNameLength < minNameLength || Arrays.stream(sizes).anyMatch(size -> size < 2))
+        {
+            printUsage();
+            System.exit(2);
+        }
+
+        System.out.printf("%9s  %-8s %12s  %-8s %9s %9s %9s %9s %9s %10s%n", "elements", "script", "gestures/s", "event", "count", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+        for (int size : sizes)
+        {
+            int objectCount = (int) Math.max(2, Math.round(size / (1 + fanOut)));
+            DiagramGenerator generator = new DiagramGenerator(seed).setObjectCount(objectCount / 2, objectCount - objectCount / 2).setFanOut(fanOut)
+                    .setCompositeDepth(depth, compositeFraction).setNameLength(minNameLength, maxNameLength);
+            List<ToolElement> elements = generator.generate();
+
+            LoadDriver driver = new LoadDriver(seed);
+            long nanos = (long) (seconds * 1e9);
+            // the Model belongs to the event dispatch thread
+            EventQueue.invokeAndWait(() -> driver.load(elements, generator.getBasicObjects()));
+            for (Script script : Script.values())
+            {
+                EventQueue.invokeAndWait(() -> driver.play(script, nanos / 2, false));
+                EventQueue.invokeAndWait(() -> driver.play(script, nanos, true));
+                driver.report(size, script, seconds);
+            }
+        }
+        System.exit(0);
+    }
+}
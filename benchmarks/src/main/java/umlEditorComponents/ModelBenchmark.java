@@ -0,0 +1,106 @@
+package umlEditorComponents;
+
+import graphics.AbstractObject;
+import graphics.SelectionBox;
+import graphics.ToolElement;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The operations of the Model behind the mouse and menu actions, on diagrams of growing size. The edits that
+ * change the diagram are measured together with the edit that takes them back (e.g. group and ungroup), so
+ * that every invocation finds the diagram in the same state; the selection they start from is measured on its
+ * own by selectInBox.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Djava.awt.headless=true", "-Xmx6g"})
+@State(Scope.Thread)
+public class ModelBenchmark
+{
+    private static final int BOX_WIDTH = 400, BOX_HEIGHT = 300;  // a few BasicObjects and the lines between them
+
+    private final SelectionBox selectionBox = new SelectionBox();
+    private int invocation = 0;
+    private AbstractObject movedObject;
+    private int direction = 1;
+
+    @Setup(Level.Iteration)
+    public void pressObject(BenchmarkDiagram diagram)
+    {
+        // the object dragged by moveObject, pressed (and thus selected) like SelectMode does before the first mouseDragged event
+        movedObject = diagram.objects.get(diagram.objects.size() / 2);
+        Point corner = movedObject.getUnselectedTopLeftCorner();
+        Model.INSTANCE.pressedEventHandler(new MouseEvent(Model.INSTANCE.getCanvas(), MouseEvent.MOUSE_PRESSED, 0, 0, corner.x + 30, corner.y + 30, 1, false));
+    }
+
+    @TearDown(Level.Iteration)
+    public void release()
+    {
+        Model.INSTANCE.endMove();
+        Model.INSTANCE.clearSelection();
+    }
+
+    @Benchmark
+    public ToolElement getTopmostHitElement(BenchmarkDiagram diagram)
+    {
+        return Model.INSTANCE.getTopmostHitElement(diagram.getPress(invocation++));
+    }
+
+    // selects the element at a random position and brings it to the front, or clears the selection if there is none
+    @Benchmark
+    public ToolElement pressedEventHandler(BenchmarkDiagram diagram)
+    {
+        return Model.INSTANCE.pressedEventHandler(diagram.getPress(invocation++));
+    }
+
+    // one mouseDragged event of a long drag, back and forth so that the object stays in its neighbourhood
+    @Benchmark
+    public void moveObject()
+    {
+        direction = (invocation++ & 63) < 32 ? 1 : -1;
+        Model.INSTANCE.moveSelection(direction * 2, direction);
+    }
+
+    @Benchmark
+    public List<ToolElement> selectInBox(BenchmarkDiagram diagram)
+    {
+        List<ToolElement> selected = selectBox(diagram);
+        Model.INSTANCE.clearSelection();
+
+        return selected;
+    }
+
+    @Benchmark
+    public void groupAndUngroup(BenchmarkDiagram diagram)
+    {
+        selectBox(diagram);
+        Model.INSTANCE.group();
+        Model.INSTANCE.ungroup();
+        Model.INSTANCE.clearSelection();
+    }
+
+    @Benchmark
+    public void deleteAndUndo(BenchmarkDiagram diagram)
+    {
+        selectBox(diagram);
+        Model.INSTANCE.delete();
+        Model.INSTANCE.undo();
+    }
+
+    // a SelectionBox dragged open at a random position, as at the mouseReleased event of SelectMode
+    private List<ToolElement> selectBox(BenchmarkDiagram diagram)
+    {
+        Point corner = diagram.getPosition(invocation++);
+        selectionBox.setBounds(corner, new Point(corner.x + BOX_WIDTH, corner.y + BOX_HEIGHT));
+        Model.INSTANCE.clearSelection();
+
+        return Model.INSTANCE.setElementsInSelectionBoxToSelected(selectionBox);
+    }
+}
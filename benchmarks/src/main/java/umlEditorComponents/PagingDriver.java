@@ -0,0 +1,249 @@
+package umlEditorComponents;
+
+import diagramFiles.DiagramFormat;
+import graphics.*;
+import graphics.Class;
+
+import javax.swing.*;
+import java.awt.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Edits a paged diagram while its pages are loaded in the background and evicted under a small memory budget,
+ * and checks that nothing is lost when it is saved, e.g.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar umlEditorComponents.PagingDriver [--grid 200] [--steps 300] [--budget 4] [--seed 42]
+ * </pre>
+ *
+ * <p>The diagram is a grid of grid x grid named Classes, each connected to its right and lower neighbour, written
+ * as a paged file and opened in the Model with a memory budget of the given number of megabytes. Every step pans
+ * the view (mostly to a neighbouring region, sometimes far away) and then moves a loaded Class by up to a few
+ * pages, often onto a page that is not loaded, or deletes one. Between the steps the page loader gets a random
+ * moment to deliver its pages, so that its replies arrive while the same pages are loaded, edited and evicted by
+ * the steps.</p>
+ *
+ * <p>The driver keeps its own record of the names, locations and lines that must survive, and compares it with
+ * the diagram saved as a paged file and with the diagram saved in the binary format after all pages have been
+ * loaded. It exits with status 1 if either differs.</p>
+ */
+public class PagingDriver
+{
+    private static final int SPACING = 300;  // the distance between two neighbouring Classes of the grid
+
+    private final Model model = Model.INSTANCE;
+    private final Random random;
+    private final int grid;
+    // what the saved diagram must contain: the location of each Class by name, and the lines by the names of their ends
+    private final HashMap<String, Point> locations = new HashMap<>();
+    private final HashSet<String> lines = new HashSet<>();
+    private int moves = 0, deletes = 0;
+
+    private PagingDriver(int grid, long seed)
+    {
+        this.grid = grid;
+        random = new Random(seed);
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int grid = 200, steps = 300, budget = 4;
+        long seed = 42;
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            switch (args[i])
+            {
+                case "--grid" -> grid = Integer.parseInt(args[i + 1]);
+                case "--steps" -> steps = Integer.parseInt(args[i + 1]);
+                case "--budget" -> budget = Integer.parseInt(args[i + 1]);
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        System.setProperty(PagedDiagram.MEMORY_BUDGET_PROPERTY, Integer.toString(budget));
+
+        boolean passed = new PagingDriver(grid, seed).run(steps);
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static String getLineName(ConnectionLine line)
+    {
+        return line.getStartBasicObject().getName() + " -> " + line.getEndBasicObject().getName();
+    }
+
+    private Path createDiagram() throws Exception
+    {
+        Class[][] classes = new Class[grid][grid];
+        ArrayList<ToolElement> elements = new ArrayList<>();
+        for (int x = 0; x < grid; x++)
+        {
+            for (int y = 0; y < grid; y++)
+            {
+                Class object = new Class(new Point(x * SPACING, y * SPACING));
+                object.setName(x + "," + y);
+                classes[x][y] = object;
+                elements.add(object);
+                locations.put(object.getName(), object.getUnselectedTopLeftCorner());
+            }
+        }
+        for (int x = 0; x < grid; x++)
+        {
+            for (int y = 0; y < grid; y++)
+            {
+                Class object = classes[x][y];
+                ArrayList<ConnectionLine> neighbourLines = new ArrayList<>();
+                if (x + 1 < grid)
+                {
+                    neighbourLines.add(new AssociationLine(object, object.getPorts()[3], classes[x + 1][y], classes[x + 1][y].getPorts()[2]));
+                }
+                if (y + 1 < grid)
+                {
+                    neighbourLines.add(new GeneralizationLine(object, object.getPorts()[1], classes[x][y + 1], classes[x][y + 1].getPorts()[0]));
+                }
+                for (ConnectionLine line : neighbourLines)
+                {
+                    line.connect();
+                    elements.add(line);
+                    lines.add(getLineName(line));
+                }
+            }
+        }
+
+        Path path = Files.createTempFile("paging", ".umlp");
+        DiagramFormat.PAGED.write(path, elements);
+
+        return path;
+    }
+
+    private boolean run(int steps) throws Exception
+    {
+        Path path = createDiagram();
+        SwingUtilities.invokeAndWait(() ->
+        {
+            model.getCanvas().setSize(1280, 800);
+            model.getCanvas().resetView();
+            try
+            {
+                model.openDiagram(path);
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        for (int step = 0; step < steps; step++)
+        {
+            SwingUtilities.invokeAndWait(this::step);
+            Thread.sleep(random.nextInt(4));  // the page loader may deliver pages before the next step, or not
+        }
+        System.out.println(steps + " steps: " + moves + " moves, " + deletes + " deletes, " + locations.size() + " Classes and " + lines.size() + " lines left");
+
+        Path pagedCopy = Files.createTempFile("paging", ".umlp"), binaryCopy = Files.createTempFile("paging", ".umld");
+        SwingUtilities.invokeAndWait(() ->
+        {
+            try
+            {
+                model.saveDiagram(pagedCopy);
+                model.saveDiagram(binaryCopy);  // loads all pages first
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        boolean passed = check("paged save", DiagramFormat.PAGED.read(pagedCopy)) & check("binary save", DiagramFormat.BINARY.read(binaryCopy));
+        for (Path file : List.of(path, pagedCopy, binaryCopy))
+        {
+            Files.deleteIfExists(file);
+        }
+
+        return passed;
+    }
+
+    // pans the view and then moves or deletes one of the loaded Classes
+    private void step()
+    {
+        CanvasArea canvas = model.getCanvas();
+        Rectangle view = canvas.getVisibleWorldArea();
+        int worldSize = grid * SPACING;
+        Point target = random.nextInt(8) == 0
+                ? new Point(random.nextInt(worldSize), random.nextInt(worldSize))  // far away
+                : new Point(view.x + random.nextInt(2 * view.width + 1) - view.width, view.y + random.nextInt(2 * view.height + 1) - view.height);
+        target.x = Math.max(0, Math.min(worldSize - view.width, target.x));
+        target.y = Math.max(0, Math.min(worldSize - view.height, target.y));
+        canvas.scrollBy(target.x - view.x, target.y - view.y);
+
+        ArrayList<BasicObject> loaded = new ArrayList<>();
+        for (ToolElement element : model.getDiagram())
+        {
+            if (element instanceof BasicObject object)
+            {
+                loaded.add(object);
+            }
+        }
+        if (loaded.isEmpty())
+        {
+            return;
+        }
+
+        BasicObject object = loaded.get(random.nextInt(loaded.size()));
+        if (random.nextInt(5) == 0)
+        {
+            model.select(List.of(object));
+            model.deleteSelection();
+            locations.remove(object.getName());
+            lines.removeIf(line -> line.startsWith(object.getName() + " -> ") || line.endsWith(" -> " + object.getName()));
+            deletes++;
+        }
+        else
+        {
+            int range = 3 * diagramFiles.PagedDiagramFile.PAGE_SIZE;
+            model.moveObjects(List.of(object), random.nextInt(2 * range + 1) - range, random.nextInt(2 * range + 1) - range);
+            model.endMove();
+            locations.put(object.getName(), object.getUnselectedTopLeftCorner());
+            moves++;
+        }
+    }
+
+    private boolean check(String name, List<ToolElement> saved)
+    {
+        HashMap<String, Point> savedLocations = new HashMap<>();
+        HashSet<String> savedLines = new HashSet<>();
+        for (ToolElement element : saved)
+        {
+            if (element instanceof AbstractObject object)
+            {
+                savedLocations.put(object.getName(), object.getUnselectedTopLeftCorner());
+            }
+            else
+            {
+                savedLines.add(getLineName((ConnectionLine) element));
+            }
+        }
+
+        HashSet<String> lostObjects = new HashSet<>(locations.keySet());
+        lostObjects.removeAll(savedLocations.keySet());
+        int misplacedObjects = 0;
+        for (Map.Entry<String, Point> entry : locations.entrySet())
+        {
+            if (savedLocations.containsKey(entry.getKey()) && !savedLocations.get(entry.getKey()).equals(entry.getValue()))
+            {
+                misplacedObjects++;
+            }
+        }
+        HashSet<String> lostLines = new HashSet<>(lines);
+        lostLines.removeAll(savedLines);
+        int extraObjects = savedLocations.size() - (locations.size() - lostObjects.size()), extraLines = savedLines.size() - (lines.size() - lostLines.size());
+
+        boolean passed = lostObjects.isEmpty() && misplacedObjects == 0 && lostLines.isEmpty() && extraObjects == 0 && extraLines == 0;
+        System.out.println(name + (passed ? ": ok" : ": " + lostObjects.size() + " Classes lost " + lostObjects + ", " + misplacedObjects + " misplaced, " + extraObjects + " extra; "
+                + lostLines.size() + " lines lost " + lostLines + ", " + extraLines + " extra"));
+
+        return passed;
+    }
+}
@@ -0,0 +1,135 @@
+package umlEditorComponents;
+
+import graphics.AbstractObject;
+import graphics.ToolElement;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CanvasArea.paintComponent into an offscreen image of the size of a full HD canvas, with the view scrolled
+ * to a random part of the diagram. paintCached only copies the tiles of the TileCache, as most repaints do,
+ * while paintInvalidated renders every visible tile again, as after the whole view has changed.
+ *
+ * <p>paintDragClipped and paintDragFull paint while DRAGGED_OBJECTS neighbouring objects are being dragged, with the
+ * view scrolled to the middle of them. paintDragClipped is clipped to a 64 x 64 area on the dragged objects, like
+ * one rectangle of the dirty region the RepaintScheduler paints, and paintDragFull paints the whole view.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Djava.awt.headless=true", "-Xmx6g"})
+@State(Scope.Thread)
+public class PaintBenchmark
+{
+    private static final int DRAGGED_OBJECTS = 1000;
+    private static final int CLIP_SIZE = 64;
+
+    private BufferedImage image;
+    private Graphics2D g2d;
+    private CanvasArea canvas;
+
+    @Setup(Level.Trial)
+    public void createImage(BenchmarkDiagram diagram)
+    {
+        canvas = Model.INSTANCE.getCanvas();
+        image = new BufferedImage(canvas.getWidth(), canvas.getHeight(), BufferedImage.TYPE_INT_RGB);
+        g2d = image.createGraphics();
+    }
+
+    @Setup(Level.Iteration)
+    public void scroll(BenchmarkDiagram diagram)
+    {
+        if (canvas.isDragging())  // the Drag has already scrolled to the dragged objects
+        {
+            return;
+        }
+
+        canvas.resetView();
+        Point position = diagram.getPosition(diagram.elementCount);
+        canvas.scrollBy(Math.max(0, position.x - canvas.getWidth()), Math.max(0, position.y - canvas.getHeight()));
+    }
+
+    // a drag of DRAGGED_OBJECTS objects, which are neighbours in the order of the DiagramGenerator like in SelectionMoveBenchmark
+    @State(Scope.Thread)
+    public static class Drag
+    {
+        private final Rectangle clip = new Rectangle(CLIP_SIZE, CLIP_SIZE);
+
+        @Setup(Level.Iteration)
+        public void beginDrag(BenchmarkDiagram diagram)
+        {
+            Model model = Model.INSTANCE;
+            CanvasArea canvas = model.getCanvas();
+            int count = Math.min(DRAGGED_OBJECTS, diagram.objects.size());
+            int first = (diagram.objects.size() - count) / 2;
+            ArrayList<ToolElement> selection = new ArrayList<>(diagram.objects.subList(first, first + count));
+            model.endMove();
+            model.select(selection);
+
+            Rectangle middle = ((AbstractObject) selection.get(count / 2)).getBounds();
+            canvas.resetView();
+            canvas.scrollBy(Math.max(0, middle.x - canvas.getWidth() / 2), Math.max(0, middle.y - canvas.getHeight() / 2));
+
+            // pressing one of the selected objects keeps the selection, and the first mouseDragged event starts the drag
+            Point corner = ((AbstractObject) selection.get(0)).getUnselectedTopLeftCorner();
+            model.pressedEventHandler(new MouseEvent(canvas, MouseEvent.MOUSE_PRESSED, 0, 0, corner.x + 30, corner.y + 30, 1, false));
+            model.moveSelection(2, 1);
+            Rectangle viewBounds = canvas.toView(((AbstractObject) selection.get(count / 2)).getBounds());
+            clip.setLocation(viewBounds.x, viewBounds.y);
+        }
+
+        @TearDown(Level.Iteration)
+        public void endDrag()
+        {
+            Model.INSTANCE.endMove();
+            Model.INSTANCE.clearSelection();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void disposeImage()
+    {
+        g2d.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paintCached()
+    {
+        canvas.paintComponent(g2d);
+
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintInvalidated()
+    {
+        canvas.invalidateScene(canvas.getVisibleWorldArea());
+        canvas.paintComponent(g2d);
+
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintDragClipped(Drag drag)
+    {
+        g2d.setClip(drag.clip);
+        canvas.paintComponent(g2d);
+        g2d.setClip(null);
+
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintDragFull(Drag drag)
+    {
+        canvas.paintComponent(g2d);
+
+        return image;
+    }
+}
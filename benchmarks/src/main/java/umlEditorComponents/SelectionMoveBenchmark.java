@@ -0,0 +1,58 @@
+package umlEditorComponents;
+
+import graphics.AbstractObject;
+import graphics.ToolElement;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One mouseDragged event of SelectMode while many AbstractObjects are selected, which the Model moves together with
+ * a single clamp, a single pass over their ConnectionLines and a single dirty region. The objects are neighbours in
+ * the order of the DiagramGenerator, so that the selection covers an area of the diagram like a SelectionBox would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Djava.awt.headless=true", "-Xmx6g"})
+@State(Scope.Thread)
+public class SelectionMoveBenchmark
+{
+    @Param({"1", "100", "1000"})
+    public int selectedObjects;
+
+    private int invocation = 0;
+
+    @Setup(Level.Iteration)
+    public void pressSelection(BenchmarkDiagram diagram)
+    {
+        int count = Math.min(selectedObjects, diagram.objects.size());
+        int first = (diagram.objects.size() - count) / 2;
+        ArrayList<ToolElement> selection = new ArrayList<>(diagram.objects.subList(first, first + count));
+        Model.INSTANCE.endMove();
+        Model.INSTANCE.select(selection);
+
+        // pressing one of the selected objects keeps the selection, like SelectMode does before the first mouseDragged event
+        Point corner = ((AbstractObject) selection.get(0)).getUnselectedTopLeftCorner();
+        Model.INSTANCE.pressedEventHandler(new MouseEvent(Model.INSTANCE.getCanvas(), MouseEvent.MOUSE_PRESSED, 0, 0, corner.x + 30, corner.y + 30, 1, false));
+    }
+
+    @TearDown(Level.Iteration)
+    public void release()
+    {
+        Model.INSTANCE.endMove();
+        Model.INSTANCE.clearSelection();
+    }
+
+    // back and forth so that the objects stay in their neighbourhood
+    @Benchmark
+    public void moveSelection()
+    {
+        int direction = (invocation++ & 63) < 32 ? 1 : -1;
+        Model.INSTANCE.moveSelection(direction * 2, direction);
+    }
+}
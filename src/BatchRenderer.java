@@ -0,0 +1,179 @@
+import diagramFiles.DiagramFormat;
+import diagramFiles.VectorFormat;
+import graphics.ToolElement;
+import umlEditorComponents.PngExporter;
+
+import java.awt.*;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Renders diagram files to images from the command line, without any window, e.g. in a nightly build:
+ *
+ * <pre>
+ * java -cp UMLEditor.jar BatchRenderer [--format png|svg|pdf] [--scale 2] [--output dir] [--threads 8] file...
+ * </pre>
+ *
+ * <p>The files are read and rendered in parallel on a ForkJoinPool with a thread for every core, and the PNG
+ * images additionally render their tiles on the same pool, so that a large diagram still keeps all cores busy
+ * when the small ones are done. The editor itself (the Model with its CanvasArea, the frame, the Toolbar and the
+ * MenuBar) is never created, and AWT runs headless. Each image is written next to its diagram unless an output
+ * directory is given. The time taken for every file is printed when it is done, followed by a summary of the
+ * throughput; the exit status is 1 if any file failed.</p>
+ */
+public class BatchRenderer
+{
+    private record Result(Path image, int elements, long bytes, long nanos) {}
+
+    private final String format;  // "png" or the extension of a VectorFormat
+    private final double scale;
+    private final Path outputDirectory;
+    private final ForkJoinPool pool;
+
+    private BatchRenderer(String format, double scale, Path outputDirectory, int threads)
+    {
+        this.format = format;
+        this.scale = scale;
+        this.outputDirectory = outputDirectory;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    // reads one diagram and writes its image, on a thread of the pool
+    private Result render(Path diagram) throws IOException, InterruptedException
+    {
+        long start = System.nanoTime();
+
+        DiagramFormat diagramFormat = DiagramFormat.forPath(diagram);
+        if (diagramFormat == null)
+        {
+            throw new IOException("unknown file type");
+        }
+        List<ToolElement> elements = diagramFormat.read(diagram);
+
+        String fileName = diagram.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        Path image = (outputDirectory != null ? outputDirectory : diagram.toAbsolutePath().getParent()).resolve((dot > 0 ? fileName.substring(0, dot) : fileName) + "." + format);
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(image), 1 << 16))
+        {
+            if (format.equals("png"))
+            {
+                PngExporter exporter = new PngExporter(elements, scale, Color.WHITE);
+                // every thread may be exporting an image of its own
+                exporter.setMemoryBudget(exporter.getMemoryBudget() / pool.getParallelism());
+                exporter.export(out, pool, null);
+            }
+            else
+            {
+                VectorFormat.valueOf(format.toUpperCase(Locale.ROOT)).write(out, elements);
+            }
+        }
+        catch (IOException | InterruptedException | RuntimeException e)
+        {
+            Files.deleteIfExists(image);  // an incomplete image would look like an up-to-date one to the build
+            throw e;
+        }
+
+        return new Result(image, elements.size(), Files.size(image), System.nanoTime() - start);
+    }
+
+    private int renderAll(List<Path> diagrams)
+    {
+        long start = System.nanoTime();
+        ArrayList<ForkJoinTask<Result>> tasks = new ArrayList<>();
+        for (Path diagram : diagrams)
+        {
+            tasks.add(pool.submit(() -> render(diagram)));
+        }
+
+        int failed = 0;
+        long elements = 0, bytes = 0, renderNanos = 0;
+        for (int i = 0; i < diagrams.size(); i++)
+        {
+            try
+            {
+                Result result = tasks.get(i).get();
+                System.out.printf("%s -> %s: %d elements, %d KB, %.1f ms%n", diagrams.get(i), result.image().getFileName(), result.elements(), result.bytes() >> 10, result.nanos() / 1e6);
+                elements += result.elements();
+                bytes += result.bytes();
+                renderNanos += result.nanos();
+            }
+            catch (ExecutionException e)
+            {
+                // the ForkJoinTask wraps the exception thrown by render once more for every thread it is passed to
+                Throwable cause = e.getCause();
+                while (cause instanceof RuntimeException && cause.getCause() != null)
+                {
+                    cause = cause.getCause();
+                }
+                System.err.println(diagrams.get(i) + ": " + cause);
+                failed++;
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return 1;
+            }
+        }
+        pool.shutdown();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d files (%d failed) in %.2f s on %d threads: %.1f files/s, %.0f elements/s, %.1f MB/s written, %.1fx parallel speedup%n", diagrams.size(), failed, seconds, pool.getParallelism(), diagrams.size() / seconds, elements / seconds, bytes / seconds / (1 << 20), renderNanos / 1e9 / seconds);
+
+        return failed > 0 ? 1 : 0;
+    }
+
+    private static void printUsage()
+    {
+        System.err.println("usage: BatchRenderer [--format png|svg|pdf] [--scale pixelsPerUnit] [--output directory] [--threads count] file...");
+    }
+
+    public static void main(String[] args)
+    {
+        // before the first use of AWT, which decides then whether there is a display
+        System.setProperty("java.awt.headless", "true");
+
+        String format = "png";
+        double scale = 1;
+        Path outputDirectory = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        ArrayList<Path> diagrams = new ArrayList<>();
+
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                    case "--format" -> format = args[++i].toLowerCase(Locale.ROOT);
+                    case "--scale" -> scale = Double.parseDouble(args[++i]);
+                    case "--output" -> outputDirectory = Files.createDirectories(Path.of(args[++i]));
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    default -> diagrams.add(Path.of(args[i]));
+                }
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException | IllegalArgumentException | IOException e)
+        {
+            printUsage();
+            System.exit(2);
+        }
+
+        if (diagrams.isEmpty() || threads < 1 || !(scale > 0) || !(format.equals("png") || format.equals("svg") || format.equals("pdf")))
+        {
+            printUsage();
+            System.exit(2);
+        }
+
+        System.exit(new BatchRenderer(format, scale, outputDirectory, threads).renderAll(diagrams));
+    }
+}
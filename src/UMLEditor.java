@@ -4,6 +4,8 @@ import umlEditorComponents.Toolbar;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 
 public class UMLEditor
 {
@@ -46,6 +48,20 @@ public class UMLEditor
         frame.pack();  // size the frame
         frame.setLocationRelativeTo(null);  // center the frame onscreen. To properly center the window, invoke this method after the window size has been set.
         frame.setVisible(true);  // show the frame
+
+        // Make the paint and interaction metrics available through JMX, e.g. to JConsole.
+        Model.INSTANCE.publishMetrics();
+
+        // Recover the work of a session that ended without the window being closed, e.g. because the JVM died.
+        Model.INSTANCE.openJournal();
+        frame.addWindowListener(new WindowAdapter()
+        {
+            @Override
+            public void windowClosing(WindowEvent e)
+            {
+                Model.INSTANCE.closeJournal();  // a normal exit discards the journal
+            }
+        });
     }
 
     public static void main(String[] args)
@@ -0,0 +1,214 @@
+package containers;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of at most {@code maxRectangles} disjoint rectangles that covers every area added to it.
+ *
+ * <p>A single bounding rectangle turns two small changes at opposite corners of the canvas into one paint of
+ * everything between them. Instead, an added area is only merged with a rectangle of the region if their union
+ * wastes no more than {@code paintCost} of area that neither of them covers, i.e. if one paint of the union costs
+ * less than two separate paints, each of which costs about as much as painting {@code paintCost} pixels. An area
+ * that overlaps a rectangle without being merged with it is cut into the parts outside that rectangle, so the
+ * rectangles never overlap and no pixel is painted twice. When there would be more than {@code maxRectangles},
+ * the two rectangles whose union wastes the least area are merged.</p>
+ */
+public class DirtyRegion
+{
+    private final int maxRectangles;
+    private final long paintCost;
+    private final ArrayList<Rectangle> rectangles = new ArrayList<>();
+
+    public DirtyRegion(int maxRectangles, long paintCost)
+    {
+        if (maxRectangles < 1)
+        {
+            throw new IllegalArgumentException("maxRectangles must be positive");
+        }
+
+        this.maxRectangles = maxRectangles;
+        this.paintCost = paintCost;
+    }
+
+    private static long area(Rectangle rectangle)
+    {
+        return rectangle.isEmpty() ? 0 : (long) rectangle.width * rectangle.height;
+    }
+
+    // the area of the union of the two rectangles that lies outside both of them
+    private static long getWaste(Rectangle a, Rectangle b)
+    {
+        return area(a.union(b)) - area(a) - area(b) + area(a.intersection(b));
+    }
+
+    // the area is copied, an empty area is ignored
+    public void add(Rectangle area)
+    {
+        if (area.isEmpty())
+        {
+            return;
+        }
+
+        addDisjoint(new Rectangle(area));
+
+        while (rectangles.size() > maxRectangles)
+        {
+            mergeCheapestPair();
+        }
+    }
+
+    private void addDisjoint(Rectangle area)
+    {
+        // merge the area with the rectangles worth merging, every merge leaves one rectangle less
+        for (int i = 0; i < rectangles.size(); i++)
+        {
+            Rectangle rectangle = rectangles.get(i);
+
+            if (rectangle.contains(area))
+            {
+                return;
+            }
+
+            if (area.contains(rectangle) || getWaste(rectangle, area) <= paintCost)
+            {
+                rectangles.remove(i);
+                area = area.union(rectangle);
+                i = -1;  // the union may now overlap or be worth merging with rectangles that have already been checked
+            }
+        }
+
+        // only the parts of the area outside the remaining rectangles are added
+        ArrayList<Rectangle> parts = new ArrayList<>();
+        parts.add(area);
+        for (Rectangle rectangle : rectangles)
+        {
+            ArrayList<Rectangle> outsideParts = new ArrayList<>();
+            for (Rectangle part : parts)
+            {
+                if (part.intersects(rectangle))
+                {
+                    cut(part, rectangle, outsideParts);
+                }
+                else
+                {
+                    outsideParts.add(part);
+                }
+            }
+            parts = outsideParts;
+        }
+        rectangles.addAll(parts);
+    }
+
+    // adds the parts of the area outside the rectangle: the bands above and below it and the parts to its left and right
+    private static void cut(Rectangle area, Rectangle rectangle, List<Rectangle> outsideParts)
+    {
+        int top = Math.max(area.y, rectangle.y), bottom = Math.min(area.y + area.height, rectangle.y + rectangle.height);
+        Rectangle[] candidates = {
+                new Rectangle(area.x, area.y, area.width, top - area.y),
+                new Rectangle(area.x, bottom, area.width, area.y + area.height - bottom),
+                new Rectangle(area.x, top, rectangle.x - area.x, bottom - top),
+                new Rectangle(rectangle.x + rectangle.width, top, area.x + area.width - rectangle.x - rectangle.width, bottom - top)
+        };
+        for (Rectangle part : candidates)
+        {
+            if (!part.isEmpty())
+            {
+                outsideParts.add(part);
+            }
+        }
+    }
+
+    private void mergeCheapestPair()
+    {
+        int first = 0, second = 1;
+        long leastWaste = Long.MAX_VALUE;
+        for (int i = 0; i < rectangles.size(); i++)
+        {
+            for (int j = i + 1; j < rectangles.size(); j++)
+            {
+                long waste = getWaste(rectangles.get(i), rectangles.get(j));
+                if (waste < leastWaste)
+                {
+                    leastWaste = waste;
+                    first = i;
+                    second = j;
+                }
+            }
+        }
+
+        Rectangle union = rectangles.get(first).union(rectangles.get(second));
+        rectangles.remove(second);
+        rectangles.remove(first);
+        // the union may overlap other rectangles, which it absorbs
+        for (int i = rectangles.size() - 1; i >= 0; i--)
+        {
+            if (rectangles.get(i).intersects(union))
+            {
+                union.add(rectangles.remove(i));
+                i = rectangles.size();  // the grown union may overlap rectangles that have already been checked
+            }
+        }
+        rectangles.add(union);
+    }
+
+    public void add(DirtyRegion region)
+    {
+        for (Rectangle rectangle : region.rectangles)
+        {
+            add(rectangle);
+        }
+    }
+
+    // moves every rectangle of the region, e.g. along with the elements it covers
+    public void translate(int dx, int dy)
+    {
+        for (Rectangle rectangle : rectangles)
+        {
+            rectangle.translate(dx, dy);
+        }
+    }
+
+    // the disjoint rectangles of the region, which must not be modified
+    public List<Rectangle> getRectangles()
+    {
+        return Collections.unmodifiableList(rectangles);
+    }
+
+    // the sum of the areas of the rectangles, which cover every pixel at most once
+    public long getArea()
+    {
+        long area = 0;
+        for (Rectangle rectangle : rectangles)
+        {
+            area += area(rectangle);
+        }
+
+        return area;
+    }
+
+    public boolean contains(Rectangle area)
+    {
+        for (Rectangle rectangle : rectangles)
+        {
+            if (rectangle.contains(area))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public boolean isEmpty()
+    {
+        return rectangles.isEmpty();
+    }
+
+    public void clear()
+    {
+        rectangles.clear();
+    }
+}
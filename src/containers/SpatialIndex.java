@@ -0,0 +1,217 @@
+package containers;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A uniform-grid spatial index that maps rectangular bounds to the elements occupying them.
+ *
+ * <p>The plane is divided into square cells of {@code cellSize} pixels. Every element is registered
+ * in each cell its bounds overlap, so a point query only has to look at the elements of a single cell
+ * and a rectangle query only at the elements of the cells the rectangle covers. Since the objects of a
+ * UML diagram all have roughly the same size, a uniform grid keeps every cell small without the
+ * rebalancing work of a tree-based index.</p>
+ *
+ * @param <E> the type of the indexed elements
+ */
+public class SpatialIndex<E>
+{
+    private final int cellSize;
+    private final HashMap<Long, ArrayList<E>> cells = new HashMap<>();
+    private final HashMap<E, Rectangle> boundsOfElements = new HashMap<>();
+
+    public SpatialIndex(int cellSize)
+    {
+        this.cellSize = cellSize;
+    }
+
+    /*
+    ==================== previous version ====================
+    return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    ==================== previous version ====================
+    Long.hashCode folds the two halves of the key with an XOR, so the previous key hashed every cell to
+    cellX ^ cellY: all cells on a diagonal collided and the HashMap degraded into trees of colliding keys,
+    which every insert, remove and query had to search. The low half now scrambles cellX with cellY, which
+    spreads the hashes and can still be undone by getCellX.
+     */
+    private static long key(int cellX, int cellY)
+    {
+        return ((long) cellY << 32) | ((cellX ^ cellY * 0x9e3779b9) & 0xffffffffL);
+    }
+
+    private static int getCellX(long key)
+    {
+        return (int) key ^ getCellY(key) * 0x9e3779b9;
+    }
+
+    private static int getCellY(long key)
+    {
+        return (int) (key >> 32);
+    }
+
+    private int toCell(int coordinate)
+    {
+        return Math.floorDiv(coordinate, cellSize);
+    }
+
+    public void insert(E element, Rectangle bounds)
+    {
+        Rectangle copy = new Rectangle(bounds);
+        if (boundsOfElements.putIfAbsent(element, copy) != null)
+        {
+            throw new IllegalArgumentException("element is already indexed");
+        }
+
+        for (int cellX = toCell(copy.x); cellX <= toCell(copy.x + copy.width); cellX++)
+        {
+            for (int cellY = toCell(copy.y); cellY <= toCell(copy.y + copy.height); cellY++)
+            {
+                cells.computeIfAbsent(key(cellX, cellY), k -> new ArrayList<>(4)).add(element);
+            }
+        }
+    }
+
+    public boolean remove(E element)
+    {
+        Rectangle bounds = boundsOfElements.remove(element);
+
+        if (bounds == null)
+        {
+            return false;
+        }
+
+        for (int cellX = toCell(bounds.x); cellX <= toCell(bounds.x + bounds.width); cellX++)
+        {
+            for (int cellY = toCell(bounds.y); cellY <= toCell(bounds.y + bounds.height); cellY++)
+            {
+                long key = key(cellX, cellY);
+                ArrayList<E> cell = cells.get(key);
+                cell.remove(element);
+                if (cell.isEmpty())
+                {
+                    cells.remove(key);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    // Elements that are not in the index (e.g. the members of a CompositeObject) are ignored.
+    public void update(E element, Rectangle bounds)
+    {
+        Rectangle oldBounds = boundsOfElements.get(element);
+
+        if (oldBounds == null || oldBounds.equals(bounds))
+        {
+            return;
+        }
+
+        // a small move (e.g. one mouseDragged event) usually stays within the same cells, which then keep the element
+        if (toCell(oldBounds.x) == toCell(bounds.x) && toCell(oldBounds.x + oldBounds.width) == toCell(bounds.x + bounds.width)
+                && toCell(oldBounds.y) == toCell(bounds.y) && toCell(oldBounds.y + oldBounds.height) == toCell(bounds.y + bounds.height))
+        {
+            oldBounds.setBounds(bounds);
+            return;
+        }
+
+        remove(element);
+        insert(element, bounds);
+    }
+
+    public boolean contains(E element)
+    {
+        return boundsOfElements.containsKey(element);
+    }
+
+    public int size()
+    {
+        return boundsOfElements.size();
+    }
+
+    public void clear()
+    {
+        cells.clear();
+        boundsOfElements.clear();
+    }
+
+    // adds every element whose bounds contain the coordinate to the result (in no particular order)
+    public void query(Point coordinate, Collection<? super E> result)
+    {
+        ArrayList<E> cell = cells.get(key(toCell(coordinate.x), toCell(coordinate.y)));
+
+        if (cell != null)
+        {
+            for (E element : cell)
+            {
+                if (boundsOfElements.get(element).contains(coordinate))
+                {
+                    result.add(element);
+                }
+            }
+        }
+    }
+
+    // adds every element whose bounds intersect the area to the result exactly once (in no particular order)
+    public void query(Rectangle area, Collection<? super E> result)
+    {
+        if (area.isEmpty())
+        {
+            return;
+        }
+
+        int minCellX = toCell(area.x), maxCellX = toCell(area.x + area.width);
+        int minCellY = toCell(area.y), maxCellY = toCell(area.y + area.height);
+
+        // When the area covers more cells than are occupied (e.g. a huge area over a sparse diagram), walk the occupied cells instead.
+        if ((long) (maxCellX - minCellX + 1) * (maxCellY - minCellY + 1) > cells.size())
+        {
+            for (Map.Entry<Long, ArrayList<E>> entry : cells.entrySet())
+            {
+                int cellX = getCellX(entry.getKey());
+                int cellY = getCellY(entry.getKey());
+
+                if (cellX >= minCellX && cellX <= maxCellX && cellY >= minCellY && cellY <= maxCellY)
+                {
+                    collect(entry.getValue(), cellX, cellY, area, minCellX, minCellY, result);
+                }
+            }
+        }
+        else
+        {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++)
+            {
+                for (int cellY = minCellY; cellY <= maxCellY; cellY++)
+                {
+                    ArrayList<E> cell = cells.get(key(cellX, cellY));
+
+                    if (cell != null)
+                    {
+                        collect(cell, cellX, cellY, area, minCellX, minCellY, result);
+                    }
+                }
+            }
+        }
+    }
+
+    private void collect(ArrayList<E> cell, int cellX, int cellY, Rectangle area, int minCellX, int minCellY, Collection<? super E> result)
+    {
+        for (E element : cell)
+        {
+            Rectangle bounds = boundsOfElements.get(element);
+
+            /*
+            An element that spans several cells is stored in all of them. It is only reported by the first of
+            those cells that also lies in the queried range, so the result contains no duplicates without having
+            to keep track of the elements already visited.
+             */
+            if (cellX == Math.max(toCell(bounds.x), minCellX) && cellY == Math.max(toCell(bounds.y), minCellY) && bounds.intersects(area))
+            {
+                result.add(element);
+            }
+        }
+    }
+}
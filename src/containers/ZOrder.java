@@ -0,0 +1,146 @@
+package containers;
+
+import java.util.*;
+
+/**
+ * Keeps elements in painting order, from the bottommost to the topmost.
+ *
+ * <p>Every element is stamped with a z-index that only ever increases, and the elements are kept in a
+ * red-black tree ({@link TreeMap}) keyed by that z-index, with a hash map for the reverse lookup. Adding,
+ * removing and bringing an element to the front all cost O(log n), and iterating over the elements of any
+ * z-index range visits them in painting order.</p>
+ *
+ * @param <E> the type of the ordered elements
+ */
+public class ZOrder<E> implements Iterable<E>
+{
+    private final TreeMap<Long, E> elementsByZIndex = new TreeMap<>();
+    private final HashMap<E, Long> zIndices = new HashMap<>();
+    private long nextZIndex = 0;
+
+    // adds the element on top of all other elements
+    public void add(E element)
+    {
+        add(element, nextZIndex);
+    }
+
+    // adds the element at a z-index that was previously returned by getZIndex, e.g. to restore a removed element at its old position
+    public void add(E element, long zIndex)
+    {
+        if (zIndices.containsKey(element))
+        {
+            throw new IllegalArgumentException("element is already ordered");
+        }
+        if (elementsByZIndex.containsKey(zIndex))
+        {
+            throw new IllegalArgumentException("z-index " + zIndex + " is already taken");
+        }
+
+        elementsByZIndex.put(zIndex, element);
+        zIndices.put(element, zIndex);
+        nextZIndex = Math.max(nextZIndex, zIndex + 1);
+    }
+
+    // elements added on top get a z-index of at least zIndex, e.g. to stay above elements that are kept elsewhere and added back later
+    public void skipTo(long zIndex)
+    {
+        nextZIndex = Math.max(nextZIndex, zIndex);
+    }
+
+    public boolean remove(E element)
+    {
+        Long zIndex = zIndices.remove(element);
+
+        if (zIndex == null)
+        {
+            return false;
+        }
+
+        elementsByZIndex.remove(zIndex);
+
+        return true;
+    }
+
+    public void bringToFront(E element)
+    {
+        if (zIndices.get(element) != nextZIndex - 1)
+        {
+            remove(element);
+            add(element);
+        }
+    }
+
+    // the z-index the next element added on top will get
+    public long getNextZIndex()
+    {
+        return nextZIndex;
+    }
+
+    public boolean contains(E element)
+    {
+        return zIndices.containsKey(element);
+    }
+
+    public long getZIndex(E element)
+    {
+        Long zIndex = zIndices.get(element);
+
+        if (zIndex == null)
+        {
+            throw new NoSuchElementException();
+        }
+
+        return zIndex;
+    }
+
+    // orders elements from the bottommost to the topmost
+    public Comparator<E> comparator()
+    {
+        return Comparator.comparingLong(this::getZIndex);
+    }
+
+    public int size()
+    {
+        return zIndices.size();
+    }
+
+    public boolean isEmpty()
+    {
+        return zIndices.isEmpty();
+    }
+
+    public E first()
+    {
+        return elementsByZIndex.isEmpty() ? null : elementsByZIndex.firstEntry().getValue();
+    }
+
+    public E last()
+    {
+        return elementsByZIndex.isEmpty() ? null : elementsByZIndex.lastEntry().getValue();
+    }
+
+    public void clear()
+    {
+        elementsByZIndex.clear();
+        zIndices.clear();
+    }
+
+    // iterates from the bottommost to the topmost element
+    @Override
+    public Iterator<E> iterator()
+    {
+        return Collections.unmodifiableCollection(elementsByZIndex.values()).iterator();
+    }
+
+    // iterates from the topmost to the bottommost element
+    public Iterator<E> descendingIterator()
+    {
+        return Collections.unmodifiableCollection(elementsByZIndex.descendingMap().values()).iterator();
+    }
+
+    // the elements whose z-index lies in [fromZIndex, toZIndex), in painting order
+    public Collection<E> range(long fromZIndex, long toZIndex)
+    {
+        return Collections.unmodifiableCollection(elementsByZIndex.subMap(fromZIndex, toZIndex).values());
+    }
+}
@@ -0,0 +1,403 @@
+package diagramFiles;
+
+import graphics.*;
+
+import java.awt.*;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * The compact binary diagram file format (*.umld).
+ *
+ * <p>Every element of the diagram, including the members of CompositeObjects, gets an id. The ids are assigned
+ * so that an element only refers to elements with smaller ids: the members of a CompositeObject come before it,
+ * and every ConnectionLine comes after the BasicObjects it connects. The file consists of</p>
+ * <ol>
+ *   <li>a header of HEADER_SIZE bytes: magic number, version, element count, member count, top-level count,
+ *   string count and string data size,</li>
+ *   <li>one fixed-width column per attribute, indexed by element id: kind (byte), ports (byte, start port in the
+ *   high and end port in the low nibble), padding to a multiple of 4, x, y, width, height, ref1, ref2, name (int).
+ *   For a BasicObject or CompositeObject, (x, y) is the unselected top-left corner. For a CompositeObject, ref1
+ *   and ref2 are the offset and length of its members in the member table. For a ConnectionLine, ref1 and ref2
+ *   are the ids of its start and end BasicObject. name is an index into the string table or -1,</li>
+ *   <li>the member table: the member ids of all CompositeObjects, each in drawing order,</li>
+ *   <li>the ids of the top-level elements in painting order,</li>
+ *   <li>the string table: string count + 1 offsets followed by the UTF-8 data of all distinct names.</li>
+ * </ol>
+ *
+ * <p>A file is loaded through a memory-mapped FileChannel and read column by column, so apart from the created
+ * elements themselves the only transient heap is the array that maps ids to elements.</p>
+ */
+public final class BinaryDiagramFile
+{
+    static final int MAGIC = 0x554D4C44;  // "UMLD"
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int NO_NAME = -1;
+
+    private BinaryDiagramFile() {}
+
+    // elements are the top-level elements in painting order
+    public static void write(Path path, List<ToolElement> elements) throws IOException
+    {
+        // assign the ids
+        ArrayList<ToolElement> elementsById = new ArrayList<>();
+        IdentityHashMap<ToolElement, Integer> ids = new IdentityHashMap<>();
+        for (ToolElement element : elements)
+        {
+            if (element.isMovable())  // AbstractObject
+            {
+                assignIds((AbstractObject) element, elementsById, ids);
+            }
+        }
+        for (ToolElement element : elements)
+        {
+            if (!element.isMovable())  // ConnectionLine
+            {
+                assignId(element, elementsById, ids);
+            }
+        }
+
+        // collect the distinct names and the members
+        HashMap<String, Integer> stringIndices = new HashMap<>();
+        ArrayList<byte[]> strings = new ArrayList<>();
+        int stringDataSize = 0, memberCount = 0;
+        for (ToolElement element : elementsById)
+        {
+            if (element instanceof AbstractObject object)
+            {
+                if (object.getName() != null && !stringIndices.containsKey(object.getName()))
+                {
+                    stringIndices.put(object.getName(), strings.size());
+                    byte[] bytes = object.getName().getBytes(StandardCharsets.UTF_8);
+                    strings.add(bytes);
+                    stringDataSize += bytes.length;
+                }
+
+                if (object.getMembers() != null)
+                {
+                    memberCount += object.getMembers().first().size();
+                }
+            }
+        }
+
+        int elementCount = elementsById.size();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(elementCount);
+            out.writeInt(memberCount);
+            out.writeInt(elements.size());
+            out.writeInt(strings.size());
+            out.writeInt(stringDataSize);
+            out.write(new byte[HEADER_SIZE - 7 * Integer.BYTES]);
+
+            // the byte columns
+            for (ToolElement element : elementsById)
+            {
+                out.writeByte(ElementKind.of(element).ordinal());
+            }
+            for (ToolElement element : elementsById)
+            {
+                if (element instanceof ConnectionLine line)
+                {
+                    out.writeByte(ElementKind.portIndex(line.getStartBasicObject(), line.getStartPort()) << 4 | ElementKind.portIndex(line.getEndBasicObject(), line.getEndPort()));
+                }
+                else
+                {
+                    out.writeByte(0);
+                }
+            }
+            out.write(new byte[padding(2L * elementCount)]);
+
+            // the int columns
+            for (int column = 0; column < 7; column++)
+            {
+                int memberOffset = 0;
+
+                for (ToolElement element : elementsById)
+                {
+                    out.writeInt(getColumnValue(element, column, ids, stringIndices, memberOffset));
+
+                    if (element instanceof AbstractObject object && object.getMembers() != null)
+                    {
+                        memberOffset += object.getMembers().first().size();
+                    }
+                }
+            }
+
+            // the member table
+            for (ToolElement element : elementsById)
+            {
+                if (element instanceof AbstractObject object && object.getMembers() != null)
+                {
+                    for (ToolElement member : object.getMembers().first())
+                    {
+                        out.writeInt(ids.get(member));
+                    }
+                }
+            }
+
+            // the top-level elements
+            for (ToolElement element : elements)
+            {
+                out.writeInt(ids.get(element));
+            }
+
+            // the string table
+            int stringOffset = 0;
+            out.writeInt(stringOffset);
+            for (byte[] string : strings)
+            {
+                stringOffset += string.length;
+                out.writeInt(stringOffset);
+            }
+            for (byte[] string : strings)
+            {
+                out.write(string);
+            }
+        }
+    }
+
+    // post-order, so that the members of a CompositeObject get smaller ids than the CompositeObject itself
+    private static void assignIds(AbstractObject object, ArrayList<ToolElement> elementsById, IdentityHashMap<ToolElement, Integer> ids)
+    {
+        if (object.getMembers() != null)
+        {
+            for (AbstractObject member : object.getMembers().second())
+            {
+                assignIds(member, elementsById, ids);
+            }
+
+            // both ends of a member line are nested inside the CompositeObject, so they already have their ids
+            for (ConnectionLine member : object.getMembers().third())
+            {
+                assignId(member, elementsById, ids);
+            }
+        }
+
+        assignId(object, elementsById, ids);
+    }
+
+    private static void assignId(ToolElement element, ArrayList<ToolElement> elementsById, IdentityHashMap<ToolElement, Integer> ids)
+    {
+        ids.put(element, elementsById.size());
+        elementsById.add(element);
+    }
+
+    // column: 0 x, 1 y, 2 width, 3 height, 4 ref1, 5 ref2, 6 name
+    private static int getColumnValue(ToolElement element, int column, IdentityHashMap<ToolElement, Integer> ids, HashMap<String, Integer> stringIndices, int memberOffset)
+    {
+        if (element instanceof AbstractObject object)
+        {
+            return switch (column)
+            {
+                case 0 -> object.getUnselectedTopLeftCorner().x;
+                case 1 -> object.getUnselectedTopLeftCorner().y;
+                case 2 -> object.getUnselectedWidth();
+                case 3 -> object.getUnselectedHeight();
+                case 4 -> object.getMembers() != null ? memberOffset : 0;
+                case 5 -> object.getMembers() != null ? object.getMembers().first().size() : 0;
+                default -> object.getName() != null ? stringIndices.get(object.getName()) : NO_NAME;
+            };
+        }
+
+        ConnectionLine line = (ConnectionLine) element;
+        return switch (column)
+        {
+            case 4 -> ids.get(line.getStartBasicObject());
+            case 5 -> ids.get(line.getEndBasicObject());
+            case 6 -> NO_NAME;
+            default -> 0;
+        };
+    }
+
+    private static int padding(long size)
+    {
+        return (int) ((Integer.BYTES - size % Integer.BYTES) % Integer.BYTES);
+    }
+
+    // returns the top-level elements in painting order, with all ConnectionLines connected to their BasicObjects
+    public static List<ToolElement> read(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+            {
+                throw new IOException("not a UML diagram file: " + path);
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt(0) != MAGIC)
+            {
+                throw new IOException("not a UML diagram file: " + path);
+            }
+            if (buffer.getInt(4) != VERSION)
+            {
+                throw new IOException("unsupported version " + buffer.getInt(4) + " of the UML diagram file " + path);
+            }
+
+            int elementCount = buffer.getInt(8), memberCount = buffer.getInt(12), topLevelCount = buffer.getInt(16);
+            int stringCount = buffer.getInt(20), stringDataSize = buffer.getInt(24);
+            if (elementCount < 0 || memberCount < 0 || topLevelCount < 0 || stringCount < 0 || stringDataSize < 0)
+            {
+                throw new IOException("corrupt UML diagram file: " + path);
+            }
+
+            long intColumnsOffset = HEADER_SIZE + 2L * elementCount + padding(2L * elementCount);
+            long memberOffset = intColumnsOffset + 7L * Integer.BYTES * elementCount;
+            long topLevelOffset = memberOffset + (long) Integer.BYTES * memberCount;
+            long stringOffsetsOffset = topLevelOffset + (long) Integer.BYTES * topLevelCount;
+            long stringDataOffset = stringOffsetsOffset + (long) Integer.BYTES * (stringCount + 1);
+            if (stringDataOffset + stringDataSize != buffer.capacity())
+            {
+                throw new IOException("corrupt UML diagram file: " + path);
+            }
+
+            ByteBuffer kinds = buffer.slice(HEADER_SIZE, elementCount);
+            ByteBuffer ports = buffer.slice(HEADER_SIZE + elementCount, elementCount);
+            IntBuffer[] columns = new IntBuffer[7];
+            for (int column = 0; column < columns.length; column++)
+            {
+                columns[column] = intSlice(buffer, intColumnsOffset + (long) column * Integer.BYTES * elementCount, elementCount);
+            }
+            IntBuffer members = intSlice(buffer, memberOffset, memberCount);
+            IntBuffer topLevel = intSlice(buffer, topLevelOffset, topLevelCount);
+            StringTable strings = new StringTable(intSlice(buffer, stringOffsetsOffset, stringCount + 1), buffer.slice((int) stringDataOffset, stringDataSize));
+
+            ToolElement[] elements = new ToolElement[elementCount];
+            BitSet owned = new BitSet(elementCount);  // the elements that are already a member of a CompositeObject
+            for (int id = 0; id < elementCount; id++)
+            {
+                ElementKind kind = ElementKind.of(kinds.get(id));
+                int x = columns[0].get(id), y = columns[1].get(id), ref1 = columns[4].get(id), ref2 = columns[5].get(id);
+
+                if (kind.isBasicObject())
+                {
+                    BasicObject object = kind.createBasicObject(new Point(x, y));
+                    setName(object, strings, columns[6].get(id));
+                    elements[id] = object;
+                }
+                else if (kind == ElementKind.COMPOSITE)
+                {
+                    if (ref1 < 0 || ref2 < 1 || (long) ref1 + ref2 > memberCount)
+                    {
+                        throw new IOException("corrupt UML diagram file: " + path);
+                    }
+
+                    ArrayList<ToolElement> membersInDrawingOrder = new ArrayList<>(ref2);
+                    for (int i = ref1; i < ref1 + ref2; i++)
+                    {
+                        int memberId = members.get(i);
+                        membersInDrawingOrder.add(getElement(elements, owned, memberId, id, path));
+                        owned.set(memberId);
+                    }
+
+                    CompositeObject composite = ElementKind.createComposite(new Point(x, y), columns[2].get(id), columns[3].get(id), membersInDrawingOrder);
+                    setName(composite, strings, columns[6].get(id));
+                    elements[id] = composite;
+                }
+                else  // ConnectionLine
+                {
+                    if (!(getElement(elements, null, ref1, id, path) instanceof BasicObject start) || !(getElement(elements, null, ref2, id, path) instanceof BasicObject end))
+                    {
+                        throw new IOException("corrupt UML diagram file: " + path);
+                    }
+
+                    int portPair = ports.get(id) & 0xff;
+                    ConnectionLine line = kind.createLine(start, portPair >> 4, end, portPair & 0xf);
+                    line.connect();
+                    elements[id] = line;
+                }
+            }
+
+            ArrayList<ToolElement> topLevelElements = new ArrayList<>(topLevelCount);
+            for (int i = 0; i < topLevelCount; i++)
+            {
+                int id = topLevel.get(i);
+                topLevelElements.add(getElement(elements, owned, id, elementCount, path));
+                owned.set(id);
+            }
+
+            return topLevelElements;
+        }
+    }
+
+    private static IntBuffer intSlice(ByteBuffer buffer, long offset, int count)
+    {
+        return buffer.slice((int) offset, count * Integer.BYTES).asIntBuffer();
+    }
+
+    // an element may only refer to elements with a smaller id, and each element may be owned by one container only
+    private static ToolElement getElement(ToolElement[] elements, BitSet owned, int id, int referringId, Path path) throws IOException
+    {
+        if (id < 0 || id >= referringId || (owned != null && owned.get(id)))
+        {
+            throw new IOException("corrupt UML diagram file: " + path);
+        }
+
+        return elements[id];
+    }
+
+    private static void setName(AbstractObject object, StringTable strings, int index) throws IOException
+    {
+        if (index != NO_NAME)
+        {
+            object.setName(strings.get(index));
+        }
+    }
+
+    // decodes each distinct name once, and only when an element refers to it
+    private static class StringTable
+    {
+        private final IntBuffer offsets;
+        private final ByteBuffer data;
+        private final String[] decoded;
+
+        private StringTable(IntBuffer offsets, ByteBuffer data)
+        {
+            this.offsets = offsets;
+            this.data = data;
+            this.decoded = new String[offsets.capacity() - 1];
+        }
+
+        private String get(int index) throws IOException
+        {
+            if (index < 0 || index >= decoded.length)
+            {
+                throw new IOException("invalid string index " + index);
+            }
+
+            if (decoded[index] == null)
+            {
+                int start = offsets.get(index), end = offsets.get(index + 1);
+                if (start < 0 || end < start || end > data.capacity())
+                {
+                    throw new IOException("invalid string table");
+                }
+
+                byte[] bytes = new byte[end - start];
+                data.get(start, bytes);
+                decoded[index] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            return decoded[index];
+        }
+    }
+}
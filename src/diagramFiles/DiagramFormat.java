@@ -0,0 +1,96 @@
+package diagramFiles;
+
+import graphics.ToolElement;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The file formats a diagram can be saved in, each identified by its file name extension.
+ * A diagram is passed around as the list of its top-level elements in painting order.
+ */
+public enum DiagramFormat
+{
+    BINARY("UML diagram", "umld")
+    {
+        @Override
+        public List<ToolElement> read(Path path) throws IOException
+        {
+            return BinaryDiagramFile.read(path);
+        }
+
+        @Override
+        public void write(Path path, List<ToolElement> elements) throws IOException
+        {
+            BinaryDiagramFile.write(path, elements);
+        }
+    },
+    JSON("UML diagram (JSON)", "json")
+    {
+        @Override
+        public List<ToolElement> read(Path path) throws IOException
+        {
+            return JsonDiagramFile.read(path);
+        }
+
+        @Override
+        public void write(Path path, List<ToolElement> elements) throws IOException
+        {
+            JsonDiagramFile.write(path, elements);
+        }
+    },
+    // the whole diagram at once; the editor itself opens a paged file region by region
+    PAGED("UML diagram (paged)", "umlp")
+    {
+        @Override
+        public List<ToolElement> read(Path path) throws IOException
+        {
+            return PagedDiagramFile.read(path);
+        }
+
+        @Override
+        public void write(Path path, List<ToolElement> elements) throws IOException
+        {
+            PagedDiagramFile.write(path, elements);
+        }
+    };
+
+    private final String description, extension;
+
+    DiagramFormat(String description, String extension)
+    {
+        this.description = description;
+        this.extension = extension;
+    }
+
+    public abstract List<ToolElement> read(Path path) throws IOException;
+    public abstract void write(Path path, List<ToolElement> elements) throws IOException;
+
+    public String getDescription()
+    {
+        return description;
+    }
+
+    public String getExtension()
+    {
+        return extension;
+    }
+
+    // returns null if the extension of the file name belongs to none of the formats
+    public static DiagramFormat forPath(Path path)
+    {
+        String fileName = path.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+
+        for (DiagramFormat format : values())
+        {
+            if (dot >= 0 && fileName.substring(dot + 1).equalsIgnoreCase(format.extension))
+            {
+                return format;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,208 @@
+package diagramFiles;
+
+import graphics.*;
+import graphics.Class;
+
+import java.awt.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * The concrete types of ToolElement that can be stored in a diagram file.
+ * The ordinal is the code written by the binary format, the name (in lower case) the type written by the JSON format.
+ */
+public enum ElementKind
+{
+    CLASS, USE_CASE, COMPOSITE, ASSOCIATION_LINE, GENERALIZATION_LINE, COMPOSITION_LINE;
+
+    private static final ElementKind[] values = values();
+
+    public static ElementKind of(ToolElement element)
+    {
+        if (element instanceof Class)
+        {
+            return CLASS;
+        }
+        else if (element instanceof UseCase)
+        {
+            return USE_CASE;
+        }
+        else if (element instanceof CompositeObject)
+        {
+            return COMPOSITE;
+        }
+        else if (element instanceof AssociationLine)
+        {
+            return ASSOCIATION_LINE;
+        }
+        else if (element instanceof GeneralizationLine)
+        {
+            return GENERALIZATION_LINE;
+        }
+        else if (element instanceof CompositionLine)
+        {
+            return COMPOSITION_LINE;
+        }
+
+        throw new IllegalArgumentException("unsupported element type " + element.getClass().getName());
+    }
+
+    public static ElementKind of(int code) throws IOException
+    {
+        if (code < 0 || code >= values.length)
+        {
+            throw new IOException("unknown element type " + code);
+        }
+
+        return values[code];
+    }
+
+    public boolean isBasicObject()
+    {
+        return this == CLASS || this == USE_CASE;
+    }
+
+    public boolean isLine()
+    {
+        return this == ASSOCIATION_LINE || this == GENERALIZATION_LINE || this == COMPOSITION_LINE;
+    }
+
+    public BasicObject createBasicObject(Point unselectedTopLeftCorner)
+    {
+        return switch (this)
+        {
+            case CLASS -> new Class(unselectedTopLeftCorner);
+            case USE_CASE -> new UseCase(unselectedTopLeftCorner);
+            default -> throw new IllegalStateException(this + " is not a BasicObject");
+        };
+    }
+
+    // the ports are given by their index in BasicObject.getPorts()
+    public ConnectionLine createLine(BasicObject startObject, int startPort, BasicObject endObject, int endPort) throws IOException
+    {
+        if (startPort < 0 || startPort >= startObject.getPorts().length || endPort < 0 || endPort >= endObject.getPorts().length)
+        {
+            throw new IOException("invalid ConnectionPort index");
+        }
+
+        BasicObject.ConnectionPort start = startObject.getPorts()[startPort], end = endObject.getPorts()[endPort];
+
+        return switch (this)
+        {
+            case ASSOCIATION_LINE -> new AssociationLine(startObject, start, endObject, end);
+            case GENERALIZATION_LINE -> new GeneralizationLine(startObject, start, endObject, end);
+            case COMPOSITION_LINE -> new CompositionLine(startObject, start, endObject, end);
+            default -> throw new IllegalStateException(this + " is not a ConnectionLine");
+        };
+    }
+
+    public static int portIndex(BasicObject object, BasicObject.ConnectionPort port)
+    {
+        BasicObject.ConnectionPort[] ports = object.getPorts();
+
+        for (int i = 0; i < ports.length; i++)
+        {
+            if (ports[i] == port)
+            {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("the ConnectionPort does not belong to the BasicObject");
+    }
+
+    // a CompositeObject is created in the selected state, but a loaded diagram starts without any selection
+    public static CompositeObject createComposite(Point unselectedTopLeftCorner, int unselectedWidth, int unselectedHeight, List<ToolElement> membersInDrawingOrder)
+    {
+        ArrayList<AbstractObject> objects = new ArrayList<>();
+        ArrayList<ConnectionLine> lines = new ArrayList<>();
+        for (ToolElement member : membersInDrawingOrder)
+        {
+            if (member.isMovable())  // AbstractObject
+            {
+                objects.add((AbstractObject) member);
+            }
+            else  // ConnectionLine
+            {
+                lines.add((ConnectionLine) member);
+            }
+        }
+
+        CompositeObject composite = new CompositeObject(unselectedTopLeftCorner, unselectedWidth, unselectedHeight, membersInDrawingOrder, objects, lines);
+        composite.setSelected(false);
+
+        return composite;
+    }
+
+    /*
+    A deep copy of the top-level elements, which must be given in painting order. The copy is unselected and
+    shares nothing with the diagram, e.g. so that other threads can draw it while the diagram is edited. The
+    copied lines are not connected, since nothing but drawing needs the incidence index.
+     */
+    public static List<ToolElement> copy(List<ToolElement> elements)
+    {
+        IdentityHashMap<ToolElement, ToolElement> copies = new IdentityHashMap<>();
+
+        return copy(elements, copies);
+    }
+
+    // the objects are copied before the lines, which refer to the copies of the BasicObjects they are attached to
+    private static List<ToolElement> copy(List<ToolElement> elements, IdentityHashMap<ToolElement, ToolElement> copies)
+    {
+        ToolElement[] copied = new ToolElement[elements.size()];
+
+        for (int pass = 0; pass < 2; pass++)  // the AbstractObjects in the first pass, the ConnectionLines in the second
+        {
+            for (int i = 0; i < copied.length; i++)
+            {
+                ToolElement element = elements.get(i);
+
+                if (element.isMovable() == (pass == 0))
+                {
+                    copied[i] = copy(element, copies);
+                }
+            }
+        }
+
+        return Arrays.asList(copied);
+    }
+
+    private static ToolElement copy(ToolElement element, IdentityHashMap<ToolElement, ToolElement> copies)
+    {
+        ElementKind kind = of(element);
+        ToolElement copy;
+
+        if (kind.isLine())
+        {
+            ConnectionLine line = (ConnectionLine) element;
+            BasicObject start = (BasicObject) copies.get(line.getStartBasicObject()), end = (BasicObject) copies.get(line.getEndBasicObject());
+            try
+            {
+                copy = kind.createLine(start, portIndex(line.getStartBasicObject(), line.getStartPort()), end, portIndex(line.getEndBasicObject(), line.getEndPort()));
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);  // the port indices are taken from the line itself
+            }
+        }
+        else
+        {
+            AbstractObject object = (AbstractObject) element;
+            AbstractObject objectCopy = kind.isBasicObject()
+                    ? kind.createBasicObject(object.getUnselectedTopLeftCorner())
+                    : createComposite(object.getUnselectedTopLeftCorner(), object.getUnselectedWidth(), object.getUnselectedHeight(), copy(object.getMembers().first(), copies));
+            if (object.getName() != null)
+            {
+                objectCopy.setName(object.getName());
+            }
+            copy = objectCopy;
+        }
+
+        copies.put(element, copy);
+
+        return copy;
+    }
+}
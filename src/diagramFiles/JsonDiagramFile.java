@@ -0,0 +1,333 @@
+package diagramFiles;
+
+import graphics.*;
+
+import java.awt.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The JSON interchange format for diagrams (*.json).
+ *
+ * <pre>
+ * {"format": "uml-diagram", "version": 1, "elements": [
+ * {"type": "class", "id": 0, "z": 1, "x": 10, "y": 10, "name": "Shape"},
+ * {"type": "composite", "z": 2, "x": 10, "y": 200, "width": 250, "height": 120, "members": [...]},
+ * {"type": "generalization_line", "z": 0, "start": 3, "startPort": "top", "end": 0, "endPort": "bottom"}]}
+ * </pre>
+ *
+ * <p>Only BasicObjects have an id, by which the ConnectionLines refer to them. z is the position of an element in
+ * the painting order of its container (the diagram or a CompositeObject). The writer puts the objects of each
+ * container before its lines, so that a reader usually meets the BasicObjects before the lines that refer to
+ * them. Both directions work element by element on a JsonReader or JsonWriter, so no document tree is ever
+ * built: apart from the elements themselves, only the ids of the BasicObjects and the lines whose BasicObjects
+ * have not been read yet are kept in memory. Unknown members are skipped, so other tools may add their own.</p>
+ */
+public final class JsonDiagramFile
+{
+    static final String FORMAT = "uml-diagram";
+    static final int VERSION = 1;
+    private static final String[] PORT_NAMES = {"top", "bottom", "left", "right"};  // in the order of BasicObject.getPorts()
+
+    private JsonDiagramFile() {}
+
+    // elements are the top-level elements in painting order
+    public static void write(Path path, List<ToolElement> elements) throws IOException
+    {
+        try (JsonWriter json = new JsonWriter(new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8), 1 << 16)))
+        {
+            json.beginObject();
+            json.name("format").value(FORMAT);
+            json.name("version").value(VERSION);
+            json.name("elements");
+            writeElements(json, elements, new IdentityHashMap<>());
+            json.endObject();
+        }
+    }
+
+    private static void writeElements(JsonWriter json, List<ToolElement> elements, IdentityHashMap<BasicObject, Integer> ids) throws IOException
+    {
+        json.beginArray();
+
+        for (int z = 0; z < elements.size(); z++)
+        {
+            if (elements.get(z) instanceof AbstractObject object)
+            {
+                writeObject(json, object, z, ids);
+            }
+        }
+        for (int z = 0; z < elements.size(); z++)
+        {
+            if (elements.get(z) instanceof ConnectionLine line)
+            {
+                writeLine(json, line, z, ids);
+            }
+        }
+
+        json.endArray();
+    }
+
+    private static void writeObject(JsonWriter json, AbstractObject object, int z, IdentityHashMap<BasicObject, Integer> ids) throws IOException
+    {
+        json.beginObject();
+        json.name("type").value(typeName(ElementKind.of(object)));
+        if (object instanceof BasicObject basicObject)
+        {
+            int id = ids.size();
+            ids.put(basicObject, id);
+            json.name("id").value(id);
+        }
+        json.name("z").value(z);
+        json.name("x").value(object.getUnselectedTopLeftCorner().x);
+        json.name("y").value(object.getUnselectedTopLeftCorner().y);
+        if (object.getMembers() != null)
+        {
+            json.name("width").value(object.getUnselectedWidth());
+            json.name("height").value(object.getUnselectedHeight());
+        }
+        if (object.getName() != null)
+        {
+            json.name("name").value(object.getName());
+        }
+        if (object.getMembers() != null)
+        {
+            json.name("members");
+            writeElements(json, object.getMembers().first(), ids);
+        }
+        json.endObject();
+    }
+
+    private static void writeLine(JsonWriter json, ConnectionLine line, int z, IdentityHashMap<BasicObject, Integer> ids) throws IOException
+    {
+        json.beginObject();
+        json.name("type").value(typeName(ElementKind.of(line)));
+        json.name("z").value(z);
+        json.name("start").value(getId(ids, line.getStartBasicObject()));
+        json.name("startPort").value(PORT_NAMES[ElementKind.portIndex(line.getStartBasicObject(), line.getStartPort())]);
+        json.name("end").value(getId(ids, line.getEndBasicObject()));
+        json.name("endPort").value(PORT_NAMES[ElementKind.portIndex(line.getEndBasicObject(), line.getEndPort())]);
+        json.endObject();
+    }
+
+    private static int getId(IdentityHashMap<BasicObject, Integer> ids, BasicObject object)
+    {
+        Integer id = ids.get(object);
+
+        if (id == null)
+        {
+            throw new IllegalArgumentException("a ConnectionLine is attached to a BasicObject outside the diagram");
+        }
+
+        return id;
+    }
+
+    private static String typeName(ElementKind kind)
+    {
+        return kind.name().toLowerCase(Locale.ROOT);
+    }
+
+    // returns the top-level elements in painting order, with all ConnectionLines connected to their BasicObjects
+    public static List<ToolElement> read(Path path) throws IOException
+    {
+        try (JsonReader json = new JsonReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8)))
+        {
+            HashMap<Long, BasicObject> objectsById = new HashMap<>();
+            List<ToolElement> elements = null;
+
+            json.beginObject();
+            while (json.hasNext())
+            {
+                switch (json.nextName())
+                {
+                    case "format" ->
+                    {
+                        if (!FORMAT.equals(json.nextString()))
+                        {
+                            throw new IOException("not a UML diagram file: " + path);
+                        }
+                    }
+                    case "version" ->
+                    {
+                        int version = json.nextInt();
+                        if (version > VERSION)
+                        {
+                            throw new IOException("unsupported version " + version + " of the UML diagram file " + path);
+                        }
+                    }
+                    case "elements" -> elements = readElements(json, objectsById, false);
+                    default -> json.skipValue();
+                }
+            }
+            json.endObject();
+
+            if (elements == null)
+            {
+                throw new IOException("not a UML diagram file: " + path);
+            }
+
+            return elements;
+        }
+    }
+
+    private record Positioned(long z, ToolElement element) {}
+
+    // a line whose BasicObjects have not all been read yet
+    private record PendingLine(ElementKind kind, long z, long start, int startPort, long end, int endPort) {}
+
+    // reads the elements of a container and returns them in painting order
+    private static List<ToolElement> readElements(JsonReader json, HashMap<Long, BasicObject> objectsById, boolean isComposite) throws IOException
+    {
+        ArrayList<Positioned> elements = new ArrayList<>();
+        ArrayList<PendingLine> pendingLines = new ArrayList<>();
+
+        json.beginArray();
+        while (json.hasNext())
+        {
+            readElement(json, objectsById, elements, pendingLines);
+        }
+        json.endArray();
+
+        // every BasicObject that may be referred to by a line of this container has been read by now
+        for (PendingLine pending : pendingLines)
+        {
+            BasicObject start = objectsById.get(pending.start()), end = objectsById.get(pending.end());
+            if (start == null || end == null)
+            {
+                throw json.syntaxError("a " + typeName(pending.kind()) + (isComposite ? " in a composite" : "") + " refers to an unknown object");
+            }
+
+            ConnectionLine line = pending.kind().createLine(start, pending.startPort(), end, pending.endPort());
+            line.connect();
+            elements.add(new Positioned(pending.z(), line));
+        }
+
+        elements.sort(Comparator.comparingLong(Positioned::z));  // stable, so elements without z keep the order in the file
+        ArrayList<ToolElement> elementsInOrder = new ArrayList<>(elements.size());
+        for (Positioned positioned : elements)
+        {
+            elementsInOrder.add(positioned.element());
+        }
+
+        return elementsInOrder;
+    }
+
+    private static void readElement(JsonReader json, HashMap<Long, BasicObject> objectsById, ArrayList<Positioned> elements, ArrayList<PendingLine> pendingLines) throws IOException
+    {
+        String type = null, name = null;
+        Long id = null, start = null, end = null;
+        long z = elements.size() + pendingLines.size();  // the position in the file unless z is given
+        int x = 0, y = 0, width = -1, height = -1, startPort = -1, endPort = -1;
+        List<ToolElement> members = null;
+
+        json.beginObject();
+        while (json.hasNext())
+        {
+            switch (json.nextName())
+            {
+                case "type" -> type = json.nextString();
+                case "id" -> id = json.nextLong();
+                case "z" -> z = json.nextLong();
+                case "x" -> x = json.nextInt();
+                case "y" -> y = json.nextInt();
+                case "width" -> width = json.nextInt();
+                case "height" -> height = json.nextInt();
+                case "name" -> name = json.nextStringOrNull();
+                case "members" -> members = readElements(json, objectsById, true);
+                case "start" -> start = json.nextLong();
+                case "startPort" -> startPort = readPort(json);
+                case "end" -> end = json.nextLong();
+                case "endPort" -> endPort = readPort(json);
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+
+        ElementKind kind;
+        try
+        {
+            kind = ElementKind.valueOf(String.valueOf(type).toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw json.syntaxError("unknown element type " + type);
+        }
+
+        if (kind.isBasicObject())
+        {
+            BasicObject object = kind.createBasicObject(new Point(x, y));
+            if (name != null)
+            {
+                object.setName(name);
+            }
+            if (id != null && objectsById.put(id, object) != null)
+            {
+                throw json.syntaxError("duplicate id " + id);
+            }
+            elements.add(new Positioned(z, object));
+        }
+        else if (kind == ElementKind.COMPOSITE)
+        {
+            if (members == null || members.isEmpty() || width < 0 || height < 0)
+            {
+                throw json.syntaxError("a composite needs width, height and members");
+            }
+
+            CompositeObject composite = ElementKind.createComposite(new Point(x, y), width, height, members);
+            if (name != null)
+            {
+                composite.setName(name);
+            }
+            elements.add(new Positioned(z, composite));
+        }
+        else  // ConnectionLine
+        {
+            if (start == null || end == null || startPort < 0 || endPort < 0)
+            {
+                throw json.syntaxError("a " + type + " needs start, startPort, end and endPort");
+            }
+
+            BasicObject startObject = objectsById.get(start), endObject = objectsById.get(end);
+            if (startObject != null && endObject != null)
+            {
+                ConnectionLine line = kind.createLine(startObject, startPort, endObject, endPort);
+                line.connect();
+                elements.add(new Positioned(z, line));
+            }
+            else
+            {
+                pendingLines.add(new PendingLine(kind, z, start, startPort, end, endPort));
+            }
+        }
+    }
+
+    // a port is given by its name or by its index in BasicObject.getPorts()
+    private static int readPort(JsonReader json) throws IOException
+    {
+        if (json.peek() == JsonReader.Token.NUMBER)
+        {
+            return json.nextInt();
+        }
+
+        String port = json.nextString();
+        for (int i = 0; i < PORT_NAMES.length; i++)
+        {
+            if (PORT_NAMES[i].equalsIgnoreCase(port))
+            {
+                return i;
+            }
+        }
+
+        throw json.syntaxError("unknown port " + port);
+    }
+}
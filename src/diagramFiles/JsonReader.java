@@ -0,0 +1,453 @@
+package diagramFiles;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A pull parser for JSON that reads one token at a time from a Reader.
+ *
+ * <p>The caller walks the document with beginObject/endObject, beginArray/endArray, hasNext, nextName and the
+ * value methods, in the order in which the tokens appear. Nothing but the current token is kept in memory, so
+ * documents of any size can be read. Values the caller is not interested in are passed over with skipValue.</p>
+ */
+class JsonReader implements AutoCloseable
+{
+    enum Token {BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT}
+
+    private final Reader in;
+    private final char[] buffer = new char[1 << 16];
+    private int position = 0, limit = 0;
+    private long line = 1;
+    /*
+    A stack of the enclosing containers. For each one it is recorded whether the next token is the first one in
+    the container (no comma expected) and, for objects, whether a name or a value is expected next.
+     */
+    private byte[] stack = new byte[32];
+    private int depth = 0;
+    private static final byte EMPTY_ARRAY = 0, ARRAY = 1, EMPTY_OBJECT = 2, OBJECT_NAME = 3, OBJECT_VALUE = 4;
+    private Token peeked = null;
+
+    JsonReader(Reader in)
+    {
+        this.in = in;
+    }
+
+    Token peek() throws IOException
+    {
+        if (peeked == null)
+        {
+            peeked = readToken();
+        }
+
+        return peeked;
+    }
+
+    private Token readToken() throws IOException
+    {
+        int c = nextNonWhitespace();
+
+        if (depth > 0)
+        {
+            switch (stack[depth - 1])
+            {
+                case EMPTY_ARRAY ->
+                {
+                    if (c == ']')
+                    {
+                        return Token.END_ARRAY;
+                    }
+                }
+                case ARRAY ->
+                {
+                    if (c == ']')
+                    {
+                        return Token.END_ARRAY;
+                    }
+                    expect(c, ',');
+                    c = nextNonWhitespace();
+                }
+                case EMPTY_OBJECT, OBJECT_NAME ->
+                {
+                    if (c == '}')
+                    {
+                        return Token.END_OBJECT;
+                    }
+                    if (stack[depth - 1] == OBJECT_NAME)
+                    {
+                        expect(c, ',');
+                        c = nextNonWhitespace();
+                    }
+                    expect(c, '"');
+                    return Token.NAME;
+                }
+                case OBJECT_VALUE -> expect(c, ':');
+            }
+
+            if (stack[depth - 1] == OBJECT_VALUE)
+            {
+                c = nextNonWhitespace();
+            }
+        }
+        else if (c == -1)
+        {
+            return Token.END_DOCUMENT;
+        }
+
+        return switch (c)
+        {
+            case '{' -> Token.BEGIN_OBJECT;
+            case '[' -> Token.BEGIN_ARRAY;
+            case '"' -> Token.STRING;
+            case 't', 'f' ->
+            {
+                unread();  // the first character is part of the literal
+                yield Token.BOOLEAN;
+            }
+            case 'n' ->
+            {
+                unread();
+                yield Token.NULL;
+            }
+            case '-', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' ->
+            {
+                unread();  // the first character is part of the number
+                yield Token.NUMBER;
+            }
+            default -> throw syntaxError("unexpected character " + describe(c));
+        };
+    }
+
+    // called after a value has been consumed
+    private void valueDone()
+    {
+        peeked = null;
+
+        if (depth > 0)
+        {
+            byte state = stack[depth - 1];
+            stack[depth - 1] = state == EMPTY_ARRAY || state == ARRAY ? ARRAY : OBJECT_NAME;
+        }
+    }
+
+    private void consume(Token token) throws IOException
+    {
+        if (peek() != token)
+        {
+            throw syntaxError("expected " + token + " but was " + peeked);
+        }
+    }
+
+    void beginObject() throws IOException
+    {
+        consume(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+        peeked = null;
+    }
+
+    void endObject() throws IOException
+    {
+        consume(Token.END_OBJECT);
+        depth--;
+        valueDone();
+    }
+
+    void beginArray() throws IOException
+    {
+        consume(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+        peeked = null;
+    }
+
+    void endArray() throws IOException
+    {
+        consume(Token.END_ARRAY);
+        depth--;
+        valueDone();
+    }
+
+    private void push(byte state)
+    {
+        if (depth == stack.length)
+        {
+            byte[] newStack = new byte[depth * 2];
+            System.arraycopy(stack, 0, newStack, 0, depth);
+            stack = newStack;
+        }
+
+        stack[depth++] = state;
+    }
+
+    // whether the current object or array has more elements
+    boolean hasNext() throws IOException
+    {
+        Token token = peek();
+
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    String nextName() throws IOException
+    {
+        consume(Token.NAME);
+        String name = readString();
+        peeked = null;
+        stack[depth - 1] = OBJECT_VALUE;
+
+        return name;
+    }
+
+    String nextString() throws IOException
+    {
+        consume(Token.STRING);
+        String value = readString();
+        valueDone();
+
+        return value;
+    }
+
+    // returns null for a JSON null, so that optional strings can be read in one call
+    String nextStringOrNull() throws IOException
+    {
+        if (peek() == Token.NULL)
+        {
+            nextNull();
+            return null;
+        }
+
+        return nextString();
+    }
+
+    long nextLong() throws IOException
+    {
+        consume(Token.NUMBER);
+        StringBuilder number = new StringBuilder();
+        int c;
+        while ((c = read()) != -1 && (c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9')))
+        {
+            number.append((char) c);
+        }
+        if (c != -1)
+        {
+            unread();
+        }
+        valueDone();
+
+        try
+        {
+            return Long.parseLong(number.toString());
+        }
+        catch (NumberFormatException e)
+        {
+            double value;
+            try
+            {
+                value = Double.parseDouble(number.toString());
+            }
+            catch (NumberFormatException e2)
+            {
+                throw syntaxError("invalid number " + number);
+            }
+
+            if (value != Math.rint(value) || Math.abs(value) > 1L << 53)
+            {
+                throw syntaxError("expected an integer but was " + number);
+            }
+
+            return (long) value;
+        }
+    }
+
+    int nextInt() throws IOException
+    {
+        long value = nextLong();
+
+        if (value != (int) value)
+        {
+            throw syntaxError("integer out of range: " + value);
+        }
+
+        return (int) value;
+    }
+
+    boolean nextBoolean() throws IOException
+    {
+        consume(Token.BOOLEAN);
+        boolean value = read() == 't';
+        readLiteral(value ? "rue" : "alse");
+        valueDone();
+
+        return value;
+    }
+
+    void nextNull() throws IOException
+    {
+        consume(Token.NULL);
+        read();
+        readLiteral("ull");
+        valueDone();
+    }
+
+    // skips the next value including everything nested in it
+    void skipValue() throws IOException
+    {
+        switch (peek())
+        {
+            case BEGIN_OBJECT ->
+            {
+                beginObject();
+                while (hasNext())
+                {
+                    nextName();
+                    skipValue();
+                }
+                endObject();
+            }
+            case BEGIN_ARRAY ->
+            {
+                beginArray();
+                while (hasNext())
+                {
+                    skipValue();
+                }
+                endArray();
+            }
+            case STRING -> nextString();
+            case NUMBER -> nextLong();
+            case BOOLEAN -> nextBoolean();
+            case NULL -> nextNull();
+            default -> throw syntaxError("expected a value but was " + peeked);
+        }
+    }
+
+    private void readLiteral(String rest) throws IOException
+    {
+        for (int i = 0; i < rest.length(); i++)
+        {
+            if (read() != rest.charAt(i))
+            {
+                throw syntaxError("invalid literal");
+            }
+        }
+    }
+
+    // reads the rest of a string whose opening quote has already been consumed
+    private String readString() throws IOException
+    {
+        StringBuilder value = new StringBuilder();
+
+        while (true)
+        {
+            int c = read();
+
+            if (c == '"')
+            {
+                return value.toString();
+            }
+            else if (c == '\\')
+            {
+                c = read();
+                switch (c)
+                {
+                    case '"', '\\', '/' -> value.append((char) c);
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' ->
+                    {
+                        int codeUnit = 0;
+                        for (int i = 0; i < 4; i++)
+                        {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0)
+                            {
+                                throw syntaxError("invalid unicode escape");
+                            }
+                            codeUnit = codeUnit * 16 + digit;
+                        }
+                        value.append((char) codeUnit);
+                    }
+                    default -> throw syntaxError("invalid escape " + describe(c));
+                }
+            }
+            else if (c == -1 || c < 0x20)
+            {
+                throw syntaxError("unterminated string");
+            }
+            else
+            {
+                value.append((char) c);
+            }
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException
+    {
+        int c;
+
+        do
+        {
+            c = read();
+        }
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\n');
+
+        return c;
+    }
+
+    private int read() throws IOException
+    {
+        if (position == limit)
+        {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+
+            if (limit <= 0)
+            {
+                limit = 0;
+                return -1;
+            }
+        }
+
+        char c = buffer[position++];
+        if (c == '\n')
+        {
+            line++;
+        }
+
+        return c;
+    }
+
+    // steps back over the character returned by the last read, which is always still in the buffer
+    private void unread()
+    {
+        position--;
+        if (buffer[position] == '\n')
+        {
+            line--;
+        }
+    }
+
+    private void expect(int c, char expected) throws IOException
+    {
+        if (c != expected)
+        {
+            throw syntaxError("expected '" + expected + "' but was " + describe(c));
+        }
+    }
+
+    private static String describe(int c)
+    {
+        return c == -1 ? "end of input" : "'" + (char) c + "'";
+    }
+
+    IOException syntaxError(String message)
+    {
+        return new IOException(message + " at line " + line);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+}
@@ -0,0 +1,164 @@
+package diagramFiles;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Writes a JSON document token by token to a Writer, the counterpart of JsonReader.
+ * The commas between the members of an object or array are inserted automatically, and every object inside
+ * an array starts on a new line, so that large documents stay readable (and diffable) line by line.
+ */
+class JsonWriter implements AutoCloseable
+{
+    private final Writer out;
+    private boolean[] hasMembers = new boolean[32];  // for each enclosing container, whether a member has already been written
+    private boolean[] isArray = new boolean[32];
+    private int depth = 0;
+    private boolean afterName = false;
+
+    JsonWriter(Writer out)
+    {
+        this.out = out;
+    }
+
+    JsonWriter beginObject() throws IOException
+    {
+        beforeValue();
+        if (depth > 0 && isArray[depth - 1])
+        {
+            out.write('\n');
+        }
+        out.write('{');
+        push(false);
+
+        return this;
+    }
+
+    JsonWriter endObject() throws IOException
+    {
+        depth--;
+        out.write('}');
+
+        return this;
+    }
+
+    JsonWriter beginArray() throws IOException
+    {
+        beforeValue();
+        out.write('[');
+        push(true);
+
+        return this;
+    }
+
+    JsonWriter endArray() throws IOException
+    {
+        depth--;
+        out.write(']');
+
+        return this;
+    }
+
+    JsonWriter name(String name) throws IOException
+    {
+        beforeValue();
+        writeString(name);
+        out.write(':');
+        afterName = true;
+
+        return this;
+    }
+
+    JsonWriter value(long value) throws IOException
+    {
+        beforeValue();
+        out.write(Long.toString(value));
+
+        return this;
+    }
+
+    // writes null for a null value
+    JsonWriter value(String value) throws IOException
+    {
+        beforeValue();
+        if (value == null)
+        {
+            out.write("null");
+        }
+        else
+        {
+            writeString(value);
+        }
+
+        return this;
+    }
+
+    private void push(boolean array)
+    {
+        if (depth == hasMembers.length)
+        {
+            hasMembers = Arrays.copyOf(hasMembers, depth * 2);
+            isArray = Arrays.copyOf(isArray, depth * 2);
+        }
+
+        isArray[depth] = array;
+        hasMembers[depth++] = false;
+    }
+
+    private void beforeValue() throws IOException
+    {
+        if (afterName)  // the value of an object member
+        {
+            afterName = false;
+            return;
+        }
+
+        if (depth > 0)
+        {
+            if (hasMembers[depth - 1])
+            {
+                out.write(',');
+            }
+            hasMembers[depth - 1] = true;
+        }
+    }
+
+    private void writeString(String value) throws IOException
+    {
+        out.write('"');
+
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+
+            switch (c)
+            {
+                case '"' -> out.write("\\\"");
+                case '\\' -> out.write("\\\\");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                default ->
+                {
+                    if (c < 0x20)
+                    {
+                        out.write(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        out.write(c);
+                    }
+                }
+            }
+        }
+
+        out.write('"');
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        out.close();
+    }
+}
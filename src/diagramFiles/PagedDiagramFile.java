@@ -0,0 +1,895 @@
+package diagramFiles;
+
+import graphics.*;
+
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * The paged diagram file format (*.umlp), which allows a diagram to be loaded region by region.
+ *
+ * <p>The world is divided into square cells of PAGE_SIZE units. Every top-level AbstractObject belongs to the page
+ * of the cell that contains the center of its bounds, and every top-level ConnectionLine to the page of its start
+ * BasicObject. A page is stored as one block of records, so it can be read and decoded without touching the rest
+ * of the file. The file consists of</p>
+ * <ol>
+ *   <li>a header of HEADER_SIZE bytes: magic number, version, page size, page count, id count, the offset of the
+ *   directory and the next free z-index,</li>
+ *   <li>the pages,</li>
+ *   <li>the page directory, the on-disk spatial index: for each page its cell, the bounds of all its elements,
+ *   the location of its block, its element count and the pages its lines lead to,</li>
+ *   <li>the id table, which maps the id of every BasicObject to the index of its page, or to -1 if it has been
+ *   deleted.</li>
+ * </ol>
+ *
+ * <p>A page block holds the top-level objects, each with its z-index and recursively with its members, followed
+ * by the top-level lines. Lines refer to BasicObjects by id, so a line whose end lies on another page is returned
+ * as a LineRecord and only turned into a ConnectionLine once both of its BasicObjects are loaded.</p>
+ *
+ * <p>An open file keeps its header, directory and id table in memory. Pages that are changed while the file is
+ * open are written to a temporary spill file, so the original file stays untouched until the diagram is saved.</p>
+ */
+public final class PagedDiagramFile implements Closeable
+{
+    static final int MAGIC = 0x554D4C50;  // "UMLP"
+    static final int VERSION = 1;
+    public static final int PAGE_SIZE = 2048;
+    private static final int HEADER_SIZE = 40;
+    public static final int DELETED = -1;  // the page index of a deleted BasicObject in the id table
+
+    /**
+     * An entry of the page directory. The location of its block changes when the page is spilled.
+     */
+    public static final class Page
+    {
+        private final int index, cellX, cellY;
+        private Rectangle bounds;
+        private int elementCount;
+        private int[] dependencies;  // the indices of the pages the lines of this page lead to
+        private boolean spilled = false;
+        private long offset;
+        private int length;
+
+        private Page(int index, int cellX, int cellY, Rectangle bounds, int elementCount, int[] dependencies, long offset, int length)
+        {
+            this.index = index;
+            this.cellX = cellX;
+            this.cellY = cellY;
+            this.bounds = bounds;
+            this.elementCount = elementCount;
+            this.dependencies = dependencies;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public int getIndex()
+        {
+            return index;
+        }
+
+        public Rectangle getCell()
+        {
+            return new Rectangle(cellX * PAGE_SIZE, cellY * PAGE_SIZE, PAGE_SIZE, PAGE_SIZE);
+        }
+
+        // the union of the bounds of all elements of the page, empty for an empty page
+        public Rectangle getBounds()
+        {
+            return new Rectangle(bounds);
+        }
+
+        public int getElementCount()
+        {
+            return elementCount;
+        }
+
+        public int[] getDependencies()
+        {
+            return dependencies.clone();
+        }
+    }
+
+    // an element together with its z-index, i.e. its position in the painting order of its container
+    public record Placed(ToolElement element, long zIndex) {}
+
+    /**
+     * A top-level ConnectionLine as stored in a page, which refers to its BasicObjects by id.
+     */
+    public static final class LineRecord
+    {
+        private final ElementKind kind;
+        private final long zIndex;
+        private final int startId, startPort, endId, endPort;
+
+        private LineRecord(ElementKind kind, long zIndex, int startId, int startPort, int endId, int endPort)
+        {
+            this.kind = kind;
+            this.zIndex = zIndex;
+            this.startId = startId;
+            this.startPort = startPort;
+            this.endId = endId;
+            this.endPort = endPort;
+        }
+
+        // the record of a ConnectionLine that is unloaded while the BasicObject at its start stays in memory
+        public static LineRecord of(ConnectionLine line, long zIndex, ToIntFunction<BasicObject> ids)
+        {
+            return new LineRecord(ElementKind.of(line), zIndex, ids.applyAsInt(line.getStartBasicObject()), ElementKind.portIndex(line.getStartBasicObject(), line.getStartPort()),
+                    ids.applyAsInt(line.getEndBasicObject()), ElementKind.portIndex(line.getEndBasicObject(), line.getEndPort()));
+        }
+
+        public long getZIndex()
+        {
+            return zIndex;
+        }
+
+        public int getStartId()
+        {
+            return startId;
+        }
+
+        public int getEndId()
+        {
+            return endId;
+        }
+
+        // creates the ConnectionLine and connects it to its BasicObjects
+        public ConnectionLine create(BasicObject startObject, BasicObject endObject) throws IOException
+        {
+            ConnectionLine line = kind.createLine(startObject, startPort, endObject, endPort);
+            line.connect();
+
+            return line;
+        }
+    }
+
+    /**
+     * The decoded contents of a page: the top-level objects, all BasicObjects nested in them by id, and the top-level lines.
+     */
+    public record PageContents(List<Placed> objects, Map<Integer, BasicObject> objectsById, List<LineRecord> lines) {}
+
+    private final Path path;
+    private final FileChannel channel;
+    private FileChannel spillChannel = null;
+    private Path spillPath = null;
+    private final ArrayList<Page> pages = new ArrayList<>();
+    private final HashMap<Long, Page> pagesByCell = new HashMap<>();
+    private int[] idTable;
+    private int idCount;
+    private long nextZIndex;
+
+    private PagedDiagramFile(Path path, FileChannel channel)
+    {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    public static PagedDiagramFile open(Path path) throws IOException
+    {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        PagedDiagramFile file = new PagedDiagramFile(path, channel);
+
+        try
+        {
+            file.readDirectory();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+
+        return file;
+    }
+
+    private void readDirectory() throws IOException
+    {
+        ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC)
+        {
+            throw new IOException("not a paged UML diagram file: " + path);
+        }
+        if (header.getInt(4) != VERSION)
+        {
+            throw new IOException("unsupported version " + header.getInt(4) + " of the paged UML diagram file " + path);
+        }
+        if (header.getInt(8) != PAGE_SIZE)
+        {
+            throw new IOException("unsupported page size " + header.getInt(8) + " in " + path);
+        }
+
+        int pageCount = header.getInt(12);
+        idCount = header.getInt(16);
+        long directoryOffset = header.getLong(24);
+        nextZIndex = header.getLong(32);
+        if (pageCount < 0 || idCount < 0 || directoryOffset < HEADER_SIZE || directoryOffset > channel.size())
+        {
+            throw new IOException("corrupt paged UML diagram file: " + path);
+        }
+
+        long directorySize = channel.size() - directoryOffset;
+        if (directorySize > Integer.MAX_VALUE)
+        {
+            throw new IOException("corrupt paged UML diagram file: " + path);
+        }
+
+        // the directory is small compared to the pages, so it is read at once (closing a stream on the channel would close the channel)
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(readFully(channel, directoryOffset, (int) directorySize).array())))
+        {
+            for (int index = 0; index < pageCount; index++)
+            {
+                int cellX = in.readInt(), cellY = in.readInt();
+                Rectangle bounds = new Rectangle(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+                long offset = in.readLong();
+                int length = in.readInt(), elementCount = in.readInt(), dependencyCount = in.readInt();
+                if (offset < HEADER_SIZE || length < 0 || offset + length > directoryOffset || dependencyCount < 0 || dependencyCount > pageCount)
+                {
+                    throw new IOException("corrupt paged UML diagram file: " + path);
+                }
+
+                int[] dependencies = new int[dependencyCount];
+                for (int i = 0; i < dependencyCount; i++)
+                {
+                    dependencies[i] = in.readInt();
+                }
+
+                Page page = new Page(index, cellX, cellY, bounds, elementCount, dependencies, offset, length);
+                pages.add(page);
+                pagesByCell.put(cellKey(cellX, cellY), page);
+            }
+
+            idTable = new int[Math.max(16, idCount)];
+            for (int id = 0; id < idCount; id++)
+            {
+                idTable[id] = in.readInt();
+            }
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+            {
+                throw new IOException("unexpected end of file");
+            }
+        }
+
+        return buffer.flip();
+    }
+
+    private static long cellKey(int cellX, int cellY)
+    {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+
+    public List<Page> getPages()
+    {
+        return List.copyOf(pages);
+    }
+
+    public Page getPage(int index)
+    {
+        return pages.get(index);
+    }
+
+    // the page of the cell that contains the point, created (empty) if there is none yet
+    public Page getPageAt(Point point)
+    {
+        int cellX = Math.floorDiv(point.x, PAGE_SIZE), cellY = Math.floorDiv(point.y, PAGE_SIZE);
+
+        return pagesByCell.computeIfAbsent(cellKey(cellX, cellY), key ->
+        {
+            Page page = new Page(pages.size(), cellX, cellY, new Rectangle(), 0, new int[0], 0, 0);
+            pages.add(page);
+
+            return page;
+        });
+    }
+
+    // the page a top-level object belongs to at its current location
+    public Page getPageOf(AbstractObject object)
+    {
+        return getPageAt(getCenter(object));
+    }
+
+    // the page of the BasicObject with the id, or DELETED
+    public int getPageIndexOfId(int id)
+    {
+        return id >= 0 && id < idCount ? idTable[id] : DELETED;
+    }
+
+    public void setPageIndexOfId(int id, int pageIndex)
+    {
+        idTable[id] = pageIndex;
+    }
+
+    public int allocateId()
+    {
+        if (idCount == idTable.length)
+        {
+            idTable = Arrays.copyOf(idTable, idCount * 2);
+        }
+        idTable[idCount] = DELETED;
+
+        return idCount++;
+    }
+
+    public long getNextZIndex()
+    {
+        return nextZIndex;
+    }
+
+    public Path getPath()
+    {
+        return path;
+    }
+
+    // may be called from any thread, as long as the page is not spilled at the same time
+    public byte[] readPageBlock(Page page) throws IOException
+    {
+        if (page.length == 0)
+        {
+            return new byte[0];
+        }
+
+        FileChannel source;
+        long offset;
+        int length;
+        synchronized (this)
+        {
+            source = page.spilled ? spillChannel : channel;
+            offset = page.offset;
+            length = page.length;
+        }
+
+        return readFully(source, offset, length).array();
+    }
+
+    public PageContents readPage(Page page) throws IOException
+    {
+        return decodePage(readPageBlock(page));
+    }
+
+    /*
+    Replaces the block of a page that has been changed while the file is open. The new block is appended to the
+    spill file, unless it equals the current block, in which case nothing needs to be written.
+     */
+    public void updatePage(Page page, byte[] block, Rectangle bounds, int elementCount, int[] dependencies) throws IOException
+    {
+        page.bounds = new Rectangle(bounds);
+        page.elementCount = elementCount;
+        page.dependencies = dependencies.clone();
+
+        if (Arrays.equals(block, readPageBlock(page)))
+        {
+            return;
+        }
+
+        synchronized (this)
+        {
+            if (spillChannel == null)
+            {
+                spillPath = Files.createTempFile("umleditor-pages", ".spill");
+                spillPath.toFile().deleteOnExit();
+                spillChannel = FileChannel.open(spillPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+
+            long offset = spillChannel.size();
+            ByteBuffer buffer = ByteBuffer.wrap(block);
+            while (buffer.hasRemaining())
+            {
+                spillChannel.write(buffer, offset + buffer.position());
+            }
+
+            page.spilled = true;
+            page.offset = offset;
+            page.length = block.length;
+        }
+    }
+
+    // grows the bounds of a page by an element that has just been placed on it
+    public void extendBounds(Page page, Rectangle area)
+    {
+        if (page.bounds.isEmpty())
+        {
+            page.bounds = new Rectangle(area);
+        }
+        else
+        {
+            page.bounds.add(area);
+        }
+    }
+
+    public void setNextZIndex(long nextZIndex)
+    {
+        this.nextZIndex = Math.max(this.nextZIndex, nextZIndex);
+    }
+
+    /*
+    Writes all pages with their current blocks to the target, which may be the file itself. The file is written
+    to a temporary file next to the target first, so a failure never leaves a half-written diagram behind.
+    Afterwards this PagedDiagramFile must not be used any more, the saved file has to be opened again.
+     */
+    public void saveAs(Path target) throws IOException
+    {
+        Path temporary = Files.createTempFile(target.toAbsolutePath().getParent(), "umleditor", ".tmp");
+
+        try
+        {
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                long position = HEADER_SIZE;
+                long[] offsets = new long[pages.size()];
+                for (Page page : pages)
+                {
+                    byte[] block = readPageBlock(page);
+                    offsets[page.index] = position;
+                    position += writeFully(out, ByteBuffer.wrap(block), position);
+                }
+
+                writeDirectory(out, position, offsets);
+            }
+
+            close();
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void writeDirectory(FileChannel out, long directoryOffset, long[] offsets) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream directory = new DataOutputStream(bytes);
+        for (Page page : pages)
+        {
+            directory.writeInt(page.cellX);
+            directory.writeInt(page.cellY);
+            directory.writeInt(page.bounds.x);
+            directory.writeInt(page.bounds.y);
+            directory.writeInt(page.bounds.width);
+            directory.writeInt(page.bounds.height);
+            directory.writeLong(offsets[page.index]);
+            directory.writeInt(page.length);
+            directory.writeInt(page.elementCount);
+            directory.writeInt(page.dependencies.length);
+            for (int dependency : page.dependencies)
+            {
+                directory.writeInt(dependency);
+            }
+        }
+        for (int id = 0; id < idCount; id++)
+        {
+            directory.writeInt(idTable[id]);
+        }
+        writeFully(out, ByteBuffer.wrap(bytes.toByteArray()), directoryOffset);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(PAGE_SIZE).putInt(pages.size()).putInt(idCount).putInt(0).putLong(directoryOffset).putLong(nextZIndex);
+        writeFully(out, header.flip(), 0);
+    }
+
+    private static int writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException
+    {
+        int length = buffer.remaining();
+
+        while (buffer.hasRemaining())
+        {
+            out.write(buffer, position + length - buffer.remaining());
+        }
+
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+
+        if (spillChannel != null)
+        {
+            spillChannel.close();
+            Files.deleteIfExists(spillPath);
+        }
+    }
+
+    // ==================== page blocks ====================
+
+    /*
+    Encodes the block of a page. objects are the top-level AbstractObjects, lines the top-level ConnectionLines
+    whose BasicObjects are loaded and pendingLines the ones whose end is not, all with their z-indices.
+     */
+    public static byte[] encodePage(List<Placed> objects, List<Placed> lines, List<LineRecord> pendingLines, ToIntFunction<BasicObject> ids)
+    {
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeInt(objects.size());
+            for (Placed placed : objects)
+            {
+                out.writeLong(placed.zIndex());
+                writeObject(out, (AbstractObject) placed.element(), ids);
+            }
+
+            out.writeInt(lines.size() + pendingLines.size());
+            for (Placed placed : lines)
+            {
+                out.writeLong(placed.zIndex());
+                writeLine(out, (ConnectionLine) placed.element(), ids);
+            }
+            for (LineRecord line : pendingLines)
+            {
+                out.writeLong(line.zIndex);
+                writeLine(out, line.kind, line.startId, line.startPort, line.endId, line.endPort);
+            }
+
+            return bytes.toByteArray();
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException(e);  // a ByteArrayOutputStream does not throw
+        }
+    }
+
+    private static void writeObject(DataOutputStream out, AbstractObject object, ToIntFunction<BasicObject> ids) throws IOException
+    {
+        out.writeByte(ElementKind.of(object).ordinal());
+        out.writeInt(object.getUnselectedTopLeftCorner().x);
+        out.writeInt(object.getUnselectedTopLeftCorner().y);
+        writeString(out, object.getName());
+
+        if (object instanceof BasicObject basicObject)
+        {
+            out.writeInt(ids.applyAsInt(basicObject));
+        }
+        else  // CompositeObject
+        {
+            out.writeInt(object.getUnselectedWidth());
+            out.writeInt(object.getUnselectedHeight());
+
+            List<ToolElement> members = object.getMembers().first();
+            out.writeInt(object.getMembers().second().size());
+            for (int position = 0; position < members.size(); position++)
+            {
+                if (members.get(position) instanceof AbstractObject member)
+                {
+                    out.writeInt(position);
+                    writeObject(out, member, ids);
+                }
+            }
+            out.writeInt(object.getMembers().third().size());
+            for (int position = 0; position < members.size(); position++)
+            {
+                if (members.get(position) instanceof ConnectionLine member)
+                {
+                    out.writeInt(position);
+                    writeLine(out, member, ids);
+                }
+            }
+        }
+    }
+
+    private static void writeLine(DataOutputStream out, ConnectionLine line, ToIntFunction<BasicObject> ids) throws IOException
+    {
+        LineRecord record = LineRecord.of(line, 0, ids);
+        writeLine(out, record.kind, record.startId, record.startPort, record.endId, record.endPort);
+    }
+
+    private static void writeLine(DataOutputStream out, ElementKind kind, int startId, int startPort, int endId, int endPort) throws IOException
+    {
+        out.writeByte(kind.ordinal());
+        out.writeInt(startId);
+        out.writeByte(startPort);
+        out.writeInt(endId);
+        out.writeByte(endPort);
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException
+    {
+        if (string == null)
+        {
+            out.writeInt(-1);
+        }
+        else
+        {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    // decodes a page block, which does not touch anything but the new elements and may therefore run on any thread
+    public static PageContents decodePage(byte[] block) throws IOException
+    {
+        ArrayList<Placed> objects = new ArrayList<>();
+        HashMap<Integer, BasicObject> objectsById = new HashMap<>();
+        ArrayList<LineRecord> lines = new ArrayList<>();
+
+        if (block.length == 0)
+        {
+            return new PageContents(objects, objectsById, lines);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(block));
+        int objectCount = in.readInt();
+        for (int i = 0; i < objectCount; i++)
+        {
+            long zIndex = in.readLong();
+            objects.add(new Placed(readObject(in, objectsById), zIndex));
+        }
+
+        int lineCount = in.readInt();
+        for (int i = 0; i < lineCount; i++)
+        {
+            long zIndex = in.readLong();
+            lines.add(readLine(in, zIndex));
+        }
+
+        return new PageContents(objects, objectsById, lines);
+    }
+
+    private static AbstractObject readObject(DataInputStream in, HashMap<Integer, BasicObject> objectsById) throws IOException
+    {
+        ElementKind kind = ElementKind.of(in.readUnsignedByte());
+        Point unselectedTopLeftCorner = new Point(in.readInt(), in.readInt());
+        String name = readString(in);
+        AbstractObject object;
+
+        if (kind.isBasicObject())
+        {
+            BasicObject basicObject = kind.createBasicObject(unselectedTopLeftCorner);
+            objectsById.put(in.readInt(), basicObject);
+            object = basicObject;
+        }
+        else if (kind == ElementKind.COMPOSITE)
+        {
+            int width = in.readInt(), height = in.readInt();
+            ArrayList<Placed> members = new ArrayList<>();
+
+            int objectCount = in.readInt();
+            for (int i = 0; i < objectCount; i++)
+            {
+                int position = in.readInt();
+                members.add(new Placed(readObject(in, objectsById), position));
+            }
+
+            // both ends of a member line are nested inside the CompositeObject
+            int lineCount = in.readInt();
+            for (int i = 0; i < lineCount; i++)
+            {
+                int position = in.readInt();
+                LineRecord line = readLine(in, position);
+                BasicObject start = objectsById.get(line.startId), end = objectsById.get(line.endId);
+                if (start == null || end == null)
+                {
+                    throw new IOException("a member line of a composite refers to an object outside of it");
+                }
+                members.add(new Placed(line.create(start, end), position));
+            }
+
+            members.sort(Comparator.comparingLong(Placed::zIndex));
+            ArrayList<ToolElement> membersInDrawingOrder = new ArrayList<>(members.size());
+            for (Placed member : members)
+            {
+                membersInDrawingOrder.add(member.element());
+            }
+            if (membersInDrawingOrder.isEmpty())
+            {
+                throw new IOException("a composite without members");
+            }
+
+            object = ElementKind.createComposite(unselectedTopLeftCorner, width, height, membersInDrawingOrder);
+        }
+        else
+        {
+            throw new IOException("a line where an object is expected");
+        }
+
+        if (name != null)
+        {
+            object.setName(name);
+        }
+
+        return object;
+    }
+
+    private static LineRecord readLine(DataInputStream in, long zIndex) throws IOException
+    {
+        ElementKind kind = ElementKind.of(in.readUnsignedByte());
+        if (!kind.isLine())
+        {
+            throw new IOException("an object where a line is expected");
+        }
+
+        return new LineRecord(kind, zIndex, in.readInt(), in.readUnsignedByte(), in.readInt(), in.readUnsignedByte());
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+
+        if (length < 0)
+        {
+            return null;
+        }
+        // the page block is read from memory, so a length beyond its end can only come from a corrupt file and must not be allocated
+        if (length > in.available())
+        {
+            throw new IOException("corrupt paged UML diagram file");
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ==================== whole diagrams ====================
+
+    // a top-level object belongs to the page of the cell that contains its center
+    private static Point getCenter(AbstractObject object)
+    {
+        Rectangle bounds = object.getBounds();
+
+        return new Point((int) bounds.getCenterX(), (int) bounds.getCenterY());
+    }
+
+    // writes a whole diagram, given as its top-level elements in painting order, as a new paged file
+    public static void write(Path path, List<ToolElement> elements) throws IOException
+    {
+        Files.deleteIfExists(path);
+        Files.createFile(path);
+
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE))
+        {
+            // assign the ids and the pages
+            IdentityHashMap<BasicObject, Integer> ids = new IdentityHashMap<>();
+            IdentityHashMap<BasicObject, Long> cellOfObject = new IdentityHashMap<>();
+            LinkedHashMap<Long, ArrayList<Placed>> objectsByCell = new LinkedHashMap<>(), linesByCell = new LinkedHashMap<>();
+            for (int zIndex = 0; zIndex < elements.size(); zIndex++)
+            {
+                if (elements.get(zIndex) instanceof AbstractObject object)
+                {
+                    Point center = getCenter(object);
+                    long cell = cellKey(Math.floorDiv(center.x, PAGE_SIZE), Math.floorDiv(center.y, PAGE_SIZE));
+                    objectsByCell.computeIfAbsent(cell, key -> new ArrayList<>()).add(new Placed(object, zIndex));
+                    assignIds(object, cell, ids, cellOfObject);
+                }
+            }
+            for (int zIndex = 0; zIndex < elements.size(); zIndex++)
+            {
+                if (elements.get(zIndex) instanceof ConnectionLine line)
+                {
+                    linesByCell.computeIfAbsent(cellOfObject.get(line.getStartBasicObject()), key -> new ArrayList<>()).add(new Placed(line, zIndex));
+                }
+            }
+
+            HashMap<Long, Integer> pageOfCell = new HashMap<>();
+            for (long cell : objectsByCell.keySet())
+            {
+                pageOfCell.put(cell, pageOfCell.size());
+            }
+
+            PagedDiagramFile file = new PagedDiagramFile(path, null);
+            file.idCount = ids.size();
+            file.idTable = new int[Math.max(16, ids.size())];
+            for (Map.Entry<BasicObject, Integer> entry : ids.entrySet())
+            {
+                file.idTable[entry.getValue()] = pageOfCell.get(cellOfObject.get(entry.getKey()));
+            }
+            file.nextZIndex = elements.size();
+
+            long position = HEADER_SIZE;
+            long[] offsets = new long[pageOfCell.size()];
+            for (Map.Entry<Long, ArrayList<Placed>> entry : objectsByCell.entrySet())
+            {
+                List<Placed> objects = entry.getValue(), lines = linesByCell.getOrDefault(entry.getKey(), new ArrayList<>());
+                byte[] block = encodePage(objects, lines, List.of(), ids::get);
+
+                Rectangle bounds = new Rectangle(0, 0, -1, -1);
+                for (Placed placed : objects)
+                {
+                    bounds.add(placed.element().getBounds());
+                }
+                java.util.TreeSet<Integer> dependencies = new java.util.TreeSet<>();
+                for (Placed placed : lines)
+                {
+                    bounds.add(placed.element().getBounds());
+                    dependencies.add(pageOfCell.get(cellOfObject.get(((ConnectionLine) placed.element()).getEndBasicObject())));
+                }
+                int index = pageOfCell.get(entry.getKey());
+                dependencies.remove(index);
+
+                Page page = new Page(index, (int) (entry.getKey() >> 32), (int) (long) entry.getKey(), bounds.isEmpty() ? new Rectangle() : bounds,
+                        objects.size() + lines.size(), dependencies.stream().mapToInt(Integer::intValue).toArray(), position, block.length);
+                file.pages.add(page);
+                offsets[index] = position;
+                position += writeFully(out, ByteBuffer.wrap(block), position);
+            }
+
+            file.writeDirectory(out, position, offsets);
+        }
+    }
+
+    private static void assignIds(AbstractObject object, long cell, IdentityHashMap<BasicObject, Integer> ids, IdentityHashMap<BasicObject, Long> cellOfObject)
+    {
+        if (object instanceof BasicObject basicObject)
+        {
+            ids.put(basicObject, ids.size());
+            cellOfObject.put(basicObject, cell);
+        }
+        else
+        {
+            for (AbstractObject member : object.getMembers().second())
+            {
+                assignIds(member, cell, ids, cellOfObject);
+            }
+        }
+    }
+
+    // reads a whole paged file at once, returning the top-level elements in painting order
+    public static List<ToolElement> read(Path path) throws IOException
+    {
+        try (PagedDiagramFile file = open(path))
+        {
+            ArrayList<Placed> elements = new ArrayList<>();
+            HashMap<Integer, BasicObject> objectsById = new HashMap<>();
+            ArrayList<LineRecord> lines = new ArrayList<>();
+
+            for (Page page : file.pages)
+            {
+                PageContents contents = file.readPage(page);
+                elements.addAll(contents.objects());
+                objectsById.putAll(contents.objectsById());
+                lines.addAll(contents.lines());
+            }
+
+            for (LineRecord line : lines)
+            {
+                BasicObject start = objectsById.get(line.startId), end = objectsById.get(line.endId);
+                if (start != null && end != null)  // a line to a deleted object is dropped
+                {
+                    elements.add(new Placed(line.create(start, end), line.zIndex));
+                }
+            }
+
+            elements.sort(Comparator.comparingLong(Placed::zIndex));
+            ArrayList<ToolElement> elementsInOrder = new ArrayList<>(elements.size());
+            for (Placed placed : elements)
+            {
+                elementsInOrder.add(placed.element());
+            }
+
+            return elementsInOrder;
+        }
+    }
+}
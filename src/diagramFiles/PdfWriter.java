@@ -0,0 +1,285 @@
+package diagramFiles;
+
+import java.awt.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.TreeSet;
+
+/**
+ * Writes a single-page PDF document element by element.
+ *
+ * <p>The page content is one stream that is written while the elements are passed in. Its length, the fonts
+ * and the transparency states it uses are only known at the end, so they are written after the stream as
+ * objects of their own that the page refers to. Since the writer only writes ASCII, the offsets of the objects
+ * are the numbers of characters written before them.</p>
+ *
+ * <p>The text is set in the standard fonts every PDF reader provides (Times, Helvetica and Courier), so
+ * nothing has to be embedded, but only the characters of the WinAnsi encoding can be shown.</p>
+ */
+class PdfWriter extends VectorWriter
+{
+    // the objects of the document, written in this order
+    private static final int CATALOG = 1, PAGES = 2, PAGE = 3, CONTENTS = 4, LENGTH = 5, RESOURCES = 6;
+    private static final float MAX_PAGE_SIZE = 14400;  // the largest page a PDF reader has to support, in points
+    private static final double KAPPA = 0.5522847498;  // the distance of the control points of a Bezier curve approximating a quarter of a circle
+    private static final String[] FONT_NAMES = {"Times-Roman", "Times-Bold", "Times-Italic", "Times-BoldItalic", "Helvetica", "Helvetica-Bold", "Helvetica-Oblique", "Helvetica-BoldOblique", "Courier", "Courier-Bold", "Courier-Oblique", "Courier-BoldOblique"};
+
+    private final long[] offsets = new long[RESOURCES + 1];
+    private final long contentStart;
+    private final CharsetEncoder encoder = Charset.forName("windows-1252").newEncoder().onUnmappableCharacter(CodingErrorAction.REPLACE).onMalformedInput(CodingErrorAction.REPLACE);
+    private final LinkedHashMap<String, String> fonts = new LinkedHashMap<>();  // the resource name of each font used
+    private final TreeSet<Integer> fillAlphas = new TreeSet<>(), strokeAlphas = new TreeSet<>();
+    private BasicStroke pageStroke = new BasicStroke(1f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10f);  // the stroke in the graphics state of the page, the initial one of PDF
+    private int fillAlpha = 255, strokeAlpha = 255;
+
+    // area is the part of the canvas the page shows, in canvas coordinates
+    PdfWriter(OutputStream out, Rectangle area)
+    {
+        super(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII), 1 << 16));
+
+        // one point per unit of the canvas, unless the page would become too large
+        double scale = Math.min(1, MAX_PAGE_SIZE / Math.max(area.width, area.height));
+        double pageWidth = area.width * scale, pageHeight = area.height * scale;
+
+        write("%PDF-1.4\n");
+        beginObject(CATALOG).write("<< /Type /Catalog /Pages ").write(reference(PAGES)).write(" >>\nendobj\n");
+        beginObject(PAGES).write("<< /Type /Pages /Kids [").write(reference(PAGE)).write("] /Count 1 >>\nendobj\n");
+        beginObject(PAGE).write("<< /Type /Page /Parent ").write(reference(PAGES)).write(" /MediaBox [0 0 ").number(pageWidth).write(' ').number(pageHeight);
+        write("] /Resources ").write(reference(RESOURCES)).write(" /Contents ").write(reference(CONTENTS)).write(" >>\nendobj\n");
+        beginObject(CONTENTS).write("<< /Length ").write(reference(LENGTH)).write(" >>\nstream\n");
+        contentStart = getPosition();
+
+        // the y-axis of the canvas points down, the one of PDF up
+        number(scale).write(" 0 0 ").number(-scale).write(' ').number(-area.x * scale).write(' ').number(pageHeight + area.y * scale).write(" cm\n");
+    }
+
+    @Override
+    void finish() throws IOException
+    {
+        long contentLength = getPosition() - contentStart;
+        write("endstream\nendobj\n");
+        beginObject(LENGTH).write(Long.toString(contentLength)).write("\nendobj\n");
+
+        beginObject(RESOURCES).write("<< /Font <<");
+        fonts.forEach((font, name) -> write(" /").write(name).write(" << /Type /Font /Subtype /Type1 /BaseFont /").write(font).write(" /Encoding /WinAnsiEncoding >>"));
+        write(" >> /ExtGState <<");
+        fillAlphas.forEach(alpha -> write(" /fa").write(alpha.toString()).write(" << /ca ").number(alpha / 255.).write(" >>"));
+        strokeAlphas.forEach(alpha -> write(" /sa").write(alpha.toString()).write(" << /CA ").number(alpha / 255.).write(" >>"));
+        write(" >> >>\nendobj\n");
+
+        long xrefOffset = getPosition();
+        write("xref\n0 ").write(Integer.toString(offsets.length)).write("\n0000000000 65535 f \n");
+        for (int object = 1; object < offsets.length; object++)
+        {
+            String offset = Long.toString(offsets[object]);
+            write("0000000000".substring(offset.length())).write(offset).write(" 00000 n \n");
+        }
+        write("trailer\n<< /Size ").write(Integer.toString(offsets.length)).write(" /Root ").write(reference(CATALOG)).write(" >>\nstartxref\n");
+        write(Long.toString(xrefOffset)).write("\n%%EOF\n");
+        flush();
+    }
+
+    @Override
+    public void rectangle(double x, double y, double width, double height, Color fill, Color stroke)
+    {
+        beginPath(fill, stroke);
+        number(x).write(' ').number(y).write(' ').number(width).write(' ').number(height).write(" re ");
+        paint(fill, stroke);
+    }
+
+    @Override
+    public void ellipse(double x, double y, double width, double height, Color fill, Color stroke)
+    {
+        beginPath(fill, stroke);
+        double radiusX = width / 2, radiusY = height / 2, centerX = x + radiusX, centerY = y + radiusY;
+        double controlX = radiusX * KAPPA, controlY = radiusY * KAPPA;
+        number(x + width).write(' ').number(centerY).write(" m\n");
+        curve(x + width, centerY + controlY, centerX + controlX, y + height, centerX, y + height);
+        curve(centerX - controlX, y + height, x, centerY + controlY, x, centerY);
+        curve(x, centerY - controlY, centerX - controlX, y, centerX, y);
+        curve(centerX + controlX, y, x + width, centerY - controlY, x + width, centerY);
+        paint(fill, stroke);
+    }
+
+    @Override
+    public void roundRectangle(double x, double y, double width, double height, double arcSize, Color stroke)
+    {
+        beginPath(null, stroke);
+        double radius = Math.min(arcSize / 2, Math.min(width, height) / 2), control = radius * (1 - KAPPA);
+        number(x + radius).write(' ').number(y).write(" m\n");
+        line(x + width - radius, y);
+        curve(x + width - control, y, x + width, y + control, x + width, y + radius);
+        line(x + width, y + height - radius);
+        curve(x + width, y + height - control, x + width - control, y + height, x + width - radius, y + height);
+        line(x + radius, y + height);
+        curve(x + control, y + height, x, y + height - control, x, y + height - radius);
+        line(x, y + radius);
+        curve(x, y + control, x + control, y, x + radius, y);
+        write("h ");
+        paint(null, stroke);
+    }
+
+    @Override
+    public void polyline(double[] vertices, boolean closed, Color stroke)
+    {
+        beginPath(null, stroke);
+        number(vertices[0]).write(' ').number(vertices[1]).write(" m\n");
+        for (int i = 2; i < vertices.length; i += 2)
+        {
+            line(vertices[i], vertices[i + 1]);
+        }
+        if (closed)
+        {
+            write("h ");
+        }
+        paint(null, stroke);
+    }
+
+    @Override
+    public void text(String text, double x, double y, Font font, Color color)
+    {
+        String fontName = getFontName(font);
+        String resourceName = fonts.computeIfAbsent(fontName, name -> "F" + (fonts.size() + 1));
+
+        setFillAlpha(color.getAlpha());
+        color(color).write(" rg\n");
+        // the text matrix turns the text upright again in the flipped coordinate system of the page
+        write("BT /").write(resourceName).write(' ').number(font.getSize2D()).write(" Tf 1 0 0 -1 ").number(x).write(' ').number(y).write(" Tm (");
+        try
+        {
+            ByteBuffer bytes = encoder.reset().encode(CharBuffer.wrap(text));  // an unknown character becomes a '?'
+            while (bytes.hasRemaining())
+            {
+                int b = bytes.get() & 0xFF;
+                if (b == '(' || b == ')' || b == '\\')
+                {
+                    write('\\').write((char) b);
+                }
+                else if (b < ' ' || b > '~')
+                {
+                    write('\\').write(Integer.toOctalString(0x200 | b).substring(1));  // three octal digits
+                }
+                else
+                {
+                    write((char) b);
+                }
+            }
+        }
+        catch (CharacterCodingException e)
+        {
+            throw new IllegalStateException(e);  // cannot happen, since the encoder replaces every unknown character
+        }
+        write(") Tj ET\n");
+    }
+
+    // sets the colors, transparency and stroke of a shape in the graphics state
+    private void beginPath(Color fill, Color stroke)
+    {
+        if (fill != null)
+        {
+            setFillAlpha(fill.getAlpha());
+            color(fill).write(" rg\n");
+        }
+        if (stroke != null)
+        {
+            setStrokeAlpha(stroke.getAlpha());
+            color(stroke).write(" RG\n");
+            setPageStroke();
+        }
+    }
+
+    private void paint(Color fill, Color stroke)
+    {
+        write(fill != null ? stroke != null ? "B\n" : "f\n" : stroke != null ? "S\n" : "n\n");
+    }
+
+    private void setPageStroke()
+    {
+        if (stroke.equals(pageStroke))
+        {
+            return;
+        }
+
+        // the numbers of the caps and joins of a BasicStroke are the same as in PDF
+        number(stroke.getLineWidth()).write(" w ").write(Integer.toString(stroke.getEndCap())).write(" J ").write(Integer.toString(stroke.getLineJoin())).write(" j ").number(stroke.getMiterLimit()).write(" M [");
+        if (stroke.getDashArray() != null)
+        {
+            for (float dash : stroke.getDashArray())
+            {
+                write(' ').number(dash);
+            }
+        }
+        write(" ] ").number(stroke.getDashPhase()).write(" d\n");
+        pageStroke = stroke;
+    }
+
+    private void setFillAlpha(int alpha)
+    {
+        if (alpha != fillAlpha)
+        {
+            fillAlphas.add(alpha);
+            write("/fa").write(Integer.toString(alpha)).write(" gs\n");
+            fillAlpha = alpha;
+        }
+    }
+
+    private void setStrokeAlpha(int alpha)
+    {
+        if (alpha != strokeAlpha)
+        {
+            strokeAlphas.add(alpha);
+            write("/sa").write(Integer.toString(alpha)).write(" gs\n");
+            strokeAlpha = alpha;
+        }
+    }
+
+    private VectorWriter color(Color color)
+    {
+        return number(color.getRed() / 255.).write(' ').number(color.getGreen() / 255.).write(' ').number(color.getBlue() / 255.);
+    }
+
+    private void line(double x, double y)
+    {
+        number(x).write(' ').number(y).write(" l\n");
+    }
+
+    private void curve(double x1, double y1, double x2, double y2, double x3, double y3)
+    {
+        number(x1).write(' ').number(y1).write(' ').number(x2).write(' ').number(y2).write(' ').number(x3).write(' ').number(y3).write(" c\n");
+    }
+
+    private VectorWriter beginObject(int object)
+    {
+        offsets[object] = getPosition();
+        write(Integer.toString(object)).write(" 0 obj\n");
+
+        return this;
+    }
+
+    private static String reference(int object)
+    {
+        return object + " 0 R";
+    }
+
+    private static String getFontName(Font font)
+    {
+        int family = switch (font.getFamily())
+        {
+            case Font.SERIF -> 0;
+            case Font.MONOSPACED, Font.DIALOG_INPUT -> 8;
+            default -> 4;
+        };
+
+        return FONT_NAMES[family + (font.isBold() ? 1 : 0) + (font.isItalic() ? 2 : 0)];
+    }
+}
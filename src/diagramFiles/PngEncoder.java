@@ -0,0 +1,256 @@
+package diagramFiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A streaming encoder of 8-bit RGB PNG images of any size.
+ *
+ * <p>The image is passed in as bands of consecutive rows from top to bottom, so only the bands in flight have to
+ * be kept in memory. Each band is filtered and deflated on its own by {@link #compress}, which may run on any
+ * thread, e.g. while the next bands are still being rendered. The image data of a PNG file is a single zlib
+ * stream: every band but the last ends with a sync flush, which leaves the deflate stream open at a byte
+ * boundary, so the compressed bands are simply written one after another. The Adler-32 checksum of the stream
+ * is combined from the checksums of the bands.</p>
+ */
+public final class PngEncoder
+{
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int CHUNK_SIZE = 1 << 20;  // the largest IDAT chunk written
+    private static final int ADLER_BASE = 65521;
+    private static final byte FILTER_SUB = 1;  // each byte is stored as the difference to the same channel of the pixel to the left
+
+    /**
+     * A band of rows that has been filtered and deflated by {@link #compress}.
+     */
+    public static final class CompressedRows
+    {
+        private final byte[] data;
+        private final int length;
+        private final long adler, rawLength;
+        private final int rows;
+        private final boolean last;
+
+        private CompressedRows(byte[] data, int length, long adler, long rawLength, int rows, boolean last)
+        {
+            this.data = data;
+            this.length = length;
+            this.adler = adler;
+            this.rawLength = rawLength;
+            this.rows = rows;
+            this.last = last;
+        }
+
+        public int getRows()
+        {
+            return rows;
+        }
+
+        // the size of the deflated band, in bytes
+        public int getLength()
+        {
+            return length;
+        }
+    }
+
+    private final DataOutputStream out;
+    private final int width, height;
+    private final CRC32 crc = new CRC32();
+    private int writtenRows = 0;
+    private long adler = 1;  // the Adler-32 checksum of no data
+    private boolean zlibHeaderWritten = false;
+
+    // writes the PNG signature and the header of an image of the given size
+    public PngEncoder(OutputStream out, int width, int height) throws IOException
+    {
+        if (width <= 0 || height <= 0 || (long) width * 3 + 1 > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("invalid image size " + width + "x" + height);
+        }
+
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+
+        this.out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream headerData = new DataOutputStream(header);
+        headerData.writeInt(width);
+        headerData.writeInt(height);
+        headerData.writeByte(8);  // bit depth
+        headerData.writeByte(2);  // color type RGB
+        headerData.writeByte(0);  // compression method deflate
+        headerData.writeByte(0);  // filter method adaptive
+        headerData.writeByte(0);  // no interlace
+        writeChunk("IHDR", header.toByteArray(), 0, header.size());
+    }
+
+    /*
+    Filters and deflates the rows of a band, given as pixels 0xRRGGBB in row-major order. Nothing is shared
+    between the bands, so any number of them can be compressed at the same time; last must be true exactly for
+    the band that contains the bottom row of the image.
+     */
+    public static CompressedRows compress(int[] pixels, int width, int rows, boolean last)
+    {
+        byte[] row = new byte[1 + 3 * width];
+        row[0] = FILTER_SUB;
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);  // the zlib header and checksum are written by the PngEncoder
+        Adler32 checksum = new Adler32();
+        byte[] buffer = new byte[Math.max(1 << 16, row.length / 4)];
+        byte[] data = new byte[Math.max(1 << 12, row.length * rows / 16)];
+        int length = 0;
+
+        try
+        {
+            for (int y = 0; y < rows; y++)
+            {
+                int previousR = 0, previousG = 0, previousB = 0;
+                for (int x = 0, offset = y * width, i = 1; x < width; x++)
+                {
+                    int pixel = pixels[offset + x];
+                    int r = (pixel >> 16) & 0xFF, g = (pixel >> 8) & 0xFF, b = pixel & 0xFF;
+                    row[i++] = (byte) (r - previousR);
+                    row[i++] = (byte) (g - previousG);
+                    row[i++] = (byte) (b - previousB);
+                    previousR = r;
+                    previousG = g;
+                    previousB = b;
+                }
+                checksum.update(row);
+
+                deflater.setInput(row);
+                while (!deflater.needsInput())
+                {
+                    int count = deflater.deflate(buffer);
+                    data = append(data, length, buffer, count);
+                    length += count;
+                }
+            }
+
+            if (last)
+            {
+                deflater.finish();
+                while (!deflater.finished())
+                {
+                    int count = deflater.deflate(buffer);
+                    data = append(data, length, buffer, count);
+                    length += count;
+                }
+            }
+            else
+            {
+                int count;
+                do
+                {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    data = append(data, length, buffer, count);
+                    length += count;
+                }
+                while (count == buffer.length);
+            }
+        }
+        finally
+        {
+            deflater.end();
+        }
+
+        return new CompressedRows(data, length, checksum.getValue(), (long) row.length * rows, rows, last);
+    }
+
+    private static byte[] append(byte[] data, int length, byte[] bytes, int count)
+    {
+        if (length + count > data.length)
+        {
+            data = Arrays.copyOf(data, Math.max(length + count, data.length * 2));
+        }
+        System.arraycopy(bytes, 0, data, length, count);
+
+        return data;
+    }
+
+    // writes the next band, the bands must be written from top to bottom
+    public void write(CompressedRows rows) throws IOException
+    {
+        if (writtenRows + rows.rows > height || rows.last != (writtenRows + rows.rows == height))
+        {
+            throw new IllegalStateException("the bands do not add up to the height of the image");
+        }
+
+        if (!zlibHeaderWritten)
+        {
+            writeChunk("IDAT", new byte[] {0x78, (byte) 0x9C}, 0, 2);  // deflate with a 32K window and the default compression level
+            zlibHeaderWritten = true;
+        }
+
+        for (int offset = 0; offset < rows.length; offset += CHUNK_SIZE)
+        {
+            writeChunk("IDAT", rows.data, offset, Math.min(CHUNK_SIZE, rows.length - offset));
+        }
+
+        adler = combineAdler(adler, rows.adler, rows.rawLength);
+        writtenRows += rows.rows;
+    }
+
+    // writes the checksum of the image data and the end of the image, after the last band
+    public void finish() throws IOException
+    {
+        if (writtenRows != height)
+        {
+            throw new IllegalStateException("only " + writtenRows + " of " + height + " rows have been written");
+        }
+
+        byte[] checksum = {(byte) (adler >>> 24), (byte) (adler >>> 16), (byte) (adler >>> 8), (byte) adler};
+        writeChunk("IDAT", checksum, 0, checksum.length);
+        writeChunk("IEND", new byte[0], 0, 0);
+        out.flush();
+    }
+
+    private void writeChunk(String type, byte[] data, int offset, int length) throws IOException
+    {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        crc.reset();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, offset, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    // the Adler-32 checksum of the concatenation of two byte sequences, the second of which is length2 bytes long
+    static long combineAdler(long adler1, long adler2, long length2)
+    {
+        long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = remainder * sum1 % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + ADLER_BASE - remainder;
+
+        if (sum1 >= ADLER_BASE)
+        {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE)
+        {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= 2L * ADLER_BASE)
+        {
+            sum2 -= 2L * ADLER_BASE;
+        }
+        if (sum2 >= ADLER_BASE)
+        {
+            sum2 -= ADLER_BASE;
+        }
+
+        return sum1 | (sum2 << 16);
+    }
+}
@@ -0,0 +1,197 @@
+package diagramFiles;
+
+import java.awt.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes an SVG image element by element. The shapes drawn with the same stroke are put into a group that
+ * carries the stroke, so the stroke attributes are written once per change of the stroke instead of once per
+ * shape.
+ */
+class SvgWriter extends VectorWriter
+{
+    private boolean inGroup = false;
+    private BasicStroke groupStroke = null;
+
+    // area is the part of the canvas the image shows, in canvas coordinates
+    SvgWriter(OutputStream out, Rectangle area)
+    {
+        super(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16));
+
+        write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        write("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" xml:space=\"preserve\" width=\"").number(area.width).write("\" height=\"").number(area.height);
+        write("\" viewBox=\"").number(area.x).write(' ').number(area.y).write(' ').number(area.width).write(' ').number(area.height).write("\">\n");
+    }
+
+    @Override
+    void finish() throws IOException
+    {
+        if (inGroup)
+        {
+            write("</g>\n");
+        }
+        write("</svg>\n");
+        flush();
+    }
+
+    @Override
+    public void rectangle(double x, double y, double width, double height, Color fill, Color stroke)
+    {
+        beginShape(stroke != null);
+        write("<rect x=\"").number(x).write("\" y=\"").number(y).write("\" width=\"").number(width).write("\" height=\"").number(height).write('"');
+        paint(fill, stroke);
+    }
+
+    @Override
+    public void ellipse(double x, double y, double width, double height, Color fill, Color stroke)
+    {
+        beginShape(stroke != null);
+        write("<ellipse cx=\"").number(x + width / 2).write("\" cy=\"").number(y + height / 2).write("\" rx=\"").number(width / 2).write("\" ry=\"").number(height / 2).write('"');
+        paint(fill, stroke);
+    }
+
+    @Override
+    public void roundRectangle(double x, double y, double width, double height, double arcSize, Color stroke)
+    {
+        beginShape(true);
+        write("<rect x=\"").number(x).write("\" y=\"").number(y).write("\" width=\"").number(width).write("\" height=\"").number(height);
+        write("\" rx=\"").number(arcSize / 2).write('"');
+        paint(null, stroke);
+    }
+
+    @Override
+    public void polyline(double[] vertices, boolean closed, Color stroke)
+    {
+        beginShape(true);
+        write(closed ? "<polygon points=\"" : "<polyline points=\"");
+        for (int i = 0; i < vertices.length; i += 2)
+        {
+            if (i > 0)
+            {
+                write(' ');
+            }
+            number(vertices[i]).write(',').number(vertices[i + 1]);
+        }
+        write('"');
+        paint(null, stroke);
+    }
+
+    @Override
+    public void text(String text, double x, double y, Font font, Color color)
+    {
+        write("<text x=\"").number(x).write("\" y=\"").number(y).write("\" font-family=\"").write(getFontFamily(font)).write("\" font-size=\"").number(font.getSize2D()).write('"');
+        if (font.isBold())
+        {
+            write(" font-weight=\"bold\"");
+        }
+        if (font.isItalic())
+        {
+            write(" font-style=\"italic\"");
+        }
+        color("fill", color);
+        write('>');
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            switch (c)
+            {
+                case '<' -> write("&lt;");
+                case '>' -> write("&gt;");
+                case '&' -> write("&amp;");
+                default -> write(c < ' ' ? ' ' : c);  // control characters are not allowed in XML 1.0
+            }
+        }
+        write("</text>\n");
+    }
+
+    // a stroked shape is put into a group with the current stroke, a new group is only begun when the stroke has changed
+    private void beginShape(boolean stroked)
+    {
+        if (!stroked || (inGroup && stroke.equals(groupStroke)))
+        {
+            return;
+        }
+
+        if (inGroup)
+        {
+            write("</g>\n");
+        }
+        write("<g stroke-width=\"").number(stroke.getLineWidth()).write("\" stroke-linecap=\"").write(switch (stroke.getEndCap())
+        {
+            case BasicStroke.CAP_BUTT -> "butt";
+            case BasicStroke.CAP_ROUND -> "round";
+            default -> "square";
+        }).write("\" stroke-linejoin=\"").write(switch (stroke.getLineJoin())
+        {
+            case BasicStroke.JOIN_ROUND -> "round";
+            case BasicStroke.JOIN_BEVEL -> "bevel";
+            default -> "miter";
+        }).write("\" stroke-miterlimit=\"").number(stroke.getMiterLimit()).write('"');
+        if (stroke.getDashArray() != null)
+        {
+            write(" stroke-dasharray=\"");
+            float[] dashArray = stroke.getDashArray();
+            for (int i = 0; i < dashArray.length; i++)
+            {
+                if (i > 0)
+                {
+                    write(' ');
+                }
+                number(dashArray[i]);
+            }
+            write("\" stroke-dashoffset=\"").number(stroke.getDashPhase()).write('"');
+        }
+        write(">\n");
+        inGroup = true;
+        groupStroke = stroke;
+    }
+
+    private void paint(Color fill, Color stroke)
+    {
+        if (fill != null)
+        {
+            color("fill", fill);
+        }
+        else
+        {
+            write(" fill=\"none\"");
+        }
+        if (stroke != null)
+        {
+            color("stroke", stroke);
+        }
+        write("/>\n");
+    }
+
+    // the attribute for the color and, if it is translucent, the one for its opacity
+    private void color(String attribute, Color color)
+    {
+        write(' ').write(attribute).write("=\"#");
+        String rgb = Integer.toHexString(color.getRGB() & 0xFFFFFF);
+        for (int i = rgb.length(); i < 6; i++)
+        {
+            write('0');
+        }
+        write(rgb).write('"');
+
+        if (color.getAlpha() != 255)
+        {
+            write(' ').write(attribute).write("-opacity=\"").number(color.getAlpha() / 255.).write('"');
+        }
+    }
+
+    private static String getFontFamily(Font font)
+    {
+        return switch (font.getFamily())
+        {
+            case Font.SERIF -> "serif";
+            case Font.SANS_SERIF, Font.DIALOG -> "sans-serif";
+            case Font.MONOSPACED, Font.DIALOG_INPUT -> "monospace";
+            default -> "'" + font.getFamily().replace("&", "&amp;").replace("'", "&apos;").replace("<", "&lt;").replace("\"", "&quot;") + "', serif";
+        };
+    }
+}
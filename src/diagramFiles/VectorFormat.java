@@ -0,0 +1,95 @@
+package diagramFiles;
+
+import graphics.ToolElement;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * The vector image formats a diagram can be exported to, each identified by its file name extension.
+ * The elements are written one after another in painting order as the primitives they describe by drawVector,
+ * straight to the output, so the memory needed does not depend on the size of the diagram.
+ */
+public enum VectorFormat
+{
+    SVG("SVG image", "svg")
+    {
+        @Override
+        VectorWriter createWriter(OutputStream out, Rectangle area)
+        {
+            return new SvgWriter(out, area);
+        }
+    },
+    PDF("PDF document", "pdf")
+    {
+        @Override
+        VectorWriter createWriter(OutputStream out, Rectangle area)
+        {
+            return new PdfWriter(out, area);
+        }
+    };
+
+    public static final int MARGIN = 20;  // the empty border around the diagram, in canvas coordinates
+    private static final int INTERRUPT_CHECK_INTERVAL = 1024;  // the number of elements written between two checks for a cancellation
+
+    private final String description, extension;
+
+    VectorFormat(String description, String extension)
+    {
+        this.description = description;
+        this.extension = extension;
+    }
+
+    abstract VectorWriter createWriter(OutputStream out, Rectangle area);
+
+    /*
+    Writes the top-level elements, given in painting order, to out, which is not closed. The export is cancelled
+    by interrupting the writing thread, which then throws an InterruptedIOException.
+     */
+    public void write(OutputStream out, List<ToolElement> elements) throws IOException
+    {
+        Rectangle area = null;
+        for (ToolElement element : elements)
+        {
+            area = area == null ? element.getBounds() : area.union(element.getBounds());
+        }
+        if (area == null)
+        {
+            area = new Rectangle(0, 0, 0, 0);
+        }
+        area.grow(MARGIN, MARGIN);
+
+        VectorWriter writer = createWriter(out, area);
+        try
+        {
+            int count = 0;
+            for (ToolElement element : elements)
+            {
+                if (++count % INTERRUPT_CHECK_INTERVAL == 0 && Thread.interrupted())
+                {
+                    throw new InterruptedIOException("the export has been cancelled");
+                }
+                element.drawVector(writer);
+            }
+            writer.finish();
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    public String getDescription()
+    {
+        return description;
+    }
+
+    public String getExtension()
+    {
+        return extension;
+    }
+}
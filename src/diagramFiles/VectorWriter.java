@@ -0,0 +1,100 @@
+package diagramFiles;
+
+import graphics.VectorGraphics;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * The common part of the writers of vector images, which write each primitive straight to the output as it is
+ * passed in, so that nothing but the current stroke is kept in memory. The primitives cannot throw an
+ * IOException, so it is passed up as an UncheckedIOException, which VectorFormat.write unwraps again.
+ */
+abstract class VectorWriter implements VectorGraphics
+{
+    private final Writer out;
+    private long position = 0;  // the number of characters written so far
+    protected BasicStroke stroke = new BasicStroke();
+
+    protected VectorWriter(Writer out)
+    {
+        this.out = out;
+    }
+
+    // writes everything that follows the last primitive and flushes the output, which is not closed
+    abstract void finish() throws IOException;
+
+    @Override
+    public void setStroke(BasicStroke stroke)
+    {
+        this.stroke = stroke;
+    }
+
+    protected final long getPosition()
+    {
+        return position;
+    }
+
+    protected final VectorWriter write(String text)
+    {
+        try
+        {
+            out.write(text);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        position += text.length();
+
+        return this;
+    }
+
+    protected final VectorWriter write(char c)
+    {
+        try
+        {
+            out.write(c);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        position++;
+
+        return this;
+    }
+
+    // a number rounded to three decimals, without an exponent and without trailing zeros
+    protected final VectorWriter number(double value)
+    {
+        long scaled = Math.round(value * 1000);
+        if (scaled < 0)
+        {
+            write('-');
+            scaled = -scaled;
+        }
+        write(Long.toString(scaled / 1000));
+
+        long fraction = scaled % 1000;
+        if (fraction != 0)
+        {
+            String digits = Long.toString(1000 + fraction);  // with leading zeros after the "1"
+            int end = digits.length();
+            while (digits.charAt(end - 1) == '0')
+            {
+                end--;
+            }
+            write('.').write(digits.substring(1, end));
+        }
+
+        return this;
+    }
+
+    protected final void flush() throws IOException
+    {
+        out.flush();
+    }
+}
@@ -1,15 +1,14 @@
 package graphics;
 
 import containers.Triple;
-import umlEditorComponents.Model;
 
 import java.awt.*;
 import java.util.List;
+import java.util.Set;
 
 public abstract class AbstractObject extends ToolElement
 {
     protected final Point unselectedTopLeftCorner;
-    protected Graphics2D savedGraphics2D;
     protected String name = null;
 
     protected AbstractObject(boolean connectable, boolean selected, Point unselectedTopLeftCorner)
@@ -28,83 +27,60 @@ public abstract class AbstractObject extends ToolElement
 
     public abstract Triple<List<ToolElement>, List<AbstractObject>, List<ConnectionLine>> getMembers();  // percolating up
 
+    /**
+     * Returns the ConnectionLines attached to this AbstractObject.
+     * <p>
+     * For a BasicObject these are the lines that start or end at one of its ConnectionPorts.
+     * For a CompositeObject these are the lines attached to any BasicObject nested inside it,
+     * including the lines that are members of the CompositeObject themselves.
+     *
+     * @return An unmodifiable Set of the attached ConnectionLines, whose size is the degree of the AbstractObject.
+     */
+    public abstract Set<ConnectionLine> getConnectionLines();
+
     @Override
-    public void addToRepaintArea(Rectangle repaintArea)
+    public Rectangle getBounds()
     {
-        repaintArea.add(
-                new Rectangle(
-                        getSelectedTopLeftCorner().x,
-                        getSelectedTopLeftCorner().y,
-                        getSelectedWidth(),
-                        getSelectedHeight()
-                )
-        );
+        return new Rectangle(getSelectedTopLeftCorner(), new Dimension(getSelectedWidth(), getSelectedHeight()));
     }
 
+    // the ConnectionPorts of a selected BasicObject and the dashed outline of a selected CompositeObject lie on the edge of the selected bounds
     @Override
-    boolean isContainedInSelectionBox(Rectangle selectionBox)
+    public Rectangle getPaintBounds()
     {
-        return selectionBox.contains(unselectedTopLeftCorner.x, unselectedTopLeftCorner.y, getUnselectedWidth(), getUnselectedHeight());
+        return getBounds();
     }
 
-    // transform the hit position to device space
     @Override
-    protected Rectangle transformHitPosition(Point coordinate, Graphics2D g2d)
+    boolean isContainedInSelectionBox(Rectangle selectionBox)
     {
-        double[] matrix = new double[4];
-        // top-left coordinate of the hit position
-        matrix[0] = coordinate.getX();
-        matrix[1] = coordinate.getY();
-        // bottom-right coordinate of the hit position
-        matrix[2] = matrix[0] + 1;
-        matrix[3] = matrix[1] + 1;
-
-        // transform user coordinates to a virtual device space that approximates the expected resolution of the target device
-        g2d.getTransform().transform(matrix, 0, matrix, 0, 2);
-
-        // set orientation of the rectangle
-        if (matrix[2] - matrix[0] < 0)
-        {
-            double t = matrix[0];
-            matrix[0] = matrix[2];
-            matrix[2] = t;
-        }
-        if (matrix[3] - matrix[1] < 0)
-        {
-            double t = matrix[1];
-            matrix[1] = matrix[3];
-            matrix[3] = t;
-        }
-
-        return new Rectangle((int) matrix[0], (int) matrix[1], (int) (matrix[2] - matrix[0]), (int) (matrix[3] - matrix[1]));
+        return selectionBox.contains(unselectedTopLeftCorner.x, unselectedTopLeftCorner.y, getUnselectedWidth(), getUnselectedHeight());
     }
 
     public int[] translate(int offsetX, int offsetY)
     {
-        // When an AbstractObject is being moved (in the selected state), it must not exceed the boundaries of the Canvas.
+        // When an AbstractObject is being moved (in the selected state), it must not leave the world, which starts at the origin and is unbounded to the right and to the bottom.
         if (getSelectedTopLeftCorner().x + offsetX < 0)  // move left
         {
             offsetX = -getSelectedTopLeftCorner().x;
         }
-        else if (getSelectedTopLeftCorner().x + getSelectedWidth() + offsetX > Model.INSTANCE.getCanvas().getWidth())  // move right
-        {
-            offsetX = Model.INSTANCE.getCanvas().getWidth() - getSelectedTopLeftCorner().x - getSelectedWidth();
-        }
 
         if (getSelectedTopLeftCorner().y + offsetY < 0)  // move up
         {
             offsetY = -getSelectedTopLeftCorner().y;
         }
-        else if (getSelectedTopLeftCorner().y + getSelectedHeight() + offsetY > Model.INSTANCE.getCanvas().getHeight())  // move down
-        {
-            offsetY = Model.INSTANCE.getCanvas().getHeight() - getSelectedTopLeftCorner().y - getSelectedHeight();
-        }
 
-        unselectedTopLeftCorner.translate(offsetX, offsetY);
+        moveBy(offsetX, offsetY);
 
         return new int[] {offsetX, offsetY};
     }
 
+    // moves the AbstractObject by exactly the offset, e.g. to undo a move whose offset has already been kept inside the world by translate
+    public void moveBy(int offsetX, int offsetY)
+    {
+        unselectedTopLeftCorner.translate(offsetX, offsetY);
+    }
+
     public Point getUnselectedTopLeftCorner()
     {
         return unselectedTopLeftCorner.getLocation();
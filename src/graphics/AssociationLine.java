@@ -24,11 +24,8 @@ public class AssociationLine extends ConnectionLine
         Graphics2D g2d = (Graphics2D) g;
 
         // draw a horizontal line from (0, 0) to (length, 0) with an arrowhead that forms a 30-degree angle with the arrow shaft
-        arrowShaft.setLine(0, 0, length, 0);
-        arrowhead.reset();
-        arrowhead.moveTo(length - 8 * Math.sqrt(3), -8);
-        arrowhead.lineTo(length, 0);
-        arrowhead.lineTo(length - 8 * Math.sqrt(3), 8);
+        arrowShaft.setLine(0, 0, getArrowShaftLength(length), 0);
+        setArrowhead(arrowhead, getArrowheadVertices(length), false);
 
         AffineTransform savedTransform = g2d.getTransform();  // get the current transform
         AffineTransform affineTransform = new AffineTransform();
@@ -46,26 +43,30 @@ public class AssociationLine extends ConnectionLine
         {
             g2d.setPaint(Color.ORANGE);
         }
-        g2d.setStroke(new BasicStroke(2f));
+        g2d.setStroke(new BasicStroke(STROKE_WIDTH));
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         // render
         g2d.draw(arrowShaft);
         g2d.draw(arrowhead);
-        if (savedGraphics2D != null)
-        {
-            savedGraphics2D.dispose();
-        }
-        savedGraphics2D = (Graphics2D) g2d.create();
 
         g2d.setTransform(savedTransform);  // restore original transform
     }
 
     @Override
-    public boolean isHit(Point coordinate)
+    protected double getArrowShaftLength(double length)
     {
-        Rectangle coordinateRectangle = transformHitPosition(coordinate, savedGraphics2D);
+        return length;
+    }
 
-        return savedGraphics2D.hit(coordinateRectangle, arrowShaft, false)
-                || savedGraphics2D.hit(coordinateRectangle, arrowhead, false);
+    @Override
+    protected double[] getArrowheadVertices(double length)
+    {
+        return new double[] {length - 8 * Math.sqrt(3), -8, length, 0, length - 8 * Math.sqrt(3), 8};
+    }
+
+    @Override
+    protected boolean isArrowheadClosed()
+    {
+        return false;
     }
 }
\ No newline at end of file
@@ -4,13 +4,15 @@ import containers.Triple;
 
 import java.awt.*;
 import java.awt.font.FontRenderContext;
-import java.awt.font.LineBreakMeasurer;
+import java.awt.font.LineMetrics;
 import java.awt.font.TextAttribute;
 import java.awt.font.TextLayout;
-import java.text.AttributedCharacterIterator;
-import java.text.AttributedString;
+import java.text.Bidi;
+import java.util.Collections;
 import java.util.Hashtable;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public abstract class BasicObject extends AbstractObject
 {
@@ -55,6 +57,11 @@ public abstract class BasicObject extends AbstractObject
             g2d.fill(rectangle);
         }
 
+        private void drawVector(VectorGraphics vg)
+        {
+            vg.rectangle(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight(), Color.DARK_GRAY, null);
+        }
+
         private void translate(int offsetX, int offsetY)
         {
             rectangle.translate(offsetX, offsetY);
@@ -73,7 +80,14 @@ public abstract class BasicObject extends AbstractObject
 
     protected final ConnectionPort[] ports = new ConnectionPort[4];
     protected enum BasicObjectPort {TOP, BOTTOM, LEFT, RIGHT}
+    // the incidence index of the BasicObject, maintained by ConnectionLine's connect and disconnect methods
+    private final LinkedHashSet<ConnectionLine> connectionLines = new LinkedHashSet<>();
     protected static final Hashtable<TextAttribute, Object> attributes = new Hashtable<>();
+    // the line-broken names of all BasicObjects, limited to an estimated 8 MB
+    private static final TextLayoutCache nameLayoutCache = new TextLayoutCache(8L * 1024 * 1024);
+    private TextLayoutCache.Entry nameLayouts;  // the lines of the name as last drawn, dropped by setName
+    // the names in a vector image are broken into lines independently of any screen
+    private static final FontRenderContext VECTOR_FRC = new FontRenderContext(null, true, true);
 
     static
     {
@@ -116,48 +130,49 @@ public abstract class BasicObject extends AbstractObject
     }
 
     @Override
-    public int[] translate(int offsetX, int offsetY)
+    public Set<ConnectionLine> getConnectionLines()
+    {
+        return Collections.unmodifiableSet(connectionLines);
+    }
+
+    void addConnectionLine(ConnectionLine line)
+    {
+        connectionLines.add(line);
+    }
+
+    void removeConnectionLine(ConnectionLine line)
+    {
+        connectionLines.remove(line);
+    }
+
+    @Override
+    public void moveBy(int offsetX, int offsetY)
     {
-        int[] offsets = super.translate(offsetX, offsetY);
+        super.moveBy(offsetX, offsetY);
 
         for (ConnectionPort port : ports)
         {
-            port.translate(offsets[0], offsets[1]);
+            port.translate(offsetX, offsetY);
         }
-
-        return offsets;
     }
 
     protected void drawName(Graphics g)
     {
-        AttributedString attributedName = new AttributedString(name, attributes);
-
         Graphics2D g2d = (Graphics2D) g;
 
-        // create a new LineBreakMeasurer from the paragraph
-        AttributedCharacterIterator paragraph = attributedName.getIterator();
-        int paragraphStart = paragraph.getBeginIndex();  // index of the first character in the paragraph
-        int paragraphEnd = paragraph.getEndIndex();  // index of the first character after the end of the paragraph
-        FontRenderContext frc = g2d.getFontRenderContext();
-        /*
-        LineBreakMeasurer class enables styled text to be broken into lines so that they fit
-        within a particular visual advance. Each line is returned as a TextLayout object,
-        which represents unchangeable, styled character data.
-         */
-        LineBreakMeasurer lineMeasurer = new LineBreakMeasurer(paragraph, frc);  // the LineBreakMeasurer used to line-break the paragraph
-
         // set break width to width of BasicObject
         float breakWidth = (float) getUnselectedWidth();
-        float drawPosY = (float) (unselectedTopLeftCorner.y + ConnectionPort.SIDE_LENGTH / 2);
-        // set position to the index of the first character in the paragraph
-        lineMeasurer.setPosition(paragraphStart);
-
-        // get lines until the entire paragraph has been displayed
-        while (lineMeasurer.getPosition() < paragraphEnd)
+        FontRenderContext frc = g2d.getFontRenderContext();
+        // the lines are only broken again when the name or the FontRenderContext has changed (or the entry has been evicted from the shared cache in the meantime)
+        TextLayoutCache.Entry lines = nameLayouts;
+        if (lines == null || !lines.isFor(name, breakWidth, attributes, frc))
         {
-            // retrieve next layout
-            TextLayout layout = lineMeasurer.nextLayout(breakWidth);
+            lines = nameLayouts = nameLayoutCache.get(name, breakWidth, attributes, frc);
+        }
 
+        float drawPosY = (float) (unselectedTopLeftCorner.y + ConnectionPort.SIDE_LENGTH / 2);
+        for (TextLayout layout : lines.getLines())
+        {
             // compute pen x position (center the name)
             float drawPosX = unselectedTopLeftCorner.x + breakWidth / 2 - layout.getAdvance() / 2;
 
@@ -172,6 +187,48 @@ public abstract class BasicObject extends AbstractObject
         }
     }
 
+    /*
+    The same lines at the same positions as drawName, but each line is passed to the VectorGraphics as its
+    characters, which are found from the character counts of the TextLayouts. Most names fit into a single
+    line; breaking them with a LineBreakMeasurer would take most of the time of a vector export, so such a name
+    is measured with the Font directly, which gives the same advance and metrics as its TextLayout.
+     */
+    protected void drawName(VectorGraphics vg)
+    {
+        float breakWidth = (float) getUnselectedWidth();
+        Font font = Font.getFont(attributes);
+
+        if (font.canDisplayUpTo(name) == -1 && !Bidi.requiresBidi(name.toCharArray(), 0, name.length()) && name.chars().noneMatch(Character::isISOControl))
+        {
+            float advance = (float) font.getStringBounds(name, VECTOR_FRC).getWidth();
+            if (advance <= breakWidth)
+            {
+                LineMetrics metrics = font.getLineMetrics(name, VECTOR_FRC);
+                vg.text(name, unselectedTopLeftCorner.x + breakWidth / 2 - advance / 2, (float) (unselectedTopLeftCorner.y + ConnectionPort.SIDE_LENGTH / 2) + metrics.getAscent(), font, Color.BLACK);
+                return;
+            }
+        }
+
+        TextLayoutCache.Entry lines = nameLayoutCache.get(name, breakWidth, attributes, VECTOR_FRC);
+        float drawPosY = (float) (unselectedTopLeftCorner.y + ConnectionPort.SIDE_LENGTH / 2);
+        int lineStart = 0;
+        for (TextLayout layout : lines.getLines())
+        {
+            float drawPosX = unselectedTopLeftCorner.x + breakWidth / 2 - layout.getAdvance() / 2;
+            drawPosY += layout.getAscent();
+
+            int lineEnd = lineStart + layout.getCharacterCount();
+            String line = name.substring(lineStart, lineEnd).stripTrailing();  // the whitespace at which the line was broken
+            if (!line.isEmpty())
+            {
+                vg.text(line, drawPosX, drawPosY, font, Color.BLACK);
+            }
+            lineStart = lineEnd;
+
+            drawPosY += layout.getDescent() + layout.getLeading();
+        }
+    }
+
     protected void drawPorts(Graphics g)
     {
         for (ConnectionPort port : ports)
@@ -180,6 +237,40 @@ public abstract class BasicObject extends AbstractObject
         }
     }
 
+    protected void drawPorts(VectorGraphics vg)
+    {
+        for (ConnectionPort port : ports)
+        {
+            port.drawVector(vg);
+        }
+    }
+
+    protected abstract Color getFillColor();
+
+    // a plain filled box, the selected state is shown by its color instead of the ConnectionPorts
+    @Override
+    public void drawSimplified(Graphics g)
+    {
+        Graphics2D g2d = (Graphics2D) g;
+
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        g2d.setPaint(selected ? Color.ORANGE : getFillColor());
+        g2d.fillRect(unselectedTopLeftCorner.x, unselectedTopLeftCorner.y, getUnselectedWidth(), getUnselectedHeight());
+    }
+
+    @Override
+    public boolean setName(String name)
+    {
+        nameLayouts = null;
+
+        return super.setName(name);
+    }
+
+    public static TextLayoutCache getNameLayoutCache()
+    {
+        return nameLayoutCache;
+    }
+
     public ConnectionPort[] getPorts()
     {
         return ports;
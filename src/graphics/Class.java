@@ -5,6 +5,7 @@ import java.awt.geom.Line2D;
 
 public class Class extends BasicObject
 {
+    private static final Color FILL_COLOR = new Color(124, 220, 177, 128);
     public static final int UNSELECTED_WIDTH = 100, UNSELECTED_HEIGHT = 120;
     private final Rectangle rectangle = new Rectangle();
     private final Line2D.Double horizontalLine1 = new Line2D.Double(), horizontalLine2 = new Line2D.Double();
@@ -32,17 +33,12 @@ public class Class extends BasicObject
         Graphics2D g2d = (Graphics2D) g;
 
         rectangle.setBounds(unselectedTopLeftCorner.x, unselectedTopLeftCorner.y, UNSELECTED_WIDTH, UNSELECTED_HEIGHT);
-        g2d.setPaint(new Color(124, 220, 177, 128));
+        g2d.setPaint(FILL_COLOR);
         g2d.fill(rectangle);
         g2d.setPaint(Color.BLACK);
         g2d.setStroke(new BasicStroke(2f));
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g2d.draw(rectangle);
-        if (savedGraphics2D != null)
-        {
-            savedGraphics2D.dispose();
-        }
-        savedGraphics2D = (Graphics2D) g2d.create();
 
         horizontalLine1.setLine(unselectedTopLeftCorner.getX(), unselectedTopLeftCorner.getY() + UNSELECTED_HEIGHT / 3., unselectedTopLeftCorner.getX() + UNSELECTED_WIDTH, unselectedTopLeftCorner.getY() + UNSELECTED_HEIGHT / 3.);
         g2d.draw(horizontalLine1);
@@ -60,9 +56,36 @@ public class Class extends BasicObject
         }
     }
 
+    @Override
+    public void drawVector(VectorGraphics vg)
+    {
+        double x = unselectedTopLeftCorner.getX(), y = unselectedTopLeftCorner.getY();
+
+        vg.setStroke(new BasicStroke(2f));
+        vg.rectangle(x, y, UNSELECTED_WIDTH, UNSELECTED_HEIGHT, FILL_COLOR, Color.BLACK);
+        vg.polyline(new double[] {x, y + UNSELECTED_HEIGHT / 3., x + UNSELECTED_WIDTH, y + UNSELECTED_HEIGHT / 3.}, false, Color.BLACK);
+        vg.polyline(new double[] {x, y + UNSELECTED_HEIGHT * 2. / 3., x + UNSELECTED_WIDTH, y + UNSELECTED_HEIGHT * 2. / 3.}, false, Color.BLACK);
+
+        if (name != null && name.length() > 0)
+        {
+            drawName(vg);
+        }
+
+        if (selected)
+        {
+            drawPorts(vg);
+        }
+    }
+
+    @Override
+    protected Color getFillColor()
+    {
+        return FILL_COLOR;
+    }
+
     @Override
     public boolean isHit(Point coordinate)
     {
-        return savedGraphics2D.hit(transformHitPosition(coordinate, savedGraphics2D), rectangle, false);
+        return Geometry.isInRectangle(coordinate.getX(), coordinate.getY(), unselectedTopLeftCorner.getX(), unselectedTopLeftCorner.getY(), UNSELECTED_WIDTH, UNSELECTED_HEIGHT);
     }
 }
\ No newline at end of file
@@ -4,7 +4,10 @@ import containers.Triple;
 
 import java.awt.*;
 import java.awt.geom.RoundRectangle2D;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public class CompositeObject extends AbstractObject
 {
@@ -63,17 +66,30 @@ public class CompositeObject extends AbstractObject
         return new Triple<>(membersInDrawingOrder, objects, lines);
     }
 
+    // The lines are collected from the members on every call, which costs the degree of the CompositeObject.
     @Override
-    public int[] translate(int offsetX, int offsetY)
+    public Set<ConnectionLine> getConnectionLines()
     {
-        int[] offsets = super.translate(offsetX, offsetY);
+        LinkedHashSet<ConnectionLine> connectionLines = new LinkedHashSet<>();
 
         for (AbstractObject object : objects)
         {
-            object.translate(offsets[0], offsets[1]);
+            connectionLines.addAll(object.getConnectionLines());
         }
 
-        return offsets;
+        return Collections.unmodifiableSet(connectionLines);
+    }
+
+    // The members lie inside the CompositeObject, so they stay inside the world whenever the CompositeObject does.
+    @Override
+    public void moveBy(int offsetX, int offsetY)
+    {
+        super.moveBy(offsetX, offsetY);
+
+        for (AbstractObject object : objects)
+        {
+            object.moveBy(offsetX, offsetY);
+        }
     }
 
     @Override
@@ -101,18 +117,61 @@ public class CompositeObject extends AbstractObject
             g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             roundRectangle.setRoundRect(getSelectedTopLeftCorner().getX(), getSelectedTopLeftCorner().getY(), getSelectedWidth(), getSelectedHeight(), 10., 10.);
             g2d.draw(roundRectangle);
-            if (savedGraphics2D != null)
-            {
-                savedGraphics2D.dispose();
-            }
-            savedGraphics2D = (Graphics2D) g2d.create();
         }
     }
 
+    @Override
+    public void drawVector(VectorGraphics vg)
+    {
+        for (ToolElement element : membersInDrawingOrder)
+        {
+            element.drawVector(vg);
+        }
+
+        if (selected)
+        {
+            vg.setStroke(dashed);
+            vg.roundRectangle(getSelectedTopLeftCorner().getX(), getSelectedTopLeftCorner().getY(), getSelectedWidth(), getSelectedHeight(), 10., Color.BLACK);
+        }
+    }
+
+    @Override
+    public void drawSimplified(Graphics g)
+    {
+        for (ToolElement element : membersInDrawingOrder)
+        {
+            element.drawSimplified(g);
+        }
+
+        if (selected)
+        {
+            Graphics2D g2d = (Graphics2D) g;
+
+            g2d.setPaint(Color.BLACK);
+            g2d.setStroke(new BasicStroke(0));  // the thinnest line the device can render
+            g2d.drawRect(getSelectedTopLeftCorner().x, getSelectedTopLeftCorner().y, getSelectedWidth(), getSelectedHeight());
+        }
+    }
+
+    // the dashed outline is centered on the edge of the selected bounds, and the lines between the members may reach beyond it with their arrowheads
+    @Override
+    public Rectangle getPaintBounds()
+    {
+        Rectangle paintBounds = getBounds();
+        int halfStrokeWidth = (int) Math.ceil(dashed.getLineWidth() / 2);
+        paintBounds.grow(halfStrokeWidth, halfStrokeWidth);
+        for (ToolElement element : membersInDrawingOrder)
+        {
+            paintBounds.add(element.getPaintBounds());
+        }
+
+        return paintBounds;
+    }
+
     @Override
     public boolean isHit(Point coordinate)
     {
-        return savedGraphics2D.hit(transformHitPosition(coordinate, savedGraphics2D), roundRectangle, false);
+        return Geometry.isInRoundRectangle(coordinate.getX(), coordinate.getY(), getSelectedTopLeftCorner().getX(), getSelectedTopLeftCorner().getY(), getSelectedWidth(), getSelectedHeight(), 10., 10.);
     }
 
     @Override
@@ -22,13 +22,8 @@ public class CompositionLine extends ConnectionLine
         Graphics2D g2d = (Graphics2D) g;
 
         // draw a horizontal line from (0, 0) to (length - 16 * sqrt(3), 0) with an arrowhead that forms a diamond shape with angles of 60 degrees and 120 degrees
-        arrowShaft.setLine(0, 0, length - 16 * Math.sqrt(3), 0);
-        arrowhead.reset();
-        arrowhead.moveTo(length - 16 * Math.sqrt(3), 0);
-        arrowhead.lineTo(length - 8 * Math.sqrt(3), -8);
-        arrowhead.lineTo(length, 0);
-        arrowhead.lineTo(length - 8 * Math.sqrt(3), 8);
-        arrowhead.closePath();
+        arrowShaft.setLine(0, 0, getArrowShaftLength(length), 0);
+        setArrowhead(arrowhead, getArrowheadVertices(length), true);
 
         AffineTransform savedTransform = g2d.getTransform();
         AffineTransform affineTransform = new AffineTransform();
@@ -45,25 +40,29 @@ public class CompositionLine extends ConnectionLine
         {
             g2d.setPaint(Color.ORANGE);
         }
-        g2d.setStroke(new BasicStroke(2f));
+        g2d.setStroke(new BasicStroke(STROKE_WIDTH));
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g2d.draw(arrowShaft);
         g2d.draw(arrowhead);
-        if (savedGraphics2D != null)
-        {
-            savedGraphics2D.dispose();
-        }
-        savedGraphics2D = (Graphics2D) g2d.create();
 
         g2d.setTransform(savedTransform);
     }
 
     @Override
-    public boolean isHit(Point coordinate)
+    protected double getArrowShaftLength(double length)
     {
-        Rectangle coordinateRectangle = transformHitPosition(coordinate, savedGraphics2D);
+        return length - 16 * Math.sqrt(3);
+    }
 
-        return savedGraphics2D.hit(coordinateRectangle, arrowShaft, false)
-                || savedGraphics2D.hit(coordinateRectangle, arrowhead, true);
+    @Override
+    protected double[] getArrowheadVertices(double length)
+    {
+        return new double[] {length - 16 * Math.sqrt(3), 0, length - 8 * Math.sqrt(3), -8, length, 0, length - 8 * Math.sqrt(3), 8};
+    }
+
+    @Override
+    protected boolean isArrowheadClosed()
+    {
+        return true;
     }
 }
\ No newline at end of file
@@ -1,6 +1,9 @@
 package graphics;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 
 public abstract class ConnectionLine extends ToolElement
@@ -9,8 +12,9 @@ public abstract class ConnectionLine extends ToolElement
     protected final BasicObject.ConnectionPort[] ports = new BasicObject.ConnectionPort[2];
     protected enum ConnectionLinePort {START, END}
     protected final Point2D.Double startPoint = new Point2D.Double(), endPoint = new Point2D.Double();
-    protected Graphics2D savedGraphics2D;
     protected double length;
+    protected static final float STROKE_WIDTH = 2f;
+    private static final int HIT_OFFSET = 10;
 
     protected ConnectionLine(BasicObject startBasicObject, BasicObject.ConnectionPort startPort, BasicObject endBasicObject, BasicObject.ConnectionPort endPort)
     {
@@ -22,60 +26,141 @@ public abstract class ConnectionLine extends ToolElement
         ports[ConnectionLinePort.END.ordinal()] = endPort;
     }
 
+    /*
+    The bounds are derived from the ConnectionPorts rather than from startPoint and endPoint, which are only
+    updated when the line is drawn. They are expanded by the half-width of the arrowhead and the hit distance
+    used in isHit, so that every position at which the line can be hit lies inside.
+     */
     @Override
-    public void addToRepaintArea(Rectangle repaintArea)
+    public Rectangle getBounds()
     {
-        repaintArea.add(startPoint);
-        repaintArea.add(endPoint);
+        int boundsOffset = 8 + HIT_OFFSET / 2 + (int) Math.ceil(STROKE_WIDTH / 2);
+        BasicObject.ConnectionPort startPort = ports[ConnectionLinePort.START.ordinal()], endPort = ports[ConnectionLinePort.END.ordinal()];
+        int minX = (int) Math.floor(Math.min(startPort.getCenterX(), endPort.getCenterX())), maxX = (int) Math.ceil(Math.max(startPort.getCenterX(), endPort.getCenterX()));
+        int minY = (int) Math.floor(Math.min(startPort.getCenterY(), endPort.getCenterY())), maxY = (int) Math.ceil(Math.max(startPort.getCenterY(), endPort.getCenterY()));
+        Rectangle bounds = new Rectangle(minX, minY, maxX - minX, maxY - minY);
+        bounds.grow(boundsOffset, boundsOffset);
+
+        return bounds;
     }
 
+    /*
+    The outline of the stroked arrow shaft and arrowhead at the current positions of the ConnectionPorts, which
+    includes the square caps and the miter at the tip of the arrowhead. Unlike startPoint and endPoint, the
+    ConnectionPorts have already been moved when a BasicObject is moved, so the paint bounds have to be added
+    to the dirty region both before and after the move.
+     */
     @Override
-    boolean isContainedInSelectionBox(Rectangle selectionBox)
+    public Rectangle getPaintBounds()
     {
-        return selectionBox.contains(startPoint) && selectionBox.contains(endPoint);
+        BasicObject.ConnectionPort startPort = ports[ConnectionLinePort.START.ordinal()], endPort = ports[ConnectionLinePort.END.ordinal()];
+        double lineLength = Point2D.distance(startPort.getCenterX(), startPort.getCenterY(), endPort.getCenterX(), endPort.getCenterY());
+        GeneralPath arrow = new GeneralPath();
+        arrow.moveTo(0, 0);
+        arrow.lineTo(getArrowShaftLength(lineLength), 0);
+        GeneralPath arrowhead = new GeneralPath();
+        setArrowhead(arrowhead, getArrowheadVertices(lineLength), isArrowheadClosed());
+        arrow.append(arrowhead, false);
+
+        AffineTransform affineTransform = new AffineTransform();
+        affineTransform.translate(startPort.getCenterX(), startPort.getCenterY());
+        affineTransform.rotate(Math.atan2(endPort.getCenterY() - startPort.getCenterY(), endPort.getCenterX() - startPort.getCenterX()));
+
+        return affineTransform.createTransformedShape(new BasicStroke(STROKE_WIDTH).createStrokedShape(arrow)).getBounds();
     }
 
-    // transform the hit position to device space
     @Override
-    protected Rectangle transformHitPosition(Point coordinate, Graphics2D g2d)
-    {
-        double[] matrix = new double[4];
-        // the top-left coordinate of the hit position relative to the horizontal line starting from (0, 0)
-        // translate back to the origin
-        double x = coordinate.getX() - startPoint.x;
-        double y = coordinate.getY() - startPoint.y;
-        // rotate to a horizontal line
-        double angle = -Math.atan2(endPoint.y - startPoint.y, endPoint.x - startPoint.x);
-        matrix[0] = Math.cos(angle) * x - Math.sin(angle) * y;
-        matrix[1] = Math.sin(angle) * x + Math.cos(angle) * y;
+    boolean isContainedInSelectionBox(Rectangle selectionBox)
+    {
+        // the centers of the ports rather than startPoint and endPoint, which are only updated by drawInit when the line is painted
+        BasicObject.ConnectionPort startPort = ports[ConnectionLinePort.START.ordinal()], endPort = ports[ConnectionLinePort.END.ordinal()];
 
-        // increase the size of the mouse hit area to facilitate easier clicking on the line
-        int hitOffset = 10;
-        matrix[0] -= hitOffset / 2.;
-        matrix[1] -= hitOffset / 2.;
+        return selectionBox.contains(startPort.getCenterX(), startPort.getCenterY()) && selectionBox.contains(endPort.getCenterX(), endPort.getCenterY());
+    }
 
-        // bottom-right coordinate of the hit position relative to the horizontal line starting from (0, 0)
-        matrix[2] = matrix[0] + hitOffset;
-        matrix[3] = matrix[1] + hitOffset;
+    // the length of the arrow shaft of a line of the given length, drawn from (0, 0) along the x-axis
+    protected abstract double getArrowShaftLength(double length);
 
-        // transform user coordinates to a virtual device space that approximates the expected resolution of the target device
-        g2d.getTransform().transform(matrix, 0, matrix, 0, 2);
+    // the vertices {x0, y0, x1, y1, ...} of the arrowhead of a line of the given length, drawn from (0, 0) along the x-axis
+    protected abstract double[] getArrowheadVertices(double length);
 
-        // set orientation of the rectangle
-        if (matrix[2] - matrix[0] < 0)
+    // whether the last vertex of the arrowhead is joined to the first one
+    protected abstract boolean isArrowheadClosed();
+
+    protected static void setArrowhead(GeneralPath arrowhead, double[] vertices, boolean closed)
+    {
+        arrowhead.reset();
+        arrowhead.moveTo(vertices[0], vertices[1]);
+        for (int i = 2; i < vertices.length; i += 2)
         {
-            double t = matrix[0];
-            matrix[0] = matrix[2];
-            matrix[2] = t;
+            arrowhead.lineTo(vertices[i], vertices[i + 1]);
         }
-        if (matrix[3] - matrix[1] < 0)
+        if (closed)
+        {
+            arrowhead.closePath();
+        }
+    }
+
+    /*
+    The hit test is computed from the current positions of the ConnectionPorts, so it is correct even if the
+    line has not been painted since its BasicObjects were moved. The hit position is transformed into the
+    coordinate system in which the arrow shaft and the arrowhead are defined, where the line is hit if the
+    position lies within HIT_OFFSET / 2 of the stroke of the arrow shaft or inside or near the arrowhead.
+     */
+    @Override
+    public boolean isHit(Point coordinate)
+    {
+        BasicObject.ConnectionPort startPort = ports[ConnectionLinePort.START.ordinal()], endPort = ports[ConnectionLinePort.END.ordinal()];
+        double lineLength = Point2D.distance(startPort.getCenterX(), startPort.getCenterY(), endPort.getCenterX(), endPort.getCenterY());
+        double[] position = Geometry.toLineCoordinates(coordinate.getX(), coordinate.getY(), startPort.getCenterX(), startPort.getCenterY(), endPort.getCenterX(), endPort.getCenterY());
+        // increase the size of the mouse hit area to facilitate easier clicking on the line
+        double hitDistance = HIT_OFFSET / 2. + STROKE_WIDTH / 2.;
+
+        if (Geometry.isNearSegment(position[0], position[1], 0, 0, getArrowShaftLength(lineLength), 0, hitDistance))
         {
-            double t = matrix[1];
-            matrix[1] = matrix[3];
-            matrix[3] = t;
+            return true;
         }
 
-        return new Rectangle((int) matrix[0], (int) matrix[1], (int) (matrix[2] - matrix[0]), (int) (matrix[3] - matrix[1]));
+        double[] arrowheadVertices = getArrowheadVertices(lineLength);
+
+        return Geometry.isInPolygon(position[0], position[1], arrowheadVertices) || Geometry.isNearPolyline(position[0], position[1], arrowheadVertices, true, hitDistance);
+    }
+
+    // only the arrow shaft as a thin straight line, since the arrowhead would be smaller than a pixel
+    @Override
+    public void drawSimplified(Graphics g)
+    {
+        drawInit();
+        Graphics2D g2d = (Graphics2D) g;
+
+        g2d.setPaint(selected ? Color.ORANGE : Color.BLACK);
+        g2d.setStroke(new BasicStroke(0));  // the thinnest line the device can render
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        g2d.draw(new Line2D.Double(startPoint, endPoint));
+    }
+
+    /*
+    The arrow shaft and the arrowhead are defined along the x-axis like in draw, but their vertices are rotated
+    and translated here, since a VectorGraphics has no transform.
+     */
+    @Override
+    public void drawVector(VectorGraphics vg)
+    {
+        drawInit();
+
+        AffineTransform affineTransform = new AffineTransform();
+        affineTransform.translate(startPoint.x, startPoint.y);
+        affineTransform.rotate(Math.atan2(endPoint.y - startPoint.y, endPoint.x - startPoint.x));
+
+        double[] arrowShaft = {0, 0, getArrowShaftLength(length), 0};
+        double[] arrowhead = getArrowheadVertices(length);
+        affineTransform.transform(arrowShaft, 0, arrowShaft, 0, arrowShaft.length / 2);
+        affineTransform.transform(arrowhead, 0, arrowhead, 0, arrowhead.length / 2);
+
+        Color color = selected ? Color.ORANGE : Color.BLACK;
+        vg.setStroke(new BasicStroke(STROKE_WIDTH));
+        vg.polyline(arrowShaft, false, color);
+        vg.polyline(arrowhead, isArrowheadClosed(), color);
     }
 
     protected void drawInit()
@@ -87,6 +172,20 @@ public abstract class ConnectionLine extends ToolElement
         length = startPoint.distance(endPoint);
     }
 
+    // registers the line in the incidence index of both of its BasicObjects
+    public void connect()
+    {
+        startBasicObject.addConnectionLine(this);
+        endBasicObject.addConnectionLine(this);
+    }
+
+    // removes the line from the incidence index of both of its BasicObjects
+    public void disconnect()
+    {
+        startBasicObject.removeConnectionLine(this);
+        endBasicObject.removeConnectionLine(this);
+    }
+
     public BasicObject getStartBasicObject()
     {
         return startBasicObject;
@@ -97,6 +196,16 @@ public abstract class ConnectionLine extends ToolElement
         return endBasicObject;
     }
 
+    public BasicObject.ConnectionPort getStartPort()
+    {
+        return ports[ConnectionLinePort.START.ordinal()];
+    }
+
+    public BasicObject.ConnectionPort getEndPort()
+    {
+        return ports[ConnectionLinePort.END.ordinal()];
+    }
+
     public Point2D.Double getStartPoint()
     {
         return startPoint;
@@ -0,0 +1,119 @@
+package graphics;
+
+/**
+ * Exact analytic hit tests for the primitive shapes the ToolElements are drawn with.
+ *
+ * <p>All tests work on plain coordinates, so they need neither a Graphics2D nor a previous paint of the
+ * element. Polygons and polylines are given as flat arrays of vertices {x0, y0, x1, y1, ...}.</p>
+ */
+final class Geometry
+{
+    private Geometry() {}
+
+    static boolean isInRectangle(double px, double py, double x, double y, double width, double height)
+    {
+        return px >= x && px <= x + width && py >= y && py <= y + height;
+    }
+
+    static boolean isInEllipse(double px, double py, double x, double y, double width, double height)
+    {
+        double radiusX = width / 2, radiusY = height / 2;
+
+        if (radiusX <= 0 || radiusY <= 0)
+        {
+            return false;
+        }
+
+        double normalizedX = (px - (x + radiusX)) / radiusX;
+        double normalizedY = (py - (y + radiusY)) / radiusY;
+
+        return normalizedX * normalizedX + normalizedY * normalizedY <= 1;
+    }
+
+    static boolean isInRoundRectangle(double px, double py, double x, double y, double width, double height, double arcWidth, double arcHeight)
+    {
+        if (!isInRectangle(px, py, x, y, width, height))
+        {
+            return false;
+        }
+
+        double radiusX = Math.min(arcWidth, width) / 2, radiusY = Math.min(arcHeight, height) / 2;
+        // the nearest corner arc, which only matters when the point lies in one of the four corner squares
+        double arcCenterX = px < x + radiusX ? x + radiusX : px > x + width - radiusX ? x + width - radiusX : px;
+        double arcCenterY = py < y + radiusY ? y + radiusY : py > y + height - radiusY ? y + height - radiusY : py;
+
+        if (arcCenterX == px || arcCenterY == py)
+        {
+            return true;
+        }
+
+        return isInEllipse(px, py, arcCenterX - radiusX, arcCenterY - radiusY, radiusX * 2, radiusY * 2);
+    }
+
+    static double distanceSqToSegment(double px, double py, double x1, double y1, double x2, double y2)
+    {
+        double dx = x2 - x1, dy = y2 - y1;
+        double lengthSq = dx * dx + dy * dy;
+        // the parameter of the projection of the point onto the segment, clamped to the segment
+        double t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, ((px - x1) * dx + (py - y1) * dy) / lengthSq));
+        double nearestX = x1 + t * dx - px, nearestY = y1 + t * dy - py;
+
+        return nearestX * nearestX + nearestY * nearestY;
+    }
+
+    // whether the point lies on the segment stroked with a pen of twice the distance
+    static boolean isNearSegment(double px, double py, double x1, double y1, double x2, double y2, double distance)
+    {
+        return distanceSqToSegment(px, py, x1, y1, x2, y2) <= distance * distance;
+    }
+
+    static boolean isNearPolyline(double px, double py, double[] vertices, boolean closed, double distance)
+    {
+        int count = vertices.length / 2;
+
+        for (int i = 0; i < (closed ? count : count - 1); i++)
+        {
+            int j = (i + 1) % count;
+
+            if (isNearSegment(px, py, vertices[2 * i], vertices[2 * i + 1], vertices[2 * j], vertices[2 * j + 1], distance))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // even-odd rule, an open polyline is implicitly closed
+    static boolean isInPolygon(double px, double py, double[] vertices)
+    {
+        int count = vertices.length / 2;
+        boolean inside = false;
+
+        for (int i = 0, j = count - 1; i < count; j = i++)
+        {
+            double xi = vertices[2 * i], yi = vertices[2 * i + 1];
+            double xj = vertices[2 * j], yj = vertices[2 * j + 1];
+
+            if ((yi > py) != (yj > py) && px < (xj - xi) * (py - yi) / (yj - yi) + xi)
+            {
+                inside = !inside;
+            }
+        }
+
+        return inside;
+    }
+
+    /*
+    Transforms a point in canvas coordinates into the coordinate system in which a line from (x1, y1) to
+    (x2, y2) becomes the horizontal line from (0, 0) to (length, 0), i.e. translates it back to the origin
+    and rotates it by the negative angle of the line.
+     */
+    static double[] toLineCoordinates(double px, double py, double x1, double y1, double x2, double y2)
+    {
+        double angle = -Math.atan2(y2 - y1, x2 - x1);
+        double x = px - x1, y = py - y1;
+
+        return new double[] {Math.cos(angle) * x - Math.sin(angle) * y, Math.sin(angle) * x + Math.cos(angle) * y};
+    }
+}
@@ -1,11 +1,11 @@
 package graphics;
 
-import umlEditorComponents.Model;
-
 import java.awt.*;
 
 public class SelectionBox implements Drawable
 {
+    private static final float STROKE_WIDTH = 1.5f;
+    public static final int HALF_STROKE_WIDTH = (int) Math.ceil(STROKE_WIDTH / 2);  // how far the outline reaches beyond the bounds
     private final Rectangle rectangle = new Rectangle();
 
     @Override
@@ -16,7 +16,7 @@ public class SelectionBox implements Drawable
         g2d.setPaint(new Color(0, 102, 204, 128));
         g2d.fill(rectangle);
         g2d.setPaint(new Color(0, 120, 215));
-        g2d.setStroke(new BasicStroke(1.5f));
+        g2d.setStroke(new BasicStroke(STROKE_WIDTH));
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g2d.draw(rectangle);
     }
@@ -25,27 +25,25 @@ public class SelectionBox implements Drawable
     {
         Point coordinate = diagonalPoint2.getLocation();
 
+        // the world starts at the origin and is unbounded to the right and to the bottom
         if (coordinate.x < 0)
         {
             coordinate.x = 0;
         }
-        else if (coordinate.x > Model.INSTANCE.getCanvas().getWidth())
-        {
-            coordinate.x = Model.INSTANCE.getCanvas().getWidth();
-        }
 
         if (coordinate.y < 0)
         {
             coordinate.y = 0;
         }
-        else if (coordinate.y > Model.INSTANCE.getCanvas().getHeight())
-        {
-            coordinate.y = Model.INSTANCE.getCanvas().getHeight();
-        }
 
         rectangle.setFrameFromDiagonal(diagonalPoint1, coordinate);
     }
 
+    public Rectangle getBounds()
+    {
+        return rectangle.getBounds();
+    }
+
     public void resetBounds()
     {
         rectangle.setBounds(0, 0, 0, 0);
@@ -0,0 +1,176 @@
+package graphics;
+
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineBreakMeasurer;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.text.AttributedCharacterIterator;
+import java.text.AttributedString;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of line-broken text.
+ *
+ * <p>Breaking a paragraph into lines with a LineBreakMeasurer is the most expensive part of painting a named
+ * BasicObject, although the result only depends on the text, the break width, the font attributes and the
+ * FontRenderContext. This cache keeps the resulting TextLayouts for each such combination. The memory held by
+ * the cache is estimated from the length of the cached texts and kept below a fixed budget by evicting the
+ * least recently used entries. The cache is safe to use from several threads.</p>
+ */
+public class TextLayoutCache
+{
+    private record Key(String text, float breakWidth, Map<TextAttribute, ?> attributes, FontRenderContext frc) {}
+
+    /**
+     * The lines of a paragraph, each of which is an immutable TextLayout.
+     * An Entry may be kept by its user to skip the lookup as long as the inputs stay the same.
+     */
+    public static final class Entry
+    {
+        private final Key key;
+        private final List<TextLayout> lines;
+        private final long estimatedSize;
+
+        private Entry(Key key, List<TextLayout> lines)
+        {
+            this.key = key;
+            this.lines = lines;
+            // a rough estimate of the glyph data and metrics held by the TextLayouts
+            this.estimatedSize = 256 + 64L * key.text().length() + 128L * lines.size();
+        }
+
+        public List<TextLayout> getLines()
+        {
+            return lines;
+        }
+
+        public boolean isFor(String text, float breakWidth, Map<TextAttribute, ?> attributes, FontRenderContext frc)
+        {
+            return key.breakWidth() == breakWidth && key.text().equals(text) && key.attributes().equals(attributes) && key.frc().equals(frc);
+        }
+    }
+
+    private final long budget;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);  // iterates from the least to the most recently used entry
+    private long estimatedSize = 0;
+    private long hitCount = 0, missCount = 0, evictionCount = 0;
+
+    // budget is the estimated number of bytes the cached TextLayouts may occupy
+    public TextLayoutCache(long budget)
+    {
+        this.budget = budget;
+    }
+
+    public Entry get(String text, float breakWidth, Map<TextAttribute, ?> attributes, FontRenderContext frc)
+    {
+        Key key = new Key(text, breakWidth, attributes, frc);
+
+        synchronized (this)
+        {
+            Entry entry = entries.get(key);
+
+            if (entry != null)
+            {
+                hitCount++;
+                return entry;
+            }
+
+            missCount++;
+        }
+
+        // lay out the text outside the lock, two threads missing the same key at the same time merely do the work twice
+        Entry entry = new Entry(key, layOut(text, breakWidth, attributes, frc));
+
+        synchronized (this)
+        {
+            Entry previous = entries.put(key, entry);
+            if (previous != null)
+            {
+                estimatedSize -= previous.estimatedSize;
+            }
+            estimatedSize += entry.estimatedSize;
+
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (estimatedSize > budget && iterator.hasNext())
+            {
+                Entry eldest = iterator.next();
+
+                if (eldest != entry)
+                {
+                    iterator.remove();
+                    estimatedSize -= eldest.estimatedSize;
+                    evictionCount++;
+                }
+            }
+        }
+
+        return entry;
+    }
+
+    private static List<TextLayout> layOut(String text, float breakWidth, Map<TextAttribute, ?> attributes, FontRenderContext frc)
+    {
+        AttributedString attributedText = new AttributedString(text, attributes);
+
+        // create a new LineBreakMeasurer from the paragraph
+        AttributedCharacterIterator paragraph = attributedText.getIterator();
+        int paragraphStart = paragraph.getBeginIndex();  // index of the first character in the paragraph
+        int paragraphEnd = paragraph.getEndIndex();  // index of the first character after the end of the paragraph
+        /*
+        LineBreakMeasurer class enables styled text to be broken into lines so that they fit
+        within a particular visual advance. Each line is returned as a TextLayout object,
+        which represents unchangeable, styled character data.
+         */
+        LineBreakMeasurer lineMeasurer = new LineBreakMeasurer(paragraph, frc);  // the LineBreakMeasurer used to line-break the paragraph
+        // set position to the index of the first character in the paragraph
+        lineMeasurer.setPosition(paragraphStart);
+
+        ArrayList<TextLayout> lines = new ArrayList<>();
+        // get lines until the entire paragraph has been laid out
+        while (lineMeasurer.getPosition() < paragraphEnd)
+        {
+            lines.add(lineMeasurer.nextLayout(breakWidth));
+        }
+
+        return List.copyOf(lines);
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+        estimatedSize = 0;
+    }
+
+    public synchronized int getEntryCount()
+    {
+        return entries.size();
+    }
+
+    public synchronized long getEstimatedSize()
+    {
+        return estimatedSize;
+    }
+
+    public long getBudget()
+    {
+        return budget;
+    }
+
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount()
+    {
+        return evictionCount;
+    }
+}
@@ -1,11 +1,15 @@
 package graphics;
 
+import containers.DirtyRegion;
+import umlEditorComponents.SelectionModel;
+
 import java.awt.*;
 
 public abstract class ToolElement implements Drawable
 {
     protected final boolean connectable, movable;
     protected boolean selected;
+    private SelectionModel selectionModel;  // non-null only while the element lies directly on the CanvasArea
 
     protected ToolElement(boolean connectable, boolean movable, boolean selected)
     {
@@ -14,10 +18,18 @@ public abstract class ToolElement implements Drawable
         this.selected = selected;
     }
 
-    public abstract void addToRepaintArea(Rectangle repaintArea);
+    public abstract Rectangle getBounds();  // the area covered by everything the element paints or can be hit at, in canvas coordinates
+    public abstract Rectangle getPaintBounds();  // exactly the area the element paints in either of its selection states, in canvas coordinates
     abstract boolean isContainedInSelectionBox(Rectangle selectionBox);
-    protected abstract Rectangle transformHitPosition(Point coordinate, Graphics2D g2d);
-    public abstract boolean isHit(Point coordinate);
+    public abstract boolean isHit(Point coordinate);  // an exact test of the geometry in canvas coordinates, which does not depend on a previous paint
+    public abstract void drawSimplified(Graphics g);  // used when zoomed far out: only the outline, without names, ConnectionPorts and arrowheads
+    public abstract void drawVector(VectorGraphics vg);  // used by the vector export: the same picture as draw, as primitives
+
+    // must be called both before and after a change of the element, so that the old and the new picture are repainted
+    public void addToDirtyRegion(DirtyRegion dirtyRegion)
+    {
+        dirtyRegion.add(getPaintBounds());
+    }
 
     public boolean isConnectable()
     {
@@ -37,5 +49,26 @@ public abstract class ToolElement implements Drawable
     public void setSelected(boolean selected)
     {
         this.selected = selected;
+
+        if (selectionModel != null)
+        {
+            selectionModel.update(this);
+        }
+    }
+
+    // Passing null detaches the element from its current SelectionModel, e.g. when it is deleted or becomes a member of a CompositeObject.
+    public void setSelectionModel(SelectionModel selectionModel)
+    {
+        if (this.selectionModel != null)
+        {
+            this.selectionModel.remove(this);
+        }
+
+        this.selectionModel = selectionModel;
+
+        if (this.selectionModel != null)
+        {
+            this.selectionModel.update(this);
+        }
     }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import java.awt.geom.Ellipse2D;
 
 public class UseCase extends BasicObject
 {
+    private static final Color FILL_COLOR = new Color(255, 173, 176, 128);
     public static final int UNSELECTED_WIDTH = 120, UNSELECTED_HEIGHT = 80;
     private final Ellipse2D.Double ellipse = new Ellipse2D.Double();
 
@@ -31,17 +32,12 @@ public class UseCase extends BasicObject
         Graphics2D g2d = (Graphics2D) g;
 
         ellipse.setFrame(unselectedTopLeftCorner.getX(), unselectedTopLeftCorner.getY(), UNSELECTED_WIDTH, UNSELECTED_HEIGHT);
-        g2d.setPaint(new Color(255, 173, 176, 128));
+        g2d.setPaint(FILL_COLOR);
         g2d.fill(ellipse);
         g2d.setPaint(Color.BLACK);
         g2d.setStroke(new BasicStroke(2f));
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g2d.draw(ellipse);
-        if (savedGraphics2D != null)
-        {
-            savedGraphics2D.dispose();
-        }
-        savedGraphics2D = (Graphics2D) g2d.create();
 
         if (name != null && name.length() > 0)
         {
@@ -54,9 +50,32 @@ public class UseCase extends BasicObject
         }
     }
 
+    @Override
+    public void drawVector(VectorGraphics vg)
+    {
+        vg.setStroke(new BasicStroke(2f));
+        vg.ellipse(unselectedTopLeftCorner.getX(), unselectedTopLeftCorner.getY(), UNSELECTED_WIDTH, UNSELECTED_HEIGHT, FILL_COLOR, Color.BLACK);
+
+        if (name != null && name.length() > 0)
+        {
+            drawName(vg);
+        }
+
+        if (selected)
+        {
+            drawPorts(vg);
+        }
+    }
+
+    @Override
+    protected Color getFillColor()
+    {
+        return FILL_COLOR;
+    }
+
     @Override
     public boolean isHit(Point coordinate)
     {
-        return savedGraphics2D.hit(transformHitPosition(coordinate, savedGraphics2D), ellipse, false);
+        return Geometry.isInEllipse(coordinate.getX(), coordinate.getY(), unselectedTopLeftCorner.getX(), unselectedTopLeftCorner.getY(), UNSELECTED_WIDTH, UNSELECTED_HEIGHT);
     }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package graphics;
+
+import java.awt.*;
+
+/**
+ * The primitives a ToolElement is made of, in canvas coordinates, as written by the vector export.
+ * Each element describes itself by {@link ToolElement#drawVector} with the same shapes, colors and strokes as its
+ * draw method, so a vector image needs neither a Graphics2D nor a rasterization. A null fill or stroke color
+ * leaves out the inside or the outline of a shape.
+ */
+public interface VectorGraphics
+{
+    // the stroke of the outlines drawn from now on, like Graphics2D.setStroke
+    void setStroke(BasicStroke stroke);
+
+    void rectangle(double x, double y, double width, double height, Color fill, Color stroke);
+    void ellipse(double x, double y, double width, double height, Color fill, Color stroke);
+    void roundRectangle(double x, double y, double width, double height, double arcSize, Color stroke);
+    // vertices are {x0, y0, x1, y1, ...}
+    void polyline(double[] vertices, boolean closed, Color stroke);
+    // a single line of text, with (x, y) the left end of its baseline
+    void text(String text, double x, double y, Font font, Color color);
+}
@@ -16,12 +16,6 @@ public abstract class BasicObjectMode extends MouseInputAdapter
         BasicObject basicObject = createConcreteBasicObject(e);
         Model.INSTANCE.addObject(basicObject);
 
-        int clipOffset = 4;
-        Model.INSTANCE.getCanvas().repaint(
-                basicObject.getUnselectedTopLeftCorner().x - clipOffset / 2,
-                basicObject.getUnselectedTopLeftCorner().y - clipOffset / 2,
-                basicObject.getUnselectedWidth() + clipOffset,
-                basicObject.getUnselectedHeight() + clipOffset
-        );
+        Model.INSTANCE.getCanvas().repaintWorld(basicObject.getPaintBounds());
     }
 }
\ No newline at end of file
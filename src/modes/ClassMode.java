@@ -2,7 +2,6 @@ package modes;
 
 import graphics.BasicObject;
 import graphics.Class;
-import umlEditorComponents.Model;
 
 import java.awt.*;
 import java.awt.event.MouseEvent;
@@ -14,9 +13,9 @@ public class ClassMode extends BasicObjectMode
     @Override
     protected BasicObject createConcreteBasicObject(MouseEvent e)
     {
-        // Class (in the selected state) shouldn't extend past the drawing area
-        int x = Math.min(e.getX(), Model.INSTANCE.getCanvas().getWidth() - BasicObject.ConnectionPort.SIDE_LENGTH / 2 - Class.UNSELECTED_WIDTH);
-        int y = Math.min(e.getY(), Model.INSTANCE.getCanvas().getHeight() - BasicObject.ConnectionPort.SIDE_LENGTH / 2 - Class.UNSELECTED_HEIGHT);
+        // Class (in the selected state) shouldn't extend past the origin of the world
+        int x = Math.max(e.getX(), BasicObject.ConnectionPort.SIDE_LENGTH / 2);
+        int y = Math.max(e.getY(), BasicObject.ConnectionPort.SIDE_LENGTH / 2);
 
         return new Class(new Point(x, y));
     }
@@ -18,6 +18,9 @@ public abstract class ConnectionLineMode extends MouseInputAdapter
     protected BasicObject startBasicObject = null, endBasicObject = null;
     protected BasicObject.ConnectionPort startPort, endPort;
     private static final Line2D.Double tempLine = new Line2D.Double();
+    public static final float TEMP_LINE_STROKE_WIDTH = 1.5f;
+    // the square caps of the stroke reach half its width beyond the end points, which is at most sqrt(2) times as far along the axes
+    private static final int TEMP_LINE_OFFSET = (int) Math.ceil(TEMP_LINE_STROKE_WIDTH / 2 * Math.sqrt(2));
     private static final Rectangle repaintArea = new Rectangle();
 
     protected abstract ConnectionLine createConcreteConnectionLine();
@@ -49,8 +52,8 @@ public abstract class ConnectionLineMode extends MouseInputAdapter
         tempLine.setLine(startCoordinate, e.getPoint());
         repaintArea.add(e.getPoint());
 
-        int clipOffset = 4;
-        Model.INSTANCE.getCanvas().repaint(repaintArea.x - clipOffset / 2, repaintArea.y - clipOffset / 2, repaintArea.width + clipOffset, repaintArea.height + clipOffset);
+        repaintArea.grow(TEMP_LINE_OFFSET, TEMP_LINE_OFFSET);
+        Model.INSTANCE.getCanvas().repaintWorld(repaintArea);
 
         lastEndCoordinate = e.getPoint();
     }
@@ -59,7 +62,9 @@ public abstract class ConnectionLineMode extends MouseInputAdapter
     public void mouseReleased(MouseEvent e)
     {
         repaintArea.setFrameFromDiagonal(startCoordinate, lastEndCoordinate);
+        repaintArea.grow(TEMP_LINE_OFFSET, TEMP_LINE_OFFSET);
         tempLine.setLine(0, 0, 0, 0);
+        Model.INSTANCE.getCanvas().repaintWorld(repaintArea);
 
         ToolElement element = Model.INSTANCE.getTopmostHitElement(e);
         if (element != null && element.isConnectable())
@@ -75,15 +80,10 @@ public abstract class ConnectionLineMode extends MouseInputAdapter
             {
                 Model.INSTANCE.addLine(line);
 
-                repaintArea.add(startPort.getCenterX(), startPort.getCenterY());
-                repaintArea.add(endPort.getCenterX(), endPort.getCenterY());
+                Model.INSTANCE.getCanvas().repaintWorld(line.getPaintBounds());
             }
         }
 
-        // In order to draw the complete arrow, it is necessary to further expand the repaintArea.
-        int clipOffset = 20;
-        Model.INSTANCE.getCanvas().repaint(repaintArea.x - clipOffset / 2, repaintArea.y - clipOffset / 2, repaintArea.width + clipOffset, repaintArea.height + clipOffset);
-
         startBasicObject = endBasicObject = null;
     }
 
@@ -1,6 +1,5 @@
 package modes;
 
-import graphics.AbstractObject;
 import graphics.SelectionBox;
 import graphics.ToolElement;
 import umlEditorComponents.Model;
@@ -8,6 +7,7 @@ import umlEditorComponents.Model;
 import javax.swing.event.MouseInputAdapter;
 import java.awt.*;
 import java.awt.event.MouseEvent;
+import java.util.List;
 
 public class SelectMode extends MouseInputAdapter
 {
@@ -27,10 +27,9 @@ public class SelectMode extends MouseInputAdapter
     @Override
     public void mouseDragged(MouseEvent e)
     {
-        if (pressedElement != null && pressedElement.isMovable())  // move AbstractObject
+        if (pressedElement != null && pressedElement.isMovable())  // move the selected AbstractObjects, which include the pressed one
         {
-            AbstractObject pressedObject = (AbstractObject) pressedElement;
-            Model.INSTANCE.moveObject(pressedObject, e.getX() - lastEndCoordinate.x, e.getY() - lastEndCoordinate.y);
+            Model.INSTANCE.moveSelection(e.getX() - lastEndCoordinate.x, e.getY() - lastEndCoordinate.y);
         }
         else if (pressedElement == null)  // select or unselect a group of objects
         {
@@ -42,9 +41,9 @@ public class SelectMode extends MouseInputAdapter
             // repaint the new selection box range
             repaintArea.add(e.getPoint());
 
-            // In order to eliminate the residual edges left by the SelectionBox during scaling, it is necessary to further expand the repaintArea.
-            int clipOffset = 4;
-            Model.INSTANCE.getCanvas().repaint(repaintArea.x - clipOffset / 2, repaintArea.y - clipOffset / 2, repaintArea.width + clipOffset, repaintArea.height + clipOffset);
+            // the outline of the SelectionBox is centered on its edge
+            repaintArea.grow(SelectionBox.HALF_STROKE_WIDTH, SelectionBox.HALF_STROKE_WIDTH);
+            Model.INSTANCE.getCanvas().repaintWorld(repaintArea);
         }
 
         lastEndCoordinate = e.getPoint();
@@ -61,14 +60,30 @@ public class SelectMode extends MouseInputAdapter
          */
         if (pressedElement == null && !startCoordinate.equals(e.getPoint()))  // select or unselect a group of objects
         {
-            Model.INSTANCE.setElementsInSelectionBoxToSelected(selectionBox);
+            List<ToolElement> selectedElements = Model.INSTANCE.setElementsInSelectionBoxToSelected(selectionBox);
 
             selectionBox.resetBounds();
 
             // continue to use the repaintArea set in mouseDragged
-            // In order to draw the complete arrow and ConnectionPort, it is necessary to further expand the repaintArea.
-            int clipOffset = 20;
-            Model.INSTANCE.getCanvas().repaint(repaintArea.x - clipOffset / 2, repaintArea.y - clipOffset / 2, repaintArea.width + clipOffset, repaintArea.height + clipOffset);
+            Model.INSTANCE.getCanvas().repaintWorld(repaintArea);
+            if (selectedElements != null)
+            {
+                // the ConnectionPorts and arrowheads of the selected elements may reach beyond the SelectionBox
+                for (ToolElement element : selectedElements)
+                {
+                    Model.INSTANCE.getCanvas().repaintWorld(element.getPaintBounds());
+                }
+            }
+        }
+        else if (pressedElement != null && pressedElement.isMovable())  // move the selected AbstractObjects
+        {
+            Model.INSTANCE.endMove();
+
+            // a click on one of several selected objects, which has kept the selection for a move, selects only that object
+            if (startCoordinate.equals(e.getPoint()))
+            {
+                Model.INSTANCE.clickedEventHandler(pressedElement);
+            }
         }
         // If the mouse is pressed on a ConnectionLine (which sets it to the selected state), and then dragged before being released, it should be set back to an unselected state upon release.
         else if (pressedElement != null && !pressedElement.isMovable() && !startCoordinate.equals(e.getPoint()))
@@ -1,18 +1,186 @@
 package umlEditorComponents;
 
+import containers.DirtyRegion;
+import graphics.ConnectionLine;
 import graphics.ToolElement;
 import modes.ConnectionLineMode;
 import modes.SelectMode;
 
 import javax.swing.*;
+import javax.swing.event.MouseInputAdapter;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.AffineTransform;
+import java.util.List;
+import java.util.function.Consumer;
 
+/**
+ * A viewport onto the unbounded world in which the diagram lies.
+ *
+ * <p>All ToolElements, the modes and the Model work in world coordinates. The CanvasArea maps them to the
+ * screen with a view transform made of a zoom factor and a scroll position: view = world * zoom - scroll.
+ * The scroll position is kept in whole pixels of the zoomed world, so that the tiles of the TileCache are always
+ * copied to whole pixel positions and panning never renders a tile again. Mouse events are converted to world
+ * coordinates before they are passed on to the current mode.</p>
+ *
+ * <p>The view is panned by dragging with the middle mouse button or with the mouse wheel (horizontally while
+ * Shift is held), and zoomed around the mouse position with Ctrl + mouse wheel. Below SIMPLIFIED_ZOOM the
+ * elements are drawn without names, ConnectionPorts and arrowheads, so a frame costs about the same at any zoom.</p>
+ */
 public class CanvasArea extends JPanel
 {
+    public static final String VIEWPORT_PROPERTY = "viewport";  // fired whenever the visible world area changes
+    static final double MIN_ZOOM = 1 / 64., MAX_ZOOM = 8;
+    static final double SIMPLIFIED_ZOOM = 0.35;
+    private static final double ZOOM_STEP = 1.25;
+    private static final int SCROLL_STEP = 40;  // pixels per notch of the mouse wheel
+
+    private final TileCache tileCache = new TileCache(64L * 1024 * 1024);
+    private final RepaintScheduler repaintScheduler = new RepaintScheduler(this);
+    private DragLayer dragLayer = null;  // non-null while AbstractObjects are being dragged
+    private MouseInputAdapter mode = null;
+    private double zoom = 1;
+    private int scrollX = 0, scrollY = 0;
+    private Point panStart = null;  // non-null while the view is dragged with the middle mouse button
+    private static int drawnElements = 0;  // the number of elements drawn so far, counted for the EditorMetrics
+
     CanvasArea()
     {
         setBackground(Color.WHITE);
         setPreferredSize(new Dimension(1000, 600));
+
+        ViewListener viewListener = new ViewListener();
+        addMouseListener(viewListener);
+        addMouseMotionListener(viewListener);
+        addMouseWheelListener(viewListener);
+
+        bindZoomKey(KeyStroke.getKeyStroke(KeyEvent.VK_EQUALS, InputEvent.CTRL_DOWN_MASK), "zoomIn", ZOOM_STEP);
+        bindZoomKey(KeyStroke.getKeyStroke(KeyEvent.VK_ADD, InputEvent.CTRL_DOWN_MASK), "zoomIn", ZOOM_STEP);
+        bindZoomKey(KeyStroke.getKeyStroke(KeyEvent.VK_MINUS, InputEvent.CTRL_DOWN_MASK), "zoomOut", 1 / ZOOM_STEP);
+        bindZoomKey(KeyStroke.getKeyStroke(KeyEvent.VK_SUBTRACT, InputEvent.CTRL_DOWN_MASK), "zoomOut", 1 / ZOOM_STEP);
+        getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_0, InputEvent.CTRL_DOWN_MASK), "resetView");
+        getActionMap().put("resetView", new AbstractAction()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                resetView();
+            }
+        });
+    }
+
+    private void bindZoomKey(KeyStroke keyStroke, String name, double factor)
+    {
+        getInputMap(WHEN_IN_FOCUSED_WINDOW).put(keyStroke, name);
+        getActionMap().put(name, new AbstractAction()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                zoomAt(new Point(getWidth() / 2, getHeight() / 2), factor);
+            }
+        });
+    }
+
+    // converts the mouse events to world coordinates and passes them on to the current mode, except for the ones that pan or zoom the view
+    private class ViewListener extends MouseInputAdapter
+    {
+        @Override
+        public void mousePressed(MouseEvent e)
+        {
+            if (SwingUtilities.isMiddleMouseButton(e))
+            {
+                panStart = e.getPoint();
+            }
+            else if (mode != null)
+            {
+                dispatch(e, mode::mousePressed);
+            }
+        }
+
+        @Override
+        public void mouseDragged(MouseEvent e)
+        {
+            if (panStart != null)
+            {
+                scrollBy(panStart.x - e.getX(), panStart.y - e.getY());
+                panStart = e.getPoint();
+            }
+            else if (mode != null)
+            {
+                dispatch(e, mode::mouseDragged);
+            }
+        }
+
+        @Override
+        public void mouseReleased(MouseEvent e)
+        {
+            if (SwingUtilities.isMiddleMouseButton(e))
+            {
+                panStart = null;
+            }
+            else if (mode != null)
+            {
+                dispatch(e, mode::mouseReleased);
+            }
+        }
+
+        @Override
+        public void mouseClicked(MouseEvent e)
+        {
+            if (!SwingUtilities.isMiddleMouseButton(e) && mode != null)
+            {
+                mode.mouseClicked(toWorld(e));
+            }
+        }
+
+        @Override
+        public void mouseMoved(MouseEvent e)
+        {
+            if (mode != null)
+            {
+                mode.mouseMoved(toWorld(e));
+            }
+        }
+
+        @Override
+        public void mouseWheelMoved(MouseWheelEvent e)
+        {
+            double rotation = e.getPreciseWheelRotation();
+
+            if (e.isControlDown())
+            {
+                zoomAt(e.getPoint(), Math.pow(ZOOM_STEP, -rotation));
+            }
+            else if (e.isShiftDown())
+            {
+                scrollBy((int) Math.round(rotation * SCROLL_STEP), 0);
+            }
+            else
+            {
+                scrollBy(0, (int) Math.round(rotation * SCROLL_STEP));
+            }
+        }
+    }
+
+    // passes the mouse event on to the mode in world coordinates, followed by the LatencyTracer until its effect is painted
+    private void dispatch(MouseEvent e, Consumer<MouseEvent> handler)
+    {
+        MouseEvent worldEvent = toWorld(e);
+        LatencyTracer tracer = Model.INSTANCE.getMetrics().getTracer();
+
+        tracer.inputStarted(worldEvent);
+        handler.accept(worldEvent);
+        tracer.inputHandled(worldEvent);
+    }
+
+    void setMode(MouseInputAdapter mode)
+    {
+        this.mode = mode;
     }
 
     @Override
@@ -26,20 +194,233 @@ public class CanvasArea extends JPanel
         3. If the component's opaque property is true, ui.update() fills the component's background with the background color and invokes ui.paint().
         4. ui.paint() renders the content of the component.
          */
+        long start = System.nanoTime();
+        int drawnElementsBefore = drawnElements;
+        LatencyTracer tracer = Model.INSTANCE.getMetrics().getTracer();
+        tracer.paintStarted(g.getClipBounds() != null ? g.getClipBounds() : new Rectangle(getSize()));
+
         super.paintComponent(g);  // passes the graphics context off to the component's UI delegate, which paints the panel's background since this component is opaque
 
-        for (ToolElement element : Model.INSTANCE.getPaintedElementsInOrder())
+        /*
+        Almost every repaint request covers only a small dirty area, and Swing sets the clip of the graphics
+        context to that area. The diagram itself is copied from the tiles of the TileCache, which only render
+        the elements intersecting a tile again after the Model has reported a change of the scene below it.
+        The tiles are laid out in the zoomed world, which only differs from the view by the scroll position.
+         */
+        Graphics2D g2d = (Graphics2D) g.create();
+        Rectangle clipBounds = g.getClipBounds() != null ? g.getClipBounds() : new Rectangle(getSize());
+        if (dragLayer != null)
+        {
+            dragLayer.paint(g2d);  // the scene below the moving elements is frozen during a drag
+        }
+        else
         {
-            element.draw(g);
+            g2d.translate(-scrollX, -scrollY);
+            tileCache.paint(g2d, new Rectangle(clipBounds.x + scrollX, clipBounds.y + scrollY, clipBounds.width, clipBounds.height), getBackground());
+            g2d.translate(scrollX, scrollY);
         }
 
         // the SelectionBox and TempLine are always drawn above the AbstractObject and ConnectionLine
-        SelectMode.getSelectionBox().draw(g);
+        g2d.transform(getViewTransform());
+        SelectMode.getSelectionBox().draw(g2d);
 
-        Graphics2D g2d = (Graphics2D) g;
         g2d.setPaint(Color.BLACK);
-        g2d.setStroke(new BasicStroke(1.5f));
+        g2d.setStroke(new BasicStroke(ConnectionLineMode.TEMP_LINE_STROKE_WIDTH));
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g2d.draw(ConnectionLineMode.getTempLine());
+        g2d.dispose();
+
+        Model.INSTANCE.getMetrics().paintFinished(System.nanoTime() - start, drawnElements - drawnElementsBefore, Model.INSTANCE.getPaintedElementsInOrder().size());
+        tracer.paintFinished();
+    }
+
+    // draws the element in full or, when zoomed far out, only its outline without any details
+    static void drawElement(ToolElement element, Graphics2D g2d, boolean simplified)
+    {
+        drawnElements++;
+        if (simplified)
+        {
+            element.drawSimplified(g2d);
+        }
+        else
+        {
+            element.draw(g2d);
+        }
+    }
+
+    public double getZoom()
+    {
+        return zoom;
+    }
+
+    public boolean isSimplified()
+    {
+        return zoom < SIMPLIFIED_ZOOM;
+    }
+
+    // maps world coordinates to view coordinates
+    public AffineTransform getViewTransform()
+    {
+        AffineTransform viewTransform = AffineTransform.getTranslateInstance(-scrollX, -scrollY);
+        viewTransform.scale(zoom, zoom);
+
+        return viewTransform;
+    }
+
+    public Point toWorld(Point viewPoint)
+    {
+        return new Point((int) Math.floor((viewPoint.x + scrollX) / zoom), (int) Math.floor((viewPoint.y + scrollY) / zoom));
+    }
+
+    private MouseEvent toWorld(MouseEvent e)
+    {
+        Point worldPoint = toWorld(e.getPoint());
+
+        return new MouseEvent(e.getComponent(), e.getID(), e.getWhen(), e.getModifiersEx(), worldPoint.x, worldPoint.y,
+                e.getXOnScreen(), e.getYOnScreen(), e.getClickCount(), e.isPopupTrigger(), e.getButton());
+    }
+
+    // the smallest view rectangle covering the world area
+    public Rectangle toView(Rectangle worldArea)
+    {
+        int minX = (int) Math.floor(worldArea.x * zoom) - scrollX, maxX = (int) Math.ceil((worldArea.x + worldArea.width) * zoom) - scrollX;
+        int minY = (int) Math.floor(worldArea.y * zoom) - scrollY, maxY = (int) Math.ceil((worldArea.y + worldArea.height) * zoom) - scrollY;
+
+        return new Rectangle(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    // the world area shown by the CanvasArea
+    public Rectangle getVisibleWorldArea()
+    {
+        int minX = (int) Math.floor(scrollX / zoom), maxX = (int) Math.ceil((scrollX + getWidth()) / zoom);
+        int minY = (int) Math.floor(scrollY / zoom), maxY = (int) Math.ceil((scrollY + getHeight()) / zoom);
+
+        return new Rectangle(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    // zooms by the factor while the world position below viewPoint stays where it is
+    public void zoomAt(Point viewPoint, double factor)
+    {
+        double newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+
+        if (newZoom == zoom)
+        {
+            return;
+        }
+
+        double worldX = (viewPoint.x + scrollX) / zoom, worldY = (viewPoint.y + scrollY) / zoom;
+        scrollX = (int) Math.round(worldX * newZoom - viewPoint.x);
+        scrollY = (int) Math.round(worldY * newZoom - viewPoint.y);
+        zoom = newZoom;
+        tileCache.setZoom(zoom, isSimplified());
+
+        viewChanged();
+    }
+
+    // pans the view by the given number of view pixels
+    public void scrollBy(int dx, int dy)
+    {
+        if (dx == 0 && dy == 0)
+        {
+            return;
+        }
+
+        scrollX += dx;
+        scrollY += dy;
+
+        viewChanged();
+    }
+
+    public void resetView()
+    {
+        scrollX = scrollY = 0;
+        zoom = 1;
+        tileCache.setZoom(zoom, isSimplified());
+
+        viewChanged();
+    }
+
+    private void viewChanged()
+    {
+        if (dragLayer != null)  // the frozen background only covers the previous view
+        {
+            beginDrag(dragLayer.getMovingElements(), dragLayer.getStretchedLines());
+        }
+
+        repaintView();
+        firePropertyChange(VIEWPORT_PROPERTY, null, getVisibleWorldArea());
+    }
+
+    // movingElements must be in painting order, stretchedLines are the ConnectionLines among them with a single end on a moving object
+    void beginDrag(List<ToolElement> movingElements, List<ConnectionLine> stretchedLines)
+    {
+        dragLayer = new DragLayer(movingElements, stretchedLines, getSize(), getViewTransform(), getVisibleWorldArea(), isSimplified(), getGraphicsConfiguration(), getBackground());
+    }
+
+    // called after the moving elements have been moved by the offset
+    void dragMoved(int offsetX, int offsetY)
+    {
+        if (dragLayer != null)
+        {
+            dragLayer.moveBy(offsetX, offsetY);
+        }
+    }
+
+    // returns the elements that were moving, or null if no drag was in progress
+    List<ToolElement> endDrag()
+    {
+        if (dragLayer == null)
+        {
+            return null;
+        }
+
+        List<ToolElement> movingElements = dragLayer.getMovingElements();
+        dragLayer = null;
+
+        return movingElements;
+    }
+
+    boolean isDragging()
+    {
+        return dragLayer != null;
+    }
+
+    // marks the cached tiles in the world area as dirty without requesting a repaint
+    void invalidateScene(Rectangle area)
+    {
+        tileCache.invalidate(area);
+    }
+
+    // used by the Model when the whole diagram has been replaced
+    void repaintWholeScene()
+    {
+        tileCache.invalidateAll();
+        repaintView();
+    }
+
+    // used by the Model whenever the elements in the world areas of the dirty region have changed
+    void repaintScene(DirtyRegion dirtyRegion)
+    {
+        Model.INSTANCE.getMetrics().sceneRepaintRequested(dirtyRegion.getArea());
+        for (Rectangle area : dirtyRegion.getRectangles())
+        {
+            tileCache.invalidate(area);
+            repaintWorld(area);
+        }
+    }
+
+    // repaints the part of the view that shows the world area, e.g. the old and new range of the SelectionBox
+    public void repaintWorld(Rectangle worldArea)
+    {
+        Rectangle viewArea = toView(worldArea);
+        viewArea.grow(1, 1);  // stroke normalization may move an edge that lies on a pixel boundary by half a pixel
+        Model.INSTANCE.getMetrics().getTracer().repaintRequested(viewArea);
+        repaintScheduler.request(viewArea);
+    }
+
+    private void repaintView()
+    {
+        Model.INSTANCE.getMetrics().getTracer().repaintRequested(null);
+        repaintScheduler.request(null);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,150 @@
+package umlEditorComponents;
+
+import containers.SpatialIndex;
+import graphics.ConnectionLine;
+import graphics.ToolElement;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Freezes the scene while AbstractObjects are being dragged.
+ *
+ * <p>When a drag starts, all elements except the moving ones are rendered once into a background image of the
+ * view. As long as the drag lasts, a paint only copies the dirty area from that image and draws the few moving
+ * elements (the dragged AbstractObjects and the ConnectionLines attached to them) on top, so the cost of a drag
+ * event does not depend on how many other elements lie below or around the moving ones.</p>
+ *
+ * <p>A large selection is cheaper to drag when a paint only draws the moving elements inside its clip. All moving
+ * elements except the stretchedLines, which have a single end on a moving object, keep their shape and are moved
+ * by the same offset, so they are indexed once by their paint bounds at the start of the drag and looked up by the
+ * clip shifted back by the offset. The few stretchedLines are checked against the clip one by one.</p>
+ */
+class DragLayer
+{
+    private final List<ToolElement> movingElements;
+    private final List<ConnectionLine> stretchedLines;
+    private final SpatialIndex<Integer> rigidIndex = new SpatialIndex<>(128);  // the painting positions of the other moving elements, by their paint bounds at the start of the drag
+    private final ArrayList<Integer> stretchedPositions = new ArrayList<>();  // the painting positions of the stretchedLines
+    private final Point offset = new Point();  // how far the moving elements have moved since the start of the drag
+    private final Dimension viewSize;
+    private final AffineTransform viewTransform, worldTransform;
+    private final boolean simplified;
+    private final BufferedImage background;
+
+    // movingElements must be in painting order, stretchedLines are the lines among them that change their shape, visibleArea is the world area shown by the view
+    DragLayer(List<ToolElement> movingElements, List<ConnectionLine> stretchedLines, Dimension viewSize, AffineTransform viewTransform, Rectangle visibleArea, boolean simplified, GraphicsConfiguration configuration, Color backgroundColor)
+    {
+        this.movingElements = List.copyOf(movingElements);
+        this.stretchedLines = List.copyOf(stretchedLines);
+        this.viewSize = new Dimension(viewSize);
+        this.viewTransform = new AffineTransform(viewTransform);
+        try
+        {
+            worldTransform = viewTransform.createInverse();
+        }
+        catch (NoninvertibleTransformException e)
+        {
+            throw new IllegalArgumentException("the view transform is not invertible", e);
+        }
+        this.simplified = simplified;
+
+        HashSet<ConnectionLine> stretchedLineSet = new HashSet<>(stretchedLines);
+        for (int position = 0; position < this.movingElements.size(); position++)
+        {
+            ToolElement element = this.movingElements.get(position);
+            if (stretchedLineSet.contains(element))
+            {
+                stretchedPositions.add(position);
+            }
+            else
+            {
+                rigidIndex.insert(position, element.getPaintBounds());
+            }
+        }
+
+        AffineTransform deviceTransform = configuration != null ? configuration.getDefaultTransform() : new AffineTransform();
+        double deviceScale = Math.max(deviceTransform.getScaleX(), deviceTransform.getScaleY());
+        int width = Math.max(1, (int) Math.ceil(viewSize.width * deviceScale));
+        int height = Math.max(1, (int) Math.ceil(viewSize.height * deviceScale));
+        background = configuration != null ? configuration.createCompatibleImage(width, height, Transparency.OPAQUE) : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        // render every element that is not moving, in painting order
+        HashSet<ToolElement> movingElementSet = new HashSet<>(movingElements);
+        Graphics2D g2d = background.createGraphics();
+        g2d.setBackground(backgroundColor);
+        g2d.clearRect(0, 0, width, height);
+        g2d.scale(deviceScale, deviceScale);
+        g2d.transform(viewTransform);
+        for (ToolElement element : Model.INSTANCE.getPaintedElementsInOrder(visibleArea))
+        {
+            if (!movingElementSet.contains(element))
+            {
+                CanvasArea.drawElement(element, g2d, simplified);
+            }
+        }
+        g2d.dispose();
+    }
+
+    // called after the moving elements have been moved by the offset
+    void moveBy(int offsetX, int offsetY)
+    {
+        offset.translate(offsetX, offsetY);
+    }
+
+    // g2d is in view coordinates
+    void paint(Graphics2D g2d)
+    {
+        g2d.drawImage(background, 0, 0, viewSize.width, viewSize.height, null);
+
+        /*
+        ==================== previous version ====================
+        for (ToolElement element : movingElements)
+        {
+            CanvasArea.drawElement(element, g2d, simplified);
+        }
+        ==================== previous version ====================
+        Every moving element was drawn on every paint, although the RepaintScheduler paints the dirty region of a
+        frame as several small clips, so a drag of a large selection drew all of it several times per frame. Only
+        the elements whose paint bounds intersect the clip, mapped back into the world, are drawn now, in painting order.
+         */
+        Rectangle clipBounds = g2d.getClipBounds() != null ? g2d.getClipBounds() : new Rectangle(viewSize);
+        Rectangle worldClip = worldTransform.createTransformedShape(clipBounds).getBounds();
+        worldClip.grow(1, 1);  // the rounding of the mapped bounds may differ by a pixel from the rounding of the rendering
+        TreeSet<Integer> positions = new TreeSet<>();
+        rigidIndex.query(new Rectangle(worldClip.x - offset.x, worldClip.y - offset.y, worldClip.width, worldClip.height), positions);
+        for (int position : stretchedPositions)
+        {
+            // the bounds cover the paint bounds and are much cheaper to get than the outline of the stroked arrow
+            ToolElement line = movingElements.get(position);
+            if (line.getBounds().intersects(worldClip) && line.getPaintBounds().intersects(worldClip))
+            {
+                positions.add(position);
+            }
+        }
+
+        AffineTransform savedTransform = g2d.getTransform();
+        g2d.transform(viewTransform);
+        for (int position : positions)
+        {
+            CanvasArea.drawElement(movingElements.get(position), g2d, simplified);
+        }
+        g2d.setTransform(savedTransform);
+    }
+
+    List<ToolElement> getMovingElements()
+    {
+        return movingElements;
+    }
+
+    List<ConnectionLine> getStretchedLines()
+    {
+        return stretchedLines;
+    }
+}
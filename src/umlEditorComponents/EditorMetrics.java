@@ -0,0 +1,335 @@
+package umlEditorComponents;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records where the time of an editing session goes: how long the CanvasArea takes to paint and how many elements
+ * it draws, how large the areas are that the Model asks to repaint, how many hit tests a mouse press runs and how
+ * long grouping, ungrouping, deleting and moving take, and how long it takes from a mouse event to the paint that
+ * shows its effect, which the LatencyTracer measures and can also record as a trace. The frames of the
+ * RepaintScheduler and the rectangles each of them paints are counted together with the repaint requests it
+ * merged or dropped.
+ *
+ * <p>The values are recorded on the event dispatch thread into Histograms, which cost a few counter increments per
+ * value, so the metrics are always recorded. Once published, they can be read through JMX (e.g. with JConsole)
+ * and, if the METRICS_CSV_PROPERTY is set, are also appended to that CSV file every METRICS_INTERVAL_PROPERTY
+ * seconds by a background thread, one row per interval with the statistics since the start.</p>
+ */
+class EditorMetrics implements EditorMetricsMXBean
+{
+    public static final String METRICS_CSV_PROPERTY = "umleditor.metricsCsv";  // the path of the CSV file
+    public static final String METRICS_INTERVAL_PROPERTY = "umleditor.metricsInterval";  // the seconds between two rows of the CSV file
+    private static final String OBJECT_NAME = "umleditor:type=EditorMetrics";
+    private static final double MILLISECONDS = 1e6;  // the unit of the durations, which are recorded in nanoseconds
+
+    private final Histogram paintDuration = new Histogram();
+    private final Histogram elementsDrawnPerPaint = new Histogram();
+    private final Histogram dirtyAreaPerRepaint = new Histogram();
+    private final Histogram paintsPerFrame = new Histogram();
+    private final Histogram hitTestsPerPress = new Histogram();
+    private final Histogram groupDuration = new Histogram();
+    private final Histogram ungroupDuration = new Histogram();
+    private final Histogram deleteDuration = new Histogram();
+    private final Histogram moveObjectDuration = new Histogram();
+    private final Histogram inputToPaintLatency = new Histogram();
+    private final LatencyTracer tracer = new LatencyTracer(inputToPaintLatency);
+    private final LongAdder repaintRequests = new LongAdder(), mergedRepaintRequests = new LongAdder(), droppedRepaintRequests = new LongAdder(), frames = new LongAdder();
+    private volatile long elementCount = 0;
+    // the frames of the current second, from which the frames per second of the last one are computed
+    private long secondStart = System.nanoTime();
+    private int framesInSecond = 0;
+    private volatile long lastFrame = 0;
+    private volatile double framesPerSecond = 0;
+    private ScheduledExecutorService csvWriter = null;
+
+    LatencyTracer getTracer()
+    {
+        return tracer;
+    }
+
+    void paintFinished(long nanos, int elementsDrawn, int elementCount)
+    {
+        paintDuration.record(nanos);
+        elementsDrawnPerPaint.record(elementsDrawn);
+        this.elementCount = elementCount;
+    }
+
+    // a request that starts a new frame of the RepaintScheduler
+    void repaintScheduled()
+    {
+        repaintRequests.increment();
+    }
+
+    // a request whose area was added to the dirty region of the scheduled frame
+    void repaintMerged()
+    {
+        repaintRequests.increment();
+        mergedRepaintRequests.increment();
+    }
+
+    // a request whose area was empty or already covered by the dirty region of the scheduled frame
+    void repaintDropped()
+    {
+        repaintRequests.increment();
+        droppedRepaintRequests.increment();
+    }
+
+    // a frame that has painted the rectangles of its dirty region one by one
+    void frameFlushed(int paints)
+    {
+        frames.increment();
+        paintsPerFrame.record(paints);
+
+        long now = System.nanoTime();
+        framesInSecond++;
+        if (now - secondStart >= 1_000_000_000L)
+        {
+            framesPerSecond = framesInSecond * 1e9 / (now - secondStart);
+            secondStart = now;
+            framesInSecond = 0;
+        }
+        lastFrame = now;
+    }
+
+    // area is the sum of the areas of the disjoint rectangles of the dirty region
+    void sceneRepaintRequested(long area)
+    {
+        dirtyAreaPerRepaint.record(area);
+    }
+
+    void pressed(int hitTests)
+    {
+        hitTestsPerPress.record(hitTests);
+    }
+
+    void grouped(long nanos)
+    {
+        groupDuration.record(nanos);
+    }
+
+    void ungrouped(long nanos)
+    {
+        ungroupDuration.record(nanos);
+    }
+
+    void deleted(long nanos)
+    {
+        deleteDuration.record(nanos);
+    }
+
+    void objectMoved(long nanos)
+    {
+        moveObjectDuration.record(nanos);
+    }
+
+    @Override
+    public Histogram.Snapshot getPaintDuration()
+    {
+        return paintDuration.getSnapshot(MILLISECONDS);
+    }
+
+    @Override
+    public Histogram.Snapshot getElementsDrawnPerPaint()
+    {
+        return elementsDrawnPerPaint.getSnapshot(1);
+    }
+
+    @Override
+    public long getElementCount()
+    {
+        return elementCount;
+    }
+
+    @Override
+    public double getFramesPerSecond()
+    {
+        return System.nanoTime() - lastFrame > 1_000_000_000L ? 0 : framesPerSecond;
+    }
+
+    @Override
+    public long getFrames()
+    {
+        return frames.sum();
+    }
+
+    @Override
+    public long getRepaintRequests()
+    {
+        return repaintRequests.sum();
+    }
+
+    @Override
+    public long getMergedRepaintRequests()
+    {
+        return mergedRepaintRequests.sum();
+    }
+
+    @Override
+    public long getDroppedRepaintRequests()
+    {
+        return droppedRepaintRequests.sum();
+    }
+
+    @Override
+    public Histogram.Snapshot getPaintsPerFrame()
+    {
+        return paintsPerFrame.getSnapshot(1);
+    }
+
+    @Override
+    public Histogram.Snapshot getDirtyAreaPerRepaint()
+    {
+        return dirtyAreaPerRepaint.getSnapshot(1);
+    }
+
+    @Override
+    public Histogram.Snapshot getHitTestsPerPress()
+    {
+        return hitTestsPerPress.getSnapshot(1);
+    }
+
+    @Override
+    public Histogram.Snapshot getGroupDuration()
+    {
+        return groupDuration.getSnapshot(MILLISECONDS);
+    }
+
+    @Override
+    public Histogram.Snapshot getUngroupDuration()
+    {
+        return ungroupDuration.getSnapshot(MILLISECONDS);
+    }
+
+    @Override
+    public Histogram.Snapshot getDeleteDuration()
+    {
+        return deleteDuration.getSnapshot(MILLISECONDS);
+    }
+
+    @Override
+    public Histogram.Snapshot getMoveObjectDuration()
+    {
+        return moveObjectDuration.getSnapshot(MILLISECONDS);
+    }
+
+    @Override
+    public Histogram.Snapshot getInputToPaintLatency()
+    {
+        return inputToPaintLatency.getSnapshot(MILLISECONDS);
+    }
+
+    @Override
+    public void startTrace()
+    {
+        tracer.startTrace();
+    }
+
+    @Override
+    public void stopTrace(String path) throws IOException
+    {
+        tracer.stopTrace(Path.of(path));
+    }
+
+    @Override
+    public void reset()
+    {
+        for (Histogram histogram : new Histogram[]{paintDuration, elementsDrawnPerPaint, paintsPerFrame, dirtyAreaPerRepaint, hitTestsPerPress, groupDuration, ungroupDuration, deleteDuration, moveObjectDuration, inputToPaintLatency})
+        {
+            histogram.reset();
+        }
+        for (LongAdder counter : new LongAdder[]{repaintRequests, mergedRepaintRequests, droppedRepaintRequests, frames})
+        {
+            counter.reset();
+        }
+    }
+
+    // the columns of the CSV file, in the order of the attributes of the MXBean
+    private Map<String, Histogram.Snapshot> getSnapshots()
+    {
+        LinkedHashMap<String, Histogram.Snapshot> snapshots = new LinkedHashMap<>();
+        snapshots.put("paintMs", getPaintDuration());
+        snapshots.put("elementsDrawn", getElementsDrawnPerPaint());
+        snapshots.put("paintsPerFrame", getPaintsPerFrame());
+        snapshots.put("dirtyArea", getDirtyAreaPerRepaint());
+        snapshots.put("hitTests", getHitTestsPerPress());
+        snapshots.put("groupMs", getGroupDuration());
+        snapshots.put("ungroupMs", getUngroupDuration());
+        snapshots.put("deleteMs", getDeleteDuration());
+        snapshots.put("moveObjectMs", getMoveObjectDuration());
+        snapshots.put("inputToPaintMs", getInputToPaintLatency());
+
+        return snapshots;
+    }
+
+    // registers the MXBean and starts writing the CSV file if its property is set
+    void publish() throws JMException, IOException
+    {
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        }
+
+        String csvPath = System.getProperty(METRICS_CSV_PROPERTY);
+        if (csvPath != null && csvWriter == null)
+        {
+            long interval = Long.getLong(METRICS_INTERVAL_PROPERTY, 10);
+            Path path = Path.of(csvPath);
+            if (!Files.exists(path) || Files.size(path) == 0)
+            {
+                StringBuilder header = new StringBuilder("time,elementCount,framesPerSecond,frames,repaintRequests,mergedRepaintRequests,droppedRepaintRequests");
+                for (String column : getSnapshots().keySet())
+                {
+                    for (String statistic : new String[]{"Count", "Mean", "P50", "P90", "P99", "Max"})
+                    {
+                        header.append(',').append(column).append(statistic);
+                    }
+                }
+                Files.writeString(path, header.append('\n'));
+            }
+
+            csvWriter = Executors.newSingleThreadScheduledExecutor(runnable ->
+            {
+                Thread thread = new Thread(runnable, "metrics writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            csvWriter.scheduleAtFixedRate(() -> appendRow(path), interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    private void appendRow(Path path)
+    {
+        StringBuilder row = new StringBuilder(Instant.now().toString()).append(',').append(elementCount);
+        row.append(String.format(Locale.ROOT, ",%.1f,%d,%d,%d,%d", getFramesPerSecond(), getFrames(), getRepaintRequests(), getMergedRepaintRequests(), getDroppedRepaintRequests()));
+        for (Histogram.Snapshot snapshot : getSnapshots().values())
+        {
+            row.append(String.format(Locale.ROOT, ",%d,%.3f,%.3f,%.3f,%.3f,%.3f", snapshot.getCount(), snapshot.getMean(), snapshot.getP50(), snapshot.getP90(), snapshot.getP99(), snapshot.getMax()));
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND))
+        {
+            writer.append(row).append('\n');
+        }
+        catch (IOException e)
+        {
+            // the next interval tries again, the editor must not be disturbed by its metrics
+            System.err.println("Cannot write the metrics to " + path + ": " + e);
+        }
+    }
+}
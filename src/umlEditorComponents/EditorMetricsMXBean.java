@@ -0,0 +1,63 @@
+package umlEditorComponents;
+
+import java.io.IOException;
+
+/**
+ * The management interface of the metrics of the editor, registered as umleditor:type=EditorMetrics.
+ * All statistics are counted since the editor started or since the last reset; the durations are in milliseconds.
+ */
+public interface EditorMetricsMXBean
+{
+    // the time CanvasArea.paintComponent takes
+    Histogram.Snapshot getPaintDuration();
+
+    // the number of elements drawn by a paint, which only draws the dirty tiles or, during a drag, the moving elements
+    Histogram.Snapshot getElementsDrawnPerPaint();
+
+    // the number of top-level elements in the diagram at the last paint
+    long getElementCount();
+
+    // the frames of the RepaintScheduler during the last second, 0 if there has been none for a second
+    double getFramesPerSecond();
+
+    // the frames the RepaintScheduler has painted
+    long getFrames();
+
+    // the paints of a frame, one for each disjoint rectangle of its dirty region
+    Histogram.Snapshot getPaintsPerFrame();
+
+    // all repaint requests of the CanvasArea, including the merged and dropped ones
+    long getRepaintRequests();
+
+    // the repaint requests whose area was added to the dirty region of an already scheduled frame
+    long getMergedRepaintRequests();
+
+    // the repaint requests whose area was empty or already covered by the dirty region of the scheduled frame
+    long getDroppedRepaintRequests();
+
+    // the size of the world area the Model asks to repaint because the elements in it have changed, in square world units, without the overlaps of its rectangles
+    Histogram.Snapshot getDirtyAreaPerRepaint();
+
+    // the number of elements whose exact hit test runs for a mouse press
+    Histogram.Snapshot getHitTestsPerPress();
+
+    Histogram.Snapshot getGroupDuration();
+
+    Histogram.Snapshot getUngroupDuration();
+
+    Histogram.Snapshot getDeleteDuration();
+
+    // the time a single mouseDragged event takes to move the selected AbstractObjects
+    Histogram.Snapshot getMoveObjectDuration();
+
+    // the time from passing a mouse event to the mode until the end of the paint that shows its effect
+    Histogram.Snapshot getInputToPaintLatency();
+
+    // starts recording the input events, repaint requests and paints for stopTrace
+    void startTrace();
+
+    // writes the trace recorded since startTrace as a Chrome trace_event JSON file to the path and stops it
+    void stopTrace(String path) throws IOException;
+
+    void reset();
+}
@@ -0,0 +1,155 @@
+package umlEditorComponents;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts non-negative values (e.g. durations in nanoseconds) in buckets whose width grows with the value, so that
+ * a fixed array of a few hundred buckets covers every long with a relative error of at most 1 / SUB_BUCKETS.
+ *
+ * <p>Every power of two is divided into SUB_BUCKETS buckets of equal width, and the values below 2 * SUB_BUCKETS
+ * have a bucket of their own. Recording a value only increments a few counters without any lock, so it can be
+ * done on the event dispatch thread while another thread takes snapshots.</p>
+ */
+public class Histogram
+{
+    private static final int SUB_BUCKETS = 8;  // a power of 2
+    private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+    /**
+     * The statistics of the values recorded until a snapshot was taken, divided by the unit it was taken in.
+     * The percentiles are the upper bounds of the buckets they fall into, but never more than the maximum.
+     */
+    public static final class Snapshot
+    {
+        private final long count;
+        private final double mean, p50, p90, p99, max;
+
+        @ConstructorProperties({"count", "mean", "p50", "p90", "p99", "max"})  // lets a JMX client turn the attribute back into a Snapshot
+        public Snapshot(long count, double mean, double p50, double p90, double p99, double max)
+        {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public double getMean()
+        {
+            return mean;
+        }
+
+        public double getP50()
+        {
+            return p50;
+        }
+
+        public double getP90()
+        {
+            return p90;
+        }
+
+        public double getP99()
+        {
+            return p99;
+        }
+
+        public double getMax()
+        {
+            return max;
+        }
+    }
+
+    private final AtomicLongArray buckets = new AtomicLongArray((Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder(), sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    // a negative value is counted as 0
+    void record(long value)
+    {
+        value = Math.max(0, value);
+        buckets.incrementAndGet(getBucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    // a snapshot that is taken at the same time may still count some of the values recorded before the reset
+    void reset()
+    {
+        for (int bucket = 0; bucket < buckets.length(); bucket++)
+        {
+            buckets.set(bucket, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    private static int getBucket(long value)
+    {
+        if (value < 2 * SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;  // value >>> shift lies in [SUB_BUCKETS, 2 * SUB_BUCKETS)
+
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    // the largest value counted in the bucket
+    private static long getUpperBound(int bucket)
+    {
+        if (bucket < 2 * SUB_BUCKETS)
+        {
+            return bucket;
+        }
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    // unit is the value that becomes 1 in the snapshot, e.g. 1e6 for nanoseconds shown as milliseconds
+    Snapshot getSnapshot(double unit)
+    {
+        long[] counts = new long[buckets.length()];
+        long total = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++)
+        {
+            counts[bucket] = buckets.get(bucket);
+            total += counts[bucket];
+        }
+        long maxValue = max.get();
+        if (total == 0)
+        {
+            return new Snapshot(0, 0, 0, 0, 0, 0);
+        }
+
+        double[] percentiles = {50, 90, 99};
+        double[] values = new double[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++)
+        {
+            long rank = (long) Math.ceil(percentiles[i] / 100 * total), seen = 0;
+            int bucket = 0;
+            while ((seen += counts[bucket]) < rank)
+            {
+                bucket++;
+            }
+            values[i] = Math.min(getUpperBound(bucket), maxValue) / unit;
+        }
+
+        return new Snapshot(total, sum.sum() / (double) total / unit, values[0], values[1], values[2], maxValue / unit);
+    }
+}
@@ -0,0 +1,918 @@
+package umlEditorComponents;
+
+import diagramFiles.BinaryDiagramFile;
+import diagramFiles.DiagramFormat;
+import graphics.Class;
+import graphics.*;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ByteArrayInputStream;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the edits of the diagram, from which the work of a session that ended without being
+ * closed (e.g. because the JVM died) is recovered on the next start.
+ *
+ * <p>The journal starts with a checkpoint: a copy of the diagram as it was opened, saved or set, which is kept as a
+ * snapshot file next to the journal. Every edit after the checkpoint is appended as a compact entry that refers
+ * to the elements by ids. The ids are assigned in the order of a depth-first walk over the diagram at the
+ * checkpoint and then in the order in which new elements are added, so replaying the entries on the snapshot
+ * assigns the same ids again.</p>
+ *
+ * <p>The event dispatch thread only encodes an entry into a few bytes and queues it. A background writer thread
+ * appends the queued entries and forces them to the disk at most every SYNC_INTERVAL milliseconds, so that one
+ * fsync covers all entries of a burst. The mouseDragged events of a move are summed up and recorded as a single
+ * entry when the move ends, so a drag costs two int additions per event. getRecordNanos measures the time spent
+ * on the event dispatch thread for all other edits, getMovedEvents counts the summed up events.</p>
+ *
+ * <p>An undo or redo is recorded as an entry of its own, since replaying the entries since the checkpoint rebuilds
+ * the same undo history. An undo of an edit from before the checkpoint starts a new journal instead.</p>
+ *
+ * <p>Each entry is framed by its length and a CRC-32, so a torn write at the end of the journal is detected and cut
+ * off. A new checkpoint writes a new journal next to the old one and atomically replaces it.</p>
+ */
+class Journal
+{
+    public static final String JOURNAL_PROPERTY = "umleditor.journal";  // the path of the journal file
+    private static final int MAGIC = 0x554D4C4A;  // "UMLJ"
+    private static final int VERSION = 1;
+    private static final long SYNC_INTERVAL = 50;  // the longest time a recorded entry waits for its fsync, in milliseconds
+    private static final int MAX_ENTRY_SIZE = 1 << 24;
+
+    // the entry types
+    private static final byte ADD_OBJECT = 1, ADD_LINE = 2, MOVE = 3, GROUP = 4, UNGROUP = 5, RENAME = 6, DELETE = 7, BRING_TO_FRONT = 8, UNDO = 9, REDO = 10, MOVE_OBJECTS = 11;
+    // the kinds of elements in ADD_OBJECT and ADD_LINE entries
+    private static final byte CLASS = 0, USE_CASE = 1, ASSOCIATION_LINE = 0, GENERALIZATION_LINE = 1, COMPOSITION_LINE = 2;
+
+    private final Path path, lockPath;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    // weak, so that the deleted elements are only kept by the UndoHistory, which may spill them to its file
+    private final WeakHashMap<ToolElement, Integer> ids = new WeakHashMap<>();
+    private final ArrayList<WeakReference<ToolElement>> elementsById = new ArrayList<>();
+    private int generation = 0;  // counts the assignments of the ids, so that an id of an earlier checkpoint is not taken for one of the current
+    private boolean replaying = false;
+    private boolean suspended = false;  // nothing is recorded while a paged diagram is open, whose elements come and go
+    private final ByteArrayOutputStream entryBytes = new ByteArrayOutputStream(64);
+    private final DataOutputStream entry = new DataOutputStream(entryBytes);
+    // the move that is being recorded
+    private List<AbstractObject> movedObjects = null;
+    private int movedX, movedY;
+    private long recordedEntries = 0, recordNanos = 0, movedEvents = 0;
+
+    // ==================== the writer thread ====================
+
+    private record Checkpoint(Path diagramFile, Path source, boolean moveSource) {}
+    private record Close(boolean discard) {}
+
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final Thread writer = new Thread(this::write, "journal writer");
+    private volatile long writtenBytes = 0, syncs = 0;
+    private volatile boolean failed = false;
+    private FileChannel channel = null;  // only used by the writer thread
+    private int snapshotNumber = 0;
+
+    private Journal(Path path, FileChannel lockChannel, FileLock lock)
+    {
+        this.path = path;
+        this.lockPath = path.resolveSibling(path.getFileName() + ".lock");
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+        writer.setDaemon(true);
+    }
+
+    static Path getDefaultPath()
+    {
+        String path = System.getProperty(JOURNAL_PROPERTY);
+
+        return path != null ? Path.of(path) : Path.of(System.getProperty("user.home"), ".umleditor", "journal");
+    }
+
+    // returns null if another instance of the editor is using the journal
+    static Journal open(Path path) throws IOException
+    {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        FileChannel lockChannel = FileChannel.open(path.resolveSibling(path.getFileName() + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock = lockChannel.tryLock();
+
+        if (lock == null)
+        {
+            lockChannel.close();
+            return null;
+        }
+
+        return new Journal(path, lockChannel, lock);
+    }
+
+    private Path getSnapshotPath(int number, String extension)
+    {
+        return path.resolveSibling(path.getFileName() + ".snapshot" + number + "." + extension);
+    }
+
+    private void write()
+    {
+        ArrayList<Object> batch = new ArrayList<>();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 16);
+        CRC32 crc = new CRC32();
+
+        try
+        {
+            while (true)
+            {
+                // group commit: everything that is recorded within SYNC_INTERVAL after the first entry shares one fsync
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SYNC_INTERVAL);
+                Object next;
+                while ((next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) != null)
+                {
+                    batch.add(next);
+                    if (!(next instanceof byte[]))
+                    {
+                        break;  // a checkpoint or close is handled right away
+                    }
+                }
+
+                for (Object command : batch)
+                {
+                    if (command instanceof byte[] bytes)
+                    {
+                        crc.reset();
+                        crc.update(bytes);
+                        DataOutputStream out = new DataOutputStream(buffer);
+                        out.writeInt(bytes.length);
+                        out.write(bytes);
+                        out.writeInt((int) crc.getValue());
+                    }
+                    else
+                    {
+                        flush(buffer);
+                        if (command instanceof Checkpoint checkpoint)
+                        {
+                            writeCheckpoint(checkpoint);
+                        }
+                        else if (command instanceof Close close)
+                        {
+                            closeChannel(close.discard());
+                            return;
+                        }
+                    }
+                }
+                flush(buffer);
+                batch.clear();
+            }
+        }
+        catch (IOException e)
+        {
+            failed = true;
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "The journal cannot be written, changes will not be recovered after a crash:\n" + e.getMessage(), "Journal", JOptionPane.WARNING_MESSAGE));
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush(ByteArrayOutputStream buffer) throws IOException
+    {
+        if (buffer.size() > 0 && channel != null)
+        {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            while (bytes.hasRemaining())
+            {
+                channel.write(bytes);
+            }
+            channel.force(false);
+            writtenBytes += buffer.size();
+            syncs++;
+        }
+        buffer.reset();
+    }
+
+    // writes a new journal that starts at the checkpoint and replaces the old one
+    private void writeCheckpoint(Checkpoint checkpoint) throws IOException
+    {
+        String snapshotName = "";
+
+        if (checkpoint.source() != null)
+        {
+            String fileName = checkpoint.source().getFileName().toString();
+            Path snapshot = getSnapshotPath(++snapshotNumber, fileName.substring(fileName.lastIndexOf('.') + 1));
+            if (checkpoint.moveSource())
+            {
+                Files.move(checkpoint.source(), snapshot, StandardCopyOption.REPLACE_EXISTING);
+            }
+            else
+            {
+                Files.copy(checkpoint.source(), snapshot, StandardCopyOption.REPLACE_EXISTING);
+            }
+            try (FileChannel snapshotChannel = FileChannel.open(snapshot, StandardOpenOption.WRITE))
+            {
+                snapshotChannel.force(true);
+            }
+            snapshotName = snapshot.getFileName().toString();
+        }
+
+        Path newJournal = path.resolveSibling(path.getFileName() + ".new");
+        FileChannel newChannel = FileChannel.open(newJournal, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(header);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(checkpoint.diagramFile() != null ? checkpoint.diagramFile().toAbsolutePath().toString() : "");
+        out.writeUTF(snapshotName);
+        newChannel.write(ByteBuffer.wrap(header.toByteArray()));
+        newChannel.force(true);
+        Files.move(newJournal, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (channel != null)
+        {
+            channel.close();
+        }
+        channel = newChannel;
+        syncs++;
+
+        // the old snapshots are no longer referred to
+        for (Path snapshot : getSnapshots())
+        {
+            if (!snapshot.getFileName().toString().equals(snapshotName))
+            {
+                Files.deleteIfExists(snapshot);
+            }
+        }
+    }
+
+    private List<Path> getSnapshots() throws IOException
+    {
+        ArrayList<Path> snapshots = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path.toAbsolutePath().getParent(), path.getFileName() + ".snapshot*"))
+        {
+            stream.forEach(snapshots::add);
+        }
+
+        return snapshots;
+    }
+
+    private void closeChannel(boolean discard) throws IOException
+    {
+        if (channel != null)
+        {
+            channel.close();
+        }
+
+        if (discard)
+        {
+            Files.deleteIfExists(path);
+            for (Path snapshot : getSnapshots())
+            {
+                Files.deleteIfExists(snapshot);
+            }
+        }
+    }
+
+    // ==================== checkpoints and recovery ====================
+
+    /*
+    Starts a new journal at the current diagram. source is a file that holds exactly the diagram, e.g. the one it
+    has just been opened from or saved to, and is copied as the snapshot; if there is none, the diagram is written
+    to a temporary snapshot here.
+     */
+    void checkpoint(List<ToolElement> diagram, Path diagramFile, Path source) throws IOException
+    {
+        endMove();
+        suspended = false;
+        assignIds(diagram);
+
+        if (source == null && !diagram.isEmpty())
+        {
+            Path snapshot = Files.createTempFile(path.toAbsolutePath().getParent(), "snapshot", "." + DiagramFormat.BINARY.getExtension());
+            BinaryDiagramFile.write(snapshot, diagram);
+            enqueue(new Checkpoint(diagramFile, snapshot, true));
+        }
+        else
+        {
+            enqueue(new Checkpoint(diagramFile, source, false));
+        }
+    }
+
+    // stops recording until the next checkpoint, after which the journal recovers nothing
+    void suspend()
+    {
+        endMove();
+        suspended = true;
+        ids.clear();
+        elementsById.clear();
+        generation++;
+        enqueue(new Checkpoint(null, null, false));
+    }
+
+    private void assignIds(List<ToolElement> diagram)
+    {
+        ids.clear();
+        elementsById.clear();
+        generation++;
+
+        for (ToolElement element : diagram)
+        {
+            assignIds(element);
+        }
+    }
+
+    private void assignIds(ToolElement element)
+    {
+        newId(element);
+
+        if (element instanceof AbstractObject object && object.getMembers() != null)
+        {
+            for (ToolElement member : object.getMembers().first())
+            {
+                assignIds(member);
+            }
+        }
+    }
+
+    private int newId(ToolElement element)
+    {
+        ids.put(element, elementsById.size());
+        elementsById.add(new WeakReference<>(element));
+
+        return elementsById.size() - 1;
+    }
+
+    /*
+    The journal only holds the elements weakly, so a deleted element whose edit the UndoHistory has spilled to its
+    file may be collected, and an undo then reads back a copy of it. The UndoHistory writes the key of every
+    element it spills and passes it to rebind together with the copy, which takes over the id of the element.
+    A key of an earlier checkpoint, whose ids are no longer in use, is ignored.
+     */
+    long getKey(ToolElement element)
+    {
+        Integer id = ids.get(element);
+
+        return id != null ? (long) generation << 32 | id : -1;
+    }
+
+    void rebind(ToolElement element, long key)
+    {
+        int id = (int) key;
+
+        if (key >= 0 && (int) (key >>> 32) == generation && id < elementsById.size())
+        {
+            ids.put(element, id);
+            elementsById.set(id, new WeakReference<>(element));
+        }
+    }
+
+    /*
+    Restores the diagram from the journal of a session that was not closed, if there is one, and starts the
+    writer. Returns the file the diagram belongs to, or null. Entries after a torn or corrupt one are dropped.
+    If the journal cannot be read at all, it is kept as a .corrupt file and the diagram stays empty.
+     */
+    Path recover(Model model) throws IOException
+    {
+        try
+        {
+            return replayJournal(model);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            replaying = false;
+            model.restoreDiagram(List.of());
+            if (channel != null)
+            {
+                channel.close();
+                channel = null;
+            }
+            Files.move(path, path.resolveSibling(path.getFileName() + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+
+            throw e;
+        }
+        finally
+        {
+            writer.start();
+            if (channel == null)
+            {
+                checkpoint(List.of(), null, null);
+            }
+        }
+    }
+
+    private Path replayJournal(Model model) throws IOException
+    {
+        Path diagramFile = null;
+
+        if (Files.exists(path))
+        {
+            byte[] journal = Files.readAllBytes(path);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(journal));
+            long validLength = 0;
+
+            if (journal.length >= 8 && in.readInt() == MAGIC && in.readInt() == VERSION)
+            {
+                String file = in.readUTF(), snapshotName = in.readUTF();
+                diagramFile = file.isEmpty() ? null : Path.of(file);
+
+                List<ToolElement> diagram = List.of();
+                if (!snapshotName.isEmpty())
+                {
+                    Path snapshot = path.resolveSibling(snapshotName);
+                    diagram = DiagramFormat.forPath(snapshot).read(snapshot);
+                    snapshotNumber = Integer.parseInt(snapshotName.substring(snapshotName.lastIndexOf(".snapshot") + 9, snapshotName.lastIndexOf('.')));
+                }
+                model.restoreDiagram(diagram);
+                assignIds(diagram);
+                validLength = journal.length - in.available();
+
+                replaying = true;
+                try
+                {
+                    CRC32 crc = new CRC32();
+                    while (in.available() >= 8)
+                    {
+                        int length = in.readInt();
+                        if (length <= 0 || length > MAX_ENTRY_SIZE || in.available() < length + 4)
+                        {
+                            break;  // torn write
+                        }
+                        byte[] bytes = new byte[length];
+                        in.readFully(bytes);
+                        crc.reset();
+                        crc.update(bytes);
+                        if (in.readInt() != (int) crc.getValue())
+                        {
+                            break;
+                        }
+
+                        try
+                        {
+                            replay(model, bytes);
+                        }
+                        catch (IOException | RuntimeException e)
+                        {
+                            break;  // an entry that does not match the diagram, the rest is dropped as well
+                        }
+                        validLength = journal.length - in.available();
+                    }
+                }
+                finally
+                {
+                    replaying = false;
+                }
+                model.clearSelection();
+            }
+
+            // continue after the last valid entry
+            channel = FileChannel.open(path, StandardOpenOption.WRITE);
+            channel.truncate(validLength);
+            channel.position(validLength);
+            if (validLength == 0)  // not a journal at all
+            {
+                channel.close();
+                channel = null;
+            }
+        }
+
+        return diagramFile;
+    }
+
+    private void replay(Model model, byte[] bytes) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        switch (in.readByte())
+        {
+            case ADD_OBJECT ->
+            {
+                int id = in.readInt();
+                byte kind = in.readByte();
+                Point location = new Point(in.readInt(), in.readInt());
+                checkNextId(id);
+                model.addObject(kind == CLASS ? new Class(location) : new UseCase(location));
+            }
+            case ADD_LINE ->
+            {
+                int id = in.readInt();
+                byte kind = in.readByte();
+                BasicObject start = (BasicObject) getElement(in.readInt());
+                BasicObject.ConnectionPort startPort = start.getPorts()[in.readByte()];
+                BasicObject end = (BasicObject) getElement(in.readInt());
+                BasicObject.ConnectionPort endPort = end.getPorts()[in.readByte()];
+                checkNextId(id);
+                model.addLine(switch (kind)
+                {
+                    case ASSOCIATION_LINE -> new AssociationLine(start, startPort, end, endPort);
+                    case GENERALIZATION_LINE -> new GeneralizationLine(start, startPort, end, endPort);
+                    default -> new CompositionLine(start, startPort, end, endPort);
+                });
+            }
+            case MOVE ->
+            {
+                AbstractObject object = (AbstractObject) getElement(in.readInt());
+                model.moveObjects(List.of(object), in.readInt(), in.readInt());
+                model.endMove();
+            }
+            case MOVE_OBJECTS ->
+            {
+                ArrayList<AbstractObject> objects = new ArrayList<>();
+                for (ToolElement element : readElements(in))
+                {
+                    objects.add((AbstractObject) element);
+                }
+                model.moveObjects(objects, in.readInt(), in.readInt());
+                model.endMove();
+            }
+            case GROUP ->
+            {
+                int id = in.readInt();
+                model.select(readElements(in));
+                checkNextId(id);
+                model.groupSelection();
+            }
+            case UNGROUP ->
+            {
+                model.select(List.of(getElement(in.readInt())));
+                model.ungroupSelection();
+            }
+            case RENAME -> model.renameObject((AbstractObject) getElement(in.readInt()), in.readUTF());
+            case DELETE ->
+            {
+                model.select(readElements(in));
+                model.deleteSelection();
+            }
+            case BRING_TO_FRONT -> model.bringToFront(getElement(in.readInt()));
+            case UNDO -> model.undo();  // the undo history is rebuilt by the replayed entries since the checkpoint
+            case REDO -> model.redo();
+            default -> throw new IOException("unknown journal entry");
+        }
+    }
+
+    private ToolElement getElement(int id) throws IOException
+    {
+        ToolElement element = id >= 0 && id < elementsById.size() ? elementsById.get(id).get() : null;
+
+        if (element == null)
+        {
+            throw new IOException("the journal refers to an unknown element");
+        }
+
+        return element;
+    }
+
+    private List<ToolElement> readElements(DataInputStream in) throws IOException
+    {
+        int count = in.readInt();
+        ArrayList<ToolElement> elements = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++)
+        {
+            elements.add(getElement(in.readInt()));
+        }
+
+        return elements;
+    }
+
+    private void checkNextId(int id) throws IOException
+    {
+        if (id != elementsById.size())
+        {
+            throw new IOException("the journal does not match its snapshot");
+        }
+    }
+
+    // discards the journal, the work of the session is not recovered on the next start
+    void close() throws InterruptedException
+    {
+        endMove();
+        queue.add(new Close(true));
+        writer.join(10_000);
+
+        try
+        {
+            lock.release();
+            lockChannel.close();
+            Files.deleteIfExists(lockPath);
+        }
+        catch (IOException ignored)
+        {
+            // the lock is released by the operating system when the JVM exits
+        }
+    }
+
+    // ==================== recording ====================
+
+    private boolean isRecording()
+    {
+        return !suspended && !failed;
+    }
+
+    private void enqueue(Object command)
+    {
+        if (!failed)
+        {
+            queue.add(command);
+        }
+    }
+
+    private DataOutputStream beginEntry(byte type) throws IOException
+    {
+        endMove();
+        entryBytes.reset();
+        entry.writeByte(type);
+
+        return entry;
+    }
+
+    private void endEntry()
+    {
+        if (!replaying)
+        {
+            enqueue(entryBytes.toByteArray());
+            recordedEntries++;
+        }
+    }
+
+    private int getId(ToolElement element)
+    {
+        Integer id = ids.get(element);
+
+        if (id == null)
+        {
+            throw new IllegalStateException("an element that is not in the journal");
+        }
+
+        return id;
+    }
+
+    void objectAdded(AbstractObject object)
+    {
+        if (isRecording())
+        {
+            long start = System.nanoTime();
+            try
+            {
+                DataOutputStream out = beginEntry(ADD_OBJECT);
+                out.writeInt(newId(object));
+                out.writeByte(object instanceof UseCase ? USE_CASE : CLASS);
+                out.writeInt(object.getUnselectedTopLeftCorner().x);
+                out.writeInt(object.getUnselectedTopLeftCorner().y);
+                endEntry();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);  // a ByteArrayOutputStream does not throw
+            }
+            recordNanos += System.nanoTime() - start;
+        }
+    }
+
+    void lineAdded(ConnectionLine line)
+    {
+        if (isRecording())
+        {
+            long start = System.nanoTime();
+            try
+            {
+                DataOutputStream out = beginEntry(ADD_LINE);
+                out.writeInt(newId(line));
+                out.writeByte(line instanceof AssociationLine ? ASSOCIATION_LINE : line instanceof GeneralizationLine ? GENERALIZATION_LINE : COMPOSITION_LINE);
+                out.writeInt(getId(line.getStartBasicObject()));
+                out.writeByte(Arrays.asList(line.getStartBasicObject().getPorts()).indexOf(line.getStartPort()));
+                out.writeInt(getId(line.getEndBasicObject()));
+                out.writeByte(Arrays.asList(line.getEndBasicObject().getPorts()).indexOf(line.getEndPort()));
+                endEntry();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+            recordNanos += System.nanoTime() - start;
+        }
+    }
+
+    // called for every mouseDragged event with the same list of objects, so it only sums up the offsets until the move ends
+    void objectsMoved(List<AbstractObject> objects, int offsetX, int offsetY)
+    {
+        if (isRecording())  // not timed, since reading the clock would cost more than the rest
+        {
+            if (objects != movedObjects)
+            {
+                endMove();
+                movedObjects = objects;
+            }
+            movedX += offsetX;
+            movedY += offsetY;
+            movedEvents++;
+        }
+    }
+
+    // a single object is written as a MOVE entry, several objects moved together as one MOVE_OBJECTS entry
+    void endMove()
+    {
+        if (movedObjects != null)
+        {
+            List<AbstractObject> objects = movedObjects;
+            movedObjects = null;
+
+            if (movedX != 0 || movedY != 0)
+            {
+                entryBytes.reset();
+                try
+                {
+                    if (objects.size() == 1)
+                    {
+                        entry.writeByte(MOVE);
+                        entry.writeInt(getId(objects.get(0)));
+                    }
+                    else
+                    {
+                        entry.writeByte(MOVE_OBJECTS);
+                        writeElements(entry, objects);
+                    }
+                    entry.writeInt(movedX);
+                    entry.writeInt(movedY);
+                }
+                catch (IOException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+                endEntry();
+            }
+            movedX = movedY = 0;
+        }
+    }
+
+    // members are the top-level elements that have become the members of the compositeObject
+    void grouped(AbstractObject compositeObject, List<ToolElement> members)
+    {
+        if (isRecording())
+        {
+            long start = System.nanoTime();
+            try
+            {
+                DataOutputStream out = beginEntry(GROUP);
+                out.writeInt(newId(compositeObject));
+                writeElements(out, members);
+                endEntry();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+            recordNanos += System.nanoTime() - start;
+        }
+    }
+
+    void ungrouped(AbstractObject compositeObject)
+    {
+        recordElement(UNGROUP, compositeObject);
+    }
+
+    void renamed(AbstractObject object, String name)
+    {
+        if (isRecording())
+        {
+            long start = System.nanoTime();
+            try
+            {
+                DataOutputStream out = beginEntry(RENAME);
+                out.writeInt(getId(object));
+                out.writeUTF(name);
+                endEntry();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+            recordNanos += System.nanoTime() - start;
+        }
+    }
+
+    // elements are the selected top-level elements, the lines attached to them are deleted along with them on replay
+    void deleted(List<ToolElement> elements)
+    {
+        if (isRecording())
+        {
+            long start = System.nanoTime();
+            try
+            {
+                writeElements(beginEntry(DELETE), elements);
+                endEntry();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+            recordNanos += System.nanoTime() - start;
+        }
+    }
+
+    void broughtToFront(ToolElement element)
+    {
+        recordElement(BRING_TO_FRONT, element);
+    }
+
+    // only called for the edits that have been recorded since the checkpoint
+    void undone()
+    {
+        recordType(UNDO);
+    }
+
+    void redone()
+    {
+        recordType(REDO);
+    }
+
+    private void recordType(byte type)
+    {
+        if (isRecording())
+        {
+            long start = System.nanoTime();
+            try
+            {
+                beginEntry(type);
+                endEntry();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+            recordNanos += System.nanoTime() - start;
+        }
+    }
+
+    private void recordElement(byte type, ToolElement element)
+    {
+        if (isRecording())
+        {
+            long start = System.nanoTime();
+            try
+            {
+                beginEntry(type).writeInt(getId(element));
+                endEntry();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+            recordNanos += System.nanoTime() - start;
+        }
+    }
+
+    private void writeElements(DataOutputStream out, List<? extends ToolElement> elements) throws IOException
+    {
+        out.writeInt(elements.size());
+
+        for (ToolElement element : elements)
+        {
+            out.writeInt(getId(element));
+        }
+    }
+
+    // ==================== statistics ====================
+
+    long getRecordedEntries()
+    {
+        return recordedEntries;
+    }
+
+    // the total time the event dispatch thread has spent recording entries, in nanoseconds
+    long getRecordNanos()
+    {
+        return recordNanos;
+    }
+
+    // the mouseDragged events that have been summed up into MOVE and MOVE_OBJECTS entries
+    long getMovedEvents()
+    {
+        return movedEvents;
+    }
+
+    long getWrittenBytes()
+    {
+        return writtenBytes;
+    }
+
+    long getSyncs()
+    {
+        return syncs;
+    }
+}
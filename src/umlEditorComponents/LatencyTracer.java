@@ -0,0 +1,250 @@
+package umlEditorComponents;
+
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Follows every mouse event the CanvasArea passes to the current mode until the pixels it changed are painted.
+ *
+ * <p>An input is tagged when its dispatch to the mode begins. Every repaint the CanvasArea is asked for while the
+ * mode (and the Model below it) handles the input is attached to it, and the input stays pending until a paint
+ * whose clip covers one of its repaint areas has finished; the time from the dispatch to the end of that paint
+ * is its input-to-pixel latency, which is recorded into the histogram. The RepaintScheduler merges the repaint
+ * requests that arrive before its next frame into a DirtyRegion and paints each of its rectangles with
+ * paintImmediately, so one paint usually serves several drag events and a frame may consist of several paints.
+ * An input that requests no repaint has no latency.</p>
+ *
+ * <p>While a trace is running, the dispatches, repaint requests and paints are also kept as trace_event records
+ * (at most MAX_TRACE_EVENTS, the oldest are dropped), which can be written as a JSON file for chrome://tracing or
+ * Perfetto. Each input is an async "input to pixel" span from its dispatch to the paint that served it, connected
+ * to that paint by a flow arrow; its arguments tell how many other inputs the paint served with it and how long it
+ * waited for the paint after its handler had returned.</p>
+ *
+ * <p>The hooks are called on the event dispatch thread; starting, stopping and writing the trace may be done by
+ * any thread (e.g. through JMX).</p>
+ */
+class LatencyTracer
+{
+    private static final int MAX_PENDING_INPUTS = 1024;  // the inputs that are never painted, e.g. while the window is minimized, are dropped
+    private static final int MAX_TRACE_EVENTS = 200_000;
+
+    private static final class Input
+    {
+        private final long id;
+        private final String name;
+        private final long start;  // the start of the dispatch, in nanoseconds
+        private long handled;  // the end of the dispatch
+        private final ArrayList<Rectangle> repaintAreas = new ArrayList<>(2);  // in view coordinates, null for the whole view
+
+        private Input(long id, String name, long start)
+        {
+            this.id = id;
+            this.name = name;
+            this.start = start;
+        }
+    }
+
+    private final Histogram latency;
+    private final ArrayDeque<Input> pendingInputs = new ArrayDeque<>();
+    private final long origin = System.nanoTime();  // the time 0 of the trace
+    private Input currentInput = null;  // the input that is being dispatched
+    private long nextInputId = 1, paintNumber = 0, paintStart;
+    private Rectangle paintClip;
+    private ArrayDeque<String> traceEvents = null;  // null unless a trace is running, guarded by this
+
+    LatencyTracer(Histogram latency)
+    {
+        this.latency = latency;
+    }
+
+    // called before the CanvasArea passes a mouse event on to the mode
+    void inputStarted(MouseEvent e)
+    {
+        currentInput = new Input(nextInputId++, getName(e), System.nanoTime());
+    }
+
+    // called after the mode has handled the mouse event
+    void inputHandled(MouseEvent e)
+    {
+        Input input = currentInput;
+        currentInput = null;
+        if (input == null)
+        {
+            return;
+        }
+        input.handled = System.nanoTime();
+
+        if (isTracing())
+        {
+            long queued = Math.max(0, System.currentTimeMillis() - e.getWhen());  // the time the event waited in the event queue, in milliseconds
+            addTraceEvent("{\"name\":\"" + input.name + "\",\"cat\":\"input\",\"ph\":\"X\",\"ts\":" + toMicros(input.start) + ",\"dur\":" + (input.handled - input.start) / 1000.
+                    + ",\"pid\":1,\"tid\":1,\"args\":{\"input\":" + input.id + ",\"x\":" + e.getX() + ",\"y\":" + e.getY() + ",\"queuedMs\":" + queued + ",\"repaints\":" + input.repaintAreas.size() + "}}");
+        }
+
+        if (input.repaintAreas.isEmpty())
+        {
+            traceInputEnd(input, "no repaint", 0, input.handled);
+            return;
+        }
+        pendingInputs.addLast(input);
+        if (pendingInputs.size() > MAX_PENDING_INPUTS)
+        {
+            Input dropped = pendingInputs.removeFirst();
+            traceInputEnd(dropped, "never painted", 0, input.handled);
+        }
+    }
+
+    // called for every repaint request of the CanvasArea, area is in view coordinates and null for the whole view
+    void repaintRequested(Rectangle area)
+    {
+        if (currentInput == null)
+        {
+            return;
+        }
+
+        currentInput.repaintAreas.add(area);
+
+        if (isTracing())
+        {
+            addTraceEvent("{\"name\":\"repaint\",\"cat\":\"repaint\",\"ph\":\"i\",\"s\":\"t\",\"ts\":" + toMicros(System.nanoTime()) + ",\"pid\":1,\"tid\":1,\"args\":{\"input\":" + currentInput.id
+                    + (area != null ? ",\"area\":\"" + area.x + "," + area.y + " " + area.width + "x" + area.height + "\"" : ",\"area\":\"view\"") + "}}");
+        }
+    }
+
+    void paintStarted(Rectangle clip)
+    {
+        paintStart = System.nanoTime();
+        paintClip = clip;
+        paintNumber++;
+    }
+
+    // completes the pending inputs whose repaint areas the paint covered
+    void paintFinished()
+    {
+        long end = System.nanoTime();
+        ArrayList<Input> servedInputs = new ArrayList<>();
+        for (Iterator<Input> iterator = pendingInputs.iterator(); iterator.hasNext(); )
+        {
+            Input input = iterator.next();
+            for (Rectangle area : input.repaintAreas)
+            {
+                if (area == null || area.intersects(paintClip))
+                {
+                    servedInputs.add(input);
+                    iterator.remove();
+                    break;
+                }
+            }
+        }
+
+        for (Input input : servedInputs)
+        {
+            latency.record(end - input.start);
+            traceInputEnd(input, "painted", servedInputs.size() - 1, end);
+        }
+
+        if (isTracing())
+        {
+            addTraceEvent("{\"name\":\"paint\",\"cat\":\"paint\",\"ph\":\"X\",\"ts\":" + toMicros(paintStart) + ",\"dur\":" + (end - paintStart) / 1000. + ",\"pid\":1,\"tid\":1,\"args\":{\"paint\":" + paintNumber
+                    + ",\"clip\":\"" + paintClip.x + "," + paintClip.y + " " + paintClip.width + "x" + paintClip.height + "\",\"inputs\":" + servedInputs.size() + ",\"pendingInputs\":" + pendingInputs.size() + "}}");
+        }
+    }
+
+    private void traceInputEnd(Input input, String outcome, int coalesced, long end)
+    {
+        if (!isTracing())
+        {
+            return;
+        }
+
+        String ids = "\"id\":" + input.id + ",\"pid\":1,\"tid\":1";
+        addTraceEvent("{\"name\":\"input to pixel\",\"cat\":\"latency\",\"ph\":\"b\"," + ids + ",\"ts\":" + toMicros(input.start) + ",\"args\":{\"event\":\"" + input.name + "\"}}");
+        addTraceEvent("{\"name\":\"input to pixel\",\"cat\":\"latency\",\"ph\":\"e\"," + ids + ",\"ts\":" + toMicros(end) + ",\"args\":{\"outcome\":\"" + outcome + "\",\"latencyMs\":" + (end - input.start) / 1e6
+                + ",\"waitForPaintMs\":" + (outcome.equals("painted") ? (paintStart - input.handled) / 1e6 : 0) + ",\"coalescedWith\":" + coalesced + (outcome.equals("painted") ? ",\"paint\":" + paintNumber : "") + "}}");
+        if (outcome.equals("painted"))
+        {
+            addTraceEvent("{\"name\":\"served by\",\"cat\":\"flow\",\"ph\":\"s\"," + ids + ",\"ts\":" + toMicros(input.handled) + "}");
+            addTraceEvent("{\"name\":\"served by\",\"cat\":\"flow\",\"ph\":\"f\",\"bp\":\"e\"," + ids + ",\"ts\":" + toMicros(paintStart) + "}");
+        }
+    }
+
+    private static String getName(MouseEvent e)
+    {
+        return switch (e.getID())
+        {
+            case MouseEvent.MOUSE_PRESSED -> "mousePressed";
+            case MouseEvent.MOUSE_DRAGGED -> "mouseDragged";
+            case MouseEvent.MOUSE_RELEASED -> "mouseReleased";
+            default -> "mouseEvent";
+        };
+    }
+
+    private double toMicros(long nanos)
+    {
+        return (nanos - origin) / 1000.;
+    }
+
+    // ==================== the trace ====================
+
+    private synchronized boolean isTracing()
+    {
+        return traceEvents != null;
+    }
+
+    private synchronized void addTraceEvent(String event)
+    {
+        if (traceEvents != null)
+        {
+            if (traceEvents.size() == MAX_TRACE_EVENTS)
+            {
+                traceEvents.removeFirst();
+            }
+            traceEvents.addLast(event);
+        }
+    }
+
+    // discards the events of a trace that is still running
+    synchronized void startTrace()
+    {
+        traceEvents = new ArrayDeque<>();
+        addTraceEvent("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":1,\"args\":{\"name\":\"event dispatch thread\"}}");
+    }
+
+    // writes the events recorded since startTrace as a JSON trace file and stops the trace
+    void stopTrace(Path path) throws IOException
+    {
+        ArrayDeque<String> events;
+        synchronized (this)
+        {
+            if (traceEvents == null)
+            {
+                throw new IllegalStateException("no trace is running");
+            }
+            events = traceEvents;
+            traceEvents = null;
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(path))
+        {
+            writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+            boolean first = true;
+            for (String event : events)
+            {
+                if (!first)
+                {
+                    writer.write(",\n");
+                }
+                writer.write(event);
+                first = false;
+            }
+            writer.write("\n]}\n");
+        }
+    }
+}
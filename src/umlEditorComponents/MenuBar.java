@@ -1,5 +1,7 @@
 package umlEditorComponents;
 
+import diagramFiles.VectorFormat;
+
 import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -17,10 +19,50 @@ public class MenuBar extends JMenuBar implements ActionListener
         menu.setMnemonic(KeyEvent.VK_F);  // pressing the Alt and F keys makes the File menu appear
         add(menu);
 
+        menuItem = new JMenuItem("Open...", KeyEvent.VK_O);  // while the File menu is visible, pressing the O key (with or without Alt) makes the Open item be chosen
+        menuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O, InputEvent.CTRL_DOWN_MASK));  // pressing the Ctrl and O keys in UML editor makes the Open item be chosen, without bringing up any menus
+        menuItem.addActionListener(this);
+        menu.add(menuItem);
+
+        menuItem = new JMenuItem("Save", KeyEvent.VK_S);  // while the File menu is visible, pressing the S key (with or without Alt) makes the Save item be chosen
+        menuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, InputEvent.CTRL_DOWN_MASK));  // pressing the Ctrl and S keys in UML editor makes the Save item be chosen, without bringing up any menus
+        menuItem.addActionListener(this);
+        menu.add(menuItem);
+
+        menuItem = new JMenuItem("Save As...", KeyEvent.VK_A);  // while the File menu is visible, pressing the A key (with or without Alt) makes the Save As item be chosen
+        menuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK));  // pressing the Ctrl, Shift and S keys in UML editor makes the Save As item be chosen, without bringing up any menus
+        menuItem.addActionListener(this);
+        menu.add(menuItem);
+
+        menuItem = new JMenuItem("Export PNG...", KeyEvent.VK_E);  // while the File menu is visible, pressing the E key (with or without Alt) makes the Export PNG item be chosen
+        menuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_E, InputEvent.CTRL_DOWN_MASK));  // pressing the Ctrl and E keys in UML editor makes the Export PNG item be chosen, without bringing up any menus
+        menuItem.addActionListener(this);
+        menu.add(menuItem);
+
+        menuItem = new JMenuItem("Export SVG...", KeyEvent.VK_V);  // while the File menu is visible, pressing the V key (with or without Alt) makes the Export SVG item be chosen
+        menuItem.addActionListener(this);
+        menu.add(menuItem);
+
+        menuItem = new JMenuItem("Export PDF...", KeyEvent.VK_D);  // while the File menu is visible, pressing the D key (with or without Alt) makes the Export PDF item be chosen
+        menuItem.addActionListener(this);
+        menu.add(menuItem);
+
         menu = new JMenu("Edit");
         menu.setMnemonic(KeyEvent.VK_E);  // pressing the Alt and E keys makes the Edit menu appear
         add(menu);
 
+        menuItem = new JMenuItem("Undo", KeyEvent.VK_Z);  // while the Edit menu is visible, pressing the Z key (with or without Alt) makes the Undo item be chosen
+        menuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));  // pressing the Ctrl and Z keys in UML editor makes the Undo item be chosen, without bringing up any menus
+        menuItem.addActionListener(this);
+        menu.add(menuItem);
+
+        menuItem = new JMenuItem("Redo", KeyEvent.VK_Y);  // while the Edit menu is visible, pressing the Y key (with or without Alt) makes the Redo item be chosen
+        menuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));  // pressing the Ctrl and Y keys in UML editor makes the Redo item be chosen, without bringing up any menus
+        menuItem.addActionListener(this);
+        menu.add(menuItem);
+
+        menu.addSeparator();
+
         menuItem = new JMenuItem("Group", KeyEvent.VK_G);  // while the Edit menu is visible, pressing the G key (with or without Alt) makes the Group item be chosen
         menuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_G, InputEvent.CTRL_DOWN_MASK));  // pressing the Ctrl and G keys in UML editor makes the Group item be chosen, without bringing up any menus
         menuItem.addActionListener(this);
@@ -46,8 +88,42 @@ public class MenuBar extends JMenuBar implements ActionListener
     public void actionPerformed(ActionEvent e)
     {
         JMenuItem menuItem = (JMenuItem) e.getSource();
+        Model.INSTANCE.endMove();  // a menu item can be chosen by its accelerator while an object is still being dragged
+
 
-        if ("Group".equals(menuItem.getText()))
+        if ("Open...".equals(menuItem.getText()))
+        {
+            Model.INSTANCE.openDiagram();
+        }
+        else if ("Save".equals(menuItem.getText()))
+        {
+            Model.INSTANCE.saveDiagram(false);
+        }
+        else if ("Save As...".equals(menuItem.getText()))
+        {
+            Model.INSTANCE.saveDiagram(true);
+        }
+        else if ("Export PNG...".equals(menuItem.getText()))
+        {
+            Model.INSTANCE.exportPng();
+        }
+        else if ("Export SVG...".equals(menuItem.getText()))
+        {
+            Model.INSTANCE.exportVector(VectorFormat.SVG);
+        }
+        else if ("Export PDF...".equals(menuItem.getText()))
+        {
+            Model.INSTANCE.exportVector(VectorFormat.PDF);
+        }
+        else if ("Undo".equals(menuItem.getText()))
+        {
+            Model.INSTANCE.undo();
+        }
+        else if ("Redo".equals(menuItem.getText()))
+        {
+            Model.INSTANCE.redo();
+        }
+        else if ("Group".equals(menuItem.getText()))
         {
             Model.INSTANCE.group();
         }
@@ -1,18 +1,34 @@
 package umlEditorComponents;
 
+import containers.DirtyRegion;
+import containers.SpatialIndex;
 import containers.Triple;
+import containers.ZOrder;
+import diagramFiles.DiagramFormat;
+import diagramFiles.ElementKind;
+import diagramFiles.VectorFormat;
 import graphics.*;
 import modes.AssociationLineMode;
 import modes.CompositionLineMode;
 import modes.GeneralizationLineMode;
 import modes.SelectMode;
 
+import javax.management.JMException;
 import javax.swing.*;
 import javax.swing.event.MouseInputAdapter;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.MouseEvent;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Represents the Model in the MVC architecture.
@@ -46,42 +62,42 @@ public enum Model
 
     private final CanvasArea canvas = new CanvasArea();  // CanvasArea follows the singleton design pattern by being indirectly controlled and accessed through the Model enum
     // The elements towards the end of the paintedElementsInOrder will be painted later in the CanvasArea's paintComponent method, thus appearing on top of elements painted earlier.
-    private final LinkedList<ToolElement> paintedElementsInOrder = new LinkedList<>();
-    private final ArrayList<ToolElement> selectedPaintedElements = new ArrayList<>();
-    private final LinkedList<AbstractObject> objectsOnCanvas = new LinkedList<>();
-    private final ArrayList<AbstractObject> selectedObjects = new ArrayList<>();
-    private final LinkedList<ConnectionLine> linesOnCanvas = new LinkedList<>();
-    private final ArrayList<ConnectionLine> selectedLines = new ArrayList<>();
-    /*
-    Note that a Rectangle constructed with the default no-argument constructor will have
-    dimensions of 0x0 and therefore be empty. That Rectangle will still have a location
-    of (0,0) and will contribute that location to the union and add operations.
-    Code attempting to accumulate the bounds of a set of points should therefore initially
-    construct the Rectangle with a specifically negative width and height, or it should
-    use the first point in the set to construct the Rectangle.
-     */
-    private final Rectangle repaintArea = new Rectangle(0, 0, -1, -1);
+    private final ZOrder<ToolElement> paintedElementsInOrder = new ZOrder<>();
+    private final LinkedHashSet<AbstractObject> objectsOnCanvas = new LinkedHashSet<>();
+    private final LinkedHashSet<ConnectionLine> linesOnCanvas = new LinkedHashSet<>();
+    // The selected elements in paintedElementsInOrder, kept up to date by the setSelected method of the elements themselves.
+    private final SelectionModel selection = new SelectionModel();
+    // The bounds of all elements in paintedElementsInOrder, so that a mouse press only needs to run the exact hit tests on the elements under the cursor.
+    private final SpatialIndex<ToolElement> elementIndex = new SpatialIndex<>(128);
+    // The areas whose elements have changed since the last repaint, as a few disjoint rectangles, so that two changes far apart do not repaint everything between them.
+    private final DirtyRegion dirtyRegion = new DirtyRegion(8, 32 * 32);  // a paint of its own costs about as much as 32x32 more units of area
     private MouseInputAdapter mode;
     private int modeNumber;
+    private Path diagramFile = null;  // the file the diagram was last opened from or saved to
+    private PagedDiagram pagedDiagram = null;  // only the region around the viewport is loaded if a paged diagram file is open
+    private Journal journal = null;  // records the edits so that they can be recovered after a crash
+    private final UndoHistory history = new UndoHistory();  // not used while a paged diagram is open
+    private final EditorMetrics metrics = new EditorMetrics();
+    private int hitTests = 0;  // the number of exact hit tests run by the last getTopmostHitElement
+    // the move in progress, collected by beginMove and null between two moves
+    private List<AbstractObject> movingObjects = null;
+    private List<ConnectionLine> movingLines = null, stretchedLines = null;
+    private DirtyRegion rigidRegion = null;  // the paint bounds of the moving objects and of the lines between them
+    private Point movingTopLeftCorner = null;  // of the selected bounds of all moving objects, for the shared clamp
 
     public CanvasArea getCanvas()
     {
         return canvas;
     }
 
-    private <E extends ToolElement> void updateSelectedList(List<E> selectedList, List<E> collections)
+    // repaints the dirty region and starts a new one
+    private void repaintDirtyRegion()
     {
-        selectedList.clear();
-        for (E element : collections)
-        {
-            if (element.isSelected())
-            {
-                selectedList.add(element);
-            }
-        }
+        canvas.repaintScene(dirtyRegion);
+        dirtyRegion.clear();
     }
 
-    private Rectangle getUnselectedBoundsOfSelectedObjects()
+    private Rectangle getUnselectedBoundsOfSelectedObjects(Collection<AbstractObject> selectedObjects)
     {
         AbstractObject minXSelectedObject = Collections.min(selectedObjects, Comparator.comparingInt((AbstractObject e) -> e.getUnselectedTopLeftCorner().x));
         AbstractObject maxXSelectedObject = Collections.max(selectedObjects, Comparator.comparingInt((AbstractObject e) -> e.getUnselectedTopLeftCorner().x + e.getUnselectedWidth()));
@@ -96,110 +112,327 @@ public enum Model
         return new Rectangle(x, y, width, height);
     }
 
+    // The cached tiles below an added or removed element become dirty, while it is up to the caller to request the repaint.
+    private void addToPaintedElements(ToolElement element)
+    {
+        addToPaintedElements(element, paintedElementsInOrder.getNextZIndex());
+    }
+
+    private void addToPaintedElements(ToolElement element, long zIndex)
+    {
+        paintedElementsInOrder.add(element, zIndex);
+        elementIndex.insert(element, element.getBounds());
+        element.setSelectionModel(selection);
+        canvas.invalidateScene(element.getBounds());
+
+        if (pagedDiagram != null && element.isMovable())  // the lines are found through the objects they are attached to
+        {
+            pagedDiagram.objectAdded((AbstractObject) element);
+        }
+    }
+
+    private void removeFromPaintedElements(ToolElement element)
+    {
+        paintedElementsInOrder.remove(element);
+        elementIndex.remove(element);
+        element.setSelectionModel(null);
+        canvas.invalidateScene(element.getBounds());
+
+        if (pagedDiagram != null && element.isMovable())
+        {
+            pagedDiagram.objectRemoved((AbstractObject) element);
+        }
+    }
+
+    // adds an element of a page of the PagedDiagram at its stored z-index, which is not an edit of the diagram
+    void addLoadedElement(ToolElement element, long zIndex)
+    {
+        paintedElementsInOrder.add(element, zIndex);
+        elementIndex.insert(element, element.getBounds());
+        element.setSelectionModel(selection);
+        canvas.invalidateScene(element.getBounds());
+
+        if (element.isMovable())  // AbstractObject
+        {
+            objectsOnCanvas.add((AbstractObject) element);
+        }
+        else  // ConnectionLine, which has already been connected
+        {
+            linesOnCanvas.add((ConnectionLine) element);
+        }
+    }
+
+    // removes an element of a page that is unloaded by the PagedDiagram, which is not an edit of the diagram
+    void removeUnloadedElement(ToolElement element)
+    {
+        paintedElementsInOrder.remove(element);
+        elementIndex.remove(element);
+        element.setSelectionModel(null);
+        canvas.invalidateScene(element.getBounds());
+
+        if (element.isMovable())  // AbstractObject
+        {
+            objectsOnCanvas.remove((AbstractObject) element);
+        }
+        else  // ConnectionLine
+        {
+            linesOnCanvas.remove((ConnectionLine) element);
+            ((ConnectionLine) element).disconnect();
+        }
+    }
+
+    // ==================== the elementary edits of undo and redo, which are not recorded themselves ====================
+
+    // adds the element back at its old z-index, a ConnectionLine is connected again
+    void insertElement(ToolElement element, long zIndex)
+    {
+        addToPaintedElements(element, zIndex);
+        if (element.isMovable())  // AbstractObject
+        {
+            objectsOnCanvas.add((AbstractObject) element);
+        }
+        else  // ConnectionLine
+        {
+            linesOnCanvas.add((ConnectionLine) element);
+            ((ConnectionLine) element).connect();
+        }
+        element.addToDirtyRegion(dirtyRegion);
+    }
+
+    // disconnect is false if the element becomes a member of a CompositeObject again, whose lines stay connected
+    void removeElement(ToolElement element, boolean disconnect)
+    {
+        element.addToDirtyRegion(dirtyRegion);
+        removeFromPaintedElements(element);
+        if (element.isMovable())  // AbstractObject
+        {
+            objectsOnCanvas.remove((AbstractObject) element);
+        }
+        else  // ConnectionLine
+        {
+            linesOnCanvas.remove((ConnectionLine) element);
+            if (disconnect)
+            {
+                ((ConnectionLine) element).disconnect();
+            }
+        }
+    }
+
+    // moves the object by exactly the offset, which has already been kept inside the world when the move was made
+    void translateObject(AbstractObject object, int offsetX, int offsetY)
+    {
+        object.addToDirtyRegion(dirtyRegion);
+        for (ConnectionLine line : object.getConnectionLines())
+        {
+            line.addToDirtyRegion(dirtyRegion);
+        }
+
+        object.moveBy(offsetX, offsetY);
+        elementIndex.update(object, object.getBounds());
+        object.addToDirtyRegion(dirtyRegion);
+        for (ConnectionLine line : object.getConnectionLines())
+        {
+            elementIndex.update(line, line.getBounds());  // the members of a CompositeObject are not in the index and are skipped
+            line.addToDirtyRegion(dirtyRegion);
+        }
+    }
+
+    // returns false if the name is not shown, i.e. the object is a CompositeObject
+    boolean setObjectName(AbstractObject object, String name)
+    {
+        if (object.setName(name))
+        {
+            object.addToDirtyRegion(dirtyRegion);
+            repaintDirtyRegion();
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private long[] getZIndices(List<ToolElement> elements)
+    {
+        long[] zIndices = new long[elements.size()];
+
+        for (int i = 0; i < zIndices.length; i++)
+        {
+            zIndices[i] = paintedElementsInOrder.getZIndex(elements.get(i));
+        }
+
+        return zIndices;
+    }
+
+    // ==================== the edits ====================
+
     public void addObject(AbstractObject object)
     {
-        paintedElementsInOrder.add(object);
-        objectsOnCanvas.add(object);
+        placeObject(object);
+
+        if (pagedDiagram == null)
+        {
+            history.added(object, paintedElementsInOrder.getZIndex(object));
+        }
+        if (journal != null)
+        {
+            journal.objectAdded(object);
+        }
     }
 
     public void addLine(ConnectionLine line)
     {
-        paintedElementsInOrder.add(line);
+        placeLine(line);
+
+        if (pagedDiagram == null)
+        {
+            history.added(line, paintedElementsInOrder.getZIndex(line));
+        }
+        if (journal != null)
+        {
+            journal.lineAdded(line);
+        }
+    }
+
+    // adds the object without recording it, e.g. as a part of another edit
+    private void placeObject(AbstractObject object)
+    {
+        addToPaintedElements(object);
+        objectsOnCanvas.add(object);
+    }
+
+    private void placeLine(ConnectionLine line)
+    {
+        addToPaintedElements(line);
         linesOnCanvas.add(line);
+        line.connect();
     }
 
     void group()
     {
-        updateSelectedList(selectedObjects, objectsOnCanvas);
-        boolean preconditionForGroup = modeNumber == SelectMode.NUMBER && selectedObjects.size() > 1;
+        boolean preconditionForGroup = modeNumber == SelectMode.NUMBER && selection.getSelectedObjects().size() > 1;
 
         if (preconditionForGroup)  // meeting the preconditionForGroup means that the ungroup method or the setElementsInSelectionBoxToSelected method has been called before reaching this point
         {
-            /*
-            A line in selectedLines is a component of the newly created CompositeObject
-            only if both of its endpoints are connected to "selected" BasicObjects or the
-            CompositeObjects they belong to. In other words, a line must connect two
-            "selected" elements to be included as a component of the newly formed CompositeObject.
-             */
-            updateSelectedList(selectedLines, linesOnCanvas);
-            Iterator<ConnectionLine> iterator = selectedLines.iterator();
-            ConnectionLine line;
-            while (iterator.hasNext())
-            {
-                line = iterator.next();
+            groupSelection();
+        }
+    }
 
-                if (!line.getStartBasicObject().isSelected() || !line.getEndBasicObject().isSelected())
-                {
-                    line.setSelected(false);
-                    selectedPaintedElements.remove(line);  // selectedPaintedElements has already been updated during the execution of the ungroup method and setElementsInSelectionBoxToSelected method
-                    iterator.remove();
-                    line.addToRepaintArea(repaintArea);
-                }
+    // groups the selected elements, at least two of which are AbstractObjects
+    void groupSelection()
+    {
+        long start = System.nanoTime();
+
+        /*
+        A selected line is a component of the newly created CompositeObject
+        only if both of its endpoints are connected to "selected" BasicObjects or the
+        CompositeObjects they belong to. In other words, a line must connect two
+        "selected" elements to be included as a component of the newly formed CompositeObject.
+         */
+        for (ConnectionLine line : List.copyOf(selection.getSelectedLines()))  // setSelected removes the line from the selection
+        {
+            if (!line.getStartBasicObject().isSelected() || !line.getEndBasicObject().isSelected())
+            {
+                line.setSelected(false);
+                line.addToDirtyRegion(dirtyRegion);
             }
+        }
 
-            Rectangle unselectedBoundsOfSelectedObjects = getUnselectedBoundsOfSelectedObjects();
-            AbstractObject compositeObject = new CompositeObject(
-                    unselectedBoundsOfSelectedObjects.getLocation(),
-                    unselectedBoundsOfSelectedObjects.width,
-                    unselectedBoundsOfSelectedObjects.height,
-                    selectedPaintedElements,
-                    selectedObjects,
-                    selectedLines
-            );
+        // the members of the CompositeObject keep the order in which they were painted
+        ArrayList<ToolElement> selectedPaintedElements = new ArrayList<>(selection.getSelectedElements());
+        selectedPaintedElements.sort(paintedElementsInOrder.comparator());
+        ArrayList<AbstractObject> selectedObjects = new ArrayList<>();
+        ArrayList<ConnectionLine> selectedLines = new ArrayList<>();
+        for (ToolElement element : selectedPaintedElements)
+        {
+            if (element.isMovable())  // AbstractObject
+            {
+                selectedObjects.add((AbstractObject) element);
+            }
+            else  // ConnectionLine
+            {
+                selectedLines.add((ConnectionLine) element);
+            }
+        }
 
-            paintedElementsInOrder.removeAll(selectedPaintedElements);
-            objectsOnCanvas.removeAll(selectedObjects);
-            addObject(compositeObject);
-            selectedPaintedElements.clear();
-            selectedPaintedElements.add(compositeObject);  // When CompositeObject is created, it is in the "selected" state.
-            compositeObject.addToRepaintArea(repaintArea);
-            linesOnCanvas.removeAll(selectedLines);
+        long[] zIndices = getZIndices(selectedPaintedElements);  // where the members are restored by an undo
+        Rectangle unselectedBoundsOfSelectedObjects = getUnselectedBoundsOfSelectedObjects(selectedObjects);
+        AbstractObject compositeObject = new CompositeObject(
+                unselectedBoundsOfSelectedObjects.getLocation(),
+                unselectedBoundsOfSelectedObjects.width,
+                unselectedBoundsOfSelectedObjects.height,
+                selectedPaintedElements,
+                selectedObjects,
+                selectedLines
+        );
+
+        selectedPaintedElements.forEach(this::removeFromPaintedElements);
+        selectedObjects.forEach(objectsOnCanvas::remove);
+        selectedLines.forEach(linesOnCanvas::remove);
+        placeObject(compositeObject);  // When CompositeObject is created, it is in the "selected" state.
+        compositeObject.addToDirtyRegion(dirtyRegion);
+        if (pagedDiagram == null)
+        {
+            history.grouped(compositeObject, paintedElementsInOrder.getZIndex(compositeObject), selectedPaintedElements, zIndices);
+        }
+        if (journal != null)
+        {
+            journal.grouped(compositeObject, selectedPaintedElements);
+        }
 
-            int clipOffset = 4;
-            canvas.repaint(repaintArea.x - clipOffset / 2, repaintArea.y - clipOffset / 2, repaintArea.width + clipOffset, repaintArea.height + clipOffset);
+        repaintDirtyRegion();
 
-            repaintArea.setBounds(0, 0, -1, -1);
-        }
+        metrics.grouped(System.nanoTime() - start);
     }
 
     void ungroup()
     {
-        updateSelectedList(selectedObjects, objectsOnCanvas);
-        updateSelectedList(selectedLines, linesOnCanvas);
-        boolean preconditionForUnGroup = modeNumber == SelectMode.NUMBER && selectedObjects.size() == 1 && selectedLines.isEmpty();
+        boolean preconditionForUnGroup = modeNumber == SelectMode.NUMBER && selection.getSelectedObjects().size() == 1 && selection.getSelectedLines().isEmpty();
 
         if (preconditionForUnGroup)
         {
-            Triple<List<ToolElement>, List<AbstractObject>, List<ConnectionLine>> members = selectedObjects.get(0).getMembers();
+            ungroupSelection();
+        }
+    }
 
-            if (members != null)
+    // ungroups the only selected element if it is a CompositeObject
+    void ungroupSelection()
+    {
+        long start = System.nanoTime();
+        AbstractObject compositeObject = selection.getSelectedObjects().iterator().next();
+        Triple<List<ToolElement>, List<AbstractObject>, List<ConnectionLine>> members = compositeObject.getMembers();
+
+        if (members != null)
+        {
+            long zIndex = paintedElementsInOrder.getZIndex(compositeObject);
+            removeFromPaintedElements(compositeObject);
+            members.first().forEach(this::addToPaintedElements);  // the members are in the "selected" state, just like the compositeObject
+            objectsOnCanvas.remove(compositeObject);
+            objectsOnCanvas.addAll(members.second());
+            linesOnCanvas.addAll(members.third());
+            if (pagedDiagram == null)
+            {
+                history.ungrouped(compositeObject, zIndex, members.first(), getZIndices(members.first()));
+            }
+            if (journal != null)
             {
-                AbstractObject compositeObject = selectedObjects.get(0);
+                journal.ungrouped(compositeObject);
+            }
 
-                paintedElementsInOrder.remove(compositeObject);
-                paintedElementsInOrder.addAll(members.first());
-                selectedPaintedElements.clear();
-                selectedPaintedElements.addAll(members.first());
-                objectsOnCanvas.remove(compositeObject);
-                objectsOnCanvas.addAll(members.second());
-                linesOnCanvas.addAll(members.third());
+            // paint the area of the component where the compositeObject previously was, which also covers its members
+            compositeObject.addToDirtyRegion(dirtyRegion);
+            repaintDirtyRegion();
 
-                int clipOffset = 4;
-                // paint the area of the component where the compositeObject previously was
-                canvas.repaint(compositeObject.getSelectedTopLeftCorner().x - clipOffset / 2, compositeObject.getSelectedTopLeftCorner().y - clipOffset / 2, compositeObject.getSelectedWidth() + clipOffset, compositeObject.getSelectedHeight() + clipOffset);
-            }
+            metrics.ungrouped(System.nanoTime() - start);
         }
     }
 
     void changeObjectName()
     {
-        updateSelectedList(selectedObjects, objectsOnCanvas);
-        updateSelectedList(selectedLines, linesOnCanvas);
-        boolean preconditionForChangeObjectName = modeNumber == SelectMode.NUMBER && selectedObjects.size() == 1 && selectedLines.isEmpty();
+        boolean preconditionForChangeObjectName = modeNumber == SelectMode.NUMBER && selection.getSelectedObjects().size() == 1 && selection.getSelectedLines().isEmpty();
 
         if (preconditionForChangeObjectName)
         {
-            AbstractObject object = selectedObjects.get(0);
+            AbstractObject object = selection.getSelectedObjects().iterator().next();
 
             String name = (String) JOptionPane.showInputDialog(
                     canvas,
@@ -213,156 +446,251 @@ public enum Model
 
             if (name != null && name.length() > 0 && !name.equals(object.getName()))
             {
-                if (object.setName(name))  // true if object is BasicObject and false if it is CompositeObject
-                {
-                    int clipOffset = 4;
-                    canvas.repaint(object.getUnselectedTopLeftCorner().x - clipOffset / 2, object.getUnselectedTopLeftCorner().y - clipOffset / 2, object.getUnselectedWidth() + clipOffset, object.getUnselectedHeight() + clipOffset);
-                }
+                renameObject(object, name);
             }
+        }
+    }
+
+    void renameObject(AbstractObject object, String name)
+    {
+        String oldName = object.getName();
+
+        setObjectName(object, name);  // only repaints a BasicObject, the name of a CompositeObject is not drawn but still saved
 
-            selectedPaintedElements.clear();
-            selectedPaintedElements.add(object);
+        if (Objects.equals(oldName, name))
+        {
+            return;
+        }
+
+        if (pagedDiagram == null)
+        {
+            history.renamed(object, oldName, name);
+        }
+        if (journal != null)
+        {
+            journal.renamed(object, name);
         }
     }
 
     void delete()
     {
-        // selectedPaintedElements has already been updated in all possible calls to methods before the delete method is invoked
-        boolean preconditionForDelete = modeNumber == SelectMode.NUMBER && !selectedPaintedElements.isEmpty();
+        boolean preconditionForDelete = modeNumber == SelectMode.NUMBER && !selection.isEmpty();
 
         if (preconditionForDelete)
         {
-            paintedElementsInOrder.removeAll(selectedPaintedElements);
-            selectedPaintedElements.clear();
+            deleteSelection();
+        }
+    }
 
-            updateSelectedList(selectedObjects, objectsOnCanvas);
-            objectsOnCanvas.removeAll(selectedObjects);  // delete selected objects
-            for (AbstractObject object : selectedObjects)
-            {
-                object.addToRepaintArea(repaintArea);
-            }
+    // deletes the selected elements and the lines attached to the selected objects
+    void deleteSelection()
+    {
+        long start = System.nanoTime();
 
-            updateSelectedList(selectedLines, linesOnCanvas);
-            linesOnCanvas.removeAll(selectedLines);  // delete selected lines
-            for (ConnectionLine line : selectedLines)
-            {
-                line.addToRepaintArea(repaintArea);
-            }
+        if (journal != null)
+        {
+            journal.deleted(List.copyOf(selection.getSelectedElements()));
+        }
 
-            // delete unselected lines that are connected to deleted (selected) objects
-            /*
-            In my previous version of the code, I defined that "regardless of whether a CompositeObject is selected
-            or not, its internal members are always unselected." That's why I needed to perform the recursive
-            operation below to retrieve all the selected BasicObjects within a selected CompositeObject. However,
-            in the latest version, I changed the rule to "the selected state of the members inside a CompositeObject
-            should be the same as the selected state of the CompositeObject they belong to." Therefore, to remove the
-            unselected lines connected to selected objects, it is sufficient to check whether one end of the line is selected.
+        List<AbstractObject> selectedObjects = List.copyOf(selection.getSelectedObjects());
+        List<ConnectionLine> selectedLines = List.copyOf(selection.getSelectedLines());
+        // all removed elements with their z-indices, the objects before the lines, so that an undo restores the objects before it connects the lines again
+        ArrayList<ToolElement> removedElements = new ArrayList<>(selectedObjects);
+        removedElements.addAll(selectedLines);
+        ArrayList<Long> removedZIndices = new ArrayList<>();
+        for (ToolElement element : removedElements)
+        {
+            removedZIndices.add(paintedElementsInOrder.getZIndex(element));
+        }
+        List.copyOf(selection.getSelectedElements()).forEach(this::removeFromPaintedElements);  // removeFromPaintedElements also removes the element from the selection
 
-            ==================== old version ====================
-            // Because ConnectionLine only connects to BasicObject, we have to "recursively" retrieve all BasicObjects in selectedObjects first.
-            ListIterator<AbstractObject> objectsIterator = selectedObjects.listIterator();
-            AbstractObject object;
-            while (objectsIterator.hasNext())
-            {
-                object = objectsIterator.next();
-                Triple<List<ToolElement>, List<AbstractObject>, List<ConnectionLine>> members = object.getMembers();
+        selectedObjects.forEach(objectsOnCanvas::remove);  // delete selected objects
+        for (AbstractObject object : selectedObjects)
+        {
+            object.addToDirtyRegion(dirtyRegion);
+        }
 
-                if (members != null)
-                {
-                    objectsIterator.remove();
+        selectedLines.forEach(linesOnCanvas::remove);  // delete selected lines
+        for (ConnectionLine line : selectedLines)
+        {
+            line.disconnect();
+            line.addToDirtyRegion(dirtyRegion);
+        }
 
-                    for (AbstractObject subObject : members.second())
-                    {
-                        objectsIterator.add(subObject);
-                        objectsIterator.previous();
-                    }
-                }
-            }
+        // delete unselected lines that are connected to deleted (selected) objects
+        /*
+        In my previous version of the code, I defined that "regardless of whether a CompositeObject is selected
+        or not, its internal members are always unselected." That's why I needed to perform the recursive
+        operation below to retrieve all the selected BasicObjects within a selected CompositeObject. However,
+        in the latest version, I changed the rule to "the selected state of the members inside a CompositeObject
+        should be the same as the selected state of the CompositeObject they belong to." Therefore, to remove the
+        unselected lines connected to selected objects, it is sufficient to check whether one end of the line is selected.
 
-            Iterator<ConnectionLine> linesIterator = linesOnCanvas.iterator();
-            ConnectionLine line;
-            while (linesIterator.hasNext())
+        ==================== old version ====================
+        // Because ConnectionLine only connects to BasicObject, we have to "recursively" retrieve all BasicObjects in selectedObjects first.
+        ListIterator<AbstractObject> objectsIterator = selectedObjects.listIterator();
+        AbstractObject object;
+        while (objectsIterator.hasNext())
+        {
+            object = objectsIterator.next();
+            Triple<List<ToolElement>, List<AbstractObject>, List<ConnectionLine>> members = object.getMembers();
+
+            if (members != null)
             {
-                line = linesIterator.next();
+                objectsIterator.remove();
 
-                if (selectedObjects.contains(line.getStartBasicObject()) || selectedObjects.contains(line.getEndBasicObject()))
+                for (AbstractObject subObject : members.second())
                 {
-                    paintedElementsInOrder.remove(line);
-                    linesIterator.remove();
-                    line.addToRepaintArea(repaintArea);
+                    objectsIterator.add(subObject);
+                    objectsIterator.previous();
                 }
             }
-            ==================== old version ====================
-             */
-            // ==================== new version ====================
-            Iterator<ConnectionLine> iterator = linesOnCanvas.iterator();
-            ConnectionLine line;
-            while (iterator.hasNext())
-            {
-                line = iterator.next();
+        }
+
+        Iterator<ConnectionLine> linesIterator = linesOnCanvas.iterator();
+        ConnectionLine line;
+        while (linesIterator.hasNext())
+        {
+            line = linesIterator.next();
 
-                if (line.getStartBasicObject().isSelected() || line.getEndBasicObject().isSelected())
+            if (selectedObjects.contains(line.getStartBasicObject()) || selectedObjects.contains(line.getEndBasicObject()))
+            {
+                paintedElementsInOrder.remove(line);
+                linesIterator.remove();
+                line.addToDirtyRegion(dirtyRegion);
+            }
+        }
+        ==================== old version ====================
+         */
+        // ==================== new version ====================
+        // Instead of scanning linesOnCanvas, the incidence index of each deleted object yields exactly the lines connected to it.
+        for (AbstractObject object : selectedObjects)
+        {
+            for (ConnectionLine line : List.copyOf(object.getConnectionLines()))  // disconnect modifies the incidence index
+            {
+                if (linesOnCanvas.remove(line))  // false for the lines that are members of the deleted CompositeObject
                 {
-                    paintedElementsInOrder.remove(line);
-                    iterator.remove();
-                    line.addToRepaintArea(repaintArea);
+                    removedElements.add(line);
+                    removedZIndices.add(paintedElementsInOrder.getZIndex(line));
+                    removeFromPaintedElements(line);
+                    line.disconnect();
+                    line.addToDirtyRegion(dirtyRegion);
                 }
             }
-            // ==================== new version ====================
+        }
+        // ==================== new version ====================
+
+        if (pagedDiagram == null)
+        {
+            history.deleted(removedElements, removedZIndices.stream().mapToLong(Long::longValue).toArray());
+        }
+
+        repaintDirtyRegion();
+
+        metrics.deleted(System.nanoTime() - start);
+    }
+
+    public void undo()
+    {
+        endMove();
+
+        if (pagedDiagram == null && history.canUndo())
+        {
+            boolean journaled;
+            try
+            {
+                journaled = history.undo(this);
+            }
+            catch (IOException e)
+            {
+                JOptionPane.showMessageDialog(canvas, "Cannot read the older edits back, they can no longer be undone:\n" + e.getMessage(), "Undo", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            undoneOrRedone(journaled, true);
+        }
+    }
+
+    public void redo()
+    {
+        endMove();
+
+        if (pagedDiagram == null && history.canRedo())
+        {
+            undoneOrRedone(history.redo(this), false);
+        }
+    }
 
-            // In order to clear the complete arrow, it is necessary to further expand the repaintArea.
-            int clipOffset = 20;
-            canvas.repaint(repaintArea.x - clipOffset / 2, repaintArea.y - clipOffset / 2, repaintArea.width + clipOffset, repaintArea.height + clipOffset);
+    // the restored elements come back unselected; the journal starts anew if the edit is older than its checkpoint
+    private void undoneOrRedone(boolean journaled, boolean undone)
+    {
+        clearSelection();  // also repaints the dirty region of the elementary edits
 
-            repaintArea.setBounds(0, 0, -1, -1);
+        if (journal != null)
+        {
+            if (!journaled)
+            {
+                checkpoint(null);
+            }
+            else if (undone)
+            {
+                journal.undone();
+            }
+            else
+            {
+                journal.redone();
+            }
         }
     }
 
+    UndoHistory getHistory()
+    {
+        return history;
+    }
+
     void setMode(MouseInputAdapter mode, int modeNumber)
     {
-        canvas.removeMouseListener(this.mode);
-        canvas.removeMouseMotionListener(this.mode);
+        endMove();
+
         this.mode = mode;
         this.modeNumber = modeNumber;
-        canvas.addMouseListener(this.mode);
-        canvas.addMouseMotionListener(this.mode);
+        canvas.setMode(this.mode);  // the CanvasArea passes the mouse events on in world coordinates
 
         if (this.modeNumber != SelectMode.NUMBER)
         {
-            // selectedPaintedElements has already been updated in all possible calls to methods before the setMode method is invoked
-            for (ToolElement element : selectedPaintedElements)
+            for (ToolElement element : List.copyOf(selection.getSelectedElements()))  // setSelected removes the element from the selection
             {
                 element.setSelected(false);
-                element.addToRepaintArea(repaintArea);
+                element.addToDirtyRegion(dirtyRegion);
             }
-            selectedPaintedElements.clear();
 
-            // In order to draw the complete arrow, it is necessary to further expand the repaintArea.
-            int clipOffset = 20;
-            canvas.repaint(repaintArea.x - clipOffset / 2, repaintArea.y - clipOffset / 2, repaintArea.width + clipOffset, repaintArea.height + clipOffset);
-
-            repaintArea.setBounds(0, 0, -1, -1);
+            repaintDirtyRegion();
         }
     }
 
-    // getTopmostHitElement is only used in ConnectionLineMode, so there is no need to update selectedPaintedElements in this method.
+    // getTopmostHitElement is only used in ConnectionLineMode, so there is no need to update the selection in this method.
     public ToolElement getTopmostHitElement(MouseEvent e)
     {
-        Iterator<ToolElement> iterator = paintedElementsInOrder.descendingIterator();
-        ToolElement element, topmostHitElement = null;
+        return getTopmostHitElement(e.getPoint());
+    }
+
+    private ToolElement getTopmostHitElement(Point coordinate)
+    {
+        // only the elements whose bounds contain the coordinate can be hit, and they are tested from the topmost to the bottommost
+        ArrayList<ToolElement> candidates = new ArrayList<>();
+        elementIndex.query(coordinate, candidates);
+        candidates.sort(paintedElementsInOrder.comparator().reversed());
 
-        while (iterator.hasNext())
+        hitTests = 0;
+        for (ToolElement element : candidates)
         {
-            element = iterator.next();
-
-            if (element.isHit(e.getPoint()))
+            hitTests++;
+            if (element.isHit(coordinate))
             {
-                topmostHitElement = element;
-                break;
+                return element;
             }
         }
 
-        return topmostHitElement;
+        return null;
     }
 
     public ToolElement pressedEventHandler(MouseEvent e)
@@ -371,48 +699,44 @@ public enum Model
 
         if (modeNumber == SelectMode.NUMBER)
         {
-            selectedPaintedElements.clear();
+            pressedElement = getTopmostHitElement(e.getPoint());
 
-            Iterator<ToolElement> iterator = paintedElementsInOrder.descendingIterator();
-            ToolElement element;
-            while (iterator.hasNext())
+            // Pressing an AbstractObject that is already selected keeps the selection, so that all selected objects can be moved together.
+            if (pressedElement == null || !pressedElement.isMovable() || !pressedElement.isSelected())
             {
-                element = iterator.next();
-
-                if (element.isSelected() && (!element.isHit(e.getPoint()) || (element.isHit(e.getPoint()) && pressedElement != null)))
+                // all selected elements on the CanvasArea except the pressedElement become unselected
+                for (ToolElement element : List.copyOf(selection.getSelectedElements()))  // setSelected removes the element from the selection
                 {
-                    element.setSelected(false);
-                    element.addToRepaintArea(repaintArea);
-                }
-                else if (element.isHit(e.getPoint()) && pressedElement == null)
-                {
-                    pressedElement = element;
-
-                    if (!pressedElement.isSelected())
+                    if (element != pressedElement)
                     {
-                        pressedElement.setSelected(true);
-                        pressedElement.addToRepaintArea(repaintArea);
+                        element.setSelected(false);
+                        element.addToDirtyRegion(dirtyRegion);
                     }
-
-                    selectedPaintedElements.add(pressedElement);
-                    iterator.remove();
                 }
             }
+
             if (pressedElement != null)
             {
-                paintedElementsInOrder.add(pressedElement);
-            }
+                if (!pressedElement.isSelected())
+                {
+                    pressedElement.setSelected(true);
+                    pressedElement.addToDirtyRegion(dirtyRegion);
+                }
 
-            // In order to draw the complete arrow, it is necessary to further expand the repaintArea.
-            int clipOffset = 20;
-            canvas.repaint(repaintArea.x - clipOffset / 2, repaintArea.y - clipOffset / 2, repaintArea.width + clipOffset, repaintArea.height + clipOffset);
+                bringToFront(pressedElement);
+            }
 
-            repaintArea.setBounds(0, 0, -1, -1);
+            repaintDirtyRegion();
         }
         else if (modeNumber == AssociationLineMode.NUMBER || modeNumber == GeneralizationLineMode.NUMBER || modeNumber == CompositionLineMode.NUMBER)
         {
-            pressedElement = getTopmostHitElement(e);
+            pressedElement = getTopmostHitElement(e.getPoint());
+        }
+        else
+        {
+            hitTests = 0;
         }
+        metrics.pressed(hitTests);
 
         return pressedElement;
     }
@@ -435,98 +759,744 @@ public enum Model
     }
      */
 
-    // Before the moveObject method, the pressedEventHandler has definitely been called, so there is no need to update selectedPaintedElements in this method.
-    public void moveObject(AbstractObject movedObject, int offsetX, int offsetY)
+    // Before the moveSelection method, the pressedEventHandler has definitely been called, which has selected the pressed AbstractObject and kept the rest of the selection if the object was already selected.
+    public void moveSelection(int offsetX, int offsetY)
+    {
+        moveObjects(movingObjects != null ? movingObjects : List.copyOf(selection.getSelectedObjects()), offsetX, offsetY);
+    }
+
+    // moves the objects together by the same offset; called for every mouseDragged event of a move with the same objects until endMove
+    void moveObjects(List<AbstractObject> objects, int offsetX, int offsetY)
     {
-        movedObject.addToRepaintArea(repaintArea);  // repaint the background over the old movedObject location
+        long start = System.nanoTime();
 
-        movedObject.translate(offsetX, offsetY);
-        /*
-        In theory, the code for repainting the movedObject at the new location should be added. However, due to the
-        small amount of movement between the two mouseDragged events and the sufficiently large clipOffset, it is
-        possible to achieve the same effect by expanding the repaintArea only once to include both "repaint the
-        background over the old movedObject location" and "repaint the movedObject at the new location."
-         */
+        if (movingObjects == null)
+        {
+            beginMove(objects);
+        }
 
-        // all ConnectionLines connected to the movedObject need to be repainted
         /*
-        In my previous version of the code, I defined that "regardless of whether a CompositeObject is
-        selected or not, its internal members are always unselected." That's why I needed to perform
-        the following recursive operation to retrieve all the selected BasicObjects within a selected
-        CompositeObject. However, in the latest version, I changed the rule to "the selected state of
-        the members inside a CompositeObject should be the same as the selected state of the
-        CompositeObject they belong to." Therefore, to repaint all the lines connected to the
-        movedObject (which can be either a BasicObject or a CompositeObject), it is sufficient to
-        check whether one end of the line is selected.
-
-        ==================== old version ====================
-        List<AbstractObject> movedBasicObjects = recursivelyGetBasicObjects(movedObject);
+        ==================== previous version ====================
+        int[] offset = movedObject.translate(offsetX, offsetY);
+        ==================== previous version ====================
+        Each AbstractObject was kept inside the world on its own. Applied to several objects, that would push the
+        ones at the edge of the world into each other, so the offset is clamped once for all of them: it stops
+        where the topmost and the leftmost of them reach the origin of the world.
          */
-
-        for (ConnectionLine line : linesOnCanvas)
+        offsetX = Math.max(offsetX, -movingTopLeftCorner.x);
+        offsetY = Math.max(offsetY, -movingTopLeftCorner.y);
+        if (offsetX == 0 && offsetY == 0)
         {
-            // ==================== old version ====================
-            // if (movedBasicObjects.contains(line.getStartBasicObject()) || movedBasicObjects.contains(line.getEndBasicObject()))
-
-            // ==================== new version ====================
-            if (line.getStartBasicObject().isSelected() || line.getEndBasicObject().isSelected())
-            {
-                /*
-                Due to the small amount of movement between the two mouseDragged events and the sufficiently large
-                clipOffset, it is possible to achieve the desired result by expanding the repaintArea only once,
-                including both "repaint the background over the old ConnectionLine location" and "repaint the
-                ConnectionLine at the new location."
-                 */
-                line.addToRepaintArea(repaintArea);
-            }
+            return;
         }
 
-        // In order to draw the complete arrow, it is necessary to further expand the repaintArea.
-        int clipOffset = 20;
-        canvas.repaint(repaintArea.x - clipOffset / 2, repaintArea.y - clipOffset / 2, repaintArea.width + clipOffset, repaintArea.height + clipOffset);
-
-        repaintArea.setBounds(0, 0, -1, -1);
-    }
+        // repaint the background over the old location of the moving objects and the ConnectionLines connected to them
+        dirtyRegion.add(rigidRegion);
+        for (ConnectionLine line : stretchedLines)
+        {
+            line.addToDirtyRegion(dirtyRegion);
+        }
 
-    // This method does not update the screen; instead, it is left for the mouseReleased method in SelectMode to handle the repaint.
-    public List<ToolElement> setElementsInSelectionBoxToSelected(SelectionBox selectionBox)
-    {
-        // All elements on the CanvasArea are already in the unselected state because the pressedEventHandler method is always called before this method, we don't have to clear selectedPaintedElements at the beginning of this method.
-        for (ToolElement element : paintedElementsInOrder)
+        for (AbstractObject object : movingObjects)
         {
-            if (selectionBox.contains(element))
+            object.moveBy(offsetX, offsetY);
+            elementIndex.update(object, object.getBounds());
+            if (pagedDiagram != null)  // the object may have crossed into another page
             {
-                element.setSelected(true);
-                selectedPaintedElements.add(element);
+                pagedDiagram.objectMoved(object);
             }
         }
+        /*
+        ==================== previous version ====================
+        for (ConnectionLine line : linesOnCanvas)
+        {
+            if (line.getStartBasicObject().isSelected() || line.getEndBasicObject().isSelected())
+            ...
+        }
+        ==================== previous version ====================
+        Scanning every line on the CanvasArea for each mouseDragged event costs O(total lines). The incidence
+        index of the moving objects (which also covers the BasicObjects inside a CompositeObject) yields exactly
+        the lines that need to be updated, and beginMove collects them once for the whole move.
+         */
+        for (ConnectionLine line : movingLines)
+        {
+            elementIndex.update(line, line.getBounds());  // the members of a CompositeObject are not in the index and are skipped
+        }
+        movingTopLeftCorner.translate(offsetX, offsetY);
+        rigidRegion.translate(offsetX, offsetY);
+        canvas.dragMoved(offsetX, offsetY);
+        if (pagedDiagram == null)
+        {
+            history.moved(movingObjects, offsetX, offsetY);
+        }
+        if (journal != null)
+        {
+            journal.objectsMoved(movingObjects, offsetX, offsetY);
+        }
+
+        /*
+        ==================== previous version ====================
+        Only the old location was added to a single repaintArea, which was expanded by a fixed clipOffset of 20 on
+        the assumption that the movement between two mouseDragged events is small enough for the expanded area to
+        also cover the new location. A fast drag left residues behind, and the padding repainted far more than the
+        elements. The exact paint bounds of the old and the new location are now added to the dirty region, which
+        only merges them if they overlap enough.
+        ==================== previous version ====================
+         */
+        // repaint the moving objects and the ConnectionLines connected to them at the new location, all in one dirty region
+        dirtyRegion.add(rigidRegion);
+        for (ConnectionLine line : stretchedLines)
+        {
+            line.addToDirtyRegion(dirtyRegion);
+        }
+
+        repaintDirtyRegion();
+
+        metrics.objectMoved(System.nanoTime() - start);
+    }
+
+    /*
+    Collects everything a move of the objects changes, once for all mouseDragged events of the move. A ConnectionLine
+    between two moving BasicObjects only moves along with them, so it belongs to the rigidRegion together with the
+    objects, which is moved by the offset of every event instead of being computed again. Only the stretchedLines,
+    which have a single end on a moving object, change their shape and need their paint bounds on every event.
+     */
+    private void beginMove(List<AbstractObject> objects)
+    {
+        movingObjects = objects;
+        movingTopLeftCorner = new Point(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        rigidRegion = new DirtyRegion(8, 32 * 32);
+        HashSet<AbstractObject> movingBasicObjects = new HashSet<>();
+        LinkedHashSet<ConnectionLine> lines = new LinkedHashSet<>();  // a line between two moving objects is attached to both of them
+        for (AbstractObject object : objects)
+        {
+            Point corner = object.getSelectedTopLeftCorner();
+            movingTopLeftCorner.x = Math.min(movingTopLeftCorner.x, corner.x);
+            movingTopLeftCorner.y = Math.min(movingTopLeftCorner.y, corner.y);
+            object.addToDirtyRegion(rigidRegion);
+            addBasicObjects(object, movingBasicObjects);
+            lines.addAll(object.getConnectionLines());
+        }
+
+        movingLines = List.copyOf(lines);
+        stretchedLines = new ArrayList<>();
+        // the moving elements are drawn over the frozen rest of the scene for the duration of the move
+        ArrayList<ToolElement> movingElements = new ArrayList<>(objects);
+        for (ConnectionLine line : movingLines)
+        {
+            if (movingBasicObjects.contains(line.getStartBasicObject()) && movingBasicObjects.contains(line.getEndBasicObject()))
+            {
+                line.addToDirtyRegion(rigidRegion);
+            }
+            else
+            {
+                stretchedLines.add(line);
+            }
+
+            if (paintedElementsInOrder.contains(line))  // the lines that are members of a CompositeObject are drawn by the CompositeObject
+            {
+                movingElements.add(line);
+            }
+        }
+        movingElements.sort(paintedElementsInOrder.comparator());
+        canvas.beginDrag(movingElements, stretchedLines);
+    }
+
+    // adds the object if it is a BasicObject, or else the BasicObjects nested inside it
+    private static void addBasicObjects(AbstractObject object, Set<AbstractObject> basicObjects)
+    {
+        Triple<List<ToolElement>, List<AbstractObject>, List<ConnectionLine>> members = object.getMembers();
+
+        if (members == null)  // BasicObject
+        {
+            basicObjects.add(object);
+        }
+        else  // CompositeObject
+        {
+            for (AbstractObject member : members.second())
+            {
+                addBasicObjects(member, basicObjects);
+            }
+        }
+    }
 
-        paintedElementsInOrder.removeAll(selectedPaintedElements);
-        paintedElementsInOrder.addAll(selectedPaintedElements);
+    // restores the full scene after the last mouseDragged event of a move, the cached tiles below the moved elements have already been invalidated by moveObjects
+    public void endMove()
+    {
+        List<ToolElement> movingElements = canvas.endDrag();
+        movingObjects = null;
+        movingLines = stretchedLines = null;
+        rigidRegion = null;
+        movingTopLeftCorner = null;
+
+        history.endMove();
+        if (journal != null)
+        {
+            journal.endMove();
+        }
 
-        if (selectedPaintedElements.isEmpty())
+        if (movingElements != null)
+        {
+            for (ToolElement element : movingElements)
+            {
+                element.addToDirtyRegion(dirtyRegion);
+            }
+
+            repaintDirtyRegion();
+        }
+    }
+
+    // a press and release at the same position on one of several selected elements selects only that element
+    public void clickedEventHandler(ToolElement clickedElement)
+    {
+        if (modeNumber == SelectMode.NUMBER && clickedElement.isSelected() && selection.getSelectedElements().size() > 1)
+        {
+            select(List.of(clickedElement));
+        }
+    }
+
+    // This method does not update the screen; instead, it is left for the mouseReleased method in SelectMode to handle the repaint.
+    public List<ToolElement> setElementsInSelectionBoxToSelected(SelectionBox selectionBox)
+    {
+        // All elements on the CanvasArea are already in the unselected state because the pressedEventHandler method is always called before this method, so the selection is empty at the beginning of this method.
+        // An element inside the SelectionBox certainly intersects it, so only the candidates from the elementIndex need to be checked.
+        ArrayList<ToolElement> candidates = new ArrayList<>();
+        elementIndex.query(selectionBox.getBounds(), candidates);
+        candidates.sort(paintedElementsInOrder.comparator());  // keep the relative painting order of the selected elements
+        for (ToolElement element : candidates)
+        {
+            if (selectionBox.contains(element))
+            {
+                element.setSelected(true);
+                bringToFront(element);
+                canvas.invalidateScene(element.getBounds());  // the repaint itself is requested by SelectMode
+            }
+        }
+
+        if (selection.isEmpty())
         {
             return null;
         }
-        return List.copyOf(selectedPaintedElements);
+        return List.copyOf(selection.getSelectedElements());
+    }
+
+    void bringToFront(ToolElement element)
+    {
+        if (paintedElementsInOrder.last() != element)
+        {
+            paintedElementsInOrder.bringToFront(element);
+
+            if (journal != null)
+            {
+                journal.broughtToFront(element);
+            }
+        }
+    }
+
+    // selects exactly the elements, e.g. to replay an edit of the selection
+    void select(Collection<ToolElement> elements)
+    {
+        clearSelection();
+
+        for (ToolElement element : elements)
+        {
+            element.setSelected(true);
+            element.addToDirtyRegion(dirtyRegion);
+        }
+
+        repaintDirtyRegion();
+    }
+
+    void clearSelection()
+    {
+        for (ToolElement element : List.copyOf(selection.getSelectedElements()))  // setSelected removes the element from the selection
+        {
+            element.setSelected(false);
+            element.addToDirtyRegion(dirtyRegion);
+        }
+
+        repaintDirtyRegion();
     }
 
     public void dragLine(ToolElement line)
     {
         line.setSelected(false);
-        line.addToRepaintArea(repaintArea);
+        line.addToDirtyRegion(dirtyRegion);
+
+        repaintDirtyRegion();
+    }
+
+    // the top-level elements in painting order, e.g. to be saved to a file; only the loaded region of a paged diagram file
+    public List<ToolElement> getDiagram()
+    {
+        ArrayList<ToolElement> elements = new ArrayList<>(paintedElementsInOrder.size());
+        for (ToolElement element : paintedElementsInOrder)
+        {
+            elements.add(element);
+        }
+
+        return elements;
+    }
+
+    // replaces the whole diagram by the top-level elements, which must be given in painting order and must not be selected
+    public void setDiagram(List<ToolElement> elements)
+    {
+        restoreDiagram(elements);
+        checkpoint(null);
+    }
+
+    // replaces the whole diagram without starting a new journal, e.g. while the journal itself is recovered
+    void restoreDiagram(List<ToolElement> elements)
+    {
+        endMove();
+
+        if (pagedDiagram != null)
+        {
+            pagedDiagram.close();
+            pagedDiagram = null;
+        }
+
+        for (ToolElement element : paintedElementsInOrder)
+        {
+            element.setSelectionModel(null);
+        }
+        paintedElementsInOrder.clear();
+        elementIndex.clear();
+        objectsOnCanvas.clear();
+        linesOnCanvas.clear();
+        history.clear();  // the edits of the replaced diagram cannot be undone
+
+        for (ToolElement element : elements)
+        {
+            if (element.isMovable())  // AbstractObject
+            {
+                placeObject((AbstractObject) element);
+            }
+            else  // ConnectionLine
+            {
+                placeLine((ConnectionLine) element);
+            }
+        }
+
+        canvas.repaintWholeScene();
+    }
+
+    // the journal starts anew from the current diagram, which is held by the source file if it is not null
+    private void checkpoint(Path source)
+    {
+        history.checkpoint();
+
+        if (journal != null)
+        {
+            try
+            {
+                journal.checkpoint(getDiagram(), diagramFile, source);
+            }
+            catch (IOException e)
+            {
+                JOptionPane.showMessageDialog(canvas, "Cannot write the journal, changes will not be recovered after a crash:\n" + e.getMessage(), "Journal", JOptionPane.WARNING_MESSAGE);
+            }
+        }
+    }
+
+    // recovers the work of a session that was not closed and starts recording the edits
+    public void openJournal()
+    {
+        try
+        {
+            journal = Journal.open(Journal.getDefaultPath());
+            history.setJournal(journal);
+            if (journal != null)  // null if another instance of the editor is using the journal
+            {
+                diagramFile = journal.recover(this);
+                canvas.repaintWholeScene();
+            }
+        }
+        catch (IOException e)
+        {
+            JOptionPane.showMessageDialog(canvas, "Cannot recover the last session:\n" + e.getMessage(), "Journal", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    // null unless the journal has been opened
+    Journal getJournal()
+    {
+        return journal;
+    }
+
+    // discards the journal when the editor is closed normally
+    public void closeJournal()
+    {
+        if (journal != null)
+        {
+            try
+            {
+                journal.close();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            journal = null;
+            history.setJournal(null);
+        }
+    }
+
+    EditorMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    // makes the EditorMetrics available through JMX and starts writing them to a CSV file if EditorMetrics.METRICS_CSV_PROPERTY is set
+    public void publishMetrics()
+    {
+        try
+        {
+            metrics.publish();
+        }
+        catch (JMException | IOException e)
+        {
+            System.err.println("Cannot publish the metrics: " + e);  // the editor works just as well without them
+        }
+    }
 
-        selectedPaintedElements.clear();
+    void openDiagram()
+    {
+        JFileChooser fileChooser = createFileChooser();
+
+        if (fileChooser.showOpenDialog(canvas) == JFileChooser.APPROVE_OPTION)
+        {
+            Path path = fileChooser.getSelectedFile().toPath();
+            DiagramFormat format = DiagramFormat.forPath(path);
+
+            if (format == null)
+            {
+                JOptionPane.showMessageDialog(canvas, "Unknown file type: " + path.getFileName(), "Open", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            try
+            {
+                openDiagram(path);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                JOptionPane.showMessageDialog(canvas, "Cannot open " + path.getFileName() + ":\n" + e.getMessage(), "Open", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    // saves to the file the diagram was last opened from or saved to, unless there is none or chooseFile is true
+    void saveDiagram(boolean chooseFile)
+    {
+        endMove();
+
+        Path path = diagramFile;
+
+        if (path == null || chooseFile)
+        {
+            JFileChooser fileChooser = createFileChooser();
+
+            if (fileChooser.showSaveDialog(canvas) != JFileChooser.APPROVE_OPTION)
+            {
+                return;
+            }
+
+            path = fileChooser.getSelectedFile().toPath();
+            if (DiagramFormat.forPath(path) == null)  // append the extension of the chosen format
+            {
+                DiagramFormat format = DiagramFormat.BINARY;
+                for (DiagramFormat candidate : DiagramFormat.values())
+                {
+                    if (fileChooser.getFileFilter().getDescription().equals(candidate.getDescription()))
+                    {
+                        format = candidate;
+                    }
+                }
+                path = path.resolveSibling(path.getFileName() + "." + format.getExtension());
+            }
+
+            if (Files.exists(path) && JOptionPane.showConfirmDialog(canvas, path.getFileName() + " already exists.\nDo you want to replace it?", "Save As", JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION)
+            {
+                return;
+            }
+        }
+
+        try
+        {
+            saveDiagram(path);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            JOptionPane.showMessageDialog(canvas, "Cannot save " + path.getFileName() + ":\n" + e.getMessage(), "Save", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // the format is given by the extension of the file name
+    public void openDiagram(Path path) throws IOException
+    {
+        DiagramFormat format = DiagramFormat.forPath(path);
+        if (format == null)
+        {
+            throw new IOException("unknown file type: " + path.getFileName());
+        }
+
+        if (format == DiagramFormat.PAGED)  // only the region around the viewport is loaded
+        {
+            restoreDiagram(List.of());
+            pagedDiagram = PagedDiagram.open(this, canvas, path);
+            canvas.repaintWholeScene();
+            diagramFile = path;
+            if (journal != null)  // the elements of a paged diagram come and go, its edits are not journaled
+            {
+                journal.suspend();
+            }
+        }
+        else
+        {
+            restoreDiagram(format.read(path));
+            diagramFile = path;
+            checkpoint(path);
+        }
+    }
+
+    // the format is given by the extension of the file name
+    public void saveDiagram(Path path) throws IOException
+    {
+        endMove();
+
+        DiagramFormat format = DiagramFormat.forPath(path);
+        if (format == null)
+        {
+            throw new IOException("unknown file type: " + path.getFileName());
+        }
+
+        if (pagedDiagram != null && format == DiagramFormat.PAGED)  // the pages that are not loaded are copied from the open file
+        {
+            pagedDiagram.save(path);
+        }
+        else
+        {
+            if (pagedDiagram != null)
+            {
+                pagedDiagram.loadAll();
+            }
+            format.write(path, getDiagram());
+        }
+        diagramFile = path;
+        if (pagedDiagram == null)
+        {
+            checkpoint(path);
+        }
+    }
+
+    // renders the whole diagram into a PNG image in the background, while the diagram can still be edited
+    void exportPng()
+    {
+        endMove();
+
+        Path path = chooseExportPath("PNG image", "png", "Export PNG");
+        if (path == null)
+        {
+            return;
+        }
+
+        String scaleText = (String) JOptionPane.showInputDialog(canvas, "Pixels per unit of the diagram (e.g. 4 for a poster):", "Export PNG", JOptionPane.QUESTION_MESSAGE, null, null, "1");
+        if (scaleText == null)
+        {
+            return;
+        }
+
+        PngExporter exporter;
+        try
+        {
+            if (pagedDiagram != null)
+            {
+                pagedDiagram.loadAll();
+            }
+            // the copy is drawn by the worker threads, so the diagram itself can be edited during the export
+            exporter = new PngExporter(ElementKind.copy(getDiagram()), Double.parseDouble(scaleText.trim()), canvas.getBackground());
+        }
+        catch (IOException | RuntimeException e)
+        {
+            JOptionPane.showMessageDialog(canvas, "Cannot export the diagram:\n" + e.getMessage(), "Export PNG", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        ProgressMonitor monitor = new ProgressMonitor(canvas, "Exporting " + path.getFileName() + " (" + exporter.getWidth() + " x " + exporter.getHeight() + " pixels)", null, 0, 100);
+        SwingWorker<Void, Void> worker = new SwingWorker<>()
+        {
+            @Override
+            protected Void doInBackground() throws Exception
+            {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))
+                {
+                    exporter.export(out, ForkJoinPool.commonPool(), (writtenRows, rows) -> setProgress((int) (100L * writtenRows / rows)));
+                }
+
+                return null;
+            }
+
+            @Override
+            protected void done()
+            {
+                monitor.close();
+
+                try
+                {
+                    get();
+                }
+                catch (CancellationException | InterruptedException | ExecutionException e)
+                {
+                    try
+                    {
+                        Files.deleteIfExists(path);  // an incomplete image
+                    }
+                    catch (IOException ignored)
+                    {
+                        // the incomplete image is left behind
+                    }
+
+                    if (e instanceof ExecutionException)
+                    {
+                        JOptionPane.showMessageDialog(canvas, "Cannot export " + path.getFileName() + ":\n" + e.getCause().getMessage(), "Export PNG", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }
+        };
+        worker.addPropertyChangeListener(e ->
+        {
+            if ("progress".equals(e.getPropertyName()))
+            {
+                monitor.setProgress((Integer) e.getNewValue());
+            }
+            if (monitor.isCanceled())
+            {
+                worker.cancel(true);  // interrupts the exporting thread
+            }
+        });
+        worker.execute();
+    }
+
+    /*
+    Exports the diagram as a vector image on a background thread. Like exportPng, it writes a copy of the
+    diagram, so the diagram can be edited in the meantime.
+     */
+    void exportVector(VectorFormat format)
+    {
+        endMove();
+
+        String title = "Export " + format.name();
+        Path path = chooseExportPath(format.getDescription(), format.getExtension(), title);
+        if (path == null)
+        {
+            return;
+        }
+
+        List<ToolElement> elements;
+        try
+        {
+            if (pagedDiagram != null)
+            {
+                pagedDiagram.loadAll();
+            }
+            elements = ElementKind.copy(getDiagram());
+        }
+        catch (IOException e)
+        {
+            JOptionPane.showMessageDialog(canvas, "Cannot export the diagram:\n" + e.getMessage(), title, JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        canvas.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        SwingWorker<Void, Void> worker = new SwingWorker<>()
+        {
+            @Override
+            protected Void doInBackground() throws Exception
+            {
+                try (OutputStream out = Files.newOutputStream(path))
+                {
+                    format.write(out, elements);
+                }
 
-        // In order to draw the complete arrow, it is necessary to further expand the repaintArea.
-        int clipOffset = 20;
-        canvas.repaint(repaintArea.x - clipOffset / 2, repaintArea.y - clipOffset / 2, repaintArea.width + clipOffset, repaintArea.height + clipOffset);
+                return null;
+            }
 
-        repaintArea.setBounds(0, 0, -1, -1);
+            @Override
+            protected void done()
+            {
+                canvas.setCursor(Cursor.getDefaultCursor());
+
+                try
+                {
+                    get();
+                }
+                catch (CancellationException | InterruptedException | ExecutionException e)
+                {
+                    try
+                    {
+                        Files.deleteIfExists(path);  // an incomplete image
+                    }
+                    catch (IOException ignored)
+                    {
+                        // the incomplete image is left behind
+                    }
+
+                    if (e instanceof ExecutionException)
+                    {
+                        JOptionPane.showMessageDialog(canvas, "Cannot export " + path.getFileName() + ":\n" + e.getCause().getMessage(), title, JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }
+        };
+        worker.execute();
     }
 
-    LinkedList<ToolElement> getPaintedElementsInOrder()
+    // asks for the file to export to, with the extension appended if it is missing; null if the user cancelled
+    private Path chooseExportPath(String description, String extension, String title)
+    {
+        JFileChooser fileChooser = new JFileChooser(diagramFile != null ? diagramFile.getParent().toFile() : null);
+        fileChooser.setFileFilter(new FileNameExtensionFilter(description, extension));
+        if (fileChooser.showSaveDialog(canvas) != JFileChooser.APPROVE_OPTION)
+        {
+            return null;
+        }
+
+        Path chosenPath = fileChooser.getSelectedFile().toPath();
+        Path path = chosenPath.getFileName().toString().toLowerCase().endsWith("." + extension) ? chosenPath : chosenPath.resolveSibling(chosenPath.getFileName() + "." + extension);
+        if (Files.exists(path) && JOptionPane.showConfirmDialog(canvas, path.getFileName() + " already exists.\nDo you want to replace it?", title, JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION)
+        {
+            return null;
+        }
+
+        return path;
+    }
+
+    private JFileChooser createFileChooser()
+    {
+        JFileChooser fileChooser = new JFileChooser(diagramFile != null ? diagramFile.getParent().toFile() : null);
+
+        for (DiagramFormat format : DiagramFormat.values())
+        {
+            fileChooser.addChoosableFileFilter(new FileNameExtensionFilter(format.getDescription(), format.getExtension()));
+        }
+        fileChooser.setFileFilter(fileChooser.getChoosableFileFilters()[1]);  // the first format, after the "All Files" filter
+
+        return fileChooser;
+    }
+
+    ZOrder<ToolElement> getPaintedElementsInOrder()
     {
         return paintedElementsInOrder;
     }
+
+    // the elements whose bounds intersect the area, in the order in which they are painted
+    List<ToolElement> getPaintedElementsInOrder(Rectangle area)
+    {
+        ArrayList<ToolElement> elements = new ArrayList<>();
+        elementIndex.query(area, elements);
+        elements.sort(paintedElementsInOrder.comparator());
+
+        return elements;
+    }
 }
\ No newline at end of file
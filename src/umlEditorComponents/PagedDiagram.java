@@ -0,0 +1,642 @@
+package umlEditorComponents;
+
+import containers.SpatialIndex;
+import diagramFiles.PagedDiagramFile;
+import diagramFiles.PagedDiagramFile.LineRecord;
+import diagramFiles.PagedDiagramFile.Page;
+import diagramFiles.PagedDiagramFile.PageContents;
+import diagramFiles.PagedDiagramFile.Placed;
+import graphics.*;
+
+import javax.swing.*;
+import java.awt.*;
+import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps only the region of a paged diagram file around the viewport in the Model.
+ *
+ * <p>Whenever the visible world area of the CanvasArea changes, the pages whose bounds intersect it (plus MARGIN
+ * on every side) are wanted, together with the pages their ConnectionLines lead to. Wanted pages that are not in
+ * memory are read and decoded by a background thread and then added to the Model on the event dispatch thread,
+ * so panning never waits for the disk. When the estimated size of the loaded pages exceeds the memory budget,
+ * the least recently wanted pages that are no longer wanted are evicted: the page is encoded from its elements
+ * in the Model, written to the spill file of the PagedDiagramFile if it has changed, and its elements are
+ * removed from the Model.</p>
+ *
+ * <p>The Model reports every top-level AbstractObject that is added, removed or moved, so that each one always
+ * belongs to the page of its current location. A page is loaded synchronously before an object is placed on
+ * it, which keeps every edit inside loaded pages. The top-level ConnectionLines belong to the page of the
+ * object at their start and are found through the incidence sets when a page is encoded. A line whose end is on
+ * a page that is not loaded is kept as a LineRecord until that page is loaded.</p>
+ *
+ * <p>All methods must be called on the event dispatch thread.</p>
+ */
+class PagedDiagram
+{
+    public static final String MEMORY_BUDGET_PROPERTY = "umleditor.pageMemoryBudget";  // in megabytes
+    private static final long DEFAULT_MEMORY_BUDGET = 256L << 20;
+    private static final int ELEMENT_FOOTPRINT = 1024;  // the estimated memory of a loaded element in bytes
+    private static final int MARGIN = PagedDiagramFile.PAGE_SIZE / 2;
+
+    private final Model model;
+    private final CanvasArea canvas;
+    private final long memoryBudget;
+    private PagedDiagramFile file;
+    private final SpatialIndex<Integer> pageIndex = new SpatialIndex<>(PagedDiagramFile.PAGE_SIZE);  // the bounds of the pages by page index
+    // the loaded pages with their top-level objects, from the least to the most recently wanted
+    private final LinkedHashMap<Integer, LinkedHashSet<AbstractObject>> loadedPages = new LinkedHashMap<>();
+    private final IdentityHashMap<AbstractObject, Integer> pageOfObject = new IdentityHashMap<>();
+    // the ids of the loaded BasicObjects, including the members of CompositeObjects, and the top-level objects they belong to
+    private final IdentityHashMap<BasicObject, Integer> ids = new IdentityHashMap<>();
+    private final IdentityHashMap<BasicObject, AbstractObject> topLevelObjects = new IdentityHashMap<>();
+    private final HashMap<Integer, BasicObject> objectsById = new HashMap<>();
+    // the lines whose end is not loaded, by the id of the BasicObject at either end
+    private final HashMap<Integer, ArrayList<LineRecord>> pendingLinesByStart = new HashMap<>(), pendingLinesByEnd = new HashMap<>();
+    private Set<Integer> wantedPages = Set.of();
+    /*
+    The pages requested from the loader with the number of their request. A page can be loaded synchronously,
+    edited, evicted and requested again while an earlier request is still in the loader, whose reply then holds
+    the contents of the page before the edits; only the reply to the current request of a page is materialized.
+     */
+    private final HashMap<Integer, Long> requestedPages = new HashMap<>();
+    private long lastRequest = 0;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "page loader");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+    private boolean closed = false;
+    private final PropertyChangeListener viewportListener = e -> update();
+
+    private PagedDiagram(Model model, CanvasArea canvas, PagedDiagramFile file, long memoryBudget)
+    {
+        this.model = model;
+        this.canvas = canvas;
+        this.file = file;
+        this.memoryBudget = memoryBudget;
+    }
+
+    // opens the file and loads the pages around the current viewport, the Model must be empty
+    static PagedDiagram open(Model model, CanvasArea canvas, Path path) throws IOException
+    {
+        long memoryBudget = Long.getLong(MEMORY_BUDGET_PROPERTY, DEFAULT_MEMORY_BUDGET >> 20) << 20;
+        PagedDiagram diagram = new PagedDiagram(model, canvas, PagedDiagramFile.open(path), memoryBudget);
+
+        diagram.indexPages();
+        model.getPaintedElementsInOrder().skipTo(diagram.file.getNextZIndex());
+        diagram.computeWantedPages();
+        for (int index : diagram.wantedPages)
+        {
+            diagram.materialize(index, diagram.file.readPage(diagram.file.getPage(index)));
+        }
+        canvas.addPropertyChangeListener(CanvasArea.VIEWPORT_PROPERTY, diagram.viewportListener);
+
+        return diagram;
+    }
+
+    private void indexPages()
+    {
+        pageIndex.clear();
+
+        for (Page page : file.getPages())
+        {
+            pageIndex.insert(page.getIndex(), page.getBounds());
+        }
+    }
+
+    Path getPath()
+    {
+        return file.getPath();
+    }
+
+    // ==================== loading ====================
+
+    // the pages around the viewport and the pages their lines lead to
+    private void computeWantedPages()
+    {
+        Rectangle area = canvas.getVisibleWorldArea();
+        area.grow(MARGIN, MARGIN);
+
+        ArrayList<Integer> visiblePages = new ArrayList<>();
+        pageIndex.query(area, visiblePages);
+
+        LinkedHashSet<Integer> pages = new LinkedHashSet<>(visiblePages);
+        for (int index : visiblePages)
+        {
+            if (loadedPages.containsKey(index))
+            {
+                for (BasicObject object : getBasicObjects(index))
+                {
+                    for (LineRecord line : pendingLinesByStart.getOrDefault(ids.get(object), new ArrayList<>()))
+                    {
+                        addPageOfId(pages, line.getEndId());
+                    }
+                }
+            }
+            else
+            {
+                for (int dependency : file.getPage(index).getDependencies())
+                {
+                    pages.add(dependency);
+                }
+            }
+        }
+
+        wantedPages = pages;
+    }
+
+    private void addPageOfId(Set<Integer> pages, int id)
+    {
+        int index = file.getPageIndexOfId(id);
+
+        if (index != PagedDiagramFile.DELETED)
+        {
+            pages.add(index);
+        }
+    }
+
+    // called whenever the viewport changes or a page has been loaded
+    private void update()
+    {
+        if (closed)
+        {
+            return;
+        }
+
+        computeWantedPages();
+
+        for (int index : wantedPages)
+        {
+            if (loadedPages.containsKey(index))
+            {
+                loadedPages.put(index, loadedPages.remove(index));  // the most recently wanted page
+            }
+            else if (!requestedPages.containsKey(index))
+            {
+                long request = ++lastRequest;
+                requestedPages.put(index, request);
+                Page page = file.getPage(index);
+                PagedDiagramFile requestedFile = file;
+                loader.execute(() ->
+                {
+                    try
+                    {
+                        PageContents contents = requestedFile.readPage(page);
+                        SwingUtilities.invokeLater(() -> pageLoaded(requestedFile, index, request, contents));
+                    }
+                    catch (IOException | RuntimeException e)
+                    {
+                        SwingUtilities.invokeLater(() -> pageFailed(requestedFile, index, request, e));
+                    }
+                });
+            }
+        }
+
+        evict();
+    }
+
+    private void pageLoaded(PagedDiagramFile requestedFile, int index, long request, PageContents contents)
+    {
+        // the page may have been loaded synchronously (and even evicted and requested again) in the meantime, or the diagram may have been closed or saved
+        if (closed || requestedFile != file || !requestedPages.remove(index, request) || loadedPages.containsKey(index))
+        {
+            return;
+        }
+
+        materialize(index, contents);
+        canvas.repaintWholeScene();
+        update();  // the lines of the new page may lead to further pages
+    }
+
+    private void pageFailed(PagedDiagramFile requestedFile, int index, long request, Exception e)
+    {
+        if (!closed && requestedFile == file && requestedPages.remove(index, request))
+        {
+            JOptionPane.showMessageDialog(canvas, "Cannot load a part of " + file.getPath().getFileName() + ":\n" + e.getMessage(), "Open", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // loads a page before an edit places an object on it
+    private void ensureLoaded(int index)
+    {
+        if (!loadedPages.containsKey(index))
+        {
+            try
+            {
+                materialize(index, file.readPage(file.getPage(index)));
+                requestedPages.remove(index);  // a pending background load is discarded
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("cannot load a page of " + file.getPath(), e);
+            }
+        }
+    }
+
+    // adds the elements of a page to the Model
+    private void materialize(int index, PageContents contents)
+    {
+        LinkedHashSet<AbstractObject> objects = new LinkedHashSet<>();
+        loadedPages.put(index, objects);
+
+        for (Map.Entry<Integer, BasicObject> entry : contents.objectsById().entrySet())
+        {
+            ids.put(entry.getValue(), entry.getKey());
+            objectsById.put(entry.getKey(), entry.getValue());
+        }
+        for (Placed placed : contents.objects())
+        {
+            AbstractObject object = (AbstractObject) placed.element();
+            objects.add(object);
+            pageOfObject.put(object, index);
+            setTopLevelObject(object);
+            model.addLoadedElement(object, placed.zIndex());
+        }
+
+        for (LineRecord line : contents.lines())
+        {
+            if (file.getPageIndexOfId(line.getEndId()) == PagedDiagramFile.DELETED)
+            {
+                continue;  // the object at its end was deleted while this page was not loaded
+            }
+
+            BasicObject endObject = objectsById.get(line.getEndId());
+            if (endObject != null)
+            {
+                addLine(line, objectsById.get(line.getStartId()), endObject);
+            }
+            else
+            {
+                pendingLinesByStart.computeIfAbsent(line.getStartId(), id -> new ArrayList<>()).add(line);
+                pendingLinesByEnd.computeIfAbsent(line.getEndId(), id -> new ArrayList<>()).add(line);
+            }
+        }
+
+        // the lines of other pages that end on this page
+        for (int id : contents.objectsById().keySet())
+        {
+            ArrayList<LineRecord> lines = pendingLinesByEnd.remove(id);
+            if (lines != null)
+            {
+                for (LineRecord line : lines)
+                {
+                    removePendingLine(pendingLinesByStart, line.getStartId(), line);
+                    if (file.getPageIndexOfId(line.getStartId()) != PagedDiagramFile.DELETED)  // false if the object at its start has been deleted
+                    {
+                        addLine(line, objectsById.get(line.getStartId()), objectsById.get(id));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void removePendingLine(HashMap<Integer, ArrayList<LineRecord>> pendingLines, int id, LineRecord line)
+    {
+        ArrayList<LineRecord> lines = pendingLines.get(id);
+
+        if (lines != null)
+        {
+            lines.remove(line);
+            if (lines.isEmpty())
+            {
+                pendingLines.remove(id);
+            }
+        }
+    }
+
+    private void setTopLevelObject(AbstractObject object)
+    {
+        ArrayList<BasicObject> basicObjects = new ArrayList<>();
+        collectBasicObjects(object, basicObjects);
+
+        for (BasicObject basicObject : basicObjects)
+        {
+            topLevelObjects.put(basicObject, object);
+        }
+    }
+
+    private void addLine(LineRecord line, BasicObject startObject, BasicObject endObject)
+    {
+        try
+        {
+            model.addLoadedElement(line.create(startObject, endObject), line.getZIndex());
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException(e);  // the ports have been checked when the page was decoded
+        }
+    }
+
+    // ==================== eviction ====================
+
+    private void evict()
+    {
+        if (canvas.isDragging())
+        {
+            return;
+        }
+
+        long loadedElements = 0;
+        for (int index : loadedPages.keySet())
+        {
+            loadedElements += file.getPage(index).getElementCount();
+        }
+
+        Iterator<Integer> pages = new ArrayList<>(loadedPages.keySet()).iterator();  // from the least recently wanted
+        while (loadedElements * ELEMENT_FOOTPRINT > memoryBudget && pages.hasNext())
+        {
+            int index = pages.next();
+            if (!wantedPages.contains(index) && !hasSelectedElements(index))
+            {
+                try
+                {
+                    loadedElements -= file.getPage(index).getElementCount();
+                    unload(index);
+                }
+                catch (IOException e)
+                {
+                    JOptionPane.showMessageDialog(canvas, "Cannot write to the spill file:\n" + e.getMessage(), "Open", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean hasSelectedElements(int index)
+    {
+        for (AbstractObject object : loadedPages.get(index))
+        {
+            if (object.isSelected())
+            {
+                return true;
+            }
+            for (ConnectionLine line : object.getConnectionLines())
+            {
+                if (line.isSelected())
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    // all BasicObjects of the page, including the members of CompositeObjects
+    private List<BasicObject> getBasicObjects(int index)
+    {
+        ArrayList<BasicObject> basicObjects = new ArrayList<>();
+
+        for (AbstractObject object : loadedPages.get(index))
+        {
+            collectBasicObjects(object, basicObjects);
+        }
+
+        return basicObjects;
+    }
+
+    private static void collectBasicObjects(AbstractObject object, List<BasicObject> basicObjects)
+    {
+        if (object instanceof BasicObject basicObject)
+        {
+            basicObjects.add(basicObject);
+        }
+        else
+        {
+            for (AbstractObject member : object.getMembers().second())
+            {
+                collectBasicObjects(member, basicObjects);
+            }
+        }
+    }
+
+    // encodes the current state of a loaded page into the PagedDiagramFile
+    private void store(int index) throws IOException
+    {
+        ArrayList<Placed> objects = new ArrayList<>(), lines = new ArrayList<>();
+        ArrayList<LineRecord> pendingLines = new ArrayList<>();
+        TreeSet<Integer> dependencies = new TreeSet<>();
+        Rectangle bounds = new Rectangle(0, 0, -1, -1);
+        long maxZIndex = -1;
+
+        for (AbstractObject object : loadedPages.get(index))
+        {
+            long zIndex = model.getPaintedElementsInOrder().getZIndex(object);
+            objects.add(new Placed(object, zIndex));
+            bounds.add(object.getBounds());
+            maxZIndex = Math.max(maxZIndex, zIndex);
+        }
+        for (BasicObject object : getBasicObjects(index))
+        {
+            for (ConnectionLine line : object.getConnectionLines())
+            {
+                // the top-level lines that start at the object, the member lines are encoded with their CompositeObject
+                if (line.getStartBasicObject() == object && model.getPaintedElementsInOrder().contains(line))
+                {
+                    long zIndex = model.getPaintedElementsInOrder().getZIndex(line);
+                    lines.add(new Placed(line, zIndex));
+                    bounds.add(line.getBounds());
+                    maxZIndex = Math.max(maxZIndex, zIndex);
+                    dependencies.add(pageOfObject.get(topLevelObjects.get(line.getEndBasicObject())));
+                }
+            }
+            for (LineRecord line : pendingLinesByStart.getOrDefault(ids.get(object), new ArrayList<>()))
+            {
+                if (file.getPageIndexOfId(line.getEndId()) != PagedDiagramFile.DELETED)
+                {
+                    pendingLines.add(line);
+                    maxZIndex = Math.max(maxZIndex, line.getZIndex());
+                    dependencies.add(file.getPageIndexOfId(line.getEndId()));
+                }
+            }
+        }
+        objects.sort(Comparator.comparingLong(Placed::zIndex));
+        lines.sort(Comparator.comparingLong(Placed::zIndex));
+        dependencies.remove(index);
+
+        byte[] block = PagedDiagramFile.encodePage(objects, lines, pendingLines, ids::get);
+        Page page = file.getPage(index);
+        file.updatePage(page, block, bounds.isEmpty() ? new Rectangle() : bounds, objects.size() + lines.size() + pendingLines.size(),
+                dependencies.stream().mapToInt(Integer::intValue).toArray());
+        file.setNextZIndex(maxZIndex + 1);
+
+        pageIndex.remove(index);
+        pageIndex.insert(index, page.getBounds());
+    }
+
+    // stores the page and removes its elements from the Model
+    private void unload(int index) throws IOException
+    {
+        store(index);
+
+        List<BasicObject> basicObjects = getBasicObjects(index);
+        for (BasicObject object : basicObjects)
+        {
+            int id = ids.get(object);
+
+            for (ConnectionLine line : List.copyOf(object.getConnectionLines()))  // removing a line disconnects it
+            {
+                if (!model.getPaintedElementsInOrder().contains(line))
+                {
+                    continue;  // a member line of a CompositeObject, or a line between two objects of this page that has already been removed
+                }
+
+                // a line of another loaded page that ends here is kept as a LineRecord on that page
+                if (line.getEndBasicObject() == object && pageOfObject.get(topLevelObjects.get(line.getStartBasicObject())) != index)
+                {
+                    LineRecord record = LineRecord.of(line, model.getPaintedElementsInOrder().getZIndex(line), ids::get);
+                    pendingLinesByStart.computeIfAbsent(record.getStartId(), key -> new ArrayList<>()).add(record);
+                    pendingLinesByEnd.computeIfAbsent(id, key -> new ArrayList<>()).add(record);
+                }
+                model.removeUnloadedElement(line);
+            }
+
+            // the lines of this page whose end is not loaded are part of the stored page now
+            ArrayList<LineRecord> pendingLines = pendingLinesByStart.remove(id);
+            if (pendingLines != null)
+            {
+                for (LineRecord line : pendingLines)
+                {
+                    removePendingLine(pendingLinesByEnd, line.getEndId(), line);
+                }
+            }
+        }
+
+        for (AbstractObject object : loadedPages.remove(index))
+        {
+            pageOfObject.remove(object);
+            model.removeUnloadedElement(object);
+        }
+        for (BasicObject object : basicObjects)
+        {
+            objectsById.remove(ids.remove(object));
+            topLevelObjects.remove(object);
+        }
+
+        canvas.repaintWholeScene();
+    }
+
+    // ==================== edits reported by the Model ====================
+
+    void objectAdded(AbstractObject object)
+    {
+        int index = file.getPageOf(object).getIndex();
+        ensureLoaded(index);
+
+        loadedPages.get(index).add(object);
+        pageOfObject.put(object, index);
+
+        // the page has to be found at the new location of the object even before the page is stored
+        Page page = file.getPage(index);
+        file.extendBounds(page, object.getBounds());
+        pageIndex.remove(index);
+        pageIndex.insert(index, page.getBounds());
+
+        ArrayList<BasicObject> basicObjects = new ArrayList<>();
+        collectBasicObjects(object, basicObjects);
+        for (BasicObject basicObject : basicObjects)
+        {
+            topLevelObjects.put(basicObject, object);
+            Integer id = ids.get(basicObject);
+            if (id == null)  // a new object
+            {
+                id = file.allocateId();
+                ids.put(basicObject, id);
+                objectsById.put(id, basicObject);
+            }
+            file.setPageIndexOfId(id, index);
+        }
+    }
+
+    // the object may be added again right away, e.g. as a member of a new CompositeObject, so its ids are kept until its page is unloaded
+    void objectRemoved(AbstractObject object)
+    {
+        Integer index = pageOfObject.remove(object);
+
+        if (index != null)
+        {
+            loadedPages.get(index).remove(object);
+
+            ArrayList<BasicObject> basicObjects = new ArrayList<>();
+            collectBasicObjects(object, basicObjects);
+            for (BasicObject basicObject : basicObjects)
+            {
+                file.setPageIndexOfId(ids.get(basicObject), PagedDiagramFile.DELETED);
+            }
+        }
+    }
+
+    void objectMoved(AbstractObject object)
+    {
+        Integer index = pageOfObject.get(object);
+        int newIndex = file.getPageOf(object).getIndex();
+
+        if (index != null && index != newIndex)
+        {
+            /*
+            The new page is loaded while the ids of the object still lead to its old page: objectRemoved marks
+            them as deleted, and the lines of the new page that end at the object would be dropped as the lines
+            of a deleted object if the page were only loaded by objectAdded.
+             */
+            ensureLoaded(newIndex);
+            objectRemoved(object);
+            objectAdded(object);
+        }
+    }
+
+    // ==================== saving ====================
+
+    // loads every page, e.g. before the diagram is saved in another format
+    void loadAll() throws IOException
+    {
+        for (Page page : file.getPages())
+        {
+            if (!loadedPages.containsKey(page.getIndex()))
+            {
+                materialize(page.getIndex(), file.readPage(page));
+                requestedPages.remove(page.getIndex());
+            }
+        }
+
+        canvas.repaintWholeScene();
+    }
+
+    // writes the loaded pages and copies the others, then continues on the saved file
+    void save(Path path) throws IOException
+    {
+        for (int index : loadedPages.keySet())
+        {
+            store(index);
+        }
+        file.setNextZIndex(model.getPaintedElementsInOrder().getNextZIndex());
+
+        file.saveAs(path);
+        file = PagedDiagramFile.open(path);
+        requestedPages.clear();  // the background loads of the old file are discarded
+        indexPages();
+    }
+
+    void close()
+    {
+        closed = true;
+        loader.shutdownNow();
+        canvas.removePropertyChangeListener(CanvasArea.VIEWPORT_PROPERTY, viewportListener);
+
+        try
+        {
+            file.close();
+        }
+        catch (IOException ignored)
+        {
+            // nothing was written to the file, only the spill file is lost
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package umlEditorComponents;
+
+import containers.SpatialIndex;
+import diagramFiles.PngEncoder;
+import graphics.ToolElement;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Renders a diagram into a PNG image of any size without using the event dispatch thread.
+ *
+ * <p>The image is cut into bands of rows and each band into tiles of TILE_SIZE columns. The tiles of a band are
+ * rendered in parallel on a ForkJoinPool, each into an image of its own with its own Graphics2D, and the band is
+ * then compressed by {@link PngEncoder#compress} on the same pool. A few bands are in flight at a time, while the
+ * exporting thread writes the finished ones in order, so the memory needed does not depend on the image size.
+ * The band height is chosen so that the bands in flight fit into the memory budget.</p>
+ *
+ * <p>The diagram must not change during the export, so the editor passes a copy made by ElementKind.copy. A
+ * top-level element that crosses the border of a tile is drawn by several threads, which take turns since the
+ * elements keep some state of their last paint (e.g. the end points of a line).</p>
+ */
+public class PngExporter
+{
+    public static final String MEMORY_BUDGET_PROPERTY = "umleditor.exportMemoryBudget";  // in megabytes
+    private static final long DEFAULT_MEMORY_BUDGET = 256;
+    static final int TILE_SIZE = 512;
+    static final int MARGIN = 20;  // the empty border around the diagram, in world coordinates
+
+    // notified on the exporting thread whenever a band has been written
+    public interface ProgressListener
+    {
+        void progress(int writtenRows, int rows);
+    }
+
+    private final SpatialIndex<ToolElement> index = new SpatialIndex<>(128);
+    private final IdentityHashMap<ToolElement, Integer> paintingOrder = new IdentityHashMap<>();
+    private final Rectangle worldArea;
+    private final double scale;
+    private final int width, height;
+    private final Color background;
+    private long memoryBudget = Long.getLong(MEMORY_BUDGET_PROPERTY, DEFAULT_MEMORY_BUDGET) << 20;
+
+    // elements are the top-level elements in painting order, scale is the number of pixels per world unit
+    public PngExporter(List<ToolElement> elements, double scale, Color background)
+    {
+        Rectangle bounds = null;
+        for (ToolElement element : elements)
+        {
+            index.insert(element, element.getBounds());
+            paintingOrder.put(element, paintingOrder.size());
+            bounds = bounds == null ? element.getBounds() : bounds.union(element.getBounds());
+        }
+        if (bounds == null)
+        {
+            bounds = new Rectangle(0, 0, 0, 0);
+        }
+        bounds.grow(MARGIN, MARGIN);
+
+        double width = Math.ceil(bounds.width * scale), height = Math.ceil(bounds.height * scale);
+        if (!(scale > 0) || width < 1 || height < 1 || width > Integer.MAX_VALUE / 3 || height > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("invalid image size " + (long) width + "x" + (long) height);
+        }
+
+        this.worldArea = bounds;
+        this.scale = scale;
+        this.width = (int) width;
+        this.height = (int) height;
+        this.background = background;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    public long getMemoryBudget()
+    {
+        return memoryBudget;
+    }
+
+    // the number of bytes the bands in flight may occupy, e.g. a share of the budget when several images are exported at the same time
+    public void setMemoryBudget(long memoryBudget)
+    {
+        this.memoryBudget = memoryBudget;
+    }
+
+    // the height of the bands, so that a band for every worker thread and the one being written fit into the budget
+    private int getBandHeight(int parallelism)
+    {
+        long bandHeight = memoryBudget / ((long) (parallelism + 1) * width * Integer.BYTES * 2);  // the pixels of the band and of its tiles
+
+        return (int) Math.max(1, Math.min(TILE_SIZE, bandHeight));
+    }
+
+    /*
+    Renders the image on the pool and writes it to out, which is not closed. The export is cancelled by
+    interrupting the exporting thread, which then throws an InterruptedException.
+     */
+    public void export(OutputStream out, ForkJoinPool pool, ProgressListener listener) throws IOException, InterruptedException
+    {
+        PngEncoder encoder = new PngEncoder(out, width, height);
+        int bandHeight = getBandHeight(pool.getParallelism());
+        ArrayDeque<ForkJoinTask<PngEncoder.CompressedRows>> bandsInFlight = new ArrayDeque<>();
+        int writtenRows = 0;
+
+        try
+        {
+            for (int bandY = 0; bandY < height || !bandsInFlight.isEmpty(); )
+            {
+                if (Thread.interrupted())
+                {
+                    throw new InterruptedException("the export has been cancelled");
+                }
+
+                if (bandY < height && bandsInFlight.size() <= pool.getParallelism())
+                {
+                    int rows = Math.min(bandHeight, height - bandY);
+                    bandsInFlight.addLast(pool.submit(new Band(bandY, rows)));
+                    bandY += rows;
+                }
+                else
+                {
+                    PngEncoder.CompressedRows rows = bandsInFlight.removeFirst().join();
+                    encoder.write(rows);
+                    writtenRows += rows.getRows();
+                    if (listener != null)
+                    {
+                        listener.progress(writtenRows, height);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            bandsInFlight.forEach(band -> band.cancel(true));
+        }
+
+        encoder.finish();
+    }
+
+    // the rows of a band, rendered tile by tile and then compressed; the fork/join tasks are never serialized
+    @SuppressWarnings("serial")
+    private class Band extends RecursiveTask<PngEncoder.CompressedRows>
+    {
+        private final int y, rows;
+
+        private Band(int y, int rows)
+        {
+            this.y = y;
+            this.rows = rows;
+        }
+
+        @Override
+        protected PngEncoder.CompressedRows compute()
+        {
+            int[] pixels = new int[width * rows];
+            ArrayList<Tile> tiles = new ArrayList<>();
+            for (int x = 0; x < width; x += TILE_SIZE)
+            {
+                tiles.add(new Tile(pixels, x, y, Math.min(TILE_SIZE, width - x), rows));
+            }
+            invokeAll(tiles);
+
+            return PngEncoder.compress(pixels, width, rows, y + rows == height);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class Tile extends RecursiveAction
+    {
+        private final int[] bandPixels;
+        private final int x, y, tileWidth, tileHeight;
+
+        private Tile(int[] bandPixels, int x, int y, int tileWidth, int tileHeight)
+        {
+            this.bandPixels = bandPixels;
+            this.x = x;
+            this.y = y;
+            this.tileWidth = tileWidth;
+            this.tileHeight = tileHeight;
+        }
+
+        @Override
+        protected void compute()
+        {
+            BufferedImage image = new BufferedImage(tileWidth, tileHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = image.createGraphics();
+            g2d.setBackground(background);
+            g2d.clearRect(0, 0, tileWidth, tileHeight);
+            // With integer metrics, the glyphs are placed on whole pixels depending on where the tile starts, so a name crossing a tile border would not line up.
+            g2d.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+            g2d.translate(-x, -y);
+            g2d.scale(scale, scale);
+            g2d.translate(-worldArea.x, -worldArea.y);
+
+            // the world area covered by the tile, widened to whole world units
+            int minX = (int) Math.floor(worldArea.x + x / scale), maxX = (int) Math.ceil(worldArea.x + (x + tileWidth) / scale);
+            int minY = (int) Math.floor(worldArea.y + y / scale), maxY = (int) Math.ceil(worldArea.y + (y + tileHeight) / scale);
+            ArrayList<ToolElement> elements = new ArrayList<>();
+            index.query(new Rectangle(minX, minY, maxX - minX, maxY - minY), elements);
+            elements.sort((e1, e2) -> Integer.compare(paintingOrder.get(e1), paintingOrder.get(e2)));
+            for (ToolElement element : elements)
+            {
+                // Every element starts from the same Graphics2D state, since the rendering hints and strokes an element sets would otherwise depend on the elements drawn before it in the same tile.
+                Graphics2D elementGraphics = (Graphics2D) g2d.create();
+                synchronized (element)  // the other tiles the element crosses may draw it at the same time
+                {
+                    element.draw(elementGraphics);
+                }
+                elementGraphics.dispose();
+            }
+            g2d.dispose();
+
+            int[] tilePixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            for (int row = 0; row < tileHeight; row++)
+            {
+                System.arraycopy(tilePixels, row * tileWidth, bandPixels, row * width + x, tileWidth);
+            }
+        }
+    }
+}
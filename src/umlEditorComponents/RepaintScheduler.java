@@ -0,0 +1,125 @@
+package umlEditorComponents;
+
+import containers.DirtyRegion;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Paces the repaints of the CanvasArea to the frame rate of the display.
+ *
+ * <p>Every repaint request of the CanvasArea (from the Model, the modes and the view itself) only adds its area to
+ * the dirty region of the next frame. The first request after a frame schedules the next one on a Swing Timer, at
+ * the earliest one frame interval after the previous frame. A mouse that reports a thousand drag events per second
+ * thus causes at most FRAME_RATE frames per second instead of flooding the RepaintManager, while a single request
+ * after a pause is passed on without delay.</p>
+ *
+ * <p>The dirty region is a DirtyRegion of a few disjoint rectangles rather than their bounding box, which the
+ * RepaintManager would paint as a whole, so a frame paints each rectangle with paintImmediately and two small
+ * changes at opposite corners of the view do not repaint everything between them.</p>
+ *
+ * <p>The EditorMetrics count the requests, the ones that were merged into an already scheduled frame and the ones
+ * that were dropped because the dirty region already covered them, as well as the frames and their rectangles.</p>
+ */
+class RepaintScheduler
+{
+    public static final String FRAME_RATE_PROPERTY = "umleditor.frameRate";  // the most frames per second, 0 repaints on every request
+    private static final int DEFAULT_FRAME_RATE = 60;
+    private static final int MAX_PAINTS_PER_FRAME = 8;
+    private static final long PAINT_COST = 64 * 64;  // a paint of its own costs about as much as painting 64x64 more pixels
+
+    private final JComponent component;
+    private final long frameInterval;  // in nanoseconds
+    private final Timer timer;
+    private final DirtyRegion dirtyRegion = new DirtyRegion(MAX_PAINTS_PER_FRAME, PAINT_COST);  // in view coordinates, covers the areas requested since the last frame
+    private boolean wholeView = false;  // whether the whole view has been requested since the last frame
+    private boolean scheduled = false;
+    private long lastFrame;  // the time of the last frame, in nanoseconds
+
+    RepaintScheduler(JComponent component)
+    {
+        this.component = component;
+        int frameRate = Integer.getInteger(FRAME_RATE_PROPERTY, DEFAULT_FRAME_RATE);
+        frameInterval = frameRate > 0 ? 1_000_000_000L / frameRate : 0;
+        lastFrame = System.nanoTime() - frameInterval;
+        timer = new Timer(0, e -> flush());
+        timer.setRepeats(false);
+    }
+
+    // area is in view coordinates, null for the whole view; synchronized with flush, which runs on the event dispatch thread, in case the Model is driven by another thread
+    synchronized void request(Rectangle area)
+    {
+        EditorMetrics metrics = Model.INSTANCE.getMetrics();
+        if (area != null && area.isEmpty())
+        {
+            metrics.repaintDropped();
+            return;
+        }
+
+        if (!scheduled)
+        {
+            metrics.repaintScheduled();
+            scheduled = true;
+            long delay = Math.max(0, lastFrame + frameInterval - System.nanoTime());
+            timer.setInitialDelay((int) ((delay + 999_999) / 1_000_000));  // the Timer only counts in milliseconds
+            timer.restart();
+        }
+        else if (wholeView || (area != null && dirtyRegion.contains(area)))
+        {
+            metrics.repaintDropped();
+        }
+        else
+        {
+            metrics.repaintMerged();
+        }
+
+        if (area == null)
+        {
+            wholeView = true;
+        }
+        else if (!wholeView)
+        {
+            dirtyRegion.add(area);
+        }
+    }
+
+    // paints the dirty region of the frame, one rectangle at a time
+    private void flush()
+    {
+        boolean paintWholeView;
+        List<Rectangle> rectangles;
+        synchronized (this)
+        {
+            if (!scheduled)
+            {
+                return;
+            }
+
+            // a paint may request another repaint, which belongs to the next frame
+            paintWholeView = wholeView;
+            rectangles = List.copyOf(dirtyRegion.getRectangles());
+            dirtyRegion.clear();
+            wholeView = false;
+            scheduled = false;
+            lastFrame = System.nanoTime();
+        }
+
+        if (!component.isShowing())  // e.g. headless, the RepaintManager ignores the repaint just like paintImmediately would
+        {
+            component.repaint();
+        }
+        else if (paintWholeView)
+        {
+            component.paintImmediately(0, 0, component.getWidth(), component.getHeight());
+        }
+        else
+        {
+            for (Rectangle rectangle : rectangles)
+            {
+                component.paintImmediately(rectangle);
+            }
+        }
+        Model.INSTANCE.getMetrics().frameFlushed(paintWholeView ? 1 : rectangles.size());
+    }
+}
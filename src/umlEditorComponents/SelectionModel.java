@@ -0,0 +1,97 @@
+package umlEditorComponents;
+
+import graphics.AbstractObject;
+import graphics.ConnectionLine;
+import graphics.ToolElement;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Keeps track of the selected elements that lie directly on the CanvasArea.
+ *
+ * <p>The SelectionModel is updated by {@link ToolElement#setSelected(boolean)} whenever the selected state of
+ * an element on the CanvasArea changes, so it never has to be rebuilt by scanning the whole diagram. Membership
+ * checks cost O(1) and iterating over the selection costs O(k), where k is the number of selected elements.
+ * The members of a CompositeObject are not tracked separately, since they share the selected state of the
+ * CompositeObject they belong to.</p>
+ */
+public class SelectionModel
+{
+    private final LinkedHashSet<ToolElement> selectedElements = new LinkedHashSet<>();
+    private final LinkedHashSet<AbstractObject> selectedObjects = new LinkedHashSet<>();
+    private final LinkedHashSet<ConnectionLine> selectedLines = new LinkedHashSet<>();
+
+    SelectionModel() {}
+
+    // called by a ToolElement on the CanvasArea whenever its selected state may have changed
+    public void update(ToolElement element)
+    {
+        if (element.isSelected())
+        {
+            add(element);
+        }
+        else
+        {
+            remove(element);
+        }
+    }
+
+    void add(ToolElement element)
+    {
+        if (selectedElements.add(element))
+        {
+            if (element.isMovable())  // AbstractObject
+            {
+                selectedObjects.add((AbstractObject) element);
+            }
+            else  // ConnectionLine
+            {
+                selectedLines.add((ConnectionLine) element);
+            }
+        }
+    }
+
+    // called by a ToolElement when it is removed from the CanvasArea
+    public void remove(ToolElement element)
+    {
+        if (selectedElements.remove(element))
+        {
+            if (element.isMovable())
+            {
+                selectedObjects.remove((AbstractObject) element);
+            }
+            else
+            {
+                selectedLines.remove((ConnectionLine) element);
+            }
+        }
+    }
+
+    public boolean isSelected(ToolElement element)
+    {
+        return selectedElements.contains(element);
+    }
+
+    public boolean isEmpty()
+    {
+        return selectedElements.isEmpty();
+    }
+
+    // the selected elements in the order in which they were selected
+    public Set<ToolElement> getSelectedElements()
+    {
+        return Collections.unmodifiableSet(selectedElements);
+    }
+
+    public Set<AbstractObject> getSelectedObjects()
+    {
+        return Collections.unmodifiableSet(selectedObjects);
+    }
+
+    public Set<ConnectionLine> getSelectedLines()
+    {
+        return Collections.unmodifiableSet(selectedLines);
+    }
+}
@@ -0,0 +1,168 @@
+package umlEditorComponents;
+
+import graphics.ToolElement;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A raster cache of the static scene (all ToolElements, without the SelectionBox and the temporary line).
+ *
+ * <p>The zoomed world (world coordinates multiplied by the zoom factor of the CanvasArea) is divided into square
+ * tiles of TILE_SIZE pixels, each of which keeps the rendered diagram in a BufferedImage. A tile is only rendered
+ * again after the scene below it has changed, which the Model reports through {@link #invalidate(Rectangle)}.
+ * Every other repaint (e.g. when the window is exposed, the view is panned or the SelectionBox is moved over the
+ * diagram) only copies the images of the tiles. The least recently used tiles are discarded when the images would
+ * exceed the memory budget, and all tiles are discarded when the zoom changes.</p>
+ */
+class TileCache
+{
+    static final int TILE_SIZE = 256;
+
+    private static class Tile
+    {
+        private final BufferedImage image;
+        private boolean valid = false;
+
+        private Tile(BufferedImage image)
+        {
+            this.image = image;
+        }
+    }
+
+    private final long budget;
+    private final LinkedHashMap<Long, Tile> tiles = new LinkedHashMap<>(16, 0.75f, true);  // iterates from the least to the most recently used tile
+    private double deviceScale = 1;  // the tiles are rendered at the resolution of the device, e.g. twice the size on a HiDPI screen
+    private double zoom = 1;
+    private boolean simplified = false;
+
+    // budget is the number of bytes the images of the tiles may occupy
+    TileCache(long budget)
+    {
+        this.budget = budget;
+    }
+
+    private static long key(int tileX, int tileY)
+    {
+        return ((long) tileX << 32) | (tileY & 0xffffffffL);
+    }
+
+    void setZoom(double zoom, boolean simplified)
+    {
+        if (zoom != this.zoom || simplified != this.simplified)
+        {
+            tiles.clear();
+            this.zoom = zoom;
+            this.simplified = simplified;
+        }
+    }
+
+    // marks the tiles that intersect the world area as dirty, they will be rendered again by the next paint that needs them
+    void invalidate(Rectangle worldArea)
+    {
+        if (worldArea.isEmpty())
+        {
+            return;
+        }
+
+        // the area in the zoomed world, widened to whole pixels
+        int minX = (int) Math.floor(worldArea.x * zoom), maxX = (int) Math.ceil((worldArea.x + worldArea.width) * zoom);
+        int minY = (int) Math.floor(worldArea.y * zoom), maxY = (int) Math.ceil((worldArea.y + worldArea.height) * zoom);
+        Rectangle area = new Rectangle(minX, minY, maxX - minX, maxY - minY);
+        area.grow(1, 1);  // and by the pixel on either side into which a normalized stroke may have been shifted
+
+        for (int tileX = Math.floorDiv(area.x, TILE_SIZE); tileX <= Math.floorDiv(area.x + area.width, TILE_SIZE); tileX++)
+        {
+            for (int tileY = Math.floorDiv(area.y, TILE_SIZE); tileY <= Math.floorDiv(area.y + area.height, TILE_SIZE); tileY++)
+            {
+                Tile tile = tiles.get(key(tileX, tileY));
+
+                if (tile != null)
+                {
+                    tile.valid = false;
+                }
+            }
+        }
+    }
+
+    void invalidateAll()
+    {
+        tiles.clear();
+    }
+
+    // paints the tiles intersecting the area of the zoomed world, rendering the ones that are missing or dirty first
+    void paint(Graphics2D g2d, Rectangle area, Color background)
+    {
+        AffineTransform transform = g2d.getTransform();
+        double scale = Math.max(transform.getScaleX(), transform.getScaleY());
+        if (scale != deviceScale)
+        {
+            tiles.clear();
+            deviceScale = scale;
+        }
+
+        for (int tileX = Math.floorDiv(area.x, TILE_SIZE); tileX <= Math.floorDiv(area.x + area.width - 1, TILE_SIZE); tileX++)
+        {
+            for (int tileY = Math.floorDiv(area.y, TILE_SIZE); tileY <= Math.floorDiv(area.y + area.height - 1, TILE_SIZE); tileY++)
+            {
+                Tile tile = getTile(tileX, tileY, g2d.getDeviceConfiguration());
+
+                if (!tile.valid)
+                {
+                    render(tile, tileX, tileY, background);
+                }
+
+                g2d.drawImage(tile.image, tileX * TILE_SIZE, tileY * TILE_SIZE, TILE_SIZE, TILE_SIZE, null);
+            }
+        }
+    }
+
+    private Tile getTile(int tileX, int tileY, GraphicsConfiguration configuration)
+    {
+        Tile tile = tiles.get(key(tileX, tileY));
+
+        if (tile == null)
+        {
+            int size = (int) Math.ceil(TILE_SIZE * deviceScale);
+            // a compatible opaque image can be copied to the screen without conversion
+            BufferedImage image = configuration != null ? configuration.createCompatibleImage(size, size, Transparency.OPAQUE) : new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+            tile = new Tile(image);
+            tiles.put(key(tileX, tileY), tile);
+
+            long tileBytes = (long) size * size * 4;
+            Iterator<Tile> iterator = tiles.values().iterator();
+            while ((long) tiles.size() * tileBytes > budget && tiles.size() > 1)
+            {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+
+        return tile;
+    }
+
+    private void render(Tile tile, int tileX, int tileY, Color background)
+    {
+        Graphics2D g2d = tile.image.createGraphics();
+        g2d.setBackground(background);
+        g2d.clearRect(0, 0, tile.image.getWidth(), tile.image.getHeight());
+        g2d.scale(deviceScale, deviceScale);
+        g2d.translate(-tileX * TILE_SIZE, -tileY * TILE_SIZE);
+        g2d.clip(new Rectangle(tileX * TILE_SIZE, tileY * TILE_SIZE, TILE_SIZE, TILE_SIZE));
+        g2d.scale(zoom, zoom);
+
+        // the world area covered by the tile, widened to whole world units
+        int minX = (int) Math.floor(tileX * TILE_SIZE / zoom), maxX = (int) Math.ceil((tileX + 1) * TILE_SIZE / zoom);
+        int minY = (int) Math.floor(tileY * TILE_SIZE / zoom), maxY = (int) Math.ceil((tileY + 1) * TILE_SIZE / zoom);
+        for (ToolElement element : Model.INSTANCE.getPaintedElementsInOrder(new Rectangle(minX, minY, maxX - minX, maxY - minY)))
+        {
+            CanvasArea.drawElement(element, g2d, simplified);
+        }
+
+        g2d.dispose();
+        tile.valid = true;
+    }
+}
@@ -0,0 +1,929 @@
+package umlEditorComponents;
+
+import diagramFiles.ElementKind;
+import graphics.*;
+
+import java.awt.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.*;
+
+/**
+ * The undo and redo history of the edits of the diagram.
+ *
+ * <p>Each edit is recorded as a command that only holds its delta: the elements it added or removed together with
+ * their z-indices, the members a group or ungroup moved between the CompositeObject and the CanvasArea, the lines
+ * a delete removed along with the objects, the offset of a move or the old and new name. Undoing and redoing an
+ * edit applies the delta through the elementary operations of the Model, which are not recorded themselves. The
+ * mouseDragged events of a move are merged into a single edit until the move ends.</p>
+ *
+ * <p>The history is kept under a memory budget, which is estimated from the elements and references each edit
+ * holds. When it is exceeded, the oldest undoable edits are written to a temporary spill file and read back one
+ * by one when they are undone, so the spill file is used as a stack. A spilled edit refers to the elements by the
+ * ids of a weak registry. The elements that only the edit holds (the deleted ones and the CompositeObject of an
+ * ungroup) are written in full and recreated when the edit is read back, unless they are still alive.</p>
+ */
+class UndoHistory
+{
+    public static final String MEMORY_BUDGET_PROPERTY = "umleditor.undoMemoryBudget";  // in megabytes
+    private static final long DEFAULT_MEMORY_BUDGET = 64;
+    // the estimated memory of an edit, of an element held only by an edit and of a reference to an element, in bytes
+    private static final int EDIT_FOOTPRINT = 64, ELEMENT_FOOTPRINT = 1024, REFERENCE_FOOTPRINT = 16;
+
+    // the edit types in the spill file
+    private static final byte ADDED = 1, MOVED = 2, GROUPED = 3, UNGROUPED = 4, RENAMED = 5, DELETED = 6;
+
+    private final long memoryBudget;
+    private final ArrayDeque<Edit> undoStack = new ArrayDeque<>(), redoStack = new ArrayDeque<>();  // the most recent edit last
+    private final ArrayList<Long> spilledOffsets = new ArrayList<>();  // the edits older than those in the undoStack, oldest first
+    private long memory = 0;  // the estimated memory of the edits in both stacks
+    private long epoch = 0;  // counts the checkpoints, the edits recorded since the last one are also in the journal
+    private Moved pendingMove = null;  // the move that is still being merged
+    private FileChannel spillChannel = null;
+    private long spillEnd = 0;
+    private long spilledEdits = 0;
+    // the weak registry of the elements the spilled edits refer to
+    private final WeakHashMap<ToolElement, Integer> registryIds = new WeakHashMap<>();
+    private final HashMap<Integer, WeakReference<ToolElement>> registeredElements = new HashMap<>();
+    private int nextRegistryId = 0;
+    private Journal journal = null;  // the copies of collected elements read back from the spill file take over their ids in the journal
+
+    UndoHistory()
+    {
+        memoryBudget = Long.getLong(MEMORY_BUDGET_PROPERTY, DEFAULT_MEMORY_BUDGET) << 20;
+    }
+
+    // null while no journal is recording
+    void setJournal(Journal journal)
+    {
+        this.journal = journal;
+    }
+
+    // ==================== the edits ====================
+
+    private abstract class Edit
+    {
+        long epoch = UndoHistory.this.epoch;
+
+        abstract void undo(Model model);
+        abstract void redo(Model model);
+        abstract long getFootprint();
+        abstract void write(DataOutputStream out) throws IOException;
+    }
+
+    private class Added extends Edit
+    {
+        private final ToolElement element;
+        private final long zIndex;
+
+        Added(ToolElement element, long zIndex)
+        {
+            this.element = element;
+            this.zIndex = zIndex;
+        }
+
+        @Override
+        void undo(Model model)
+        {
+            model.removeElement(element, true);
+        }
+
+        @Override
+        void redo(Model model)
+        {
+            model.insertElement(element, zIndex);
+        }
+
+        @Override
+        long getFootprint()
+        {
+            return EDIT_FOOTPRINT + REFERENCE_FOOTPRINT;
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException
+        {
+            out.writeByte(ADDED);
+            writeReference(out, element);
+            out.writeLong(zIndex);
+        }
+    }
+
+    // the objects that were moved together by the same offset, e.g. the selected objects of a drag
+    private class Moved extends Edit
+    {
+        private final List<AbstractObject> objects;
+        private int offsetX, offsetY;
+
+        Moved(List<AbstractObject> objects, int offsetX, int offsetY)
+        {
+            this.objects = objects;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+        }
+
+        @Override
+        void undo(Model model)
+        {
+            objects.forEach(object -> model.translateObject(object, -offsetX, -offsetY));
+        }
+
+        @Override
+        void redo(Model model)
+        {
+            objects.forEach(object -> model.translateObject(object, offsetX, offsetY));
+        }
+
+        @Override
+        long getFootprint()
+        {
+            return EDIT_FOOTPRINT + (long) REFERENCE_FOOTPRINT * objects.size();
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException
+        {
+            out.writeByte(MOVED);
+            out.writeInt(objects.size());
+            for (AbstractObject object : objects)
+            {
+                writeReference(out, object);
+            }
+            out.writeInt(offsetX);
+            out.writeInt(offsetY);
+        }
+    }
+
+    // the top-level members moved into the CompositeObject, each of which is restored at its old z-index
+    private class Grouped extends Edit
+    {
+        private final AbstractObject compositeObject;
+        private final long zIndex;
+        private final List<ToolElement> members;
+        private final long[] memberZIndices;
+
+        Grouped(AbstractObject compositeObject, long zIndex, List<ToolElement> members, long[] memberZIndices)
+        {
+            this.compositeObject = compositeObject;
+            this.zIndex = zIndex;
+            this.members = members;
+            this.memberZIndices = memberZIndices;
+        }
+
+        @Override
+        void undo(Model model)
+        {
+            model.removeElement(compositeObject, false);
+            for (int i = 0; i < members.size(); i++)
+            {
+                model.insertElement(members.get(i), memberZIndices[i]);
+            }
+        }
+
+        @Override
+        void redo(Model model)
+        {
+            members.forEach(member -> model.removeElement(member, false));  // the member lines stay connected
+            model.insertElement(compositeObject, zIndex);
+        }
+
+        @Override
+        long getFootprint()
+        {
+            return EDIT_FOOTPRINT + (REFERENCE_FOOTPRINT + 8) * (members.size() + 1);
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException
+        {
+            out.writeByte(GROUPED);
+            writeReference(out, compositeObject);
+            out.writeLong(zIndex);
+            writeReferences(out, members, memberZIndices);
+        }
+    }
+
+    // the CompositeObject is no longer in the diagram, so the edit holds it on its own
+    private class Ungrouped extends Edit
+    {
+        private final AbstractObject compositeObject;
+        private final long zIndex;
+        private final List<ToolElement> members;
+        private final long[] memberZIndices;
+
+        Ungrouped(AbstractObject compositeObject, long zIndex, List<ToolElement> members, long[] memberZIndices)
+        {
+            this.compositeObject = compositeObject;
+            this.zIndex = zIndex;
+            this.members = members;
+            this.memberZIndices = memberZIndices;
+        }
+
+        @Override
+        void undo(Model model)
+        {
+            members.forEach(member -> model.removeElement(member, false));
+            model.insertElement(compositeObject, zIndex);
+        }
+
+        @Override
+        void redo(Model model)
+        {
+            model.removeElement(compositeObject, false);
+            for (int i = 0; i < members.size(); i++)
+            {
+                model.insertElement(members.get(i), memberZIndices[i]);
+            }
+        }
+
+        @Override
+        long getFootprint()
+        {
+            return EDIT_FOOTPRINT + ELEMENT_FOOTPRINT + (REFERENCE_FOOTPRINT + 8) * members.size();
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException
+        {
+            out.writeByte(UNGROUPED);
+            out.writeInt(register(compositeObject));
+            writeJournalKey(out, compositeObject);
+            out.writeInt(compositeObject.getUnselectedTopLeftCorner().x);
+            out.writeInt(compositeObject.getUnselectedTopLeftCorner().y);
+            out.writeInt(compositeObject.getUnselectedWidth());
+            out.writeInt(compositeObject.getUnselectedHeight());
+            writeName(out, compositeObject);
+            out.writeLong(zIndex);
+            writeReferences(out, members, memberZIndices);
+        }
+    }
+
+    private class Renamed extends Edit
+    {
+        private final AbstractObject object;
+        private final String oldName, newName;
+
+        Renamed(AbstractObject object, String oldName, String newName)
+        {
+            this.object = object;
+            this.oldName = oldName;
+            this.newName = newName;
+        }
+
+        @Override
+        void undo(Model model)
+        {
+            model.setObjectName(object, oldName);
+        }
+
+        @Override
+        void redo(Model model)
+        {
+            model.setObjectName(object, newName);
+        }
+
+        @Override
+        long getFootprint()
+        {
+            return EDIT_FOOTPRINT + REFERENCE_FOOTPRINT + 2L * ((oldName != null ? oldName.length() : 0) + newName.length());
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException
+        {
+            out.writeByte(RENAMED);
+            writeReference(out, object);
+            out.writeBoolean(oldName != null);
+            if (oldName != null)
+            {
+                out.writeUTF(oldName);
+            }
+            out.writeUTF(newName);
+        }
+    }
+
+    // the deleted elements are held by the edit on their own, the objects come before the lines attached to them
+    private class Deleted extends Edit
+    {
+        private final List<ToolElement> elements;
+        private final long[] zIndices;
+
+        Deleted(List<ToolElement> elements, long[] zIndices)
+        {
+            this.elements = elements;
+            this.zIndices = zIndices;
+        }
+
+        @Override
+        void undo(Model model)
+        {
+            for (int i = 0; i < elements.size(); i++)
+            {
+                model.insertElement(elements.get(i), zIndices[i]);  // a line is connected again
+            }
+        }
+
+        @Override
+        void redo(Model model)
+        {
+            elements.forEach(element -> model.removeElement(element, true));
+        }
+
+        @Override
+        long getFootprint()
+        {
+            long footprint = EDIT_FOOTPRINT;
+            for (ToolElement element : elements)
+            {
+                footprint += getFootprint(element) + 8;
+            }
+
+            return footprint;
+        }
+
+        private long getFootprint(ToolElement element)
+        {
+            long footprint = ELEMENT_FOOTPRINT;
+
+            if (element instanceof AbstractObject object && object.getMembers() != null)
+            {
+                for (ToolElement member : object.getMembers().first())
+                {
+                    footprint += getFootprint(member);
+                }
+            }
+
+            return footprint;
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException
+        {
+            out.writeByte(DELETED);
+            out.writeInt(elements.size());
+            for (int i = 0; i < elements.size(); i++)
+            {
+                out.writeLong(zIndices[i]);
+                writeElement(out, elements.get(i));
+            }
+        }
+    }
+
+    // ==================== recording ====================
+
+    private void record(Edit edit)
+    {
+        endMove();
+        redoStack.forEach(redoable -> memory -= redoable.getFootprint());
+        redoStack.clear();
+        undoStack.addLast(edit);
+        memory += edit.getFootprint();
+        pendingMove = edit instanceof Moved move ? move : null;  // a move is merged with the following events, so it is not spilled yet
+        trim();
+    }
+
+    void added(ToolElement element, long zIndex)
+    {
+        record(new Added(element, zIndex));
+    }
+
+    // called for every mouseDragged event with the same list of objects, the events of one move are merged into a single edit
+    void moved(List<AbstractObject> objects, int offsetX, int offsetY)
+    {
+        if (pendingMove != null && pendingMove.objects == objects)
+        {
+            pendingMove.offsetX += offsetX;
+            pendingMove.offsetY += offsetY;
+        }
+        else
+        {
+            record(new Moved(objects, offsetX, offsetY));
+        }
+    }
+
+    void endMove()
+    {
+        if (pendingMove != null)
+        {
+            if (pendingMove.offsetX == 0 && pendingMove.offsetY == 0)  // the object has been pressed without being moved
+            {
+                undoStack.removeLast();
+                memory -= pendingMove.getFootprint();
+            }
+            pendingMove = null;
+            trim();
+        }
+    }
+
+    // members are the top-level elements that have become the members of the compositeObject, given in painting order with their old z-indices
+    void grouped(AbstractObject compositeObject, long zIndex, List<ToolElement> members, long[] memberZIndices)
+    {
+        record(new Grouped(compositeObject, zIndex, members, memberZIndices));
+    }
+
+    // members are the elements that have been added to the CanvasArea, given with their new z-indices
+    void ungrouped(AbstractObject compositeObject, long zIndex, List<ToolElement> members, long[] memberZIndices)
+    {
+        record(new Ungrouped(compositeObject, zIndex, members, memberZIndices));
+    }
+
+    void renamed(AbstractObject object, String oldName, String newName)
+    {
+        record(new Renamed(object, oldName, newName));
+    }
+
+    // elements are all removed top-level elements, including the lines attached to the deleted objects, with their old z-indices
+    void deleted(List<ToolElement> elements, long[] zIndices)
+    {
+        record(new Deleted(elements, zIndices));
+    }
+
+    // ==================== undo and redo ====================
+
+    boolean canUndo()
+    {
+        return !undoStack.isEmpty() || !spilledOffsets.isEmpty();
+    }
+
+    boolean canRedo()
+    {
+        return !redoStack.isEmpty();
+    }
+
+    /*
+    Undoes the most recent edit. Returns true if the edit has been recorded since the last checkpoint, so that the
+    journal can record the undo as well; otherwise the journal has to start anew from the current diagram.
+     */
+    boolean undo(Model model) throws IOException
+    {
+        endMove();
+        if (undoStack.isEmpty())
+        {
+            unspill();
+        }
+
+        Edit edit = undoStack.removeLast();
+        edit.undo(model);
+        redoStack.addLast(edit);
+        trim();
+
+        return edit.epoch == epoch;
+    }
+
+    // the counterpart of undo
+    boolean redo(Model model)
+    {
+        endMove();
+
+        Edit edit = redoStack.removeLast();
+        edit.redo(model);
+        undoStack.addLast(edit);
+        trim();
+
+        return edit.epoch == epoch;
+    }
+
+    // the journal has started anew, so the edits recorded so far can no longer be undone or redone in the journal
+    void checkpoint()
+    {
+        endMove();
+        epoch++;
+    }
+
+    // forgets all edits, e.g. when another diagram is opened
+    void clear()
+    {
+        pendingMove = null;
+        undoStack.clear();
+        redoStack.clear();
+        memory = 0;
+        epoch++;
+        spilledOffsets.clear();
+        truncateSpillFile(0);
+        registryIds.clear();
+        registeredElements.clear();
+    }
+
+    // ==================== the spill file ====================
+
+    // writes the oldest edits in memory to the spill file until the history fits into its budget again
+    private void trim()
+    {
+        // the redoStack is not spilled, since it is only filled by undoing the edits one by one
+        while (memory > memoryBudget && !undoStack.isEmpty() && undoStack.peekFirst() != pendingMove)
+        {
+            Edit edit = undoStack.removeFirst();
+            memory -= edit.getFootprint();
+
+            try
+            {
+                spill(edit);
+            }
+            catch (IOException e)
+            {
+                // the edit and all older ones are forgotten rather than kept beyond the budget
+                spilledOffsets.clear();
+                truncateSpillFile(0);
+            }
+        }
+    }
+
+    private void spill(Edit edit) throws IOException
+    {
+        if (spillChannel == null)
+        {
+            Path spillPath = Files.createTempFile("umleditor-undo", ".tmp");
+            spillPath.toFile().deleteOnExit();
+            spillChannel = FileChannel.open(spillPath, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(edit.epoch);
+        edit.write(out);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        long position = spillEnd;
+        while (buffer.hasRemaining())
+        {
+            position += spillChannel.write(buffer, position);
+        }
+        spilledOffsets.add(spillEnd);
+        spillEnd = position;
+        spilledEdits++;
+    }
+
+    // reads the most recent spilled edit back into the undoStack, which is empty
+    private void unspill() throws IOException
+    {
+        long offset = spilledOffsets.remove(spilledOffsets.size() - 1);
+        ByteBuffer buffer = ByteBuffer.allocate((int) (spillEnd - offset));
+
+        try
+        {
+            while (buffer.hasRemaining())
+            {
+                if (spillChannel.read(buffer, offset + buffer.position()) < 0)
+                {
+                    throw new IOException("the spill file of the undo history is truncated");
+                }
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array()));
+            long editEpoch = in.readLong();
+            Edit edit = readEdit(in);
+            edit.epoch = editEpoch;
+            undoStack.addLast(edit);
+            memory += edit.getFootprint();
+            truncateSpillFile(offset);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // the older edits cannot be undone either
+            spilledOffsets.clear();
+            truncateSpillFile(0);
+            throw e instanceof IOException ioException ? ioException : new IOException(e);
+        }
+    }
+
+    private void truncateSpillFile(long size)
+    {
+        spillEnd = size;
+
+        if (spillChannel != null)
+        {
+            try
+            {
+                spillChannel.truncate(size);
+            }
+            catch (IOException ignored)
+            {
+                // the rest of the file is overwritten by the next spill
+            }
+        }
+    }
+
+    private Edit readEdit(DataInputStream in) throws IOException
+    {
+        switch (in.readByte())
+        {
+            case ADDED ->
+            {
+                return new Added(readReference(in), in.readLong());
+            }
+            case MOVED ->
+            {
+                int count = in.readInt();
+                ArrayList<AbstractObject> objects = new ArrayList<>(count);
+                for (int i = 0; i < count; i++)
+                {
+                    objects.add((AbstractObject) readReference(in));
+                }
+
+                return new Moved(objects, in.readInt(), in.readInt());
+            }
+            case GROUPED ->
+            {
+                AbstractObject compositeObject = (AbstractObject) readReference(in);
+                long zIndex = in.readLong();
+                ArrayList<ToolElement> members = new ArrayList<>();
+                long[] memberZIndices = readReferences(in, members);
+
+                return new Grouped(compositeObject, zIndex, members, memberZIndices);
+            }
+            case UNGROUPED ->
+            {
+                int id = in.readInt();
+                long journalKey = in.readLong();
+                Point location = new Point(in.readInt(), in.readInt());
+                int width = in.readInt(), height = in.readInt();
+                String name = readName(in);
+                long zIndex = in.readLong();
+                ArrayList<ToolElement> members = new ArrayList<>();
+                long[] memberZIndices = readReferences(in, members);
+
+                ToolElement compositeObject = lookUp(id);
+                if (compositeObject == null)
+                {
+                    compositeObject = ElementKind.createComposite(location, width, height, members);
+                    ((AbstractObject) compositeObject).setName(name);
+                    register(compositeObject, id);
+                    rebindInJournal(compositeObject, journalKey);
+                }
+
+                return new Ungrouped((AbstractObject) compositeObject, zIndex, members, memberZIndices);
+            }
+            case RENAMED ->
+            {
+                AbstractObject object = (AbstractObject) readReference(in);
+                String oldName = in.readBoolean() ? in.readUTF() : null;
+
+                return new Renamed(object, oldName, in.readUTF());
+            }
+            case DELETED ->
+            {
+                int count = in.readInt();
+                ArrayList<ToolElement> elements = new ArrayList<>(count);
+                long[] zIndices = new long[count];
+                for (int i = 0; i < count; i++)
+                {
+                    zIndices[i] = in.readLong();
+                    elements.add(readElement(in));
+                }
+
+                return new Deleted(elements, zIndices);
+            }
+            default -> throw new IOException("unknown edit in the spill file");
+        }
+    }
+
+    // ==================== the element registry ====================
+
+    private int register(ToolElement element)
+    {
+        Integer id = registryIds.get(element);
+
+        if (id == null)
+        {
+            id = nextRegistryId++;
+            register(element, id);
+        }
+
+        return id;
+    }
+
+    private void register(ToolElement element, int id)
+    {
+        registryIds.put(element, id);
+        registeredElements.put(id, new WeakReference<>(element));
+
+        if (registeredElements.size() > 2 * registryIds.size() + 1024)  // drop the ids of the collected elements
+        {
+            registeredElements.values().removeIf(reference -> reference.get() == null);
+        }
+    }
+
+    // null if the element with the id has been collected
+    private ToolElement lookUp(int id)
+    {
+        WeakReference<ToolElement> reference = registeredElements.get(id);
+
+        return reference != null ? reference.get() : null;
+    }
+
+    private void writeJournalKey(DataOutputStream out, ToolElement element) throws IOException
+    {
+        out.writeLong(journal != null ? journal.getKey(element) : -1);
+    }
+
+    private void rebindInJournal(ToolElement element, long journalKey)
+    {
+        if (journal != null)
+        {
+            journal.rebind(element, journalKey);
+        }
+    }
+
+    // a reference to an element that is alive as long as the edit can be read back
+    private void writeReference(DataOutputStream out, ToolElement element) throws IOException
+    {
+        out.writeInt(register(element));
+    }
+
+    private ToolElement readReference(DataInputStream in) throws IOException
+    {
+        ToolElement element = lookUp(in.readInt());
+
+        if (element == null)
+        {
+            throw new IOException("a spilled edit refers to an element that no longer exists");
+        }
+
+        return element;
+    }
+
+    private void writeReferences(DataOutputStream out, List<ToolElement> elements, long[] zIndices) throws IOException
+    {
+        out.writeInt(elements.size());
+
+        for (int i = 0; i < elements.size(); i++)
+        {
+            writeReference(out, elements.get(i));
+            out.writeLong(zIndices[i]);
+        }
+    }
+
+    private long[] readReferences(DataInputStream in, List<ToolElement> elements) throws IOException
+    {
+        int count = in.readInt();
+        long[] zIndices = new long[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            elements.add(readReference(in));
+            zIndices[i] = in.readLong();
+        }
+
+        return zIndices;
+    }
+
+    /*
+    Writes the element in full, including the members of a CompositeObject. The members are written objects first,
+    each with its position in the drawing order, so that the objects a member line is attached to have been
+    recreated before the line when it is read back.
+     */
+    private void writeElement(DataOutputStream out, ToolElement element) throws IOException
+    {
+        ElementKind kind = ElementKind.of(element);
+        out.writeByte(kind.ordinal());
+        out.writeInt(register(element));
+        writeJournalKey(out, element);
+
+        if (kind.isLine())
+        {
+            ConnectionLine line = (ConnectionLine) element;
+            writeReference(out, line.getStartBasicObject());
+            out.writeByte(ElementKind.portIndex(line.getStartBasicObject(), line.getStartPort()));
+            writeReference(out, line.getEndBasicObject());
+            out.writeByte(ElementKind.portIndex(line.getEndBasicObject(), line.getEndPort()));
+            return;
+        }
+
+        AbstractObject object = (AbstractObject) element;
+        out.writeInt(object.getUnselectedTopLeftCorner().x);
+        out.writeInt(object.getUnselectedTopLeftCorner().y);
+        writeName(out, object);  // the name of a CompositeObject is not drawn but saved with the diagram
+
+        if (!kind.isBasicObject())  // CompositeObject
+        {
+            out.writeInt(object.getUnselectedWidth());
+            out.writeInt(object.getUnselectedHeight());
+
+            List<ToolElement> members = object.getMembers().first();
+            out.writeInt(members.size());
+            for (int pass = 0; pass < 2; pass++)  // the AbstractObjects in the first pass, the ConnectionLines in the second
+            {
+                for (int i = 0; i < members.size(); i++)
+                {
+                    if (members.get(i).isMovable() == (pass == 0))
+                    {
+                        out.writeInt(i);
+                        writeElement(out, members.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void writeName(DataOutputStream out, AbstractObject object) throws IOException
+    {
+        out.writeBoolean(object.getName() != null);
+        if (object.getName() != null)
+        {
+            out.writeUTF(object.getName());
+        }
+    }
+
+    private static String readName(DataInputStream in) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    // an element that is still alive is used instead of a copy, so that the references to it stay valid
+    private ToolElement readElement(DataInputStream in) throws IOException
+    {
+        ElementKind kind = ElementKind.of(in.readByte());
+        int id = in.readInt();
+        long journalKey = in.readLong();
+        ToolElement element;
+
+        if (kind.isLine())
+        {
+            BasicObject start = (BasicObject) readReference(in);
+            int startPort = in.readByte();
+            BasicObject end = (BasicObject) readReference(in);
+            int endPort = in.readByte();
+            element = kind.createLine(start, startPort, end, endPort);
+        }
+        else
+        {
+            Point location = new Point(in.readInt(), in.readInt());
+            String name = readName(in);
+
+            if (kind.isBasicObject())
+            {
+                element = kind.createBasicObject(location);
+                ((AbstractObject) element).setName(name);
+            }
+            else  // CompositeObject
+            {
+                int width = in.readInt(), height = in.readInt();
+                ToolElement[] members = new ToolElement[in.readInt()];
+                for (int i = 0; i < members.length; i++)
+                {
+                    int position = in.readInt();
+                    if (position < 0 || position >= members.length || members[position] != null)
+                    {
+                        throw new IOException("invalid member of a CompositeObject in the spill file");
+                    }
+                    members[position] = readElement(in);
+                }
+                if (lookUp(id) == null)  // createComposite changes the selected state of the members
+                {
+                    CompositeObject compositeObject = ElementKind.createComposite(location, width, height, Arrays.asList(members));
+                    compositeObject.getMembers().third().forEach(ConnectionLine::connect);  // the member lines are connected as long as the CompositeObject exists
+                    compositeObject.setName(name);
+                    element = compositeObject;
+                }
+                else
+                {
+                    element = null;
+                }
+            }
+        }
+
+        ToolElement alive = lookUp(id);
+        if (alive != null)
+        {
+            return alive;
+        }
+        register(element, id);
+        rebindInJournal(element, journalKey);
+
+        return element;
+    }
+
+    // ==================== statistics ====================
+
+    // the estimated memory of the edits that are not spilled, in bytes
+    long getMemory()
+    {
+        return memory;
+    }
+
+    int getSpilledEditCount()
+    {
+        return spilledOffsets.size();
+    }
+
+    // the edits that have been written to the spill file so far
+    long getSpilledEdits()
+    {
+        return spilledEdits;
+    }
+
+    long getSpillFileSize()
+    {
+        return spillEnd;
+    }
+}